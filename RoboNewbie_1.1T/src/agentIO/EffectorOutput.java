@@ -9,6 +9,7 @@
 
 package agentIO;
 
+import bodyModel.JointCommandGuard;
 import java.util.HashMap;
 import util.RobotConsts;
 
@@ -45,6 +46,10 @@ import util.RobotConsts;
  * agent class) as described above is strongly recommended. 
  * 
  * Remember that a hinge joint executes a sent command until it gets a new one. 
+ * 
+ * Optionally a JointCommandGuard can be set (see setGuard(...)), then the
+ * joint commands are limited to the joint ranges and speeds before they are
+ * sent. 
  *  
  */
 public class EffectorOutput {
@@ -54,6 +59,10 @@ public class EffectorOutput {
   HashMap<Integer, Double> jointCommands;
   String sayMessage;
   
+  private JointCommandGuard guard = null;
+  private final double[] guardedCommands = new double[RobotConsts.JointsCount];
+  private final boolean[] guardedPresent = new boolean[RobotConsts.JointsCount];
+  
   /**
    * Constructor.
    * 
@@ -90,9 +99,16 @@ public class EffectorOutput {
     StringBuilder builder = new StringBuilder();
 
     for (int i = 0; i < RobotConsts.JointsCount; i++) {
-      if (jointCommands.containsKey(i))
+      Double command = jointCommands.get(i);
+      guardedPresent[i] = command != null;
+      guardedCommands[i] = command != null ? command : 0;
+    }
+    if (guard != null)
+      guard.apply(guardedCommands, guardedPresent);
+    for (int i = 0; i < RobotConsts.JointsCount; i++) {
+      if (guardedPresent[i])
         builder.append('(').append(RobotConsts.getEffectorID(i)).append(' ')
-                .append(jointCommands.get(i)).append(')');
+                .append(guardedCommands[i]).append(')');
     }
     if (sayMessage != null) {
       builder.append("(say ").append(sayMessage).append(")");
@@ -153,7 +169,8 @@ public class EffectorOutput {
    * passed array, a runtime error occurs. If there are more values, they are 
    * ignored from the index 22 to the end of the array. The order of joints in 
    * the array must be the same as defined by the joint constants in class 
-   * RobotConsts (RobotConst.NeckYaw, ...). The parameter is not checked at all. 
+   * RobotConsts (RobotConst.NeckYaw, ...). The parameter is not checked here,
+   * but by the guard, if one is set (see setGuard(...)).
    * 
    * @see setJointCommand(...), sendAgentMessage(), comment on this class.
    * @see util.RobotConsts#NeckYaw
@@ -165,4 +182,15 @@ public class EffectorOutput {
     }
   }
   
+  /**
+   * Sets a guard, which limits the joint commands in sendAgentMessage(), 
+   * before they are sent. 
+   * 
+   * @param guard The guard, or null to send the commands unchanged. 
+   * @see bodyModel.JointCommandGuard
+   */
+  public void setGuard(JointCommandGuard guard) {
+    this.guard = guard;
+  }
+  
 }
@@ -17,6 +17,7 @@ import agentIO.perceptors.*;
 import java.util.HashMap;
 import java.util.LinkedList;
 import org.apache.commons.math3.geometry.euclidean.threed.Vector3D;
+import util.PolarCoords;
 import util.FieldConsts;
 import util.GameStateConsts;
 import util.RobotConsts;
@@ -60,11 +61,11 @@ public class PerceptorInput {
   private Vector3D acc;
   private ForceResistancePerceptor frLeft, frRight;
   
-  private Vector3D ball;
+  private PolarCoords ball;
   private LinkedList<LineVisionPerceptor> lines;
   private LinkedList<PlayerVisionPerceptor> players;
-  private HashMap<FieldConsts.GoalPostID, Vector3D> goals;
-  private HashMap<FieldConsts.FlagID, Vector3D> flags;
+  private HashMap<FieldConsts.GoalPostID, PolarCoords> goals;
+  private HashMap<FieldConsts.FlagID, PolarCoords> flags;
   
   private LinkedList<HearPerceptor> hears;
   
@@ -98,10 +99,10 @@ public class PerceptorInput {
    * @param id ID of one of the goal posts, mapping for the IDs is given at:
    * http://simspark.sourceforge.net/wiki/index.php/Soccer_Simulation#Field_Dimensions_and_Layout
    * 
-   * @return Coordinates in meters and radians, or null if the value is not
-   * accessible.
+   * @return Polar coordinates in meters and radians, or null if the value is
+   * not accessible.
    */
-  public Vector3D getGoalPost(FieldConsts.GoalPostID id){
+  public PolarCoords getGoalPost(FieldConsts.GoalPostID id){
       return goals.get(id);
   }
   
@@ -115,10 +116,10 @@ public class PerceptorInput {
    * @param id ID of one of the flags, mapping for the IDs is given at:
    * http://simspark.sourceforge.net/wiki/index.php/Soccer_Simulation#Field_Dimensions_and_Layout
    * 
-   * @return Coordinates in meters and radians, or null if the value is not
-   * accessible.
+   * @return Polar coordinates in meters and radians, or null if the value is
+   * not accessible.
    */
-  public Vector3D getFlag(FieldConsts.FlagID id){
+  public PolarCoords getFlag(FieldConsts.FlagID id){
       return flags.get(id);
   }
   
@@ -190,10 +191,10 @@ public class PerceptorInput {
    * This value is not accessible in every server cycle, see for details:
    * http://simspark.sourceforge.net/wiki/index.php/Perceptors#Vision_Perceptor
    * 
-   * @return Coordinates in meters and radians, or null if the value is not
-   * accessible.
+   * @return Polar coordinates in meters and radians, or null if the value is
+   * not accessible.
    */  
-  public Vector3D getBall() {
+  public PolarCoords getBall() {
     return ball;
   }
   
@@ -476,7 +477,7 @@ public class PerceptorInput {
 			/* Parse content */
             String teamName = null;
             String id = null;
-			HashMap<String, Vector3D> bodyPartMap = new HashMap<>();
+			HashMap<String, PolarCoords> bodyPartMap = new HashMap<>();
 
 			for (int i = 1; i < node.children.length; i++) {
 				if (!(node.children[i] instanceof SymbolNode)) {
@@ -492,7 +493,7 @@ public class PerceptorInput {
 					id = (String) param.children[1];
 				} else {
                     String partName = null;
-                    Vector3D coords;
+                    PolarCoords coords;
 					// in case of seeing parts of opponent, we have to look into them
 					if (!param.children[0].equals("pol")) {
 						partName = (String) param.children[0];
@@ -530,8 +531,8 @@ public class PerceptorInput {
 			assert node.children[2] instanceof SymbolNode : "Malformed node: "
 					+ node.toString();
 
-			Vector3D pol1 = parsePolar((SymbolNode) node.children[1]);
-			Vector3D pol2 = parsePolar((SymbolNode) node.children[2]);
+			PolarCoords pol1 = parsePolar((SymbolNode) node.children[1]);
+			PolarCoords pol2 = parsePolar((SymbolNode) node.children[2]);
 
 			return new LineVisionPerceptor(pol1, pol2);
 		} catch (IndexOutOfBoundsException e) {
@@ -547,7 +548,7 @@ public class PerceptorInput {
    * @return Internal used value.
    * @throws PerceptorConversionException 
    */
-  private Vector3D parsePolar(SymbolNode node)
+  private PolarCoords parsePolar(SymbolNode node)
           throws PerceptorConversionException
   {
     double distance, azimuth, elevation;
@@ -563,8 +564,7 @@ public class PerceptorInput {
             azimuth     = Double.parseDouble((String) node.children[2]);
             elevation   = Double.parseDouble((String) node.children[3]);
             
-            return new Vector3D(distance, 
-                    new Vector3D(Math.toRadians(azimuth), Math.toRadians(elevation)));
+            return new PolarCoords(distance, Math.toRadians(azimuth), Math.toRadians(elevation));
             
     } catch (IndexOutOfBoundsException e) {
             throw new PerceptorConversionException("Malformed node: "
@@ -7,22 +7,22 @@
 
 package agentIO.perceptors;
 
-import org.apache.commons.math3.geometry.euclidean.threed.Vector3D;
 import util.Logger;
+import util.PolarCoords;
 
 /**
  * This class represents the raw value for a line from the vision perceptor, 
  * for a convenient access to line coordinates see package localfieldView.
  */
 public class LineVisionPerceptor {
-  private final Vector3D startPoint;
-  private final Vector3D endPoint;
+  private final PolarCoords startPoint;
+  private final PolarCoords endPoint;
   
 /**
  * This class represents the raw value for a line from the vision perceptor, 
  * for a convenient access to line coordinates see package localfieldView.
  */
-  public LineVisionPerceptor(Vector3D start, Vector3D end){
+  public LineVisionPerceptor(PolarCoords start, PolarCoords end){
     startPoint = start;
     endPoint = end;
   }
@@ -31,7 +31,7 @@ public class LineVisionPerceptor {
  * This class represents the raw value for a line from the vision perceptor, 
  * for a convenient access to line coordinates see package localfieldView.
  */
-  public Vector3D getStart(){
+  public PolarCoords getStart(){
     return startPoint;
   }
   
@@ -39,7 +39,7 @@ public class LineVisionPerceptor {
  * This class represents the raw value for a line from the vision perceptor, 
  * for a convenient access to line coordinates see package localfieldView.
  */
-  public Vector3D getEnd(){
+  public PolarCoords getEnd(){
     return endPoint;
   }
   
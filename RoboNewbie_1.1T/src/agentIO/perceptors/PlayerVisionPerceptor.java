@@ -8,8 +8,8 @@
 package agentIO.perceptors;
 
 import java.util.HashMap;
-import org.apache.commons.math3.geometry.euclidean.threed.Vector3D;
 import util.Logger;
+import util.PolarCoords;
 import util.RobotConsts.BodyPartName;
 import static util.RobotConsts.getBodyPartName;
 
@@ -32,13 +32,13 @@ public class PlayerVisionPerceptor {
   
   private String team;
   private String ID;
-  private HashMap<BodyPartName, Vector3D> bodyParts;
+  private HashMap<BodyPartName, PolarCoords> bodyParts;
   
 /**
  * This class represents the raw value for a line from the vision perceptor, 
  * for a convenient access to line coordinates see package localfieldView.
  */
-  public PlayerVisionPerceptor(String team, String ID, HashMap<String, Vector3D> bodyParts){
+  public PlayerVisionPerceptor(String team, String ID, HashMap<String, PolarCoords> bodyParts){
     this.team = team;
     this.ID = ID;
     this.bodyParts = new HashMap<>();
@@ -66,7 +66,7 @@ public class PlayerVisionPerceptor {
  * This class represents the raw value for a line from the vision perceptor, 
  * for a convenient access to line coordinates see package localfieldView.
  */
-  public Vector3D getBodyPart( BodyPartName b){
+  public PolarCoords getBodyPart( BodyPartName b){
     return bodyParts.get(b);
   }
   
@@ -74,7 +74,7 @@ public class PlayerVisionPerceptor {
  * This class represents the raw value for a line from the vision perceptor, 
  * for a convenient access to line coordinates see package localfieldView.
  */
-  public HashMap<BodyPartName, Vector3D> getAllBodyParts(){
+  public HashMap<BodyPartName, PolarCoords> getAllBodyParts(){
     return bodyParts;
   }
   
@@ -0,0 +1,429 @@
+/*******************************************************************************
+*  RoboNewbie
+* NaoTeam Humboldt
+* @version 1.1
+*******************************************************************************/
+
+package bodyModel;
+
+import agentIO.PerceptorInput;
+import agentIO.perceptors.ForceResistancePerceptor;
+import org.apache.commons.math3.geometry.euclidean.threed.Vector3D;
+import util.RobotConsts;
+
+/**
+ * Center of mass and support polygon of the robot.
+ *
+ * The center of mass is computed from the joint poses of a ForwardKinematics
+ * and the masses of the body parts of the SimSpark Nao model. Every body part
+ * is moved by one joint, its center of mass is given relative to the anchor
+ * of this joint in the zero pose.
+ *
+ * The support polygon is the convex hull of the contact areas of all feet,
+ * whose force resistance perceptors sense a force of at least MIN_FORCE in
+ * the actual cycle. The perceptor reports the point of origin of the force on
+ * the sole, that is the center of pressure of the foot. The contact area of a
+ * foot is estimated as the largest rectangle inside of the sole, whose center
+ * is this point: a foot standing flat with the pressure in the middle
+ * supports with the whole sole, a foot standing on its toes or on an edge
+ * only with a small strip there. The polygon is computed in the coordinates
+ * of a support sole (the left one, if both feet have contact): the origin is
+ * the center of the sole, the x-axis points to the right, the y-axis to the
+ * front and the z-axis up, if the foot stands flat on the ground. The center
+ * of mass is projected along the z-axis of this sole onto the ground.
+ *
+ * The stability margin is the distance of the projected center of mass to
+ * the nearest edge of the support polygon, positive inside the polygon and
+ * negative outside. Behaviors can check it before starting a movement, which
+ * needs a stable stand, e.g. a kick:
+ * <pre>
+ * if (balance.isStable(0.02))
+ *   motion.setKick_Plovdiv2014();
+ * </pre>
+ *
+ * The method update() has to be called in every server cycle after
+ * PerceptorInput has been updated, it updates the kinematics, too. The model
+ * does not create any objects in update().
+ *
+ * @see ForwardKinematics
+ * @see agentIO.perceptors.ForceResistancePerceptor
+ */
+public class BalanceModel {
+
+  // mass in kg and center of mass relative to the joint anchor in meters of
+  // the body part moved by every joint, in the order of RobotConsts
+  private static final double[] MASSES = {
+    0.05, 0.35,
+    0.07, 0.15, 0.035, 0.2,
+    0.09, 0.125, 0.275, 0.225, 0.125, 0.2,
+    0.09, 0.125, 0.275, 0.225, 0.125, 0.2,
+    0.07, 0.15, 0.035, 0.2};
+  private static final double[][] CENTERS = {
+    {0, 0, 0}, {0, 0, 0.005},
+    {0, 0, 0}, {-0.01, 0.02, 0}, {0, 0, 0}, {0, 0.05, 0},
+    {0, 0, 0}, {0, 0, 0}, {0, 0.01, -0.04}, {0, -0.01, -0.045}, {0, 0, 0},
+    {0, 0.03, -0.04},
+    {0, 0, 0}, {0, 0, 0}, {0, 0.01, -0.04}, {0, -0.01, -0.045}, {0, 0, 0},
+    {0, 0.03, -0.04},
+    {0, 0, 0}, {0.01, 0.02, 0}, {0, 0, 0}, {0, 0.05, 0}};
+  private static final double TORSO_MASS = 1.2171;
+  private static final double TOTAL_MASS;
+
+  static {
+    double m = TORSO_MASS;
+    for (double mass : MASSES)
+      m += mass;
+    TOTAL_MASS = m;
+  }
+
+  /**
+   * Smallest force in Newton, which is counted as a contact of a foot.
+   */
+  public static final double MIN_FORCE = 1;
+
+  // half size of a sole in x- and y-direction in meters
+  private static final double SOLE_HALF_WIDTH = 0.04;
+  private static final double SOLE_HALF_LENGTH = 0.08;
+  // smallest half size of a contact area, an edge of the sole has some width
+  private static final double MIN_HALF_SIZE = 0.005;
+  private static final double[] CORNERS_X = {-1, 1, 1, -1};
+  private static final double[] CORNERS_Y = {-1, -1, 1, 1};
+  private static final int MAX_POINTS = 8;
+
+  private final PerceptorInput percIn;
+  private final ForwardKinematics kinematics;
+  private final double[] support = new double[16];
+  private final double[] foot = new double[16];
+  private final double[] point = new double[3];
+  private final double[] pointsX = new double[MAX_POINTS];
+  private final double[] pointsY = new double[MAX_POINTS];
+  private final double[] hullX = new double[MAX_POINTS + 1];
+  private final double[] hullY = new double[MAX_POINTS + 1];
+
+  private double comX, comY, comZ;
+  private double supportComX, supportComY;
+  private boolean leftContact, rightContact;
+  private int vertexCount = 0;
+  private double margin = Double.NEGATIVE_INFINITY;
+
+  /**
+   * Constructor.
+   *
+   * @param percIn Perceptor input of the agent, cannot be null.
+   * @param kinematics Forward kinematics, which can be shared with other
+   * classes, e.g. LocalFieldView.getKinematics(). Cannot be null.
+   */
+  public BalanceModel(PerceptorInput percIn, ForwardKinematics kinematics) {
+    this.percIn = percIn;
+    this.kinematics = kinematics;
+  }
+
+  /**
+   * Computes the center of mass, the support polygon and the stability margin
+   * from the actual perceptor values.
+   */
+  public void update() {
+    kinematics.update(percIn);
+    computeCenterOfMass();
+
+    leftContact = hasContact(percIn.getFrLeft());
+    rightContact = hasContact(percIn.getFrRight());
+    vertexCount = 0;
+    if (!leftContact && !rightContact) {
+      margin = Double.NEGATIVE_INFINITY;
+      return;
+    }
+
+    kinematics.getPose(leftContact ? ForwardKinematics.LEFT_FOOT
+            : ForwardKinematics.RIGHT_FOOT, support);
+    toSupport(comX, comY, comZ);
+    supportComX = point[0];
+    supportComY = point[1];
+
+    int n = 0;
+    if (leftContact)
+      n = addContact(ForwardKinematics.LEFT_FOOT, percIn.getFrLeft(), n);
+    if (rightContact)
+      n = addContact(ForwardKinematics.RIGHT_FOOT, percIn.getFrRight(), n);
+    computeHull(n);
+    computeMargin();
+  }
+
+  /**
+   * Returns the mass of the robot.
+   *
+   * @return Mass in kg.
+   */
+  public double getMass() {
+    return TOTAL_MASS;
+  }
+
+  /**
+   * Returns the x-coordinate of the center of mass in the torso coordinates
+   * (see ForwardKinematics).
+   *
+   * @return Coordinate in meters, positive to the right.
+   */
+  public double getComX() {
+    return comX;
+  }
+
+  /**
+   * Returns the y-coordinate of the center of mass in the torso coordinates
+   * (see ForwardKinematics).
+   *
+   * @return Coordinate in meters, positive to the front.
+   */
+  public double getComY() {
+    return comY;
+  }
+
+  /**
+   * Returns the z-coordinate of the center of mass in the torso coordinates
+   * (see ForwardKinematics).
+   *
+   * @return Coordinate in meters, positive above the torso center.
+   */
+  public double getComZ() {
+    return comZ;
+  }
+
+  /**
+   * States, whether the left foot has contact in the actual cycle.
+   *
+   * @return True, if the left force resistance perceptor senses a force of
+   * at least MIN_FORCE.
+   */
+  public boolean hasLeftContact() {
+    return leftContact;
+  }
+
+  /**
+   * States, whether the right foot has contact in the actual cycle.
+   *
+   * @return True, if the right force resistance perceptor senses a force of
+   * at least MIN_FORCE.
+   */
+  public boolean hasRightContact() {
+    return rightContact;
+  }
+
+  /**
+   * Returns the x-coordinate of the projected center of mass in the support
+   * coordinates (see class description).
+   *
+   * @return Coordinate in meters, undefined without contact.
+   */
+  public double getSupportComX() {
+    return supportComX;
+  }
+
+  /**
+   * Returns the y-coordinate of the projected center of mass in the support
+   * coordinates (see class description).
+   *
+   * @return Coordinate in meters, undefined without contact.
+   */
+  public double getSupportComY() {
+    return supportComY;
+  }
+
+  /**
+   * Returns the number of vertices of the support polygon.
+   *
+   * @return Number of vertices, 0 if no foot has contact.
+   */
+  public int getVertexCount() {
+    return vertexCount;
+  }
+
+  /**
+   * Returns the x-coordinate of a vertex of the support polygon in the
+   * support coordinates. The vertices are ordered counter-clockwise.
+   *
+   * @param i Index of the vertex, from 0 to getVertexCount() - 1.
+   * @return Coordinate in meters.
+   */
+  public double getVertexX(int i) {
+    return hullX[i];
+  }
+
+  /**
+   * Returns the y-coordinate of a vertex of the support polygon in the
+   * support coordinates. The vertices are ordered counter-clockwise.
+   *
+   * @param i Index of the vertex, from 0 to getVertexCount() - 1.
+   * @return Coordinate in meters.
+   */
+  public double getVertexY(int i) {
+    return hullY[i];
+  }
+
+  /**
+   * Returns the stability margin.
+   *
+   * @return Distance in meters of the projected center of mass to the nearest
+   * edge of the support polygon, negative if it lies outside, and
+   * Double.NEGATIVE_INFINITY if no foot has contact.
+   */
+  public double getStabilityMargin() {
+    return margin;
+  }
+
+  /**
+   * States, whether the projected center of mass lies inside of the support
+   * polygon with at least the passed distance to its edges.
+   *
+   * @param minMargin Required stability margin in meters.
+   * @return True, if the stability margin is at least minMargin.
+   */
+  public boolean isStable(double minMargin) {
+    return margin >= minMargin;
+  }
+
+  /**
+   * Returns the center of mass and the stability margin in a string.
+   *
+   * @return String with the values in meters.
+   */
+  @Override
+  public String toString() {
+    return String.format("COM (%.3f, %.3f, %.3f) margin %.3f, contact %s %s",
+            comX, comY, comZ, margin, leftContact ? "left" : "-",
+            rightContact ? "right" : "-");
+  }
+
+  /**
+   * Internal method, sums the weighted centers of all body parts.
+   */
+  private void computeCenterOfMass() {
+    double[] poses = kinematics.getJointPoses();
+    double x = 0, y = 0, z = 0;
+    for (int i = 0; i < RobotConsts.JointsCount; i++) {
+      double[] c = CENTERS[i];
+      int o = i * 16;
+      double m = MASSES[i];
+      x += m * (poses[o] * c[0] + poses[o + 1] * c[1] + poses[o + 2] * c[2] + poses[o + 3]);
+      y += m * (poses[o + 4] * c[0] + poses[o + 5] * c[1] + poses[o + 6] * c[2] + poses[o + 7]);
+      z += m * (poses[o + 8] * c[0] + poses[o + 9] * c[1] + poses[o + 10] * c[2] + poses[o + 11]);
+    }
+    // the center of the torso is the origin
+    comX = x / TOTAL_MASS;
+    comY = y / TOTAL_MASS;
+    comZ = z / TOTAL_MASS;
+  }
+
+  /**
+   * Internal method, states whether a force resistance perceptor senses a
+   * contact.
+   */
+  private static boolean hasContact(ForceResistancePerceptor fr) {
+    if (fr == null || fr.getOrigin() == null || fr.getForce() == null)
+      return false;
+    return fr.getForce().getNorm() >= MIN_FORCE;
+  }
+
+  /**
+   * Internal method, adds the corners of the contact area of a foot in the
+   * support coordinates to the points of the polygon. The contact area is the
+   * largest rectangle inside of the sole around the center of pressure.
+   */
+  private int addContact(int endPoint, ForceResistancePerceptor fr, int n) {
+    Vector3D origin = fr.getOrigin();
+    double maxX = SOLE_HALF_WIDTH - MIN_HALF_SIZE;
+    double maxY = SOLE_HALF_LENGTH - MIN_HALF_SIZE;
+    double cx = Math.max(-maxX, Math.min(maxX, origin.getX()));
+    double cy = Math.max(-maxY, Math.min(maxY, origin.getY()));
+    double halfWidth = SOLE_HALF_WIDTH - Math.abs(cx);
+    double halfLength = SOLE_HALF_LENGTH - Math.abs(cy);
+    kinematics.getPose(endPoint, foot);
+    for (int k = 0; k < 4; k++) {
+      double x = cx + CORNERS_X[k] * halfWidth;
+      double y = cy + CORNERS_Y[k] * halfLength;
+      toSupport(foot[0] * x + foot[1] * y + foot[3],
+              foot[4] * x + foot[5] * y + foot[7],
+              foot[8] * x + foot[9] * y + foot[11]);
+      pointsX[n] = point[0];
+      pointsY[n] = point[1];
+      n++;
+    }
+    return n;
+  }
+
+  /**
+   * Internal method, transforms a point from the torso coordinates into the
+   * support coordinates: point = R^T (p - t) with the support pose (R, t).
+   */
+  private void toSupport(double x, double y, double z) {
+    double dx = x - support[3], dy = y - support[7], dz = z - support[11];
+    point[0] = support[0] * dx + support[4] * dy + support[8] * dz;
+    point[1] = support[1] * dx + support[5] * dy + support[9] * dz;
+    point[2] = support[2] * dx + support[6] * dy + support[10] * dz;
+  }
+
+  /**
+   * Internal method, computes the convex hull of the first n points
+   * counter-clockwise with the monotone chain algorithm.
+   */
+  private void computeHull(int n) {
+    // sort the points by x and y, insertion sort for at most 8 points
+    for (int i = 1; i < n; i++) {
+      double x = pointsX[i], y = pointsY[i];
+      int j = i - 1;
+      while (j >= 0 && (pointsX[j] > x || (pointsX[j] == x && pointsY[j] > y))) {
+        pointsX[j + 1] = pointsX[j];
+        pointsY[j + 1] = pointsY[j];
+        j--;
+      }
+      pointsX[j + 1] = x;
+      pointsY[j + 1] = y;
+    }
+
+    int k = 0;
+    // lower hull
+    for (int i = 0; i < n; i++) {
+      while (k >= 2 && cross(k, pointsX[i], pointsY[i]) <= 0)
+        k--;
+      hullX[k] = pointsX[i];
+      hullY[k] = pointsY[i];
+      k++;
+    }
+    // upper hull
+    int lower = k + 1;
+    for (int i = n - 2; i >= 0; i--) {
+      while (k >= lower && cross(k, pointsX[i], pointsY[i]) <= 0)
+        k--;
+      hullX[k] = pointsX[i];
+      hullY[k] = pointsY[i];
+      k++;
+    }
+    // the last point is the first one
+    vertexCount = k - 1;
+  }
+
+  /**
+   * Internal method, returns the cross product of the last hull edge and the
+   * vector from the last hull point to (x, y).
+   */
+  private double cross(int k, double x, double y) {
+    double ax = hullX[k - 1] - hullX[k - 2], ay = hullY[k - 1] - hullY[k - 2];
+    return ax * (y - hullY[k - 1]) - ay * (x - hullX[k - 1]);
+  }
+
+  /**
+   * Internal method, computes the signed distance of the projected center
+   * of mass to the edges of the counter-clockwise support polygon.
+   */
+  private void computeMargin() {
+    double m = Double.POSITIVE_INFINITY;
+    for (int i = 0; i < vertexCount; i++) {
+      int j = (i + 1) % vertexCount;
+      double ex = hullX[j] - hullX[i], ey = hullY[j] - hullY[i];
+      double length = Math.hypot(ex, ey);
+      // positive on the left side of the edge, that is inside
+      double d = (ex * (supportComY - hullY[i]) - ey * (supportComX - hullX[i])) / length;
+      m = Math.min(m, d);
+    }
+    margin = m;
+  }
+}
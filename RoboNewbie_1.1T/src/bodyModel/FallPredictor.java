@@ -0,0 +1,263 @@
+/*******************************************************************************
+*  RoboNewbie
+* NaoTeam Humboldt
+* @version 1.1
+*******************************************************************************/
+
+package bodyModel;
+
+import agentIO.PerceptorInput;
+import util.Logger;
+
+/**
+ * This class predicts falls of the robot from the estimated torso tilt.
+ *
+ * The former fall detection (acceleration in z-direction below 2 m/s^2) fires
+ * only, when the robot lies on the ground already. The predictor extrapolates
+ * the pitch and roll angles of a TorsoOrientationEstimator with their turn
+ * rates over a short horizon. If the robot is clearly tilted, tilts further
+ * and the extrapolated angle exceeds the critical angle, a fall is predicted,
+ * so the behavior can stop the actual motion before the robot hits the
+ * ground. The prediction is kept, until the robot is upright again or lies
+ * on the ground. After a fall no fall is predicted, until the robot stands
+ * upright again, so the stand up motions do not cause predictions. The robot
+ * is regarded as lying, when the torso is nearly horizontal and does not turn
+ * anymore, then the stand up motions can start.
+ *
+ * For every fall the predictor measures the lead time, that is the time from
+ * the prediction to the moment, when the former detection fires. Falls, which
+ * were not predicted, and predictions, which were not followed by a fall, are
+ * counted. If a Logger is passed, every detected fall is logged.
+ *
+ * The method update() has to be called exactly once in every server cycle,
+ * after PerceptorInput has been updated, it updates the estimator, too. The
+ * predictor does not create any objects in update().
+ *
+ * @see TorsoOrientationEstimator
+ */
+public class FallPredictor {
+
+  /**
+   * Direction of a predicted fall.
+   */
+  public static enum FallDirection {NONE, FORWARD, BACKWARD, LEFT, RIGHT};
+
+  // extrapolation time of the tilt in seconds
+  private static final double HORIZON = 0.25;
+  // minimal tilt for a prediction, smaller tilts occur while walking
+  private static final double MIN_TILT = Math.toRadians(15);
+  private static final double CRITICAL_TILT = Math.toRadians(45);
+  // the robot lies, if its tilt is larger and its turn rates are smaller
+  private static final double LYING_TILT = Math.toRadians(65);
+  private static final double LYING_RATE = Math.toRadians(30);
+  // acceleration in z-direction of the former detection in m/s^2
+  private static final double GROUND_ACC_Z = 2;
+
+  private final PerceptorInput percIn;
+  private final TorsoOrientationEstimator estimator;
+  private final Logger log;
+
+  private FallDirection direction = FallDirection.NONE;
+  private double predictionTime = 0;
+  private boolean onGround = false;
+  private boolean lying = false;
+  // false after a fall, until the robot has stood up again
+  private boolean armed = true;
+
+  private int falls = 0, missedFalls = 0, falseAlarms = 0;
+  private double lastLeadTime = 0, totalLeadTime = 0;
+
+  /**
+   * Constructor without logging.
+   *
+   * @param percIn Perceptor input of the agent, cannot be null.
+   */
+  public FallPredictor(PerceptorInput percIn) {
+    this(percIn, null);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param percIn Perceptor input of the agent, cannot be null.
+   * @param log Logger for the detected falls, or null.
+   */
+  public FallPredictor(PerceptorInput percIn, Logger log) {
+    this.percIn = percIn;
+    this.log = log;
+    estimator = new TorsoOrientationEstimator(percIn);
+  }
+
+  /**
+   * Updates the estimator and the prediction, see comment on this class.
+   */
+  public void update() {
+    estimator.update();
+    if (!estimator.isInitialized())
+      return;
+    double time = percIn.getServerTime();
+    double pitch = estimator.getPitch();
+    double roll = estimator.getRoll();
+    double pitchRate = estimator.getPitchRate();
+    double rollRate = estimator.getRollRate();
+
+    lying = estimator.getTilt() > LYING_TILT
+            && Math.abs(pitchRate) < LYING_RATE && Math.abs(rollRate) < LYING_RATE;
+
+    if (estimator.getTilt() < MIN_TILT)
+      armed = true;
+    if (direction == FallDirection.NONE) {
+      if (armed && !onGround && !lying) {
+        double predictedPitch = predict(pitch, pitchRate);
+        double predictedRoll = predict(roll, rollRate);
+        if (Math.abs(predictedPitch) >= Math.abs(predictedRoll)) {
+          if (predictedPitch > CRITICAL_TILT)
+            direction = FallDirection.FORWARD;
+          else if (predictedPitch < -CRITICAL_TILT)
+            direction = FallDirection.BACKWARD;
+        } else {
+          if (predictedRoll > CRITICAL_TILT)
+            direction = FallDirection.RIGHT;
+          else if (predictedRoll < -CRITICAL_TILT)
+            direction = FallDirection.LEFT;
+        }
+        if (direction != FallDirection.NONE)
+          predictionTime = time;
+      }
+    } else if (estimator.getTilt() < MIN_TILT) {
+      // the robot has caught itself
+      direction = FallDirection.NONE;
+      falseAlarms++;
+    }
+
+    boolean ground = percIn.getAcc().getZ() < GROUND_ACC_Z;
+    if (ground && !onGround) {
+      falls++;
+      if (direction != FallDirection.NONE) {
+        lastLeadTime = time - predictionTime;
+        totalLeadTime += lastLeadTime;
+      } else {
+        lastLeadTime = 0;
+        missedFalls++;
+      }
+      if (log != null)
+        log.log(String.format("fall %s detected %.2f s after prediction \n",
+                direction, lastLeadTime));
+    }
+    onGround = ground;
+    if (lying || onGround) {
+      direction = FallDirection.NONE;
+      armed = false;
+    }
+  }
+
+  /**
+   * States if a fall is predicted, which has not ended yet.
+   *
+   * @return True, if the robot falls and does not lie yet.
+   */
+  public boolean isFallPredicted() {
+    return direction != FallDirection.NONE;
+  }
+
+  /**
+   * Returns the direction of the predicted fall.
+   *
+   * @return Direction, or FallDirection.NONE if no fall is predicted.
+   */
+  public FallDirection getFallDirection() {
+    return direction;
+  }
+
+  /**
+   * States if the robot lies on the ground and the stand up motions can be
+   * started.
+   *
+   * @return True, if the torso is nearly horizontal and at rest.
+   */
+  public boolean isLying() {
+    return lying;
+  }
+
+  /**
+   * States if the robot lies on its back. Valid only, if isLying() is true.
+   *
+   * @return True for lying on the back, false for lying on the front or side.
+   */
+  public boolean isLyingOnBack() {
+    return estimator.getPitch() < 0;
+  }
+
+  /**
+   * Returns the number of falls since the start of the agent.
+   *
+   * @return Number of falls detected by the former detection.
+   */
+  public int getFallCount() {
+    return falls;
+  }
+
+  /**
+   * Returns the number of falls, which were not predicted.
+   *
+   * @return Number of missed falls.
+   */
+  public int getMissedFallCount() {
+    return missedFalls;
+  }
+
+  /**
+   * Returns the number of predictions, which were not followed by a fall.
+   *
+   * @return Number of false alarms.
+   */
+  public int getFalseAlarmCount() {
+    return falseAlarms;
+  }
+
+  /**
+   * Returns the lead time of the last fall.
+   *
+   * @return Time in seconds from the prediction to the former detection, or
+   * 0 if the fall was not predicted.
+   */
+  public double getLastLeadTime() {
+    return lastLeadTime;
+  }
+
+  /**
+   * Returns the mean lead time of the predicted falls.
+   *
+   * @return Time in seconds, or 0 if no fall was predicted.
+   */
+  public double getMeanLeadTime() {
+    int predicted = falls - missedFalls;
+    return predicted == 0 ? 0 : totalLeadTime / predicted;
+  }
+
+  /**
+   * Returns the underlying orientation estimator.
+   *
+   * @return Estimator updated by this predictor.
+   */
+  public TorsoOrientationEstimator getEstimator() {
+    return estimator;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("falls=%d missed=%d false alarms=%d lead time %.2f s "
+            + "(mean %.2f s)", falls, missedFalls, falseAlarms, lastLeadTime,
+            getMeanLeadTime());
+  }
+
+  /**
+   * Internal method, extrapolates an angle, if the robot is tilted and the
+   * tilt grows. Returns 0 otherwise.
+   */
+  private static double predict(double angle, double rate) {
+    if (Math.abs(angle) < MIN_TILT || angle * rate <= 0)
+      return 0;
+    return angle + rate * HORIZON;
+  }
+}
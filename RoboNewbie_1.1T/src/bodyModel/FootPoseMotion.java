@@ -0,0 +1,137 @@
+/*******************************************************************************
+*  RoboNewbie
+* NaoTeam Humboldt
+* @version 1.1
+*******************************************************************************/
+
+package bodyModel;
+
+import keyframeMotion.util.PoseSource;
+import util.RobotConsts;
+
+/**
+ * Movement of both feet to target poses, generated by the leg inverse
+ * kinematics.
+ *
+ * The poses of the soles are given relative to the hip joints like in
+ * LegInverseKinematics. When the movement is started, the start poses of the
+ * soles are computed from the start angles by ForwardKinematics. In every
+ * cycle the position and the three rotation angles of each sole are
+ * interpolated with a minimum jerk profile from the start to the target pose,
+ * and the leg joint angles are solved for the interpolated poses. The head and
+ * arm joints keep their start angles.
+ *
+ * Usage: create the movement once, set the targets and pass it to
+ * KeyframeMotion.setPoseSource(...), e.g. to lower the hips for a kick:
+ * <pre>
+ * FootPoseMotion crouch = new FootPoseMotion("crouch", 25);
+ * crouch.setTarget(true, 0, 0.025, -0.23, 0, 0, 0);
+ * crouch.setTarget(false, 0, 0.025, -0.23, 0, 0, 0);
+ * motion.setPoseSource(crouch);
+ * </pre>
+ * The targets can be changed before every request, the movement does not
+ * create any objects after its construction.
+ *
+ * @see LegInverseKinematics
+ * @see keyframeMotion.KeyframeMotion#setPoseSource(PoseSource)
+ */
+public class FootPoseMotion implements PoseSource {
+
+  // pose values per foot: x, y, z, yaw, pitch, roll
+  private static final int VALUES = 6;
+
+  private final String name;
+  private final int cycles;
+  private final ForwardKinematics kinematics = new ForwardKinematics();
+  private final double[] pose = new double[16];
+  private final double[] startAngles = new double[RobotConsts.JointsCount];
+  private final double[] startPoses = new double[2 * VALUES];
+  private final double[] targetPoses = new double[2 * VALUES];
+
+  /**
+   * Constructor, the targets are the zero pose of the legs.
+   *
+   * @param name Name of the movement, used for logging and recording.
+   * @param cycles Duration of the movement in server cycles.
+   */
+  public FootPoseMotion(String name, int cycles) {
+    this.name = name;
+    this.cycles = Math.max(1, cycles);
+    kinematics.update(startAngles);
+    readPose(true, targetPoses, 0);
+    readPose(false, targetPoses, VALUES);
+  }
+
+  /**
+   * Sets the target pose of a sole.
+   *
+   * @param left True for the left foot.
+   * @param x X-coordinate relative to the hip in meters (to the right).
+   * @param y Y-coordinate relative to the hip in meters (to the front).
+   * @param z Z-coordinate relative to the hip in meters (up).
+   * @param yaw Rotation around the z-axis in radians.
+   * @param pitch Rotation around the x-axis in radians.
+   * @param roll Rotation around the y-axis in radians.
+   */
+  public void setTarget(boolean left, double x, double y, double z,
+          double yaw, double pitch, double roll) {
+    int o = left ? 0 : VALUES;
+    targetPoses[o] = x;
+    targetPoses[o + 1] = y;
+    targetPoses[o + 2] = z;
+    targetPoses[o + 3] = yaw;
+    targetPoses[o + 4] = pitch;
+    targetPoses[o + 5] = roll;
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public int getCycleCount() {
+    return cycles;
+  }
+
+  @Override
+  public void start(double[] angles) {
+    System.arraycopy(angles, 0, startAngles, 0, RobotConsts.JointsCount);
+    kinematics.update(startAngles);
+    readPose(true, startPoses, 0);
+    readPose(false, startPoses, VALUES);
+  }
+
+  @Override
+  public void computeTargets(int cycle, double[] targets) {
+    double u = (cycle + 1.0) / cycles;
+    double s = u * u * u * (10 - 15 * u + 6 * u * u);
+    System.arraycopy(startAngles, 0, targets, 0, RobotConsts.JointsCount);
+    for (int foot = 0; foot < 2; foot++) {
+      int o = foot * VALUES;
+      double x = startPoses[o] + s * (targetPoses[o] - startPoses[o]);
+      double y = startPoses[o + 1] + s * (targetPoses[o + 1] - startPoses[o + 1]);
+      double z = startPoses[o + 2] + s * (targetPoses[o + 2] - startPoses[o + 2]);
+      double yaw = startPoses[o + 3] + s * (targetPoses[o + 3] - startPoses[o + 3]);
+      double pitch = startPoses[o + 4] + s * (targetPoses[o + 4] - startPoses[o + 4]);
+      double roll = startPoses[o + 5] + s * (targetPoses[o + 5] - startPoses[o + 5]);
+      LegInverseKinematics.solve(foot == 0, x, y, z, yaw, pitch, roll, targets);
+    }
+  }
+
+  /**
+   * Internal method, reads the pose of a sole relative to its hip from the
+   * forward kinematics, the rotation is decomposed into
+   * Rz(yaw) Rx(pitch) Ry(roll).
+   */
+  private void readPose(boolean left, double[] poses, int o) {
+    kinematics.getPose(left ? ForwardKinematics.LEFT_FOOT : ForwardKinematics.RIGHT_FOOT,
+            pose);
+    poses[o] = pose[3] - LegInverseKinematics.getHipX(left);
+    poses[o + 1] = pose[7] - LegInverseKinematics.getHipY(left);
+    poses[o + 2] = pose[11] - LegInverseKinematics.getHipZ(left);
+    poses[o + 3] = Math.atan2(-pose[1], pose[5]);
+    poses[o + 4] = Math.asin(Math.max(-1, Math.min(1, pose[9])));
+    poses[o + 5] = Math.atan2(-pose[8], pose[10]);
+  }
+}
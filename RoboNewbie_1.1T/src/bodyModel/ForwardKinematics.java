@@ -0,0 +1,292 @@
+/*******************************************************************************
+*  RoboNewbie
+* NaoTeam Humboldt
+* @version 1.1
+*******************************************************************************/
+
+package bodyModel;
+
+import agentIO.PerceptorInput;
+import util.RobotConsts;
+
+/**
+ * Forward kinematics of the simulated Nao robot.
+ *
+ * The class computes the poses of all joints and of some end points (camera,
+ * hands and feet) relative to the torso from the sensed joint angles. Every
+ * pose is a homogeneous 4x4 transformation, stored row by row in 16
+ * consecutive elements of one flat double array. The pose of a joint is the
+ * pose of the body part moved by the joint, so its rotation contains the
+ * joint angle.
+ *
+ * The link geometry (position of each joint relative to the previous joint
+ * in the zero pose, and the joint axes) is taken from the SimSpark Nao model
+ * and precomputed in static tables. The joints are ordered like in
+ * RobotConsts, and every joint has a smaller index than all joints after it in
+ * its chain, so all poses are computed in one pass over the joint indices.
+ *
+ * The coordinate system is the one of the SimSpark perceptors: the origin is
+ * the center of the torso, the x-axis points to the right of the robot, the
+ * y-axis to its front and the z-axis up. In the zero pose the arms point to
+ * the front and the legs straight down.
+ *
+ * The method update(...) should be called in every server cycle after
+ * PerceptorInput has been updated. It computes the poses only once per server
+ * cycle, further calls in the same cycle return immediately. No objects are
+ * created after the construction.
+ *
+ * @see util.RobotConsts
+ */
+public class ForwardKinematics {
+
+  /**
+   * End point: the camera in the head.
+   */
+  public static final int CAMERA = 0;
+  /**
+   * End point: the center of the left lower arm.
+   */
+  public static final int LEFT_HAND = 1;
+  /**
+   * End point: the center of the right lower arm.
+   */
+  public static final int RIGHT_HAND = 2;
+  /**
+   * End point: the center of the sole of the left foot.
+   */
+  public static final int LEFT_FOOT = 3;
+  /**
+   * End point: the center of the sole of the right foot.
+   */
+  public static final int RIGHT_FOOT = 4;
+  /**
+   * Number of end points.
+   */
+  public static final int END_POINT_COUNT = 5;
+
+  private static final int TORSO = -1;
+  private static final double S = Math.sqrt(0.5);
+
+  // parent joint, anchor relative to the parent joint in meters and axis of
+  // every joint, in the order of RobotConsts
+  private static final int[] JOINT_PARENTS = {
+    TORSO, RobotConsts.NeckYaw,
+    TORSO, RobotConsts.LeftShoulderPitch, RobotConsts.LeftShoulderYaw,
+    RobotConsts.LeftArmRoll,
+    TORSO, RobotConsts.LeftHipYawPitch, RobotConsts.LeftHipRoll,
+    RobotConsts.LeftHipPitch, RobotConsts.LeftKneePitch, RobotConsts.LeftFootPitch,
+    TORSO, RobotConsts.RightHipYawPitch, RobotConsts.RightHipRoll,
+    RobotConsts.RightHipPitch, RobotConsts.RightKneePitch, RobotConsts.RightFootPitch,
+    TORSO, RobotConsts.RightShoulderPitch, RobotConsts.RightShoulderYaw,
+    RobotConsts.RightArmRoll};
+  static final double[][] JOINT_ANCHORS = {
+    {0, 0, 0.09}, {0, 0, 0.06},
+    {-0.098, 0, 0.075}, {0, 0, 0}, {0, 0.09, 0.009}, {0, 0, 0},
+    {-0.055, -0.01, -0.115}, {0, 0, 0}, {0, 0, 0}, {0, 0.005, -0.12},
+    {0, -0.01, -0.1}, {0, 0, 0},
+    {0.055, -0.01, -0.115}, {0, 0, 0}, {0, 0, 0}, {0, 0.005, -0.12},
+    {0, -0.01, -0.1}, {0, 0, 0},
+    {0.098, 0, 0.075}, {0, 0, 0}, {0, 0.09, 0.009}, {0, 0, 0}};
+  private static final double[][] JOINT_AXES = {
+    {0, 0, 1}, {1, 0, 0},
+    {1, 0, 0}, {0, 0, 1}, {0, 1, 0}, {0, 0, 1},
+    {-S, 0, S}, {0, 1, 0}, {1, 0, 0}, {1, 0, 0}, {1, 0, 0}, {0, 1, 0},
+    {-S, 0, -S}, {0, 1, 0}, {1, 0, 0}, {1, 0, 0}, {1, 0, 0}, {0, 1, 0},
+    {1, 0, 0}, {0, 0, 1}, {0, 1, 0}, {0, 0, 1}};
+
+  // parent joint and position relative to it of every end point
+  private static final int[] END_POINT_PARENTS = {
+    RobotConsts.NeckPitch, RobotConsts.LeftArmYaw, RobotConsts.RightArmYaw,
+    RobotConsts.LeftFootRoll, RobotConsts.RightFootRoll};
+  static final double[][] END_POINT_OFFSETS = {
+    {0, 0, 0.005}, {0, 0.05, 0}, {0, 0.05, 0}, {0, 0.03, -0.05}, {0, 0.03, -0.05}};
+
+  private static final double[] IDENTITY = {
+    1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1};
+
+  private final double[] angles = new double[RobotConsts.JointsCount];
+  private final double[] jointPoses = new double[RobotConsts.JointsCount * 16];
+  private final double[] endPointPoses = new double[END_POINT_COUNT * 16];
+  private double time = Double.NaN;
+
+  /**
+   * Constructor, all joints are in the zero pose.
+   */
+  public ForwardKinematics() {
+    compute();
+  }
+
+  /**
+   * Computes the poses from the joint angles sensed in the actual server
+   * cycle, if they have not been computed in this cycle yet.
+   *
+   * @param percIn Perceptor input of the agent, cannot be null.
+   */
+  public void update(PerceptorInput percIn) {
+    double t = percIn.getServerTime();
+    if (t == time)
+      return;
+    time = t;
+    for (int i = 0; i < RobotConsts.JointsCount; i++)
+      angles[i] = percIn.getJoint(i);
+    compute();
+  }
+
+  /**
+   * Computes the poses from passed joint angles, e.g. from the targets of a
+   * planned motion.
+   *
+   * @param jointAngles Angles in radians for all joints, in the order of
+   * RobotConsts.
+   */
+  public void update(double[] jointAngles) {
+    System.arraycopy(jointAngles, 0, angles, 0, RobotConsts.JointsCount);
+    time = Double.NaN;
+    compute();
+  }
+
+  /**
+   * Copies the pose of an end point.
+   *
+   * @param endPoint End point, e.g. ForwardKinematics.CAMERA.
+   * @param out Array of at least 16 elements for the 4x4 matrix, row by row.
+   */
+  public void getPose(int endPoint, double[] out) {
+    System.arraycopy(endPointPoses, endPoint * 16, out, 0, 16);
+  }
+
+  /**
+   * Copies the pose of the body part moved by a joint.
+   *
+   * @param joint Joint index as defined in RobotConsts.
+   * @param out Array of at least 16 elements for the 4x4 matrix, row by row.
+   */
+  public void getJointPose(int joint, double[] out) {
+    System.arraycopy(jointPoses, joint * 16, out, 0, 16);
+  }
+
+  /**
+   * Returns the x-coordinate of an end point.
+   *
+   * @param endPoint End point, e.g. ForwardKinematics.LEFT_FOOT.
+   * @return Coordinate in meters, positive to the right of the torso.
+   */
+  public double getX(int endPoint) {
+    return endPointPoses[endPoint * 16 + 3];
+  }
+
+  /**
+   * Returns the y-coordinate of an end point.
+   *
+   * @param endPoint End point, e.g. ForwardKinematics.LEFT_FOOT.
+   * @return Coordinate in meters, positive in front of the torso.
+   */
+  public double getY(int endPoint) {
+    return endPointPoses[endPoint * 16 + 7];
+  }
+
+  /**
+   * Returns the z-coordinate of an end point.
+   *
+   * @param endPoint End point, e.g. ForwardKinematics.LEFT_FOOT.
+   * @return Coordinate in meters, positive above the torso center.
+   */
+  public double getZ(int endPoint) {
+    return endPointPoses[endPoint * 16 + 11];
+  }
+
+  /**
+   * Transforms a point given relative to an end point into the torso
+   * coordinates.
+   *
+   * @param endPoint End point, e.g. ForwardKinematics.CAMERA.
+   * @param x X-coordinate relative to the end point.
+   * @param y Y-coordinate relative to the end point.
+   * @param z Z-coordinate relative to the end point.
+   * @param out Array of at least 3 elements for the torso coordinates.
+   */
+  public void toTorso(int endPoint, double x, double y, double z, double[] out) {
+    transformPoint(endPointPoses, endPoint * 16, x, y, z, out);
+  }
+
+  /**
+   * Transforms a vision perceptor value into the torso coordinates.
+   *
+   * The vision perceptor gives polar coordinates relative to the camera, the
+   * azimuth is positive to the left and the elevation positive upwards.
+   *
+   * @param distance Distance in meters.
+   * @param azimuth Horizontal angle in radians.
+   * @param elevation Vertical angle in radians.
+   * @param out Array of at least 3 elements for the torso coordinates.
+   */
+  public void visionToTorso(double distance, double azimuth, double elevation,
+          double[] out) {
+    double horizontal = distance * Math.cos(elevation);
+    transformPoint(endPointPoses, CAMERA * 16, -horizontal * Math.sin(azimuth),
+            horizontal * Math.cos(azimuth), distance * Math.sin(elevation), out);
+  }
+
+  /**
+   * Package internal, returns the array with the poses of all joints,
+   * 16 elements per joint in the order of RobotConsts.
+   */
+  double[] getJointPoses() {
+    return jointPoses;
+  }
+
+  /**
+   * Internal method, computes all poses from the actual angles.
+   */
+  private void compute() {
+    for (int i = 0; i < RobotConsts.JointsCount; i++) {
+      int parent = JOINT_PARENTS[i];
+      double[] a = JOINT_ANCHORS[i];
+      double[] axis = JOINT_AXES[i];
+      chain(parent == TORSO ? IDENTITY : jointPoses, parent == TORSO ? 0 : parent * 16,
+              a[0], a[1], a[2], axis[0], axis[1], axis[2], angles[i],
+              jointPoses, i * 16);
+    }
+    for (int e = 0; e < END_POINT_COUNT; e++) {
+      double[] o = END_POINT_OFFSETS[e];
+      chain(jointPoses, END_POINT_PARENTS[e] * 16, o[0], o[1], o[2], 1, 0, 0, 0,
+              endPointPoses, e * 16);
+    }
+  }
+
+  /**
+   * Internal method, computes out = parent * Translation(t) * Rotation(axis,
+   * angle) for matrices stored row by row at the passed offsets.
+   */
+  private static void chain(double[] p, int po, double tx, double ty, double tz,
+          double ax, double ay, double az, double angle, double[] out, int oo) {
+    // rotation matrix by the formula of Rodrigues
+    double c = Math.cos(angle), s = Math.sin(angle), t = 1 - c;
+    double r00 = t * ax * ax + c, r01 = t * ax * ay - s * az, r02 = t * ax * az + s * ay;
+    double r10 = t * ax * ay + s * az, r11 = t * ay * ay + c, r12 = t * ay * az - s * ax;
+    double r20 = t * ax * az - s * ay, r21 = t * ay * az + s * ax, r22 = t * az * az + c;
+    for (int row = 0; row < 3; row++) {
+      int i = po + row * 4;
+      double p0 = p[i], p1 = p[i + 1], p2 = p[i + 2];
+      int j = oo + row * 4;
+      out[j] = p0 * r00 + p1 * r10 + p2 * r20;
+      out[j + 1] = p0 * r01 + p1 * r11 + p2 * r21;
+      out[j + 2] = p0 * r02 + p1 * r12 + p2 * r22;
+      out[j + 3] = p0 * tx + p1 * ty + p2 * tz + p[i + 3];
+    }
+    out[oo + 12] = 0;
+    out[oo + 13] = 0;
+    out[oo + 14] = 0;
+    out[oo + 15] = 1;
+  }
+
+  /**
+   * Internal method, transforms a point with the matrix at the passed offset.
+   */
+  private static void transformPoint(double[] m, int o, double x, double y,
+          double z, double[] out) {
+    out[0] = m[o] * x + m[o + 1] * y + m[o + 2] * z + m[o + 3];
+    out[1] = m[o + 4] * x + m[o + 5] * y + m[o + 6] * z + m[o + 7];
+    out[2] = m[o + 8] * x + m[o + 9] * y + m[o + 10] * z + m[o + 11];
+  }
+}
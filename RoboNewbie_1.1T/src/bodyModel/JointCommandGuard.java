@@ -0,0 +1,270 @@
+/*******************************************************************************
+*  RoboNewbie
+* NaoTeam Humboldt
+* @version 1.1
+*******************************************************************************/
+
+package bodyModel;
+
+import agentIO.PerceptorInput;
+import util.RobotConsts;
+
+/**
+ * Guard for the joint commands, applied by agentIO.EffectorOutput before the
+ * commands are sent to the server.
+ *
+ * A joint command is a velocity, which the joint keeps until it gets another
+ * command. The guard predicts the angle of every joint at the end of the next
+ * cycle from the sensed angle and the command, and limits the command, so
+ * that
+ * - the predicted angle stays within the range of the joint
+ *   (RobotConsts.getAngleMin/Max),
+ * - the velocity does not exceed the maximal speed of the joint
+ *   (RobotConsts.getMaxSpeed).
+ *
+ * Additionally some pairs of joints can move body parts into each other: the
+ * shoulder pitch and the elbow joint turn the lower arm into the torso, and
+ * the hip roll joints of both legs cross the feet. For each pair a lookup table over both joint
+ * ranges marks the colliding configurations. It is computed once by the
+ * forward kinematics with all other joints in the zero pose. If a pair would
+ * move from a free into a colliding configuration, both joints are stopped.
+ * A pair, which is in a colliding configuration already, can move freely, so
+ * it can get out again.
+ *
+ * Every corrected command is counted per joint. The guard works on arrays of
+ * all joints and does not create any objects.
+ *
+ * Usage:
+ * <pre>
+ * effOut.setGuard(new JointCommandGuard(percIn));
+ * </pre>
+ *
+ * @see agentIO.EffectorOutput#setGuard(JointCommandGuard)
+ */
+public class JointCommandGuard {
+
+  private static final double CYCLE_TIME = 0.02;
+
+  // joint pairs of the collision tables
+  private static final int[][] PAIRS = {
+    {RobotConsts.LeftShoulderPitch, RobotConsts.LeftArmYaw},
+    {RobotConsts.RightShoulderPitch, RobotConsts.RightArmYaw},
+    {RobotConsts.LeftHipRoll, RobotConsts.RightHipRoll}};
+  // resolution of the collision tables in degrees
+  private static final double STEP = 5;
+  // half size of the torso box in meters (x, y, z)
+  private static final double[] TORSO = {0.05, 0.05, 0.09};
+  // smallest distance of the sole centers in x-direction in meters
+  private static final double MIN_FEET_DISTANCE = 0.085;
+  private static final boolean[][] COLLISIONS = new boolean[PAIRS.length][];
+  // number of table cells for both joints of every pair
+  private static final int[][] SIZES = new int[PAIRS.length][2];
+
+  static {
+    ForwardKinematics kinematics = new ForwardKinematics();
+    double[] angles = new double[RobotConsts.JointsCount];
+    double[] pose = new double[16];
+    for (int p = 0; p < PAIRS.length; p++) {
+      int a = PAIRS[p][0], b = PAIRS[p][1];
+      int sizeA = 1 + (int) Math.ceil(
+              (RobotConsts.getAngleMax(a) - RobotConsts.getAngleMin(a)) / STEP);
+      int sizeB = 1 + (int) Math.ceil(
+              (RobotConsts.getAngleMax(b) - RobotConsts.getAngleMin(b)) / STEP);
+      SIZES[p][0] = sizeA;
+      SIZES[p][1] = sizeB;
+      COLLISIONS[p] = new boolean[sizeA * sizeB];
+      for (int i = 0; i < sizeA; i++)
+        for (int j = 0; j < sizeB; j++) {
+          angles[a] = Math.toRadians(RobotConsts.getAngleMin(a) + i * STEP);
+          angles[b] = Math.toRadians(RobotConsts.getAngleMin(b) + j * STEP);
+          kinematics.update(angles);
+          COLLISIONS[p][i * sizeB + j] = p < 2
+                  ? armCollides(kinematics, p == 0, pose)
+                  : Math.abs(kinematics.getX(ForwardKinematics.LEFT_FOOT)
+                    - kinematics.getX(ForwardKinematics.RIGHT_FOOT)) < MIN_FEET_DISTANCE;
+        }
+      angles[a] = 0;
+      angles[b] = 0;
+    }
+  }
+
+  private final PerceptorInput percIn;
+  private final double[] minAngles = new double[RobotConsts.JointsCount];
+  private final double[] maxAngles = new double[RobotConsts.JointsCount];
+  private final double[] maxSpeeds = new double[RobotConsts.JointsCount];
+  private final double[] sensed = new double[RobotConsts.JointsCount];
+  private final double[] requested = new double[RobotConsts.JointsCount];
+  // last commands sent, the joints keep them in the simulation
+  private final double[] effective = new double[RobotConsts.JointsCount];
+  private final int[] limitViolations = new int[RobotConsts.JointsCount];
+  private final int[] speedViolations = new int[RobotConsts.JointsCount];
+  private final int[] collisionViolations = new int[RobotConsts.JointsCount];
+
+  /**
+   * Constructor.
+   *
+   * @param percIn Perceptor input of the agent, cannot be null.
+   */
+  public JointCommandGuard(PerceptorInput percIn) {
+    this.percIn = percIn;
+    for (int i = 0; i < RobotConsts.JointsCount; i++) {
+      minAngles[i] = Math.toRadians(RobotConsts.getAngleMin(i));
+      maxAngles[i] = Math.toRadians(RobotConsts.getAngleMax(i));
+      maxSpeeds[i] = RobotConsts.getMaxSpeed(i);
+    }
+  }
+
+  /**
+   * Limits the commands of a cycle.
+   *
+   * Joints without a new command keep their last command in the simulation,
+   * so they are checked with it. If it has to be changed, the joint gets a
+   * new command.
+   *
+   * @param commands Velocities of all joints in radians per second, in the
+   * order of RobotConsts. Limited commands are changed in the array.
+   * @param present States for every joint, whether a command is sent in this
+   * cycle. Set to true for joints, which get a new command from the guard.
+   */
+  public void apply(double[] commands, boolean[] present) {
+    for (int i = 0; i < RobotConsts.JointsCount; i++) {
+      sensed[i] = percIn.getJoint(i);
+      double command = present[i] ? commands[i] : effective[i];
+      requested[i] = command;
+      // keep the predicted angle within the limits, a joint beyond a limit
+      // (e.g. by sensor noise) is not moved further out, but not pulled back
+      double limited = Math.max(Math.min(0, (minAngles[i] - sensed[i]) / CYCLE_TIME),
+              Math.min(Math.max(0, (maxAngles[i] - sensed[i]) / CYCLE_TIME), command));
+      if (limited != command)
+        limitViolations[i]++;
+      // keep the speed below the maximal speed
+      double bounded = Math.max(-maxSpeeds[i], Math.min(maxSpeeds[i], limited));
+      if (bounded != limited)
+        speedViolations[i]++;
+      effective[i] = bounded;
+    }
+
+    for (int p = 0; p < PAIRS.length; p++) {
+      int a = PAIRS[p][0], b = PAIRS[p][1];
+      if (collides(p, sensed[a] + effective[a] * CYCLE_TIME,
+              sensed[b] + effective[b] * CYCLE_TIME)
+              && !collides(p, sensed[a], sensed[b])) {
+        effective[a] = 0;
+        effective[b] = 0;
+        collisionViolations[a]++;
+        collisionViolations[b]++;
+      }
+    }
+
+    for (int i = 0; i < RobotConsts.JointsCount; i++) {
+      if (effective[i] != requested[i])
+        present[i] = true;
+      commands[i] = effective[i];
+    }
+  }
+
+  /**
+   * Returns the number of commands, which were limited to keep the joint
+   * within its range.
+   *
+   * @param joint Joint index as defined in RobotConsts.
+   * @return Number of limited commands since the construction or reset().
+   */
+  public int getLimitViolations(int joint) {
+    return limitViolations[joint];
+  }
+
+  /**
+   * Returns the number of commands, which were limited to the maximal speed
+   * of the joint.
+   *
+   * @param joint Joint index as defined in RobotConsts.
+   * @return Number of limited commands since the construction or reset().
+   */
+  public int getSpeedViolations(int joint) {
+    return speedViolations[joint];
+  }
+
+  /**
+   * Returns the number of commands, which were stopped to avoid a
+   * self-collision.
+   *
+   * @param joint Joint index as defined in RobotConsts.
+   * @return Number of stopped commands since the construction or reset().
+   */
+  public int getCollisionViolations(int joint) {
+    return collisionViolations[joint];
+  }
+
+  /**
+   * Resets all violation counters.
+   */
+  public void reset() {
+    for (int i = 0; i < RobotConsts.JointsCount; i++) {
+      limitViolations[i] = 0;
+      speedViolations[i] = 0;
+      collisionViolations[i] = 0;
+    }
+  }
+
+  /**
+   * Returns the joints with violations and their counters in a string.
+   *
+   * @return String with the effector identifier and the numbers of limit,
+   * speed and collision violations of every joint with violations.
+   */
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder("JointCommandGuard");
+    for (int i = 0; i < RobotConsts.JointsCount; i++)
+      if (limitViolations[i] + speedViolations[i] + collisionViolations[i] > 0)
+        builder.append(' ').append(RobotConsts.getEffectorID(i))
+                .append(' ').append(limitViolations[i])
+                .append('/').append(speedViolations[i])
+                .append('/').append(collisionViolations[i]);
+    return builder.toString();
+  }
+
+  /**
+   * Internal method, looks up a configuration of a joint pair in its
+   * collision table.
+   */
+  private static boolean collides(int pair, double angleA, double angleB) {
+    int i = cell(PAIRS[pair][0], angleA, SIZES[pair][0]);
+    int j = cell(PAIRS[pair][1], angleB, SIZES[pair][1]);
+    return COLLISIONS[pair][i * SIZES[pair][1] + j];
+  }
+
+  /**
+   * Internal method, returns the index of the nearest table cell of an angle.
+   */
+  private static int cell(int joint, double angle, int size) {
+    int i = (int) Math.round((Math.toDegrees(angle) - RobotConsts.getAngleMin(joint)) / STEP);
+    return Math.max(0, Math.min(size - 1, i));
+  }
+
+  /**
+   * Internal method for the computation of the collision tables, states
+   * whether the hand, the elbow or the middle of the upper arm lies in the
+   * torso box.
+   */
+  private static boolean armCollides(ForwardKinematics kinematics, boolean left,
+          double[] pose) {
+    kinematics.getJointPose(left ? RobotConsts.LeftShoulderPitch
+            : RobotConsts.RightShoulderPitch, pose);
+    double shoulderX = pose[3], shoulderY = pose[7], shoulderZ = pose[11];
+    kinematics.getJointPose(left ? RobotConsts.LeftArmYaw : RobotConsts.RightArmYaw, pose);
+    int hand = left ? ForwardKinematics.LEFT_HAND : ForwardKinematics.RIGHT_HAND;
+    return inTorso(kinematics.getX(hand), kinematics.getY(hand), kinematics.getZ(hand))
+            || inTorso(pose[3], pose[7], pose[11])
+            || inTorso((shoulderX + pose[3]) / 2, (shoulderY + pose[7]) / 2,
+                    (shoulderZ + pose[11]) / 2);
+  }
+
+  /**
+   * Internal method, states whether a point lies in the torso box.
+   */
+  private static boolean inTorso(double x, double y, double z) {
+    return Math.abs(x) < TORSO[0] && Math.abs(y) < TORSO[1] && Math.abs(z) < TORSO[2];
+  }
+}
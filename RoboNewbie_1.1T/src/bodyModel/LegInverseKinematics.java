@@ -0,0 +1,200 @@
+/*******************************************************************************
+*  RoboNewbie
+* NaoTeam Humboldt
+* @version 1.1
+*******************************************************************************/
+
+package bodyModel;
+
+import util.RobotConsts;
+
+/**
+ * Closed-form inverse kinematics of the legs of the simulated Nao robot.
+ *
+ * The method solve(...) computes the six joint angles of a leg (from
+ * HipYawPitch to FootRoll), which move the sole of the foot to a given pose.
+ * The pose is given relative to the hip joint of the leg (the anchor of the
+ * HipYawPitch joint) with the axes of the torso, like in ForwardKinematics:
+ * x-axis to the right, y-axis to the front, z-axis up. The orientation of the
+ * foot is given by three angles, the rotation is
+ * Rz(yaw) * Rx(pitch) * Ry(roll) (right-hand rule, so a positive pitch lifts
+ * the toes).
+ *
+ * The HipYawPitch axis is tilted by 45 degrees. Rotating the pose by 45
+ * degrees around the y-axis turns it into a vertical axis, then the hip is a
+ * yaw-roll-pitch joint and the knee and both foot pitch joints are parallel.
+ * The foot roll angle follows from the position of the hip seen from the foot,
+ * the knee angle from the distance of hip and ankle (law of cosines), the
+ * foot pitch angle from the direction of the leg, and the three hip angles
+ * from the remaining rotation. The link geometry is the one of
+ * ForwardKinematics, so both are exact inverses within the joint limits.
+ *
+ * The solver uses only local variables and static tables, it does not create
+ * any objects and takes about a microsecond.
+ *
+ * @see ForwardKinematics
+ */
+public class LegInverseKinematics {
+
+  private static final double[] THIGH =
+          ForwardKinematics.JOINT_ANCHORS[RobotConsts.LeftKneePitch];
+  private static final double[] SHANK =
+          ForwardKinematics.JOINT_ANCHORS[RobotConsts.LeftFootPitch];
+  private static final double[] SOLE =
+          ForwardKinematics.END_POINT_OFFSETS[ForwardKinematics.LEFT_FOOT];
+  private static final double THIGH_LENGTH = Math.hypot(THIGH[1], THIGH[2]);
+  private static final double SHANK_LENGTH = Math.hypot(SHANK[1], SHANK[2]);
+  // directions of thigh and shank in the y-z-plane of the leg
+  private static final double THIGH_ANGLE = Math.atan2(THIGH[2], THIGH[1]);
+  private static final double SHANK_ANGLE = Math.atan2(SHANK[2], SHANK[1]);
+
+  /**
+   * Returns the x-coordinate of a hip joint.
+   *
+   * @param left True for the left leg.
+   * @return Position relative to the torso center in meters.
+   */
+  public static double getHipX(boolean left) {
+    return ForwardKinematics.JOINT_ANCHORS[firstJoint(left)][0];
+  }
+
+  /**
+   * Returns the y-coordinate of a hip joint.
+   *
+   * @param left True for the left leg.
+   * @return Position relative to the torso center in meters.
+   */
+  public static double getHipY(boolean left) {
+    return ForwardKinematics.JOINT_ANCHORS[firstJoint(left)][1];
+  }
+
+  /**
+   * Returns the z-coordinate of a hip joint.
+   *
+   * @param left True for the left leg.
+   * @return Position relative to the torso center in meters.
+   */
+  public static double getHipZ(boolean left) {
+    return ForwardKinematics.JOINT_ANCHORS[firstJoint(left)][2];
+  }
+
+  /**
+   * Computes the leg joint angles for a pose of the sole.
+   *
+   * If the pose cannot be reached, the leg is stretched towards it, and angles
+   * outside of the joint limits (util.RobotConsts.getAngleMin/Max) are limited.
+   * In both cases the returned angles are valid joint angles, but the sole
+   * does not reach the pose exactly.
+   *
+   * @param left True for the left leg, false for the right leg.
+   * @param x X-coordinate of the sole center relative to the hip in meters.
+   * @param y Y-coordinate of the sole center relative to the hip in meters.
+   * @param z Z-coordinate of the sole center relative to the hip in meters.
+   * @param yaw Rotation of the foot around the z-axis in radians.
+   * @param pitch Rotation of the foot around the x-axis in radians.
+   * @param roll Rotation of the foot around the y-axis in radians.
+   * @param angles Array for all joint angles in radians, in the order of
+   * util.RobotConsts. Only the six joints of the leg are written.
+   * @return True, if the pose is reached exactly within the joint limits.
+   */
+  public static boolean solve(boolean left, double x, double y, double z,
+          double yaw, double pitch, double roll, double[] angles) {
+    // foot rotation R = Rz(yaw) Rx(pitch) Ry(roll)
+    double cy = Math.cos(yaw), sy = Math.sin(yaw);
+    double cp = Math.cos(pitch), sp = Math.sin(pitch);
+    double cr = Math.cos(roll), sr = Math.sin(roll);
+    double r00 = cy * cr - sy * sp * sr, r01 = -sy * cp, r02 = cy * sr + sy * sp * cr;
+    double r10 = sy * cr + cy * sp * sr, r11 = cy * cp, r12 = sy * sr - cy * sp * cr;
+    double r20 = -cp * sr, r21 = sp, r22 = cp * cr;
+
+    // ankle position = sole position - R * sole offset
+    double ax = x - (r00 * SOLE[0] + r01 * SOLE[1] + r02 * SOLE[2]);
+    double ay = y - (r10 * SOLE[0] + r11 * SOLE[1] + r12 * SOLE[2]);
+    double az = z - (r20 * SOLE[0] + r21 * SOLE[1] + r22 * SOLE[2]);
+
+    // rotate by Ry(-phi), where Ry(phi) turns the z-axis into the
+    // HipYawPitch axis (for the right leg into the negated axis)
+    double phi = left ? -Math.PI / 4 : Math.PI / 4;
+    double c = Math.cos(phi), s = -Math.sin(phi);
+    double px = c * ax + s * az, py = ay, pz = -s * ax + c * az;
+    double m00 = c * r00 + s * r20, m01 = c * r01 + s * r21, m02 = c * r02 + s * r22;
+    double m10 = r10, m11 = r11, m12 = r12;
+    double m20 = -s * r00 + c * r20, m21 = -s * r01 + c * r21, m22 = -s * r02 + c * r22;
+
+    // ankle seen from the hip in the foot coordinates: w = M^T p
+    double wx = m00 * px + m10 * py + m20 * pz;
+    double wy = m01 * px + m11 * py + m21 * pz;
+    double wz = m02 * px + m12 * py + m22 * pz;
+
+    // The leg is usually below the hip, then the ankle is below the hip in
+    // the foot coordinates, too. Only if this solution exceeds the joint 
+    // limits, the solution with the ankle above the hip is tried. If both
+    // fail, the first one is computed again and returned limited.
+    int first = firstJoint(left);
+    for (int attempt = 0; ; attempt++) {
+      double below = attempt == 1 ? -1 : 1;
+
+      // foot roll turns w into the y-z-plane of the leg
+      double footRoll = -Math.atan2(-below * wx, -below * wz);
+      double uy = wy;
+      double uz = -below * Math.sqrt(wx * wx + wz * wz);
+
+      // knee from the law of cosines, bent backwards
+      double lengthSq = uy * uy + uz * uz;
+      double cosKnee = (lengthSq - THIGH_LENGTH * THIGH_LENGTH - SHANK_LENGTH * SHANK_LENGTH)
+              / (2 * THIGH_LENGTH * SHANK_LENGTH);
+      boolean reachable = cosKnee >= -1 && cosKnee <= 1;
+      cosKnee = Math.max(-1, Math.min(1, cosKnee));
+      double knee = THIGH_ANGLE - SHANK_ANGLE - Math.acos(cosKnee);
+
+      // foot pitch from the direction of the leg: u = Rx(-footPitch) v with
+      // v = Rx(-knee) thigh + shank
+      double ck = Math.cos(knee), sk = Math.sin(knee);
+      double vy = THIGH[1] * ck + THIGH[2] * sk + SHANK[1];
+      double vz = -THIGH[1] * sk + THIGH[2] * ck + SHANK[2];
+      double footPitch = Math.IEEEremainder(Math.atan2(vz, vy) - Math.atan2(uz, uy),
+              2 * Math.PI);
+
+      // hip rotation H = M Ry(-footRoll) Rx(-(knee + footPitch)) = Rz(a) Ry(b) Rx(c)
+      double cf = Math.cos(footRoll), sf = Math.sin(footRoll);
+      double h00 = m00 * cf + m02 * sf;
+      double h10 = m10 * cf + m12 * sf;
+      double h20 = m20 * cf + m22 * sf, h22 = -m20 * sf + m22 * cf;
+      double pitchSum = knee + footPitch;
+      double cs = Math.cos(pitchSum), ss = Math.sin(pitchSum);
+      double g21 = m21 * cs - h22 * ss;
+      double g22 = m21 * ss + h22 * cs;
+      double hipYaw = Math.atan2(h10, h00);
+      double hipRoll = Math.atan2(-h20, Math.sqrt(g21 * g21 + g22 * g22));
+      double hipPitch = Math.atan2(g21, g22);
+
+      boolean inLimits = true;
+      inLimits &= set(angles, first, left ? hipYaw : -hipYaw);
+      inLimits &= set(angles, first + 1, hipRoll + phi);
+      inLimits &= set(angles, first + 2, hipPitch);
+      inLimits &= set(angles, first + 3, knee);
+      inLimits &= set(angles, first + 4, footPitch);
+      inLimits &= set(angles, first + 5, footRoll);
+      if ((reachable && inLimits) || attempt == 2)
+        return reachable && inLimits;
+    }
+  }
+
+  /**
+   * Internal method, returns the index of the HipYawPitch joint of a leg.
+   */
+  private static int firstJoint(boolean left) {
+    return left ? RobotConsts.LeftHipYawPitch : RobotConsts.RightHipYawPitch;
+  }
+
+  /**
+   * Internal method, sets an angle limited to the range of the joint and
+   * states, if it was in the range.
+   */
+  private static boolean set(double[] angles, int joint, double angle) {
+    double min = Math.toRadians(RobotConsts.getAngleMin(joint));
+    double max = Math.toRadians(RobotConsts.getAngleMax(joint));
+    angles[joint] = Math.max(min, Math.min(max, angle));
+    return angle >= min && angle <= max;
+  }
+}
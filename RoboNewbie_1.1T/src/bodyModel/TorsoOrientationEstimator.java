@@ -0,0 +1,190 @@
+/*******************************************************************************
+*  RoboNewbie
+* NaoTeam Humboldt
+* @version 1.1
+*******************************************************************************/
+
+package bodyModel;
+
+import agentIO.PerceptorInput;
+import org.apache.commons.math3.geometry.euclidean.threed.Vector3D;
+
+/**
+ * This class estimates the tilt of the torso with a complementary filter.
+ *
+ * The gyrometer measures the turn rates of the torso precisely, but the angles
+ * integrated from it drift. The accelerometer measures the direction of the
+ * gravity without drift, but it is disturbed by every acceleration of the
+ * torso, e.g. by the steps of a walk. The filter integrates the turn rates in
+ * every server cycle and then pulls the result a little towards the angles
+ * computed from the accelerometer. The correction is weaker, the more the
+ * length of the measured acceleration differs from the gravity.
+ *
+ * The angles are given in the coordinate system of the perceptors (x-axis to
+ * the right of the robot, y-axis to its front, z-axis up):
+ * - pitch is the tilt to the front, positive if the robot leans forward,
+ *   about pi/2 if it lies on the front and about -pi/2 if it lies on the back,
+ * - roll is the tilt to the side, positive if the robot leans to the right.
+ *
+ * The estimator keeps its state in primitive fields, so it does not create any
+ * objects. The method update() has to be called exactly once in every server
+ * cycle, after PerceptorInput has been updated.
+ *
+ * @see FallPredictor
+ */
+public class TorsoOrientationEstimator {
+
+  /**
+   * Default weight of the integrated gyrometer values.
+   */
+  public static final double DEFAULT_GYRO_WEIGHT = 0.98;
+
+  private static final double CYCLE_TIME = 0.02;
+  private static final double GRAVITY = 9.81;
+  // deviation of the acceleration from the gravity in m/s^2, at which the
+  // accelerometer is ignored
+  private static final double MAX_ACC_DEVIATION = 4;
+
+  private final PerceptorInput percIn;
+  private final double gyroWeight;
+
+  private boolean initialized = false;
+  private double pitch = 0, roll = 0;
+  private double pitchRate = 0, rollRate = 0;
+  private double lastTime = 0;
+
+  /**
+   * Constructor with the default weight of the gyrometer.
+   *
+   * @param percIn Perceptor input of the agent, cannot be null.
+   */
+  public TorsoOrientationEstimator(PerceptorInput percIn) {
+    this(percIn, DEFAULT_GYRO_WEIGHT);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param percIn Perceptor input of the agent, cannot be null.
+   * @param gyroWeight Weight of the integrated gyrometer values per cycle,
+   * between 0 (accelerometer only) and 1 (gyrometer only).
+   */
+  public TorsoOrientationEstimator(PerceptorInput percIn, double gyroWeight) {
+    this.percIn = percIn;
+    this.gyroWeight = gyroWeight;
+  }
+
+  /**
+   * Updates the estimate with the actual perceptor values.
+   */
+  public void update() {
+    Vector3D gyro = percIn.getGyro();
+    Vector3D acc = percIn.getAcc();
+    if (gyro == null || acc == null)
+      return;
+    double time = percIn.getServerTime();
+    double dt = initialized ? time - lastTime : 0;
+    if (dt <= 0 || dt > 0.1)
+      dt = CYCLE_TIME;
+    lastTime = time;
+
+    // turning around the x-axis lifts the front, turning around the y-axis
+    // moves the top to the right
+    pitchRate = -Math.toRadians(gyro.getX());
+    rollRate = Math.toRadians(gyro.getY());
+
+    double ax = acc.getX(), ay = acc.getY(), az = acc.getZ();
+    double accPitch = Math.atan2(-ay, az);
+    double accRoll = Math.atan2(-ax, Math.sqrt(ay * ay + az * az));
+    if (!initialized) {
+      pitch = accPitch;
+      roll = accRoll;
+      initialized = true;
+      return;
+    }
+
+    double deviation = Math.abs(Math.sqrt(ax * ax + ay * ay + az * az) - GRAVITY);
+    double accWeight = (1 - gyroWeight)
+            * Math.max(0, 1 - deviation / MAX_ACC_DEVIATION);
+    pitch = correct(pitch + pitchRate * dt, accPitch, accWeight);
+    roll = correct(roll + rollRate * dt, accRoll, accWeight);
+  }
+
+  /**
+   * Forgets the estimate, the next update starts from the accelerometer
+   * values, e.g. after beaming the robot.
+   */
+  public void reset() {
+    initialized = false;
+  }
+
+  /**
+   * States if the estimator has got perceptor values.
+   *
+   * @return True after the first update with gyrometer and accelerometer.
+   */
+  public boolean isInitialized() {
+    return initialized;
+  }
+
+  /**
+   * Returns the tilt of the torso to the front.
+   *
+   * @return Pitch angle in radians, positive if the robot leans forward.
+   */
+  public double getPitch() {
+    return pitch;
+  }
+
+  /**
+   * Returns the tilt of the torso to the side.
+   *
+   * @return Roll angle in radians, positive if the robot leans to the right.
+   */
+  public double getRoll() {
+    return roll;
+  }
+
+  /**
+   * Returns the turn rate of the pitch angle.
+   *
+   * @return Angular velocity in radians per second.
+   */
+  public double getPitchRate() {
+    return pitchRate;
+  }
+
+  /**
+   * Returns the turn rate of the roll angle.
+   *
+   * @return Angular velocity in radians per second.
+   */
+  public double getRollRate() {
+    return rollRate;
+  }
+
+  /**
+   * Returns the angle between the torso and the vertical.
+   *
+   * @return Tilt angle in radians, between 0 (upright) and pi.
+   */
+  public double getTilt() {
+    return Math.acos(Math.cos(pitch) * Math.cos(roll));
+  }
+
+  @Override
+  public String toString() {
+    return String.format("torso pitch=%.1f° roll=%.1f° rates=%.0f°/s %.0f°/s",
+            Math.toDegrees(pitch), Math.toDegrees(roll),
+            Math.toDegrees(pitchRate), Math.toDegrees(rollRate));
+  }
+
+  /**
+   * Internal method, moves the integrated angle towards the measured one on
+   * the shorter way around the circle.
+   */
+  private static double correct(double integrated, double measured, double weight) {
+    double difference = Math.IEEEremainder(measured - integrated, 2 * Math.PI);
+    return Math.IEEEremainder(integrated + weight * difference, 2 * Math.PI);
+  }
+}
@@ -0,0 +1,293 @@
+/*******************************************************************************
+*  RoboNewbie
+* NaoTeam Humboldt
+* @version 1.1
+*******************************************************************************/
+
+package directMotion;
+
+import bodyModel.ForwardKinematics;
+import bodyModel.LegInverseKinematics;
+import keyframeMotion.util.PoseSource;
+import util.RobotConsts;
+
+/**
+ * Walk engine, which generates the steps for a commanded velocity.
+ *
+ * The velocity is commanded by setCommand(...) as forward speed, sideways
+ * speed and turn rate in the coordinate system of LocalFieldView (x to the
+ * front, y to the left, counter-clockwise turns positive). Every step of the
+ * walk is a movement of STEP_CYCLES server cycles, which is generated as a
+ * PoseSource and played by KeyframeMotion:
+ * <pre>
+ * if (motion.readyForNext()) {
+ *   walk.setCommand(0.15, 0, Math.toRadians(10));
+ *   motion.setPoseSource(walk);
+ * }
+ * </pre>
+ * So the next step is queued shortly before the actual one ends and the
+ * command can be changed with every step, the robot does not have to stop to
+ * turn or to walk sideways.
+ *
+ * In each step one foot swings and the other one supports the robot, the
+ * feet alternate from step to step. The support foot moves against the
+ * commanded direction relative to the torso, the swing foot is lifted and
+ * placed in the commanded direction, and both feet are shifted sideways, so
+ * the torso sways over the support foot. The profiles of these movements
+ * over the cycles of a step (minimum jerk progress of the swing foot, lift
+ * height and sway) are precomputed phase tables, so a cycle costs a few
+ * table lookups and two solutions of the leg inverse kinematics. All sole
+ * poses are computed in the coordinates of bodyModel.LegInverseKinematics.
+ *
+ * Every step starts at the actual poses of the feet (computed from the start
+ * angles by the forward kinematics), so the walk can start from any standing
+ * pose. If the hips are not at walking height yet, the first step lowers them
+ * without lifting a foot.
+ *
+ * The walk is open loop, it does not react to the sensors. Its speeds are the
+ * commanded speeds of the feet relative to the torso, the real speed on the
+ * field is smaller, if the feet slip. The planned displacement of the torso
+ * during the actual step is provided by getStepDx(), getStepDy() and
+ * getStepDTheta() for the odometry (see localization.MotionOdometry).
+ *
+ * @see bodyModel.LegInverseKinematics
+ * @see keyframeMotion.KeyframeMotion#setPoseSource(PoseSource)
+ */
+public class OmnidirectionalWalk implements PoseSource {
+
+  /**
+   * Duration of one step in server cycles.
+   */
+  public static final int STEP_CYCLES = 15;
+
+  /**
+   * Largest forward speed in m/s.
+   */
+  public static final double MAX_FORWARD = 0.25;
+  /**
+   * Largest backward speed in m/s.
+   */
+  public static final double MAX_BACKWARD = 0.1;
+  /**
+   * Largest sideways speed in m/s.
+   */
+  public static final double MAX_SIDEWAYS = 0.1;
+  /**
+   * Largest turn rate in radians per second.
+   */
+  public static final double MAX_TURN = Math.toRadians(60);
+
+  private static final double STEP_TIME = STEP_CYCLES * 0.02;
+  // height of the hips above the soles while walking
+  private static final double HIP_HEIGHT = 0.23;
+  // position of the soles in front of the hips while walking
+  private static final double SOLE_FORWARD = 0.01;
+  private static final double STEP_HEIGHT = 0.025;
+  private static final double SWAY = 0.02;
+  // a step, which starts with the hips differing more from the walking
+  // height, only lowers the hips
+  private static final double HEIGHT_TOLERANCE = 0.01;
+
+  // phase tables, indexed by the cycle of a step
+  private static final double[] PROGRESS = new double[STEP_CYCLES];
+  private static final double[] LINEAR = new double[STEP_CYCLES];
+  private static final double[] LIFT = new double[STEP_CYCLES];
+
+  static {
+    for (int c = 0; c < STEP_CYCLES; c++) {
+      double u = (c + 1.0) / STEP_CYCLES;
+      PROGRESS[c] = u * u * u * (10 - 15 * u + 6 * u * u);
+      LINEAR[c] = u;
+      LIFT[c] = Math.sin(Math.PI * u);
+    }
+  }
+
+  // pose values per foot: x, y, z, yaw
+  private static final int VALUES = 4;
+
+  private final ForwardKinematics kinematics = new ForwardKinematics();
+  private final double[] pose = new double[16];
+  private final double[] startAngles = new double[RobotConsts.JointsCount];
+  private final double[] startPoses = new double[2 * VALUES];
+  private final double[] endPoses = new double[2 * VALUES];
+
+  private double forward = 0, sideways = 0, turn = 0;
+  private double stepDx = 0, stepDy = 0, stepDTheta = 0;
+  private boolean leftSwings = false;
+  private boolean lowering = false;
+  private int steps = 0;
+
+  /**
+   * Sets the velocity for the following steps. The values are limited to
+   * the largest speeds of the walk.
+   *
+   * @param forward Forward speed in m/s, negative for walking backwards.
+   * @param sideways Sideways speed in m/s, positive to the left.
+   * @param turn Turn rate in radians per second, positive to the left.
+   */
+  public void setCommand(double forward, double sideways, double turn) {
+    this.forward = Math.max(-MAX_BACKWARD, Math.min(MAX_FORWARD, forward));
+    this.sideways = Math.max(-MAX_SIDEWAYS, Math.min(MAX_SIDEWAYS, sideways));
+    this.turn = Math.max(-MAX_TURN, Math.min(MAX_TURN, turn));
+  }
+
+  /**
+   * Returns the commanded forward speed.
+   *
+   * @return Speed in m/s, limited as described in setCommand(...).
+   */
+  public double getForward() {
+    return forward;
+  }
+
+  /**
+   * Returns the commanded sideways speed.
+   *
+   * @return Speed in m/s, limited as described in setCommand(...).
+   */
+  public double getSideways() {
+    return sideways;
+  }
+
+  /**
+   * Returns the commanded turn rate.
+   *
+   * @return Turn rate in radians per second, limited as described in
+   * setCommand(...).
+   */
+  public double getTurn() {
+    return turn;
+  }
+
+  /**
+   * Returns the number of started steps.
+   *
+   * @return Number of steps since the creation of the walk.
+   */
+  public int getStepCount() {
+    return steps;
+  }
+
+  /**
+   * Returns the forward movement of the torso during the actual step, that is
+   * the step prepared by the last call of start(...).
+   *
+   * @return Movement in meters in the local coordinates of the robot at the
+   * start of the step.
+   */
+  public double getStepDx() {
+    return stepDx;
+  }
+
+  /**
+   * Returns the movement of the torso to the left during the actual step.
+   *
+   * @return Movement in meters in the local coordinates of the robot at the
+   * start of the step.
+   */
+  public double getStepDy() {
+    return stepDy;
+  }
+
+  /**
+   * Returns the rotation of the torso during the actual step.
+   *
+   * @return Counterclockwise rotation in radians.
+   */
+  public double getStepDTheta() {
+    return stepDTheta;
+  }
+
+  @Override
+  public String getName() {
+    return "omnidirectional walk";
+  }
+
+  @Override
+  public int getCycleCount() {
+    return STEP_CYCLES;
+  }
+
+  @Override
+  public void start(double[] angles) {
+    System.arraycopy(angles, 0, startAngles, 0, RobotConsts.JointsCount);
+    kinematics.update(startAngles);
+    readPose(true, startPoses, 0);
+    readPose(false, startPoses, VALUES);
+    steps++;
+
+    lowering = Math.abs(startPoses[2] + HIP_HEIGHT) > HEIGHT_TOLERANCE
+            || Math.abs(startPoses[VALUES + 2] + HIP_HEIGHT) > HEIGHT_TOLERANCE;
+    if (!lowering)
+      leftSwings = !leftSwings;
+
+    // displacements of the torso during the step, in the coordinates of the
+    // kinematics (x to the right, y to the front)
+    double dx = lowering ? 0 : -sideways * STEP_TIME;
+    double dy = lowering ? 0 : forward * STEP_TIME;
+    double dTheta = lowering ? 0 : turn * STEP_TIME;
+    for (int foot = 0; foot < 2; foot++) {
+      int o = foot * VALUES;
+      // the swing foot is placed half a step ahead, the support foot ends
+      // half a step behind
+      double sign = ((foot == 0) == leftSwings) ? 1 : -1;
+      endPoses[o] = sign * dx / 2;
+      endPoses[o + 1] = SOLE_FORWARD + sign * dy / 2;
+      endPoses[o + 2] = -HIP_HEIGHT;
+    }
+
+    // The hip joints can turn the feet only inwards (the left foot to negative
+    // and the right foot to positive yaw angles). So the support foot turns
+    // against the torso as far as possible, and the swing foot is placed
+    // symmetrically to it. Turning to the left works in steps of the right
+    // foot, the steps of the left foot bring the feet back to parallel.
+    int support = leftSwings ? VALUES : 0;
+    int swing = leftSwings ? 0 : VALUES;
+    double supportYaw = startPoses[support + 3] - dTheta;
+    supportYaw = leftSwings ? Math.max(0, supportYaw) : Math.min(0, supportYaw);
+    endPoses[support + 3] = lowering ? 0 : supportYaw;
+    endPoses[swing + 3] = -endPoses[support + 3];
+
+    // the torso moves against the support foot, which stands on the ground
+    if (lowering) {
+      stepDx = 0;
+      stepDy = 0;
+      stepDTheta = 0;
+    } else {
+      stepDx = -(endPoses[support + 1] - startPoses[support + 1]);
+      stepDy = endPoses[support] - startPoses[support];
+      stepDTheta = -(endPoses[support + 3] - startPoses[support + 3]);
+    }
+  }
+
+  @Override
+  public void computeTargets(int cycle, double[] targets) {
+    System.arraycopy(startAngles, 0, targets, 0, RobotConsts.JointsCount);
+    double sway = lowering ? 0 : (leftSwings ? -SWAY : SWAY) * LIFT[cycle];
+    for (int foot = 0; foot < 2; foot++) {
+      int o = foot * VALUES;
+      boolean swinging = !lowering && ((foot == 0) == leftSwings);
+      double s = (swinging || lowering) ? PROGRESS[cycle] : LINEAR[cycle];
+      double lift = swinging ? STEP_HEIGHT * LIFT[cycle] : 0;
+      LegInverseKinematics.solve(foot == 0,
+              startPoses[o] + s * (endPoses[o] - startPoses[o]) + sway,
+              startPoses[o + 1] + s * (endPoses[o + 1] - startPoses[o + 1]),
+              startPoses[o + 2] + PROGRESS[cycle] * (endPoses[o + 2] - startPoses[o + 2]) + lift,
+              startPoses[o + 3] + s * (endPoses[o + 3] - startPoses[o + 3]),
+              0, 0, targets);
+    }
+  }
+
+  /**
+   * Internal method, reads the position and yaw angle of a sole relative to
+   * its hip from the forward kinematics.
+   */
+  private void readPose(boolean left, double[] poses, int o) {
+    kinematics.getPose(left ? ForwardKinematics.LEFT_FOOT : ForwardKinematics.RIGHT_FOOT,
+            pose);
+    poses[o] = pose[3] - LegInverseKinematics.getHipX(left);
+    poses[o + 1] = pose[7] - LegInverseKinematics.getHipY(left);
+    poses[o + 2] = pose[11] - LegInverseKinematics.getHipZ(left);
+    poses[o + 3] = Math.atan2(-pose[1], pose[5]);
+  }
+}
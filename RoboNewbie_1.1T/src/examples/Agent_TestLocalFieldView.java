@@ -12,9 +12,10 @@ import agentIO.EffectorOutput;
 import agentIO.PerceptorInput;
 import agentIO.ServerCommunication;
 import directMotion.LookAroundMotion;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.EnumMap;
+import java.util.List;
 import localFieldView.*;
+import localization.SelfLocalization;
 import org.apache.commons.math3.geometry.euclidean.threed.Vector3D;
 import util.FieldConsts.FlagID;
 import util.FieldConsts.GoalPostID;
@@ -24,7 +25,8 @@ import util.RobotConsts.BodyPartName;
 /**
  * This class shows how to use the modeled field data gained from the vision 
  * perceptor and provided by class LocalFieldView (package localFieldView),
- * furthermore it shows the usage of the Logger class (package util).
+ * furthermore it shows the usage of the Logger class (package util) and of
+ * the global pose estimate of class SelfLocalization (package localization).
  * 
  * For the coordinate system of the modeled field items see class
  * LocalFieldView.
@@ -61,6 +63,7 @@ public class Agent_TestLocalFieldView{
   private LocalFieldView localView;
   private Logger log;
   private LookAroundMotion lookAround;
+  private SelfLocalization localization;
 
   /** A player is identified in the server by its player ID and its team name. 
    There are at most two teams an the field, and every agent of a single team 
@@ -98,6 +101,10 @@ public class Agent_TestLocalFieldView{
     effOut = new EffectorOutput(sc);
     localView = new LocalFieldView(percIn, log, team, agentNumber);
     lookAround = new LookAroundMotion(percIn, effOut, log);  
+    // The robot does not walk, so the localization needs no KeyframeMotion
+    // for the odometry.
+    localization = new SelfLocalization(localView, null);
+    localization.setPose(beamCoordX, beamCoordY, Math.toRadians(beamCoordRot));
 
     // robot on the field
   
@@ -112,10 +119,10 @@ public class Agent_TestLocalFieldView{
     // The references to the models or model lists have to be got only once, 
     // because class LocalFieldView keeps the referenced models up to date. 
     BallModel ball = localView.getBall();
-    HashMap<GoalPostID, GoalPostModel> goals = localView.getGoals();
-    HashMap<FlagID, FlagModel> flags = localView.getFlags();
-    LinkedList<PlayerModel> players = localView.getAllPlayers(); 
-    LinkedList<LineModel> lines = localView.getLines();
+    EnumMap<GoalPostID, GoalPostModel> goals = localView.getGoals();
+    EnumMap<FlagID, FlagModel> flags = localView.getFlags();
+    List<PlayerModel> players = localView.getAllPlayers(); 
+    List<LineModel> lines = localView.getLines();
     
     // At the beginning the vision perceptor might not have sensed any player, 
     // (if the agent´s robot is the only one on the field, or the other robots
@@ -178,7 +185,7 @@ public class Agent_TestLocalFieldView{
       // Get the reference to a player, when it is sensed for the first time.
       if (specificPlayer == null) {
         if (!players.isEmpty())
-          specificPlayer = players.getFirst();
+          specificPlayer = players.get(0);
         else 
           log.log("Do not see Agent_Dummy (yet).");  
       }
@@ -198,13 +205,16 @@ public class Agent_TestLocalFieldView{
 // line model
       log.log("Line models");
       if (!lines.isEmpty()){
-        log.log(lines.getFirst().toString());
-        vecLine = lines.getFirst().getStart();
+        log.log(lines.get(0).toString());
+        vecLine = lines.get(0).getStart();
         log.log("Access to details of a line, e.g. the distance to a start point: "
                 +vecLine.getNorm());
       } else
         log.log("There is not any line in the field of view.");    
       
+// global pose
+      log.log("Self localization");
+      log.log(localization.toString());
       
       
       act();
@@ -218,6 +228,7 @@ public class Agent_TestLocalFieldView{
   private void sense() {
     percIn.update();
     localView.update();
+    localization.update();
   }
   
   /**
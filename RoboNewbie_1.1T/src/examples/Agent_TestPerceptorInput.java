@@ -16,6 +16,7 @@ import java.util.LinkedList;
 import org.apache.commons.math3.geometry.euclidean.threed.Vector3D;
 import util.FieldConsts;
 import util.Logger;
+import util.PolarCoords;
 import util.RobotConsts;
 import util.RobotConsts.BodyPartName;
 
@@ -173,7 +174,7 @@ public class Agent_TestPerceptorInput {
       // class above its definition). A convenient access to the vision data
       // provides class LocalFieldView in package localFieldView. The usage of
       // LocalFieldView is shown in class examples.Agent_TestLocalFieldView . 
-      Vector3D ball = percIn.getBall();
+      PolarCoords ball = percIn.getBall();
       //if (ball != null) 
         //log.log("Ball polar: " + Logger.polarStr(ball));     
       LinkedList<LineVisionPerceptor> lines = percIn.getLines();
@@ -186,20 +187,20 @@ public class Agent_TestPerceptorInput {
 //         log.log(p.toString());
 //         log.log("Player Left Lower Arm:" + Logger.polarStr(p.getBodyPart(BodyPartName.LLowerArm)));
         }      
-      Vector3D g1r = percIn.getGoalPost(FieldConsts.GoalPostID.G1R);
+      PolarCoords g1r = percIn.getGoalPost(FieldConsts.GoalPostID.G1R);
 //      if (g1r != null)
 //        log.log("Goal G1R: " + Logger.polarStr(g1r));
-      Vector3D g2r = percIn.getGoalPost(FieldConsts.GoalPostID.G2R);
+      PolarCoords g2r = percIn.getGoalPost(FieldConsts.GoalPostID.G2R);
 //      if (g2r != null)
 //        log.log("Goal G2R: " + Logger.polarStr(g2r));
-      Vector3D g1l = percIn.getGoalPost(FieldConsts.GoalPostID.G1L);
+      PolarCoords g1l = percIn.getGoalPost(FieldConsts.GoalPostID.G1L);
 //      if (g1l != null)
 //        log.log("Goal G1L: " + Logger.polarStr(g1l));
-      Vector3D g2l = percIn.getGoalPost(FieldConsts.GoalPostID.G2L);
+      PolarCoords g2l = percIn.getGoalPost(FieldConsts.GoalPostID.G2L);
 //      if (g2l != null)
 //        log.log("Goal G2L: " + Logger.polarStr(g2l));
       for (FieldConsts.FlagID id:FieldConsts.FlagID.values()){
-        Vector3D f = percIn.getFlag(id);
+        PolarCoords f = percIn.getFlag(id);
 //        if (f != null)
 //          log.log("Flag " + id.toString() + ": " + Logger.polarStr(f));
       }
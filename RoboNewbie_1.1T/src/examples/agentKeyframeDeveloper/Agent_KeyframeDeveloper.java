@@ -11,7 +11,9 @@ import util.Logger;
 import agentIO.ServerCommunication;
 import agentIO.EffectorOutput;
 import agentIO.PerceptorInput;
+import java.io.IOException;
 import keyframeMotion.KeyframeMotion;
+import keyframeMotion.util.MotionRecorder;
 
 /**
  * Agent for testing of new keyframe sequences - also an example for using 
@@ -25,6 +27,10 @@ import keyframeMotion.KeyframeMotion;
  * File test.txt can be overwritten while this class is running, the saved 
  * changes are loaded each time before the move is executed. 
  * 
+ * If recordMotion is set to true, the targets, sensed angles and commands of
+ * every executed cycle are written into the file MotionRecordAnalyzer.recordFile,
+ * which can be analyzed with MotionRecordAnalyzer after the agent stopped. 
+ * 
  * @author Nika, Dieter
  */
 public class Agent_KeyframeDeveloper {
@@ -40,6 +46,7 @@ public class Agent_KeyframeDeveloper {
     //can be filled up because of generated log strings. 
     //1200sec. = 20min. is completely sercure on my computer.     
     agent.run(1200);
+    agent.closeRecorder();
     agent.log.printLog();
     System.out.println("Agent stopped.");
   }
@@ -49,6 +56,9 @@ public class Agent_KeyframeDeveloper {
   private KeyframeMotion motion;
   private KeyDevThinking keyDevThinking;
   private Logger log;
+  private MotionRecorder recorder = null;
+  
+  static boolean recordMotion = false;
   
   static final String ID = "1";
   static final String team = "myT";
@@ -70,12 +80,35 @@ public class Agent_KeyframeDeveloper {
         percIn = new PerceptorInput(sc);
         effOut = new EffectorOutput(sc);
         motion = new KeyframeMotion(effOut, percIn, log);
-        keyDevThinking = new KeyDevThinking(motion, percIn);
+        keyDevThinking = new KeyDevThinking(motion, percIn, log);
+        if (recordMotion) {
+          try {
+            recorder = new MotionRecorder(MotionRecordAnalyzer.recordFile, 500);
+            motion.setRecorder(recorder);
+          } catch (IOException e) {
+            System.out.println("Motion recording not possible: " + e.getMessage());
+          }
+        }
         
       // robot on the field
         sc.initRobot(ID, team, beamCoordX, beamCoordY, beamCoordRot);
   }
   
+  /**
+   * Writes the rest of the motion records, if the motion is recorded. 
+   */
+  private void closeRecorder() {
+    if (recorder == null)
+      return;
+    try {
+      recorder.close();
+      System.out.println("Motion records written to " + MotionRecordAnalyzer.recordFile 
+              + ", " + recorder.getDroppedRecords() + " records dropped.");
+    } catch (IOException e) {
+      System.out.println("Motion records could not be written: " + e.getMessage());
+    }
+  }
+  
   /**
    * Main loop of the agent program, where it is synchronized with the 
    * simulation server. 
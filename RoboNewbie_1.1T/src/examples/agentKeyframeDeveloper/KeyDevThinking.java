@@ -8,7 +8,9 @@
 package examples.agentKeyframeDeveloper;
 
 import agentIO.PerceptorInput;
+import bodyModel.FallPredictor;
 import keyframeMotion.KeyframeMotion;
+import util.Logger;
 
 /**
  * Thinking class for Agent_KeyframeDeveloper. 
@@ -17,6 +19,10 @@ import keyframeMotion.KeyframeMotion;
  * "[RoboNewbie project folder]/keyframes/test.txt" ) and executes it in an
  * infinite loop. If the robot falls down, because the motion is not stable yet,
  * the thinking sets a motion to stand up again. 
+ * Falls are detected by a FallPredictor, which logs for every fall, how long
+ * before the robot reached the ground the fall was predicted. So the test
+ * motion is played completely, but the developer sees, when it became
+ * instable. 
  * 
  * Usage by the agent class:
  * Call method decide() in each server cycle. 
@@ -28,6 +34,7 @@ public class KeyDevThinking {
   
   private KeyframeMotion motion;
   private PerceptorInput percIn;
+  private FallPredictor fallPredictor;
   
   int wait_time = 100;
   int state = 0;
@@ -43,8 +50,20 @@ public class KeyDevThinking {
    * @param percIn Has to be initalized already. 
    */
   public KeyDevThinking(KeyframeMotion km, PerceptorInput percIn){
+    this(km, percIn, null);
+  }
+
+  /**
+   * Constructor with logging of the falls. 
+   *
+   * @param km Has to be initialized already.
+   * @param percIn Has to be initalized already. 
+   * @param log Logger for the detected falls, or null. 
+   */
+  public KeyDevThinking(KeyframeMotion km, PerceptorInput percIn, Logger log){
     this.motion = km;
     this.percIn = percIn;
+    this.fallPredictor = new FallPredictor(percIn, log);
   }
   
   /**
@@ -58,9 +77,10 @@ public class KeyDevThinking {
    */  
   public void decide(){     
     
+    fallPredictor.update();
     if (motion.ready()) {
-      if (percIn.getAcc().getZ() < 2) {
-        if (percIn.getAcc().getY() > 0) {
+      if (fallPredictor.isLying()) {
+        if (fallPredictor.isLyingOnBack()) {
           state = 2;    // robot lies on the back
         } else {
           state = 3;                               // robot lies on the front
@@ -0,0 +1,280 @@
+/*******************************************************************************
+*  RoboNewbie
+* NaoTeam Humboldt
+* @version 1.1
+*******************************************************************************/
+
+package examples.agentKeyframeDeveloper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import keyframeMotion.util.Keyframe;
+import keyframeMotion.util.KeyframeBundle;
+import keyframeMotion.util.KeyframeFileHandler;
+import keyframeMotion.util.KeyframeSequence;
+import keyframeMotion.util.KeyframeTransforms;
+import util.RobotConsts;
+
+/**
+ * This program transforms all keyframe files in the directory 
+ * "[RoboNewbie root]/keyframes" at once, like OtherSideGenerator does for a 
+ * single file. 
+ * 
+ * The files are processed in parallel by one thread per processor core. For 
+ * every file the program checks the keyframes (angles outside of the joint 
+ * limits, joint speeds above RobotConsts.getMaxSpeed(...), transition times of
+ * 0), applies the chosen transformations in the given order and writes the 
+ * result with the same file name into the output directory 
+ * "[RoboNewbie root]/keyframes/transformed". Additionally all results are 
+ * written into the binary bundle file "transformed/keyframes.bundle" (see 
+ * class keyframeMotion.util.KeyframeBundle), which is read back and compared
+ * with the results afterwards. A report with the checks and statistics of 
+ * every file is printed to the console.
+ * 
+ * The transformations are passed as arguments when starting the program from
+ * the command prompt, or specified in the class variable 
+ * KeyframeBatchTransformer.defaultArguments :
+ * - mirror: switch the move to the other side of the robot, 
+ * - speed=[factor]: play the move faster (factor > 1) or slower,
+ * - amplitude=[factor]: multiply all angles by the factor,
+ * - clamp: limit all angles to the joint limits,
+ * - merge=[file name]: additionally write all results concatenated in the 
+ * order of their file names into one file, 
+ * - files=[regular expression]: process only the matching files, default is
+ * all files ending with ".txt".
+ * Example: files=walk.* speed=0.8 clamp
+ * 
+ * The program should be started in the root directory of the RoboNewbie 
+ * project.
+ */
+public class KeyframeBatchTransformer {
+  
+  static String[] defaultArguments = {"clamp"};
+  
+  static final String OUTPUT_DIRECTORY = "transformed";
+  static final String BUNDLE_FILE = "keyframes.bundle";
+  
+  private static final double[] maxSpeeds = new double[RobotConsts.JointsCount];
+  
+  static {
+    for (int i = 0; i < RobotConsts.JointsCount; i++)
+      maxSpeeds[i] = Math.toDegrees(RobotConsts.getMaxSpeed(i));
+  }
+  
+  /**
+   * Result of the processing of one file.
+   */
+  private static class Result {
+    String fileName;
+    KeyframeSequence sequence;
+    String report;
+  }
+  
+  /**
+   * Transforms the keyframe files, see class description for details. 
+   * 
+   * @param args Transformations and file filter as described above.
+   */
+  public static void main(String[] args) 
+          throws InterruptedException, ExecutionException, IOException {
+    if (args.length == 0)
+      args = defaultArguments;
+    
+    String filter = ".*\\.txt";
+    String mergeFile = null;
+    final List<String> transforms = new ArrayList<>();
+    for (String arg : args) {
+      if (arg.startsWith("files="))
+        filter = arg.substring("files=".length());
+      else if (arg.startsWith("merge="))
+        mergeFile = arg.substring("merge=".length());
+      else if (arg.startsWith("speed=")) {
+        // checked here, so a wrong factor stops the program before any file
+        // is written
+        double speed;
+        try {
+          speed = Double.parseDouble(arg.substring("speed=".length()));
+        } catch (NumberFormatException e) {
+          speed = Double.NaN;
+        }
+        if (!(speed > 0)) {
+          System.out.println("Speed factor must be a number greater than 0: " + arg);
+          return;
+        }
+        transforms.add(arg);
+      } else if (arg.equals("mirror") || arg.equals("clamp") 
+              || arg.startsWith("amplitude="))
+        transforms.add(arg);
+      else {
+        System.out.println("Unknown argument " + arg);
+        return;
+      }
+    }
+    
+    String[] fileNames = new File("keyframes").list();
+    if (fileNames == null) {
+      System.out.println("Directory keyframes not found, start the program in "
+              + "the root directory of the RoboNewbie project.");
+      return;
+    }
+    Arrays.sort(fileNames);
+    new File("keyframes/" + OUTPUT_DIRECTORY).mkdirs();
+    
+    int threads = Runtime.getRuntime().availableProcessors();
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    List<Future<Result>> futures = new ArrayList<>();
+    for (final String fileName : fileNames) {
+      if (!fileName.matches(filter) || !new File("keyframes/" + fileName).isFile())
+        continue;
+      futures.add(executor.submit(new Callable<Result>() {
+        @Override
+        public Result call() {
+          return process(fileName, transforms);
+        }
+      }));
+    }
+    
+    LinkedHashMap<String, KeyframeSequence> results = new LinkedHashMap<>();
+    List<KeyframeSequence> mergeList = new ArrayList<>();
+    try {
+      for (Future<Result> future : futures) {
+        Result result = future.get();
+        System.out.println(result.report);
+        if (result.sequence != null) {
+          results.put(result.fileName, result.sequence);
+          mergeList.add(result.sequence);
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+    
+    if (mergeFile != null) {
+      KeyframeSequence merged = KeyframeTransforms.merge(
+              mergeList.toArray(new KeyframeSequence[mergeList.size()]));
+      KeyframeFileHandler.writeSequenceToFile(merged, OUTPUT_DIRECTORY + "/" + mergeFile);
+      results.put(mergeFile, merged);
+    }
+    KeyframeBundle.write(results, OUTPUT_DIRECTORY + "/" + BUNDLE_FILE);
+    verifyBundle(results);
+    System.out.println(results.size() + " sequences written to keyframes/" 
+            + OUTPUT_DIRECTORY + ", " + threads + " threads used.");
+  }
+  
+  /**
+   * Reads the written bundle file and compares it with the results, so a
+   * broken bundle is noticed before it is used by an agent.
+   */
+  private static void verifyBundle(LinkedHashMap<String, KeyframeSequence> results) 
+          throws IOException {
+    LinkedHashMap<String, KeyframeSequence> read 
+            = KeyframeBundle.read(OUTPUT_DIRECTORY + "/" + BUNDLE_FILE);
+    int errors = 0;
+    for (String name : results.keySet()) {
+      KeyframeSequence expected = results.get(name);
+      KeyframeSequence actual = read.get(name);
+      if (actual == null || actual.size() != expected.size()) {
+        System.out.println("Bundle: " + name + " missing or incomplete");
+        errors++;
+        continue;
+      }
+      for (int f = 0; f < expected.size(); f++) {
+        Keyframe e = expected.getFrame(f);
+        Keyframe a = actual.getFrame(f);
+        boolean equal = e.getTransitionTime() == a.getTransitionTime();
+        for (int i = 0; i < RobotConsts.JointsCount && equal; i++)
+          equal = e.getAngle(i) == a.getAngle(i);
+        if (!equal) {
+          System.out.println("Bundle: " + name + " differs at frame " + f);
+          errors++;
+          break;
+        }
+      }
+    }
+    if (read.size() != results.size())
+      errors++;
+    System.out.println("Bundle " + BUNDLE_FILE + ": " + read.size() 
+            + " sequences read back, " + errors + " errors.");
+  }
+  
+  /**
+   * Checks, transforms and writes one file. Runs in a thread of the executor,
+   * so it uses only its own objects. 
+   */
+  private static Result process(String fileName, List<String> transforms) {
+    Result result = new Result();
+    result.fileName = fileName;
+    StringBuilder report = new StringBuilder();
+    report.append("---- ").append(fileName).append('\n');
+    
+    KeyframeSequence ks = KeyframeFileHandler.getSequenceFromFile(fileName);
+    if (ks.size() == 0) {
+      report.append("no keyframes, skipped\n");
+      result.report = report.toString();
+      return result;
+    }
+    report.append("before: ");
+    check(ks, report);
+    
+    for (String t : transforms) {
+      if (t.equals("mirror"))
+        ks = KeyframeTransforms.mirror(ks);
+      else if (t.equals("clamp"))
+        ks = KeyframeTransforms.clamp(ks);
+      else if (t.startsWith("speed="))
+        ks = KeyframeTransforms.scale(ks, 
+                Double.parseDouble(t.substring("speed=".length())), 1);
+      else if (t.startsWith("amplitude="))
+        ks = KeyframeTransforms.scale(ks, 1, 
+                Double.parseDouble(t.substring("amplitude=".length())));
+    }
+    if (!transforms.isEmpty()) {
+      report.append("after:  ");
+      check(ks, report);
+    }
+    
+    KeyframeFileHandler.writeSequenceToFile(ks, OUTPUT_DIRECTORY + "/" + fileName);
+    result.sequence = ks;
+    result.report = report.toString();
+    return result;
+  }
+  
+  /**
+   * Appends the checks and statistics of a sequence to the report.
+   */
+  private static void check(KeyframeSequence ks, StringBuilder report) {
+    int[] violations = new int[RobotConsts.JointsCount];
+    double[] excess = new double[RobotConsts.JointsCount];
+    double[] speeds = new double[RobotConsts.JointsCount];
+    int total = KeyframeTransforms.findLimitViolations(ks, violations, excess);
+    KeyframeTransforms.findMaxSpeeds(ks, speeds);
+    
+    int zeroTimes = 0;
+    for (int f = 0; f < ks.size(); f++)
+      if (ks.getFrame(f).getTransitionTime() <= 0)
+        zeroTimes++;
+    int tooFast = 0;
+    for (int i = 0; i < RobotConsts.JointsCount; i++)
+      if (speeds[i] > maxSpeeds[i])
+        tooFast++;
+    
+    report.append(String.format("%d frames, %d ms, %d limit violations, "
+            + "%d joints too fast, %d frames without transition time%n", 
+            ks.size(), KeyframeTransforms.getDuration(ks), total, tooFast, zeroTimes));
+    if (total > 0)
+      report.append("maximal excess of the joint limits (degrees):\n")
+              .append(RobotConsts.getAllJointsString(excess)).append('\n');
+    if (tooFast > 0)
+      report.append("maximal joint speeds (degrees per second):\n")
+              .append(RobotConsts.getAllJointsString(speeds)).append('\n');
+  }
+}
@@ -0,0 +1,188 @@
+/*******************************************************************************
+*  RoboNewbie
+* NaoTeam Humboldt
+* @version 1.1
+*******************************************************************************/
+
+package examples.agentKeyframeDeveloper;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import keyframeMotion.util.MotionRecorder;
+import util.RobotConsts;
+
+/**
+ * This program analyzes a file written by keyframeMotion.util.MotionRecorder 
+ * and prints for every recorded run of a keyframe sequence, how well the 
+ * joints followed the planned trajectory: 
+ * - RMS error: root mean square of the deviation of the predicted angle 
+ * (sensed angle plus the last commanded step) from the last target, like 
+ * keyframeMotion.util.TrackingStatistics computes it during the run, 
+ * - lag: number of cycles, by which the sensed angles follow the targets 
+ * (the shift with the smallest deviation), 
+ * - overshoot: how far the sensed angles leave the range of the targets, 
+ * - the keyframe with the highest RMS error over all joints, that is the 
+ * keyframe, which should be checked first. 
+ * All angles are printed in degrees. 
+ * 
+ * The name of the file is passed as the first argument when starting the 
+ * program from the command prompt, or specified in the class variable 
+ * MotionRecordAnalyzer.recordFile .
+ */
+public class MotionRecordAnalyzer {
+  
+  static String recordFile = "motion.rec";
+  
+  static final int MAX_LAG = 10;
+  
+  // offsets in a record, see MotionRecorder
+  private static final int RUN = 1, KEYFRAME = 3;
+  private static final int TARGETS = 4;
+  private static final int SENSED = TARGETS + RobotConsts.JointsCount;
+  private static final int COMMANDS = SENSED + RobotConsts.JointsCount;
+  
+  /**
+   * Analyzes the records, see class description for details. 
+   * 
+   * @param args Name of the record file.
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length != 0)
+      recordFile = args[0];
+    
+    List<double[]> records = new ArrayList<>();
+    List<String> names = new ArrayList<>();
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+            new FileInputStream(recordFile)))) {
+      if (in.readInt() != MotionRecorder.MAGIC || in.readInt() != MotionRecorder.VERSION
+              || in.readInt() != RobotConsts.JointsCount) {
+        System.out.println(recordFile + " is no motion record of this version.");
+        return;
+      }
+      while (true) {
+        double[] r = new double[MotionRecorder.RECORD_SIZE];
+        r[0] = in.readDouble();
+        if (Double.isNaN(r[0]))
+          break;
+        for (int i = 1; i < r.length; i++)
+          r[i] = in.readDouble();
+        records.add(r);
+      }
+      int runs = in.readInt();
+      for (int i = 0; i < runs; i++)
+        names.add(in.readUTF());
+    }
+    
+    int start = 0;
+    while (start < records.size()) {
+      int run = (int) records.get(start)[RUN];
+      int end = start;
+      while (end < records.size() && (int) records.get(end)[RUN] == run)
+        end++;
+      String name = run >= 0 && run < names.size() ? names.get(run) : "unknown";
+      analyzeRun(name, records.subList(start, end));
+      start = end;
+    }
+  }
+  
+  /**
+   * Prints the analysis of one run.
+   */
+  private static void analyzeRun(String name, List<double[]> run) {
+    int n = run.size();
+    double duration = n > 1 ? run.get(n - 1)[0] - run.get(0)[0] : 0;
+    System.out.printf("---- %s: %d cycles, %.2f s%n", name, n, duration);
+    if (n < 2)
+      return;
+    
+    double[] rms = new double[RobotConsts.JointsCount];
+    double[] lags = new double[RobotConsts.JointsCount];
+    double[] overshoots = new double[RobotConsts.JointsCount];
+    int keyframes = (int) run.get(n - 1)[KEYFRAME] + 1;
+    double[] keyframeSums = new double[keyframes];
+    int[] keyframeCounts = new int[keyframes];
+    
+    for (int i = 0; i < RobotConsts.JointsCount; i++) {
+      double sum = 0;
+      for (int c = 1; c < n; c++) {
+        double[] last = run.get(c - 1);
+        double[] now = run.get(c);
+        double step = last[COMMANDS + i] * (now[0] - last[0]);
+        double error = last[TARGETS + i] - (now[SENSED + i] + step);
+        sum += error * error;
+        int k = (int) now[KEYFRAME];
+        if (k >= 0 && k < keyframes) {
+          keyframeSums[k] += error * error;
+          keyframeCounts[k]++;
+        }
+      }
+      rms[i] = Math.toDegrees(Math.sqrt(sum / (n - 1)));
+      lags[i] = findLag(run, i);
+      overshoots[i] = Math.toDegrees(findOvershoot(run, i));
+    }
+    
+    System.out.println("RMS error (degrees):");
+    System.out.println(RobotConsts.getAllJointsString(rms));
+    System.out.println("lag (cycles):");
+    System.out.println(RobotConsts.getAllJointsString(lags));
+    System.out.println("overshoot (degrees):");
+    System.out.println(RobotConsts.getAllJointsString(overshoots));
+    
+    int worst = -1;
+    double worstRms = 0;
+    for (int k = 0; k < keyframes; k++) {
+      if (keyframeCounts[k] == 0)
+        continue;
+      double r = Math.sqrt(keyframeSums[k] / keyframeCounts[k]);
+      if (r > worstRms) {
+        worstRms = r;
+        worst = k;
+      }
+    }
+    if (worst >= 0)
+      System.out.printf("highest RMS error at keyframe %d (line %d): %.2f degrees%n", 
+              worst, worst + 1, Math.toDegrees(worstRms));
+  }
+  
+  /**
+   * Returns the shift in cycles between targets and sensed angles of a joint 
+   * with the smallest mean squared deviation. 
+   */
+  private static int findLag(List<double[]> run, int joint) {
+    int best = 0;
+    double bestMean = Double.MAX_VALUE;
+    for (int lag = 0; lag <= MAX_LAG && lag < run.size() - 1; lag++) {
+      double sum = 0;
+      for (int c = lag; c < run.size(); c++) {
+        double d = run.get(c)[SENSED + joint] - run.get(c - lag)[TARGETS + joint];
+        sum += d * d;
+      }
+      double mean = sum / (run.size() - lag);
+      if (mean < bestMean) {
+        bestMean = mean;
+        best = lag;
+      }
+    }
+    return best;
+  }
+  
+  /**
+   * Returns the maximal distance of the sensed angles of a joint outside the
+   * range of its targets. 
+   */
+  private static double findOvershoot(List<double[]> run, int joint) {
+    double minTarget = Double.MAX_VALUE, maxTarget = -Double.MAX_VALUE;
+    double minSensed = Double.MAX_VALUE, maxSensed = -Double.MAX_VALUE;
+    for (double[] r : run) {
+      minTarget = Math.min(minTarget, r[TARGETS + joint]);
+      maxTarget = Math.max(maxTarget, r[TARGETS + joint]);
+      minSensed = Math.min(minSensed, r[SENSED + joint]);
+      maxSensed = Math.max(maxSensed, r[SENSED + joint]);
+    }
+    return Math.max(0, Math.max(maxSensed - maxTarget, minTarget - minSensed));
+  }
+}
@@ -7,10 +7,9 @@
 
 package examples.agentKeyframeDeveloper;
 
-import keyframeMotion.util.Keyframe;
 import keyframeMotion.util.KeyframeFileHandler;
 import keyframeMotion.util.KeyframeSequence;
-import static util.RobotConsts.*;
+import keyframeMotion.util.KeyframeTransforms;
 
 
 
@@ -29,6 +28,8 @@ import static util.RobotConsts.*;
  * there. The filename has to be specified in the class variable 
  * OtherSideGenerator.sequenceForConversion, or passed as the first argument 
  * when starting the program from the command prompt.
+ * 
+ * To transform many files at once, see KeyframeBatchTransformer.
  */
 public class OtherSideGenerator {
   
@@ -62,37 +63,6 @@ public class OtherSideGenerator {
    * agent. 
    */
   private static KeyframeSequence generateOtherSide(KeyframeSequence ks){
-    KeyframeSequence ksOtherSide = new KeyframeSequence();
-    
-    for (Keyframe kf = ks.getNextFrame(); kf != null; kf = ks.getNextFrame()) {
-      double[] newAngles = new double[JointsCount];
-      
-      newAngles[NeckYaw]            = -kf.getAngle(NeckYaw); 
-      newAngles[NeckPitch]          = kf.getAngle(NeckPitch);	
-      newAngles[LeftShoulderPitch]  = kf.getAngle(RightShoulderPitch);
-      newAngles[LeftShoulderYaw]    = -kf.getAngle(RightShoulderYaw);
-      newAngles[LeftArmRoll ]       = -kf.getAngle(RightArmRoll);
-      newAngles[LeftArmYaw ]        = -kf.getAngle(RightArmYaw);
-      newAngles[LeftHipYawPitch ]   = kf.getAngle(RightHipYawPitch);
-      newAngles[LeftHipRoll]        = -kf.getAngle(RightHipRoll);
-      newAngles[LeftHipPitch]       = kf.getAngle(RightHipPitch);
-      newAngles[LeftKneePitch]      = kf.getAngle(RightKneePitch);
-      newAngles[LeftFootPitch]      = kf.getAngle(RightFootPitch);
-      newAngles[LeftFootRoll]       = -kf.getAngle(RightFootRoll);
-      newAngles[RightHipYawPitch]   = kf.getAngle(LeftHipYawPitch);
-      newAngles[RightHipRoll]       = -kf.getAngle(LeftHipRoll);
-      newAngles[RightHipPitch]      = kf.getAngle(LeftHipPitch);
-      newAngles[RightKneePitch]     = kf.getAngle(LeftKneePitch);
-      newAngles[RightFootPitch]     = kf.getAngle(LeftFootPitch);
-      newAngles[RightFootRoll]      = -kf.getAngle(LeftFootRoll);
-      newAngles[RightShoulderPitch] = kf.getAngle(LeftShoulderPitch);
-      newAngles[RightShoulderYaw]   = -kf.getAngle(LeftShoulderYaw);
-      newAngles[RightArmRoll]       = -kf.getAngle(LeftArmRoll);
-      newAngles[RightArmYaw ]       = -kf.getAngle(LeftArmYaw);
-      
-      ksOtherSide.addFrame(new Keyframe(kf.getTransitionTime(), newAngles));
-    }
-    
-    return ksOtherSide;
+    return KeyframeTransforms.mirror(ks);
   }
 }
@@ -9,14 +9,14 @@ package examples.agentSimpleSoccer;
 
 import agentIO.PerceptorInput;
 import directMotion.LookAroundMotion;
-import java.util.HashMap;
+import java.util.EnumMap;
 import keyframeMotion.KeyframeMotion;
 import localFieldView.BallModel;
 import localFieldView.GoalPostModel;
 import localFieldView.LocalFieldView;
-import org.apache.commons.math3.geometry.euclidean.threed.Vector3D;
 import util.FieldConsts.GoalPostID;
 import util.Logger;
+import util.PolarCoords;
 
 /**
  * This class implements a simple behavior to get the ball to the goal. 
@@ -85,7 +85,7 @@ public class SoccerThinking {
     //this.motion.setLogging(true);
     this.log = log;
     this.ball = this.localView.getBall();
-    HashMap<GoalPostID, GoalPostModel> goalPosts = this.localView.getGoals();
+    EnumMap<GoalPostID, GoalPostModel> goalPosts = this.localView.getGoals();
     this.oppGoalLPost = goalPosts.get(GoalPostID.G1R);
     this.oppGoalRPost = goalPosts.get(GoalPostID.G2R);
     this.lookTime = LookAroundMotion.LOOK_TIME;
@@ -117,19 +117,19 @@ public class SoccerThinking {
       // if the robot has the actual ball coordinates
       else if ((serverTime - ball.getTimeStamp()) < lookTime) {
         
-        Vector3D ballCoords = ball.getCoords();
+        PolarCoords ballCoords = ball.getPolar();
 //        log.log("2. robot has the actual ball coordinates, horizontal angle: " 
-//                + Math.toDegrees(ballCoords.getAlpha()) 
-//                + " distance: " + ballCoords.getNorm()) ;
+//                + Math.toDegrees(ballCoords.getAzimuth()) 
+//                + " distance: " + ballCoords.getDistance()) ;
 
         // if the ball is not in front of the robot
-        if (Math.abs(ballCoords.getAlpha()) > TOLLERATED_DEVIATION) {
+        if (Math.abs(ballCoords.getAzimuth()) > TOLLERATED_DEVIATION) {
 //          log.log("3. the ball is not in front of the robot. ") ;
           if (robotIsWalking) {
             motion.setStopWalking();
             robotIsWalking = false;
           } else {
-            if (ballCoords.getAlpha() > 0) {
+            if (ballCoords.getAzimuth() > 0) {
               motion.setTurnLeftSmall();
             } else {
               motion.setTurnRightSmall();
@@ -138,7 +138,7 @@ public class SoccerThinking {
         } 
         
         // if the robot is far away from the ball
-        else if (ballCoords.getNorm() > TOLLERATED_DISTANCE) {
+        else if (ballCoords.getDistance() > TOLLERATED_DISTANCE) {
 //          log.log("3. the robot is far away from the ball.");
           motion.setWalkForward();
           robotIsWalking = true;
@@ -150,14 +150,14 @@ public class SoccerThinking {
 //          log.log("5. the robot has the actual goal coordinates");
 
           // if the ball does not lie between the robot and the goal
-          if ((oppGoalLPost.getCoords().getAlpha() <= ballCoords.getAlpha())
-                  || (oppGoalRPost.getCoords().getAlpha() >= ballCoords.getAlpha())) {
+          if ((oppGoalLPost.getPolar().getAzimuth() <= ballCoords.getAzimuth())
+                  || (oppGoalRPost.getPolar().getAzimuth() >= ballCoords.getAzimuth())) {
 //            log.log("6. the ball does not lie between the robot and the goal");
             if (robotIsWalking) {
               motion.setStopWalking();
               robotIsWalking = false;
             } else {
-              if (oppGoalLPost.getCoords().getAlpha() <= ballCoords.getAlpha()) {
+              if (oppGoalLPost.getPolar().getAzimuth() <= ballCoords.getAzimuth()) {
                 motion.setSideStepLeft();
               } else {
                 motion.setSideStepRight();
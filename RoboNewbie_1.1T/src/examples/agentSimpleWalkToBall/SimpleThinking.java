@@ -64,7 +64,7 @@ public class SimpleThinking {
 
       // If the ball lies in front of the robot, walk towards it. 
       if (ball.isInFOVnow()
-          && (Math.abs(ball.getCoords().getAlpha())) < TOLERANCE_ANGLE) {
+          && (Math.abs(ball.getPolar().getAzimuth())) < TOLERANCE_ANGLE) {
         motion.setWalkForward();
         robotIsWalking = true;
       }
@@ -15,7 +15,9 @@ import agentIO.EffectorOutput;
 import agentIO.PerceptorInput;
 import agentIO.ServerCommunication;
 import agentIO.perceptors.GameStatePerceptor;
+import bodyModel.JointCommandGuard;
 import directMotion.LookAroundMotion;
+import examples.agentSoccerTeam.behaviorTree.BehaviorTree;
 import java.io.IOException;
 import java.util.logging.Level;
 import keyframeMotion.KeyframeMotion;
@@ -66,6 +68,7 @@ public class Agent_SoccerTeam {
   private Logger log;
   private PerceptorInput percIn;
   private EffectorOutput effOut;
+  private JointCommandGuard guard = null;
   private KeyframeMotion kfMotion;
   private LocalFieldView localView;
   private SoccerTeamThinking soccerTeamThinking;
@@ -98,6 +101,13 @@ public class Agent_SoccerTeam {
   final double beamY =     0.0;
   final double beamRot =   0;
   
+  /** If set to true, all joint commands are checked by a 
+   bodyModel.JointCommandGuard before they are sent. Off by default: the speed
+   limits in util.RobotConsts are the values of the real Nao and not validated
+   for the simulated robot yet, so the guard could slow down the keyframe 
+   sequences. */
+  static boolean guardJointCommands = false;
+  
     ServerCommunication sc;
     PlayMode pm;
 
@@ -119,6 +129,10 @@ public class Agent_SoccerTeam {
     String agentNumber = sc.finalRobotID;
     percIn = new PerceptorInput(sc);
     effOut = new EffectorOutput(sc);
+    if (guardJointCommands) {
+      guard = new JointCommandGuard(percIn);
+      effOut.setGuard(guard);
+    }
     kfMotion = new KeyframeMotion(effOut, percIn, log);
     localView = new LocalFieldView(percIn, log, team, agentNumber);
     lookAround = new LookAroundMotion(percIn, effOut, log);  
@@ -299,6 +313,13 @@ public class Agent_SoccerTeam {
      * Print log informations - if there where any.
      */
     private void printlog() {
+        if (guard != null)
+            log.log(guard.toString());
+        BehaviorTree tree = soccerTeamThinking.getBehaviorTree();
+        if (tree != null) {
+            log.log(tree.statisticsToString());
+            log.log("BehaviorTree trace of the last cycles:" + System.lineSeparator() + tree.traceToString());
+        }
         log.printLog();
     }
 }
@@ -11,9 +11,15 @@ package examples.agentSoccerTeam;
 
 import agentIO.PerceptorInput;
 import agentIO.EffectorOutput;
+import bodyModel.BalanceModel;
+import bodyModel.FallPredictor;
 import keyframeMotion.KeyframeMotion;
 import localFieldView.BallModel;
+import localFieldView.BallTracker;
 import localFieldView.GoalPostModel;
+import localFieldView.PerceptionHistory;
+import localFieldView.PlayerTracker;
+import localization.SelfLocalization;
 import util.Logger;
 
 /**
@@ -28,6 +34,12 @@ public abstract class Role {
     public KeyframeMotion motion;
     public Logger log;
     public BallModel ball;
+    public BallTracker ballTracker;
+    public PerceptionHistory history;
+    public FallPredictor fallPredictor;
+    public BalanceModel balance;
+    public SelfLocalization localization;
+    public PlayerTracker playerTracker;
     public GoalPostModel oppGoalLPost, oppGoalRPost, ownGoalLPost, ownGoalRPost;
     public double lookTime;
     //parameters to pass information between cycles
@@ -41,6 +53,12 @@ public abstract class Role {
         this.log = log;
 
         ball = SoccerTeamThinking.ball;
+        ballTracker = SoccerTeamThinking.ballTracker;
+        history = SoccerTeamThinking.history;
+        fallPredictor = SoccerTeamThinking.fallPredictor;
+        balance = SoccerTeamThinking.balance;
+        localization = SoccerTeamThinking.localization;
+        playerTracker = SoccerTeamThinking.playerTracker;
         lookTime = SoccerTeamThinking.lookTime;
 
         oppGoalLPost = SoccerTeamThinking.oppGoalLPost;
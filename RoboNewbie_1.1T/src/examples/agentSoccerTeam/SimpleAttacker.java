@@ -16,129 +16,299 @@
 package examples.agentSoccerTeam;
 
 import agentIO.PerceptorInput;
+import directMotion.OmnidirectionalWalk;
+import examples.agentSoccerTeam.behaviorTree.BehaviorTree;
+import examples.agentSoccerTeam.behaviorTree.Status;
 import keyframeMotion.KeyframeMotion;
-import org.apache.commons.math3.geometry.euclidean.threed.Vector3D;
+import localFieldView.PlayerTracker;
+import planning.ActionPlan;
+import planning.ActionPlan.ActionType;
+import planning.AnytimeActionPlanner;
+import planning.PathPlanner;
 import util.Logger;
+import util.PolarCoords;
 
 /**
  * This class implements the decisions of a player. The decide method was
  * adapted from Agent_SimppleSoccer. But instead pushing, the agent kicks the
  * ball towards the goal.
+ * 
+ * The next motion is chosen shortly before the current one ends (see 
+ * KeyframeMotion.readyForNext()), so KeyframeMotion can cross-fade both. 
+ * Therefore the robot turns directly out of walking without stopping first.
+ * A fall is checked in every cycle with the FallPredictor: a predicted fall
+ * stops the actual motion, standing up interrupts any motion.
+ * The robot walks with the OmnidirectionalWalk: the velocity is commanded anew
+ * for every step, so the robot steers continuously and turns while walking
+ * without stopping. If the robot sees the ball and the goal, an
+ * AnytimeActionPlanner chooses between walking, kicking and dribbling within
+ * a slice of the server cycle, else the robot steers towards the ball and
+ * turns there to find the goal. On the way to the ball a PathPlanner leads
+ * the robot around the other players in both cases, if the global pose is
+ * known well enough (see SelfLocalization): the robot walks to the next
+ * corner of the path instead of the planned walk, until it is near the ball. The kick is started only, if the center of
+ * mass lies safely within the support polygon (see BalanceModel).
+ * The decisions are described by a behavior tree, which is built in the 
+ * constructor and ticked in decide(). Its trace shows the chosen branches
+ * (see BehaviorTree.traceToString()).
  */
 public class SimpleAttacker extends Role {
 
-    public boolean nearForKick = false;
+    private static final double TOLLERATED_DEVIATION = Math.toRadians(6);
+    private static final double TOLLERATED_DISTANCE = 0.7; // in meters
+    private static final double SLOW_DOWN_DISTANCE = 2.0; // in meters
+    private static final double TURN_GAIN = 2.0; // turn rate per azimuth of the ball, in 1/s
+    private static final double KICK_MARGIN = 0.02; // stability margin in meters
+    private static final double DRIBBLE_FORWARD = 0.15; // in m/s
+    private static final long PLANNING_SLICE = 3000000; // of the 20 ms cycle, in ns
+    private static final long PATH_BUDGET = 1000000; // of a replanning from scratch, in ns
+    // tick time budgets of the planning nodes and the composites above them, in ns
+    private static final long PLANNING_BUDGET = PLANNING_SLICE + BehaviorTree.DEFAULT_BUDGET;
+    private static final long PLAY_BUDGET = PLANNING_BUDGET + PATH_BUDGET;
+    private static final double MAX_PATH_DEVIATION = 0.5; // of the localization, in meters
+    private static final int PATH_LOG_INTERVAL = 250; // path updates between two logs
+
+    private final OmnidirectionalWalk walk = new OmnidirectionalWalk();
+    private final AnytimeActionPlanner planner = new AnytimeActionPlanner();
+    private final PathPlanner path = new PathPlanner();
+    private int pathUpdates = 0;
+    private boolean fallPredicted = false;
+    private ActionPlan plan;
+    private final BehaviorTree tree;
 
     public SimpleAttacker(KeyframeMotion motion, PerceptorInput percIn, Logger log) {
         super(motion, percIn, log);
+
+        tree = new BehaviorTree.Builder()
+            .selector("attacker").budget(PLAY_BUDGET)
+                // if the robot has fallen down, the stand up motions
+                // interrupt every other motion
+                .sequence("fallen")
+                    .condition("lying", () -> fallPredictor.isLying())
+                    .action("stand up", this::standUp)
+                .end()
+                // if the robot is falling, the actual motion is stopped, so
+                // the legs do not push the robot further
+                .sequence("falling")
+                    .condition("fall predicted", () -> fallPredictor.isFallPredicted())
+                    .action("stop", this::stop)
+                .end()
+                .sequence("play").budget(PLAY_BUDGET)
+                    .condition("ready for next", () -> motion.readyForNext())
+                    .selector("choose motion").budget(PLAY_BUDGET)
+                        .sequence("search ball")
+                            .condition("ball missing", () -> !isSeen(ball.getTimeStamp()))
+                            .action("turn in place", () -> step(0, 0, OmnidirectionalWalk.MAX_TURN))
+                        .end()
+                        // without the goal the robot goes to the ball and
+                        // turns there to find the goal
+                        .sequence("search goal").budget(PATH_BUDGET)
+                            .condition("goal missing", () -> !isSeen(oppGoalLPost.getTimeStamp())
+                                    || !isSeen(oppGoalRPost.getTimeStamp()))
+                            .selector("go to ball or turn").budget(PATH_BUDGET)
+                                .sequence("go to ball").budget(PATH_BUDGET)
+                                    .condition("ball far or aside", this::isBallFarOrAside)
+                                    .action("steer to ball", this::steerToBall).budget(PATH_BUDGET)
+                                .end()
+                                .action("turn left", this::turnLeft)
+                            .end()
+                        .end()
+                        // with ball and goal the planner chooses the action
+                        .sequence("planned play").budget(PLAY_BUDGET)
+                            .action("plan", this::planAction).budget(PLANNING_BUDGET)
+                            .selector("planned action").budget(PATH_BUDGET)
+                                .sequence("kick")
+                                    .condition("kick planned", () -> plan.getType() == ActionType.KICK)
+                                    // the kick starts from a stable stand only,
+                                    // else the robot waits until the last step
+                                    // has settled
+                                    .selector("kick if stable")
+                                        .sequence("stable")
+                                            .condition("stable", () -> balance.isStable(KICK_MARGIN))
+                                            .action("kick", this::kick)
+                                        .end()
+                                        .action("wait", () -> Status.RUNNING)
+                                    .end()
+                                .end()
+                                .sequence("dribble")
+                                    .condition("dribble planned", () -> plan.getType() == ActionType.DRIBBLE)
+                                    .action("push ball", () -> step(DRIBBLE_FORWARD, 0, 
+                                            TURN_GAIN * plan.getTurn()))
+                                .end()
+                                // players between robot and ball are bypassed,
+                                // the planned walk approaches the ball
+                                .sequence("walk around players").budget(PATH_BUDGET)
+                                    .condition("players on the way", this::isPathAroundPlayers).budget(PATH_BUDGET)
+                                    .action("walk to corner", () -> walkTowards(getCornerAzimuth()))
+                                .end()
+                                .action("walk", () -> step(plan.getForward(), 
+                                        plan.getSideways(), plan.getTurn()))
+                            .end()
+                        .end()
+                    .end()
+                .end()
+            .end()
+            .build();
     }
 
     @Override
     public void decide() {
+        tree.tick();
+        // print the decisions, which led to a fall
+        if (fallPredictor.isFallPredicted() && !fallPredicted)
+            log.log("fall predicted, BehaviorTree trace:" + System.lineSeparator() + tree.traceToString());
+        fallPredicted = fallPredictor.isFallPredicted();
+    }
+
+    /**
+     * Returns the behavior tree of the role, e.g. to print its trace.
+     * 
+     * @return The behavior tree, ticked by decide().
+     */
+    public BehaviorTree getBehaviorTree() {
+        return tree;
+    }
+
+    /**
+     * Internal method, states whether an object was seen recently.
+     */
+    private boolean isSeen(double timeStamp) {
+        return percIn.getServerTime() - timeStamp < lookTime;
+    }
+
+    /**
+     * Internal method, states whether the ball is not in front of the robot
+     * or far away.
+     */
+    private boolean isBallFarOrAside() {
+        PolarCoords ballCoords = ball.getPolar();
+        return Math.abs(ballCoords.getAzimuth()) > TOLLERATED_DEVIATION
+                || ballCoords.getDistance() > TOLLERATED_DISTANCE;
+    }
+
+    private Status standUp() {
+        if (fallPredictor.isLyingOnBack())
+            motion.setStandUpFromBack();
+        else
+            motion.setRollOverToBack();
+        robotIsWalking = false;
+        return Status.RUNNING;
+    }
+
+    private Status stop() {
+        if (!motion.ready())
+            motion.stopMotion();
+        robotIsWalking = false;
+        return Status.RUNNING;
+    }
+
+    private Status steerToBall() {
+        if (planPath() && path.getWaypointCount() > 1)
+            // walk to the next corner of the path around the other players
+            return walkTowards(getCornerAzimuth());
+        return walkTowards(ball.getPolar().getAzimuth());
+    }
 
-        final double TOLLERATED_DEVIATION = Math.toRadians(6);
-        final double TOLLERATED_DISTANCE = 0.7; // in meters
-
-        if (motion.ready()) 
-        {
-            double serverTime = percIn.getServerTime();
-            // if the robot has fallen down
-            if (percIn.getAcc().getZ() < 2) 
-            {
-                if (percIn.getAcc().getY() > 0) 
-                {
-                    motion.setStandUpFromBack();
-                } else 
-                {
-                    motion.setRollOverToBack();
-                }
-                nearForKick = false;
-            } // if the robot has the actual ball coordinates
-            else if ((serverTime - ball.getTimeStamp()) < lookTime) 
-            {
-                Vector3D ballCoords = ball.getCoords();
-//              log.log("2. robot has the actual ball coordinates, horizontal angle: " 
-//                + Math.toDegrees(ballCoords.getAlpha()) 
-//                + " distance: " + ballCoords.getNorm()) ;
-
-                // if the ball is not in front of the robot
-                if (Math.abs(ballCoords.getAlpha()) > TOLLERATED_DEVIATION) 
-                {
-//                  log.log("3. the ball is not in front of the robot. ") ;
-                    if (robotIsWalking) 
-                    {
-                        motion.setStopWalking_Plovdiv2014();
-                        robotIsWalking = false;
-                    } else {
-                        if (ballCoords.getAlpha() > 0) 
-                        {
-                            motion.setTurnLeftSmall();
-                        } else 
-                        {
-                            motion.setTurnRightSmall();
-                        }
-                    }
-                } // if the robot is far away from the ball
-                else if (ballCoords.getNorm() > TOLLERATED_DISTANCE) 
-                {
-//                  log.log("3. the robot is far away from the ball.");
-                    motion.setBadWalk_Plovdiv2014();
-                    robotIsWalking = true;
-                } // if the robot has the actual goal coordinates
-                else if ((serverTime - oppGoalLPost.getTimeStamp() < lookTime)
-                        && (serverTime - oppGoalRPost.getTimeStamp() < lookTime)) 
-                {
-//                  log.log("5. the robot has the actual goal coordinates");
-
-                    // if the ball does not lie between the robot and the goal
-                    if ((oppGoalLPost.getCoords().getAlpha() <= ballCoords.getAlpha())
-                            || (oppGoalRPost.getCoords().getAlpha() >= ballCoords.getAlpha())) 
-                    {
-                        log.log("6. the ball does not lie between the robot and the goal");
-                        if (robotIsWalking) {
-                            motion.setStopWalking_Plovdiv2014();
-                            robotIsWalking = false;
-                        } else {
-                            if (oppGoalLPost.getCoords().getAlpha() <= ballCoords.getAlpha()) 
-                            {
-                                motion.setSideStepLeft();
-                            } else {
-                                motion.setSideStepRight();
-                            }
-                        }
-                    } // if the robot is close to a good kick position
-                    else {
-                        if (nearForKick) {
-                            motion.setKick_Plovdiv2014();
-                            robotIsWalking = false;
-                            nearForKick = false;
-                        } else 
-                        {
-                            if (robotIsWalking) 
-                            {
-                                motion.setStopWalking_Plovdiv2014();
-                                robotIsWalking = false;
-                            } else 
-                            {
-                                motion.setWalkForward();
-                                robotIsWalking = true;  
-                                nearForKick = true;
-                            }
-                        }
-                    }
-                } // if the robot cannot sense the goal coordinates from its actual position
-                else 
-                {
-                    log.log("5. goal coordinates missing");
-                    System.out.println("....etTurnLef-13");
-                    motion.setTurnLeft();
-                }
-            } // if the robot cannot sense the ball coordinates from its actual position
-            else 
-            {
-                motion.setTurnLeft();
-                log.log("1. ball coordinates missing");
+    /**
+     * Internal method, states whether the path to the ball leads around other
+     * players. Near the ball the path is not used, there the approach to the
+     * ball is planned by the AnytimeActionPlanner.
+     */
+    private boolean isPathAroundPlayers() {
+        return ball.getPolar().getDistance() > TOLLERATED_DISTANCE
+                && planPath() && path.getWaypointCount() > 1;
+    }
+
+    /**
+     * Internal method, returns the azimuth of the next corner of the path in
+     * the local coordinates.
+     */
+    private double getCornerAzimuth() {
+        double theta = localization.getTheta();
+        double dx = path.getWaypointX(0) - localization.getX();
+        double dy = path.getWaypointY(0) - localization.getY();
+        return Math.atan2(-Math.sin(theta) * dx + Math.cos(theta) * dy,
+                Math.cos(theta) * dx + Math.sin(theta) * dy);
+    }
+
+    /**
+     * Internal method, walks in the direction of the passed azimuth and slows
+     * down near the ball.
+     */
+    private Status walkTowards(double azimuth) {
+        // 0 at TOLLERATED_DISTANCE, 1 from SLOW_DOWN_DISTANCE on
+        double far = Math.max(0, Math.min(1, 
+                (ball.getPolar().getDistance() - TOLLERATED_DISTANCE)
+                / (SLOW_DOWN_DISTANCE - TOLLERATED_DISTANCE)));
+        // walk forward only if the target is in front, and turn in place if
+        // it is beside or behind the robot
+        double forward = OmnidirectionalWalk.MAX_FORWARD 
+                * (0.3 + 0.7 * far) * Math.max(0, Math.cos(azimuth));
+        return step(forward, 0, TURN_GAIN * azimuth);
+    }
+
+    /**
+     * Internal method, updates the path to the ball with the recently seen
+     * players as obstacles. All positions are transformed from the local
+     * coordinates into the global coordinates of the localization.
+     * 
+     * @return False, if the global pose is not known well enough to plan.
+     */
+    private boolean planPath() {
+        if (localization.getDeviation() > MAX_PATH_DEVIATION)
+            return false;
+        double x = localization.getX(), y = localization.getY();
+        double cos = Math.cos(localization.getTheta());
+        double sin = Math.sin(localization.getTheta());
+        path.clearObstacles();
+        for (int key = 0; key < PlayerTracker.CAPACITY; key++)
+            if (playerTracker.isActive(key) && isSeen(playerTracker.getTime(key))) {
+                double px = playerTracker.getX(key), py = playerTracker.getY(key);
+                path.addObstacle(x + cos * px - sin * py, y + sin * px + cos * py);
             }
-        }
+        double bx = ball.getPolar().getX(), by = ball.getPolar().getY();
+        path.update(x, y, x + cos * bx - sin * by, y + sin * bx + cos * by);
+        // only the replanning costs, the waypoints change every cycle
+        if (++pathUpdates % PATH_LOG_INTERVAL == 0)
+            log.log(String.format("path planner: %d updates, mean %.3f ms, max %.3f ms, %d restarts",
+                    pathUpdates, path.getMeanUpdateNanos() / 1e6, 
+                    path.getMaxUpdateNanos() / 1e6, path.getRestartCount()));
+        return path.hasPath();
+    }
+
+    private Status turnLeft() {
+        motion.setTurnLeft();
+        robotIsWalking = false;
+        return Status.RUNNING;
+    }
+
+    private Status planAction() {
+        // the tracked ball with its velocity, else the last seen position
+        if (ballTracker.isValid())
+            planner.setBall(ballTracker.getX(), ballTracker.getY(), 
+                    ballTracker.getVx(), ballTracker.getVy());
+        else
+            planner.setBall(ball.getPolar().getX(), ball.getPolar().getY(), 0, 0);
+        planner.setGoal(oppGoalLPost.getPolar().getX(), oppGoalLPost.getPolar().getY(),
+                oppGoalRPost.getPolar().getX(), oppGoalRPost.getPolar().getY());
+        plan = planner.plan(PLANNING_SLICE);
+        return Status.SUCCESS;
+    }
+
+    private Status kick() {
+        motion.setKick_Plovdiv2014();
+        robotIsWalking = false;
+        return Status.SUCCESS;
+    }
+
+    /**
+     * Internal method, requests the next step of the walk with the passed
+     * velocity (see OmnidirectionalWalk.setCommand(...)).
+     */
+    private Status step(double forward, double sideways, double turn) {
+        walk.setCommand(forward, sideways, turn);
+        motion.setPoseSource(walk);
+        robotIsWalking = true;
+        return Status.RUNNING;
     }
 }
@@ -13,19 +13,63 @@ package examples.agentSoccerTeam;
 
 import agentIO.PerceptorInput;
 import keyframeMotion.KeyframeMotion;
-import org.apache.commons.math3.geometry.euclidean.threed.Vector3D;
+import keyframeMotion.util.KeyframeFileHandler;
+import keyframeMotion.util.KeyframeSequence;
+import keyframeMotion.util.KeyframeTransforms;
+import keyframeMotion.util.MotionPriority;
+import localFieldView.BallInterceptPredictor;
 import util.Logger;
 
 /**
     * This class implements the decisions of a primitive goal keeper.  
     * The Goalie walks to the ball if it becomes near. 
     * No return to the goal.
+    * The goalie uses the ball position predicted by the ball tracker for the
+    * time, when the chosen move takes effect, so it reacts earlier to a 
+    * rolling ball.
+    * A BallInterceptPredictor predicts in every cycle, where and when the 
+    * ball crosses the line through the goalie. If the ball will pass beside
+    * the goalie, it steps sideways, if the side steps take not too long, or 
+    * it falls down to block the ball, when the fall ends shortly before the 
+    * ball arrives. The durations of the motions are the sums of the 
+    * transition times of their keyframe files. The ball cannot be seen at 
+    * the feet of the goalie, so the predictions are evaluated at a line 
+    * 0.5 m in front of it. The errors are logged, when the ball crosses this 
+    * line, and a summary with the missed predictions every 10 seconds.
  */
 public class SimpleGoalie extends Role {
 
+    private static final double DEFENSE_HORIZON = 4; // in seconds
+    private static final double BODY_HALF_WIDTH = 0.1; // in meters
+    private static final double SIDE_STEP_WIDTH = 0.05; // in meters
+    // the lying robot blocks the ball within this distance with its arms
+    private static final double FALL_HALF_WIDTH = 0.25; // in meters
+    private static final double FALL_MARGIN = 0.2; // in seconds
+    // the predictions are evaluated at this line, where the ball is visible
+    private static final double EVALUATION_LINE = 0.5; // in meters
+    private static final double SUMMARY_INTERVAL = 10; // in seconds
+
+    private final BallInterceptPredictor predictor;
+    private final double sideStepTime;
+    private final double fallTime;
+    private double diveEnd = 0; // server time
+    private double nextSummary = 0; // server time
+
     public SimpleGoalie(KeyframeMotion motion, PerceptorInput percIn, Logger log) {
 
         super(motion, percIn, log);
+        predictor = new BallInterceptPredictor(history, 0, EVALUATION_LINE);
+        sideStepTime = getDuration("side-step-left-nika.txt");
+        fallTime = getDuration("fall_forward.txt");
+    }
+
+    /**
+     * Returns the predictor of the ball crossing, e.g. to print its accuracy.
+     * 
+     * @return The predictor, updated by decide().
+     */
+    public BallInterceptPredictor getPredictor() {
+        return predictor;
     }
 
     @Override
@@ -33,40 +77,116 @@ public class SimpleGoalie extends Role {
 
         double TOLLERATED_DEVIATION = Math.toRadians(6);
         double LIMIT_FOR_BALL = 2; // in meters
+        double REACTION_TIME = 0.5; // in seconds
 
-        if (motion.ready()) {
+        predictor.update(percIn.getServerTime());
+        if (predictor.isEvaluated()) {
+            log.log(predictor.toString());
+        }
+        if (percIn.getServerTime() >= nextSummary) {
+            nextSummary = percIn.getServerTime() + SUMMARY_INTERVAL;
+            if (predictor.getEvaluationCount() + predictor.getMissedCount() > 0)
+                log.log(String.format("goalie predictions: %d evaluated, %d missed, "
+                        + "mean error %.2f m %.2f s", predictor.getEvaluationCount(),
+                        predictor.getMissedCount(), predictor.getMeanPositionError(),
+                        predictor.getMeanTimeError()));
+        }
+        // a dive goes on until the robot lies on the ground, at most twice
+        // as long as the fall motion
+        if (percIn.getServerTime() < diveEnd && !fallPredictor.isLying()) {
+            return;
+        }
+
+        // if the robot is falling, the actual motion is stopped
+        if (fallPredictor.isFallPredicted()) {
+            if (!motion.ready())
+                motion.stopMotion();
+            robotIsWalking = false;
+        } // if the ball will cross the line through the goalie soon
+        else if (!fallPredictor.isLying() && predictor.isCrossing()
+                && predictor.getTimeToCross() < DEFENSE_HORIZON) {
+            defend();
+        } else if (motion.ready()) {
 
             double serverTime = percIn.getServerTime();
 
             // if the robot has fallen down
-            if (percIn.getAcc().getZ() < 2) {
-                if (percIn.getAcc().getY() > 0) {
+            if (fallPredictor.isLying()) {
+                if (fallPredictor.isLyingOnBack()) {
                     motion.setStandUpFromBack();
                 } else {
                     motion.setRollOverToBack();
                 }
             } // if the robot has the actual ball coordinates
-            else if ((serverTime - ball.getTimeStamp()) < lookTime) {
+            else if ((serverTime - ball.getTimeStamp()) < lookTime 
+                    && ballTracker.isValid()) {
 
-                Vector3D ballCoords = ball.getCoords();
+                double ballAzimuth = ballTracker.predictAzimuth(serverTime + REACTION_TIME);
+                double ballDistance = ballTracker.predictDistance(serverTime + REACTION_TIME);
                 // if the ball is not in front of the robot
-                if (Math.abs(ballCoords.getAlpha()) > TOLLERATED_DEVIATION) {
+                if (Math.abs(ballAzimuth) > TOLLERATED_DEVIATION) {
                     if (robotIsWalking) {
                         motion.setStopWalking();
                         robotIsWalking = false;
                     } else {
-                        if (ballCoords.getAlpha() > 0) {
+                        if (ballAzimuth > 0) {
                             motion.setTurnLeftSmall();
                         } else {
                             motion.setTurnRightSmall();
                         }
                     }
                 } // if the ball is close to the robot
-                else if (ballCoords.getNorm() < LIMIT_FOR_BALL) {
+                else if (ballDistance < LIMIT_FOR_BALL) {
                     motion.setWalkForward();
                     robotIsWalking = true;
                 }
             }
         }
     }
+
+    /**
+     * Internal method, chooses between staying, stepping sideways and falling
+     * from the predicted crossing of the ball.
+     */
+    private void defend() {
+        double y = predictor.getCrossingY();
+        double time = predictor.getTimeToCross();
+        double offset = Math.abs(y) - BODY_HALF_WIDTH;
+        int steps = (int) Math.ceil(offset / SIDE_STEP_WIDTH);
+
+        if (offset > 0 && steps * sideStepTime <= time) {
+            // step sideways, the steps end before the ball arrives
+            if (motion.ready()) {
+                if (robotIsWalking) {
+                    motion.setStopWalking();
+                    robotIsWalking = false;
+                } else if (y > 0) {
+                    motion.setSideStepLeft();
+                } else {
+                    motion.setSideStepRight();
+                }
+            }
+        } else if (offset > 0 && Math.abs(y) <= FALL_HALF_WIDTH) {
+            // fall, so that the robot lies shortly before the ball arrives
+            if (time <= fallTime + FALL_MARGIN) {
+                log.log(String.format("goalie falls, ball crosses at %.2f m in %.2f s",
+                        y, time));
+                motion.withPriority(MotionPriority.PREEMPT).setFallForward();
+                robotIsWalking = false;
+                diveEnd = percIn.getServerTime() + 2 * fallTime;
+            }
+        } else if (robotIsWalking && motion.ready()) {
+            // stay: the ball hits the robot or cannot be reached
+            motion.setStopWalking();
+            robotIsWalking = false;
+        }
+    }
+
+    /**
+     * Internal method, returns the duration of a keyframe sequence in seconds.
+     */
+    private static double getDuration(String fileName) {
+        KeyframeSequence ks = KeyframeFileHandler.getSequenceFromFile(fileName);
+        return KeyframeTransforms.getDuration(ks) / 1000.0;
+    }
 }
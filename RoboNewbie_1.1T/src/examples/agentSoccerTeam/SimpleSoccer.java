@@ -13,8 +13,8 @@ package examples.agentSoccerTeam;
 
 import agentIO.PerceptorInput;
 import keyframeMotion.KeyframeMotion;
-import org.apache.commons.math3.geometry.euclidean.threed.Vector3D;
 import util.Logger;
+import util.PolarCoords;
 
 /**
  * This class replicates the decision in the introductory example Agent_simpleSoccer. 
@@ -66,26 +66,26 @@ public class SimpleSoccer extends Role {
             } // if the robot has the actual ball coordinates
             else if ((serverTime - ball.getTimeStamp()) < lookTime) {
 
-                Vector3D ballCoords = ball.getCoords();
+                PolarCoords ballCoords = ball.getPolar();
 //        log.log("2. robot has the actual ball coordinates, horizontal angle: " 
-//                + Math.toDegrees(ballCoords.getAlpha()) 
-//                + " distance: " + ballCoords.getNorm()) ;
+//                + Math.toDegrees(ballCoords.getAzimuth()) 
+//                + " distance: " + ballCoords.getDistance()) ;
 
                 // if the ball is not in front of the robot
-                if (Math.abs(ballCoords.getAlpha()) > TOLLERATED_DEVIATION) {
+                if (Math.abs(ballCoords.getAzimuth()) > TOLLERATED_DEVIATION) {
 //          log.log("3. the ball is not in front of the robot. ") ;
                     if (robotIsWalking) {
                         motion.setStopWalking();
                         robotIsWalking = false;
                     } else {
-                        if (ballCoords.getAlpha() > 0) {
+                        if (ballCoords.getAzimuth() > 0) {
                             motion.setTurnLeftSmall();
                         } else {
                             motion.setTurnRightSmall();
                         }
                     }
                 } // if the robot is far away from the ball
-                else if (ballCoords.getNorm() > TOLLERATED_DISTANCE) {
+                else if (ballCoords.getDistance() > TOLLERATED_DISTANCE) {
 //          log.log("3. the robot is far away from the ball.");
                     motion.setWalkForward();
                     robotIsWalking = true;
@@ -95,14 +95,14 @@ public class SimpleSoccer extends Role {
 //          log.log("5. the robot has the actual goal coordinates");
 
                     // if the ball does not lie between the robot and the goal
-                    if ((oppGoalLPost.getCoords().getAlpha() <= ballCoords.getAlpha())
-                            || (oppGoalRPost.getCoords().getAlpha() >= ballCoords.getAlpha())) {
+                    if ((oppGoalLPost.getPolar().getAzimuth() <= ballCoords.getAzimuth())
+                            || (oppGoalRPost.getPolar().getAzimuth() >= ballCoords.getAzimuth())) {
 //            log.log("6. the ball does not lie between the robot and the goal");
                         if (robotIsWalking) {
                             motion.setStopWalking();
                             robotIsWalking = false;
                         } else {
-                            if (oppGoalLPost.getCoords().getAlpha() <= ballCoords.getAlpha()) {
+                            if (oppGoalLPost.getPolar().getAzimuth() <= ballCoords.getAzimuth()) {
                                 motion.setSideStepLeft();
                             } else {
                                 motion.setSideStepRight();
@@ -13,8 +13,10 @@ package examples.agentSoccerTeam;
 
 import agentIO.PerceptorInput;
 import keyframeMotion.KeyframeMotion;
-import org.apache.commons.math3.geometry.euclidean.threed.Vector3D;
+import planning.KickApproachTable;
+import planning.KickApproachTable.ApproachMotion;
 import util.Logger;
+import util.PolarCoords;
 
 /**
    * This class implements the decisions of a player.
@@ -25,9 +27,14 @@ import util.Logger;
    * won the Rijeka course competition 2013 with 57 sec to score.  
    * The class uses the keyframe StopWalking_Plovdiv2014.
    * The program needs some calibrations ...
+   * Near the ball with the goal in view, the motions of the approach to the 
+   * kick are looked up in precomputed tables (see KickApproachTable), so the
+   * robot does not align itself by trial and error.
  */
 public class SimpleSoccer_withKick extends Role{
    
+    private final KickApproachTable approachTable = new KickApproachTable();
+    
     public SimpleSoccer_withKick(KeyframeMotion motion, PerceptorInput percIn, Logger log){ 
         
       super(motion, percIn, log); 
@@ -53,26 +60,31 @@ public class SimpleSoccer_withKick extends Role{
             } // if the robot has the actual ball coordinates
             else if ((serverTime - ball.getTimeStamp()) < lookTime) {
 
-                Vector3D ballCoords = ball.getCoords();
+                PolarCoords ballCoords = ball.getPolar();
 //        log.log("2. robot has the actual ball coordinates, horizontal angle: " 
-//                + Math.toDegrees(ballCoords.getAlpha()) 
-//                + " distance: " + ballCoords.getNorm()) ;
+//                + Math.toDegrees(ballCoords.getAzimuth()) 
+//                + " distance: " + ballCoords.getDistance()) ;
 
-                // if the ball is not in front of the robot
-                if (Math.abs(ballCoords.getAlpha()) > TOLLERATED_DEVIATION) {
+                // if the ball is near and the goal is seen, the approach
+                // tables know the next motion
+                ApproachMotion approach = lookupApproach(serverTime, ballCoords);
+                if (approach != ApproachMotion.NONE) {
+                    approach(approach);
+                } // if the ball is not in front of the robot
+                else if (Math.abs(ballCoords.getAzimuth()) > TOLLERATED_DEVIATION) {
 //          log.log("3. the ball is not in front of the robot. ") ;
                     if (robotIsWalking) {
                         motion.setStopWalking_Plovdiv2014();
                         robotIsWalking = false;
                     } else {
-                        if (ballCoords.getAlpha() > 0) {
+                        if (ballCoords.getAzimuth() > 0) {
                             motion.setTurnLeftSmall();
                         } else {
                             motion.setTurnRightSmall();
                         }
                     }
                 } // if the robot is far away from the ball
-                else if (ballCoords.getNorm() > TOLLERATED_DISTANCE) {
+                else if (ballCoords.getDistance() > TOLLERATED_DISTANCE) {
 //          log.log("3. the robot is far away from the ball.");        
                     motion.setWalkForward_Rijeka2013();
                     robotIsWalking = true;
@@ -82,14 +94,14 @@ public class SimpleSoccer_withKick extends Role{
 //          log.log("5. the robot has the actual goal coordinates");
 
                     // if the ball does not lie between the robot and the goal
-                    if ((oppGoalLPost.getCoords().getAlpha() <= ballCoords.getAlpha())
-                            || (oppGoalRPost.getCoords().getAlpha() >= ballCoords.getAlpha())) {
+                    if ((oppGoalLPost.getPolar().getAzimuth() <= ballCoords.getAzimuth())
+                            || (oppGoalRPost.getPolar().getAzimuth() >= ballCoords.getAzimuth())) {
 //            log.log("6. the ball does not lie between the robot and the goal");
                         if (robotIsWalking) {
                             motion.setStopWalking_Plovdiv2014();
                             robotIsWalking = false;
                         } else {
-                            if (oppGoalLPost.getCoords().getAlpha() <= ballCoords.getAlpha()) {
+                            if (oppGoalLPost.getPolar().getAzimuth() <= ballCoords.getAzimuth()) {
                                 motion.setSideStepLeft();
                             } else {
                                 motion.setSideStepRight();
@@ -114,4 +126,51 @@ public class SimpleSoccer_withKick extends Role{
         }
     }
 
+    /**
+     * Internal method, looks up the next motion of the approach to the kick.
+     * 
+     * @return NONE, if the goal is not seen, or if the tables do not cover 
+     * the situation.
+     */
+    private ApproachMotion lookupApproach(double serverTime, PolarCoords ballCoords) {
+        if ((serverTime - oppGoalLPost.getTimeStamp() >= lookTime)
+                || (serverTime - oppGoalRPost.getTimeStamp() >= lookTime)) {
+            return ApproachMotion.NONE;
+        }
+        double goalX = (oppGoalLPost.getPolar().getX() + oppGoalRPost.getPolar().getX()) / 2;
+        double goalY = (oppGoalLPost.getPolar().getY() + oppGoalRPost.getPolar().getY()) / 2;
+        return approachTable.lookup(ballCoords.getX(), ballCoords.getY(),
+                Math.atan2(goalY, goalX), Math.hypot(goalX, goalY));
+    }
+
+    /**
+     * Internal method, starts a motion of the approach. A walk is stopped 
+     * first, if the next motion is no walk.
+     */
+    private void approach(ApproachMotion approach) {
+        if (robotIsWalking && approach != ApproachMotion.WALK_FORWARD) {
+            motion.setStopWalking_Plovdiv2014();
+            robotIsWalking = false;
+            return;
+        }
+        switch (approach) {
+            case TURN_LEFT -> motion.setTurnLeft();
+            case TURN_RIGHT -> motion.setTurnRight();
+            case TURN_LEFT_SMALL -> motion.setTurnLeftSmall();
+            case TURN_RIGHT_SMALL -> motion.setTurnRightSmall();
+            case SIDE_STEP_LEFT -> motion.setSideStepLeft();
+            case SIDE_STEP_RIGHT -> motion.setSideStepRight();
+            case WALK_FORWARD -> {
+                motion.setWalkForward_Rijeka2013();
+                robotIsWalking = true;
+            }
+            case KICK_RIJEKA2013 -> {
+                motion.setKick_Rijeka2013();
+                robotIsWalking = true;
+            }
+            case KICK_PLOVDIV2014 -> motion.setKick_Plovdiv2014();
+            default -> {
+            }
+        }
+    }
 }
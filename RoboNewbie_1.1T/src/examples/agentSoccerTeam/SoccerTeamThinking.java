@@ -11,13 +11,20 @@ package examples.agentSoccerTeam;
 
 import agentIO.PerceptorInput;
 import agentIO.ServerCommunication;
+import bodyModel.BalanceModel;
+import bodyModel.FallPredictor;
 import directMotion.LookAroundMotion;
-import java.util.HashMap;
+import examples.agentSoccerTeam.behaviorTree.BehaviorTree;
+import java.util.EnumMap;
 import keyframeMotion.KeyframeMotion;
 import localFieldView.BallModel;
+import localFieldView.BallTracker;
 import localFieldView.GoalPostModel;
 import localFieldView.FlagModel;
 import localFieldView.LocalFieldView;
+import localFieldView.PerceptionHistory;
+import localFieldView.PlayerTracker;
+import localization.SelfLocalization;
 import util.FieldConsts;
 import util.FieldConsts.GoalPostID;
 import util.FieldConsts.FlagID;
@@ -48,6 +55,12 @@ public class SoccerTeamThinking {
     LocalFieldView localView;
     KeyframeMotion motion;
     static BallModel ball;
+    static BallTracker ballTracker;
+    static PerceptionHistory history;
+    static FallPredictor fallPredictor;
+    static BalanceModel balance;
+    static SelfLocalization localization;
+    static PlayerTracker playerTracker;
     static GoalPostModel oppGoalLPost, oppGoalRPost, ownGoalLPost, ownGoalRPost;
     static FlagModel oppFlagRight, oppFlagLeft, ownFlagRight, ownFlagLeft;
     static String playerNumber;
@@ -83,15 +96,38 @@ public class SoccerTeamThinking {
          * the ball and the goals for orientation.
          */
         ball = this.localView.getBall();
+        history = this.localView.getHistory();
+        ballTracker = this.localView.getBallTracker();
+        /**
+         * The fall predictor is updated in every cycle by decide(), before
+         * the decide method of the role is called.
+         */
+        fallPredictor = new FallPredictor(percIn, log);
+        /**
+         * The balance model (center of mass and support polygon) is updated
+         * in every cycle, too, it shares the kinematics of the local view.
+         */
+        balance = new BalanceModel(percIn, this.localView.getKinematics());
+        /**
+         * The global pose is needed to plan paths around the other players
+         * (see planning.PathPlanner). It starts from the beam pose, which is
+         * given in the coordinates of the own half, so it is mirrored for
+         * the team on the right side.
+         */
+        playerTracker = this.localView.getPlayerTracker();
+        localization = new SelfLocalization(this.localView, this.motion);
+        double side = sc.teamSide.equals("left") ? 1 : -1;
+        localization.setPose(side * sc.finalBeamCoordsX, side * sc.finalBeamCoordsY,
+                Math.toRadians(sc.finalBeamCoordsRot) + (side > 0 ? 0 : Math.PI));
 
-        HashMap<GoalPostID, GoalPostModel> goalPosts = this.localView.getGoals();
+        EnumMap<GoalPostID, GoalPostModel> goalPosts = this.localView.getGoals();
         /**
          * The opponent goal is the right one (with oppGoalLPost = G1R) if the
          * team starts from the left side. It is the left one (with oppGoalLPost
          * = G2R from the players view) if the team starts on the right side.
          * The teamside is inferred after initialization in ServerCommunication.
          */
-        HashMap<FieldConsts.FlagID, FlagModel> flags = this.localView.getFlags();
+        EnumMap<FieldConsts.FlagID, FlagModel> flags = this.localView.getFlags();
         /**
          * Like the goal posts, the flags depend on the side.
          */
@@ -155,12 +191,25 @@ public class SoccerTeamThinking {
         }
     }
 
+    /**
+     * Returns the behavior tree of the role, e.g. to print its trace and
+     * statistics.
+     *
+     * @return The behavior tree, or null if the role does not use one.
+     */
+    public BehaviorTree getBehaviorTree() {
+        return role2 != null ? role2.getBehaviorTree() : null;
+    }
+
     /**
      * To use the decide procedure for number n, the related
      * role for player n must have been declared and specified above. 
      * Instead you can use the default role.
      */
     public void decide() {
+        fallPredictor.update();
+        balance.update();
+        localization.update();
         switch (playerNumber) {
             case "1":
                 role1.decide();
@@ -0,0 +1,21 @@
+/*******************************************************************************
+*  RoboNewbie
+* NaoTeam Humboldt
+* @version 1.1
+*******************************************************************************/
+
+package examples.agentSoccerTeam.behaviorTree;
+
+/**
+ * Leaf of a BehaviorTree, which acts, e.g. chooses the next movement.
+ */
+@FunctionalInterface
+public interface Action {
+
+    /**
+     * Executes the action for the actual server cycle.
+     * 
+     * @return Result of the action, cannot be null.
+     */
+    Status run();
+}
@@ -0,0 +1,386 @@
+/*******************************************************************************
+*  RoboNewbie
+* NaoTeam Humboldt
+* @version 1.1
+*******************************************************************************/
+
+package examples.agentSoccerTeam.behaviorTree;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Behavior tree for the decide methods of the roles.
+ *
+ * A tree consists of composite nodes and leaves:
+ * - A sequence ticks its children from the first to the last one and stops
+ *   at the first child, which does not succeed. It returns the result of this
+ *   child, or SUCCESS, if all children succeed.
+ * - A selector ticks its children from the first to the last one and stops
+ *   at the first child, which does not fail. It returns the result of this
+ *   child, or FAILURE, if all children fail.
+ * - A Condition succeeds or fails.
+ * - An Action acts and returns its Status.
+ * The tree is ticked from the root in every server cycle (reactive), so a
+ * condition with a higher priority, e.g. a fall, interrupts the branch,
+ * which was active in the cycle before.
+ *
+ * The tree is described with a Builder and compiled into flat arrays in
+ * depth-first order: the children of a composite node follow it, and for
+ * every node the index behind its subtree is stored, so a composite node
+ * jumps from one child to the next one. Ticking the tree does not create any
+ * objects, if its conditions and actions do not. Example:
+ * <pre>
+ * tree = new BehaviorTree.Builder()
+ *     .selector("root")
+ *         .sequence("stand up")
+ *             .condition("lying", () -&gt; fallPredictor.isLying())
+ *             .action("stand up", () -&gt; standUp())
+ *         .end()
+ *         .action("play", () -&gt; play())
+ *     .end()
+ *     .build();
+ * </pre>
+ *
+ * Every node has a tick time budget (see Builder.budget(...)). The time of
+ * every tick of a node is measured, the ticks exceeding the budget are
+ * counted, and the longest time is stored.
+ *
+ * The ticked nodes with their results are traced in a ring buffer of fixed
+ * size, so the path through the tree in the last cycles can be printed for
+ * debugging (see traceToString()). The strings are only built on request.
+ */
+public class BehaviorTree {
+
+    private static final int SEQUENCE = 0;
+    private static final int SELECTOR = 1;
+    private static final int CONDITION = 2;
+    private static final int ACTION = 3;
+
+    /**
+     * Default tick time budget of a node in nanoseconds.
+     */
+    public static final long DEFAULT_BUDGET = 200000;
+    /**
+     * Default number of entries in the trace buffer.
+     */
+    public static final int DEFAULT_TRACE_SIZE = 256;
+
+    private static final Status[] STATUS = Status.values();
+
+    private final String[] names;
+    private final int[] kinds;
+    private final int[] depths;
+    private final int[] ends;
+    private final Condition[] conditions;
+    private final Action[] actions;
+    private final long[] budgets;
+    private final int[] overruns;
+    private final long[] maxTimes;
+
+    private final int[] traceNodes;
+    private final int[] traceStatus;
+    private final long[] traceTicks;
+    private int traceNext = 0;
+    private int traceCount = 0;
+    private long tickCount = 0;
+
+    /**
+     * Internal constructor, used by the Builder.
+     */
+    private BehaviorTree(Builder builder, int traceSize) {
+        int n = builder.names.size();
+        names = builder.names.toArray(new String[n]);
+        conditions = builder.conditions.toArray(new Condition[n]);
+        actions = builder.actions.toArray(new Action[n]);
+        kinds = new int[n];
+        depths = new int[n];
+        ends = new int[n];
+        budgets = new long[n];
+        for (int i = 0; i < n; i++) {
+            kinds[i] = builder.kinds.get(i);
+            depths[i] = builder.depths.get(i);
+            ends[i] = builder.ends.get(i);
+            budgets[i] = builder.budgets.get(i);
+        }
+        overruns = new int[n];
+        maxTimes = new long[n];
+        traceNodes = new int[traceSize];
+        traceStatus = new int[traceSize];
+        traceTicks = new long[traceSize];
+    }
+
+    /**
+     * Ticks the tree from the root, should be called once in every server
+     * cycle.
+     *
+     * @return Result of the root node.
+     */
+    public Status tick() {
+        tickCount++;
+        return tick(0);
+    }
+
+    /**
+     * Returns the number of nodes of the tree.
+     *
+     * @return Number of nodes, the root has the index 0.
+     */
+    public int getNodeCount() {
+        return names.length;
+    }
+
+    /**
+     * Returns the name of a node.
+     *
+     * @param node Index of the node in depth-first order.
+     * @return Name passed to the Builder.
+     */
+    public String getName(int node) {
+        return names[node];
+    }
+
+    /**
+     * Returns the number of ticks of a node, which exceeded its budget.
+     *
+     * @param node Index of the node in depth-first order.
+     * @return Number of ticks since the construction or resetStatistics().
+     */
+    public int getOverrunCount(int node) {
+        return overruns[node];
+    }
+
+    /**
+     * Returns the longest tick time of a node.
+     *
+     * @param node Index of the node in depth-first order.
+     * @return Time in nanoseconds since the construction or resetStatistics().
+     */
+    public long getMaxTime(int node) {
+        return maxTimes[node];
+    }
+
+    /**
+     * Resets the overrun counters and the longest tick times.
+     */
+    public void resetStatistics() {
+        for (int i = 0; i < names.length; i++) {
+            overruns[i] = 0;
+            maxTimes[i] = 0;
+        }
+    }
+
+    /**
+     * Returns the nodes, which exceeded their budget, with the number of
+     * overruns and their longest tick time.
+     *
+     * @return One line per node with overruns.
+     */
+    public String statisticsToString() {
+        StringBuilder builder = new StringBuilder("BehaviorTree budget overruns:");
+        for (int i = 0; i < names.length; i++)
+            if (overruns[i] > 0)
+                builder.append(String.format("%n  %s: %d overruns, max %.3f ms",
+                        names[i], overruns[i], maxTimes[i] / 1e6));
+        return builder.toString();
+    }
+
+    /**
+     * Returns the traced nodes of the last cycles.
+     *
+     * The nodes are listed in the order, in which their ticks ended, so the
+     * children of a composite node are listed before it.
+     *
+     * @return One line per traced node with the tick number, the node
+     * (indented by its depth) and its result.
+     */
+    public String traceToString() {
+        StringBuilder builder = new StringBuilder();
+        int first = (traceNext - traceCount + traceNodes.length) % traceNodes.length;
+        for (int k = 0; k < traceCount; k++) {
+            int i = (first + k) % traceNodes.length;
+            int node = traceNodes[i];
+            builder.append(traceTicks[i]).append(' ');
+            for (int d = 0; d < depths[node]; d++)
+                builder.append("  ");
+            builder.append(names[node]).append(": ")
+                    .append(STATUS[traceStatus[i]]).append(System.lineSeparator());
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Internal method, ticks a node and its subtree.
+     */
+    private Status tick(int node) {
+        long start = System.nanoTime();
+        Status status;
+        switch (kinds[node]) {
+            case SEQUENCE:
+                status = Status.SUCCESS;
+                for (int c = node + 1; c < ends[node] && status == Status.SUCCESS; c = ends[c])
+                    status = tick(c);
+                break;
+            case SELECTOR:
+                status = Status.FAILURE;
+                for (int c = node + 1; c < ends[node] && status == Status.FAILURE; c = ends[c])
+                    status = tick(c);
+                break;
+            case CONDITION:
+                status = conditions[node].check() ? Status.SUCCESS : Status.FAILURE;
+                break;
+            default:
+                status = actions[node].run();
+        }
+        long time = System.nanoTime() - start;
+        if (time > budgets[node])
+            overruns[node]++;
+        if (time > maxTimes[node])
+            maxTimes[node] = time;
+        trace(node, status);
+        return status;
+    }
+
+    /**
+     * Internal method, stores a ticked node in the trace buffer.
+     */
+    private void trace(int node, Status status) {
+        traceNodes[traceNext] = node;
+        traceStatus[traceNext] = status.ordinal();
+        traceTicks[traceNext] = tickCount;
+        traceNext = (traceNext + 1) % traceNodes.length;
+        if (traceCount < traceNodes.length)
+            traceCount++;
+    }
+
+    /**
+     * Describes a behavior tree and compiles it.
+     *
+     * Composite nodes are opened by sequence(...) or selector(...) and closed
+     * by end(), all nodes added in between are their children.
+     */
+    public static class Builder {
+
+        private final List<String> names = new ArrayList<>();
+        private final List<Integer> kinds = new ArrayList<>();
+        private final List<Integer> depths = new ArrayList<>();
+        private final List<Integer> ends = new ArrayList<>();
+        private final List<Condition> conditions = new ArrayList<>();
+        private final List<Action> actions = new ArrayList<>();
+        private final List<Long> budgets = new ArrayList<>();
+        private final Deque<Integer> open = new ArrayDeque<>();
+
+        /**
+         * Opens a sequence node.
+         *
+         * @param name Name of the node, used in the trace.
+         * @return This builder.
+         */
+        public Builder sequence(String name) {
+            open.push(add(name, SEQUENCE, null, null));
+            return this;
+        }
+
+        /**
+         * Opens a selector node.
+         *
+         * @param name Name of the node, used in the trace.
+         * @return This builder.
+         */
+        public Builder selector(String name) {
+            open.push(add(name, SELECTOR, null, null));
+            return this;
+        }
+
+        /**
+         * Adds a condition leaf.
+         *
+         * @param name Name of the node, used in the trace.
+         * @param condition Checked condition, cannot be null.
+         * @return This builder.
+         */
+        public Builder condition(String name, Condition condition) {
+            add(name, CONDITION, condition, null);
+            return this;
+        }
+
+        /**
+         * Adds an action leaf.
+         *
+         * @param name Name of the node, used in the trace.
+         * @param action Executed action, cannot be null.
+         * @return This builder.
+         */
+        public Builder action(String name, Action action) {
+            add(name, ACTION, null, action);
+            return this;
+        }
+
+        /**
+         * Sets the tick time budget of the last added node, the default is
+         * DEFAULT_BUDGET.
+         *
+         * @param nanos Budget in nanoseconds.
+         * @return This builder.
+         */
+        public Builder budget(long nanos) {
+            budgets.set(budgets.size() - 1, nanos);
+            return this;
+        }
+
+        /**
+         * Closes the last opened composite node.
+         *
+         * @return This builder.
+         * @throws IllegalStateException If there is no open composite node.
+         */
+        public Builder end() {
+            if (open.isEmpty())
+                throw new IllegalStateException("end() without open node");
+            ends.set(open.pop(), names.size());
+            return this;
+        }
+
+        /**
+         * Compiles the tree with a trace buffer of the default size.
+         *
+         * @return The compiled tree.
+         * @throws IllegalStateException If the tree is empty, a composite
+         * node is not closed or there is more than one root.
+         */
+        public BehaviorTree build() {
+            return build(DEFAULT_TRACE_SIZE);
+        }
+
+        /**
+         * Compiles the tree.
+         *
+         * @param traceSize Number of entries in the trace buffer, at least 1.
+         * @return The compiled tree.
+         * @throws IllegalStateException If the tree is empty, a composite
+         * node is not closed or there is more than one root.
+         */
+        public BehaviorTree build(int traceSize) {
+            if (names.isEmpty() || !open.isEmpty() || ends.get(0) != names.size())
+                throw new IllegalStateException("incomplete behavior tree");
+            return new BehaviorTree(this, Math.max(1, traceSize));
+        }
+
+        /**
+         * Internal method, adds a node as a child of the open composite node.
+         */
+        private int add(String name, int kind, Condition condition, Action action) {
+            int index = names.size();
+            names.add(name);
+            kinds.add(kind);
+            depths.add(open.size());
+            ends.add(index + 1);
+            conditions.add(condition);
+            actions.add(action);
+            budgets.add(DEFAULT_BUDGET);
+            return index;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+/*******************************************************************************
+*  RoboNewbie
+* NaoTeam Humboldt
+* @version 1.1
+*******************************************************************************/
+
+package examples.agentSoccerTeam.behaviorTree;
+
+/**
+ * Leaf of a BehaviorTree, which checks a condition, e.g. whether the ball is
+ * seen. A condition succeeds, if check() returns true, and fails otherwise.
+ * 
+ * Conditions should only read the state of the agent and not change it.
+ */
+@FunctionalInterface
+public interface Condition {
+
+    /**
+     * Checks the condition.
+     * 
+     * @return True, if the condition holds.
+     */
+    boolean check();
+}
@@ -0,0 +1,19 @@
+/*******************************************************************************
+*  RoboNewbie
+* NaoTeam Humboldt
+* @version 1.1
+*******************************************************************************/
+
+package examples.agentSoccerTeam.behaviorTree;
+
+/**
+ * Result of ticking a node of a BehaviorTree.
+ */
+public enum Status {
+    /** The node has reached its goal. */
+    SUCCESS,
+    /** The node cannot reach its goal. */
+    FAILURE,
+    /** The node works on its goal, e.g. a movement is not finished yet. */
+    RUNNING
+}
@@ -12,9 +12,18 @@ package keyframeMotion;
 
 import agentIO.EffectorOutput;
 import agentIO.PerceptorInput;
-import keyframeMotion.util.Keyframe;
+import keyframeMotion.util.ControlMode;
+import keyframeMotion.util.Interpolation;
 import keyframeMotion.util.KeyframeFileHandler;
 import keyframeMotion.util.KeyframeSequence;
+import keyframeMotion.util.MotionPriority;
+import keyframeMotion.util.MotionQueue;
+import keyframeMotion.util.MotionRecorder;
+import keyframeMotion.util.PDJointController;
+import keyframeMotion.util.PoseSource;
+import keyframeMotion.util.ScaledSequenceCache;
+import keyframeMotion.util.TrackingStatistics;
+import keyframeMotion.util.TrajectoryTable;
 import util.Logger;
 import util.RobotConsts;
 
@@ -29,14 +38,50 @@ import util.RobotConsts;
  * 1) Method ready(): Before a movement can be chosen, call ready() to check,
  * if the robot currently executes a move.
  * 2) Methods set...(): Choose a movement with one of the set...() methods 
- * (like setWalkForward()). This can be done only after the ready()-call, 
- * because otherwise the current movement would be aborted suddenly, so for 
- * example the robot would fall down while doing a walking step.
+ * (like setWalkForward()). If the robot currently executes a move, the new
+ * move is queued and started, when the current move comes to its end (the 
+ * last cycles of both moves are cross-faded). So the next move can already be 
+ * chosen, when readyForNext() returns true, that is shortly before the end of
+ * the current move. 
+ * The moves for standing up (setStandUpFromBack(), setRollOverToBack()) have
+ * the priority MotionPriority.FALL_RECOVERY: they interrupt every other move
+ * and drop all queued moves. Other moves can interrupt the current move by 
+ * calling withPriority(MotionPriority.PREEMPT) right before the set...() 
+ * method, e.g. motion.withPriority(MotionPriority.PREEMPT).setTurnLeft(); 
  * The setTest() method is a specific feature for testing new keyframe 
  * sequences. 
  * 3) At any time the method setLogging(...) can be executed to turn the 
  * logging of chosen moves on or off. If the logging is turned on, every time, 
  * when a move is set, the name of the move is logged. 
+ * 4) At any time the method setInterpolation(...) can be executed to choose 
+ * how the joints move between two keyframes (linear, cubic Hermite or minimum
+ * jerk). The change affects the next started movement. 
+ * 5) At any time the method setBlendCycles(...) can be executed to change the
+ * number of cycles for the cross-fade from one move into the next one. 
+ * 6) At any time the method setControlMode(...) can be executed to choose 
+ * how the speed commands are computed from the planned targets. After every 
+ * move getTrackingStatistics() tells, how well the joints followed the plan; 
+ * if the logging is turned on, the statistics are logged, too. 
+ * 7) Every move can be played faster or slower and with smaller or larger 
+ * joint amplitudes by calling withSpeed(...) and withAmplitude(...) right 
+ * before the set...() method, e.g. motion.withAmplitude(0.5).setWalkForward();
+ * walks with half the step length (like the former file 
+ * walk_forward-flemming-nika_slow050.txt). The scaled sequences are created 
+ * once and then cached, see class keyframeMotion.util.ScaledSequenceCache. 
+ * 8) At any time the method setRecorder(...) can be executed to record target,
+ * sensed angle and command of all joints in every cycle into a file, see 
+ * class keyframeMotion.util.MotionRecorder. 
+ * 
+ * Execution of a sequence: 
+ * When a movement is started, the target angles of all joints for every server
+ * cycle of the whole sequence are computed at once (see class 
+ * keyframeMotion.util.TrajectoryTable). In every cycle the commanded speed is
+ * then the planned step to the next target, plus a correction by a part of the
+ * deviation of the sensed angle from the last target. The cycle of the 
+ * trajectory is chosen by the server time (PerceptorInput.getServerTime()), 
+ * so missed server cycles are caught up. In the control mode 
+ * ControlMode.PD the commands are computed by a PD controller with gains per 
+ * joint instead (see class keyframeMotion.util.PDJointController). 
  *  
  * Required context in the agent class: 
  * The agent class must have an object of class EffectorOutput and one of class
@@ -54,6 +99,10 @@ import util.RobotConsts;
  * 2) Add a new class variable to KeyframeMotion just like WALK_FORWARD_SEQUENCE.
  * 3) Extend the constructor to load the new sequence into the new variable.
  * 4) Add a new set...() method just like setWalkForward(). (Not like setTest()!)
+ * Moves can also be generated at runtime instead of loaded from a file: an 
+ * implementation of keyframeMotion.util.PoseSource computes the targets of 
+ * every cycle (e.g. by the leg inverse kinematics in package bodyModel), and
+ * setPoseSource(...) plays it like a keyframe sequence. 
  * 
  * Using KeyframeMotion together with other motion implementations:
  * As mentioned above, method executeKeyframeSequence() has to be called in
@@ -68,12 +117,19 @@ import util.RobotConsts;
 public class KeyframeMotion {
 
   private enum MotionState {
-    IN_FRAME, BETWEEN_FRAMES, READY_TO_MOVE
+    SEQUENCE_SET, IN_SEQUENCE, READY_TO_MOVE
   }
   private static final double ANGLE_TOLLERANCE = 8f;
   
   //time between two server messages in ms
   private static final int TIME_STEMP_INTERVAL = 20; 
+  private static final double CYCLES_PER_SECOND = 1000.0 / TIME_STEMP_INTERVAL;
+  
+  // part of the deviation from the last target, which is corrected per cycle
+  private static final double CORRECTION_GAIN = 0.5;
+  
+  private static final int DEFAULT_BLEND_CYCLES = 5;
+  private static final int QUEUE_CAPACITY = 4;
   
   private final PerceptorInput percIn;
   private final EffectorOutput effOut;
@@ -105,12 +161,40 @@ public class KeyframeMotion {
   private static KeyframeSequence RETURN_TO_INITIAL_POSE_SEQUENCE;
   
   
-  private Keyframe actualKeyframe = null;         // These three variables could  
-  private int leftCyclesForActualFrame = 0;       // be used instead of state.
-  private KeyframeSequence actualSequence = null; // But then the code becomes less clear.
+  private KeyframeSequence actualSequence = null;
+  private MotionPriority actualPriority = MotionPriority.NORMAL;
+  private MotionPriority nextPriority = MotionPriority.NORMAL;
+  private double nextSpeed = 1;
+  private double nextAmplitude = 1;
+  private final ScaledSequenceCache scaledSequences = new ScaledSequenceCache();
+  private boolean crossFade = false;
   private MotionState state = MotionState.READY_TO_MOVE;
+  private final MotionQueue queue = new MotionQueue(QUEUE_CAPACITY);
+  
+  private TrajectoryTable trajectory = new TrajectoryTable(TIME_STEMP_INTERVAL);
+  private Interpolation interpolation = Interpolation.LINEAR;
+  private int actualCycle = 0;
+  private double sequenceStartTime = 0;
+  private int skippedCycles = 0;
   
-  private double[] lastCycleAngles = new double[RobotConsts.JointsCount];
+  // The trajectory of the previous move, which is faded out during the
+  // first fadeLength cycles of the actual move, starting at its cycle 
+  // fadeOrigin.
+  private TrajectoryTable fadingTrajectory = new TrajectoryTable(TIME_STEMP_INTERVAL);
+  private int fadeOrigin = 0;
+  private int fadeLength = 0;
+  private int blendCycles = DEFAULT_BLEND_CYCLES;
+  
+  private final double[] lastTargets = new double[RobotConsts.JointsCount];
+  private final double[] lastCycleAngles = new double[RobotConsts.JointsCount];
+  private final double[] newCommands = new double[RobotConsts.JointsCount];
+  private final double[] cycleTargets = new double[RobotConsts.JointsCount];
+  private final double[] sensedAngles = new double[RobotConsts.JointsCount];
+  
+  private ControlMode controlMode = ControlMode.TRAJECTORY;
+  private final PDJointController pdController = new PDJointController(TIME_STEMP_INTERVAL);
+  private final TrackingStatistics statistics = new TrackingStatistics();
+  private MotionRecorder recorder = null;
 
   /**
    * Constructor, initialize dependencies and load movements. 
@@ -173,6 +257,172 @@ public class KeyframeMotion {
     loggingOn = b;
   }
   
+  /**
+   * Choose the interpolation between keyframes. 
+   * 
+   * The passed profile is used from the next started movement on, the 
+   * default is Interpolation.LINEAR .
+   * 
+   * @param mode Interpolation profile, cannot be null.
+   * @see keyframeMotion.util.Interpolation
+   */
+  public void setInterpolation(Interpolation mode){
+    interpolation = mode;
+  }
+  
+  /**
+   * Choose the computation of the speed commands. 
+   * 
+   * The default is ControlMode.TRAJECTORY . The change takes effect in the 
+   * next cycle.
+   * 
+   * @param mode Control mode, cannot be null.
+   * @see keyframeMotion.util.ControlMode
+   */
+  public void setControlMode(ControlMode mode){
+    controlMode = mode;
+  }
+  
+  /**
+   * Returns the gains of the PD controller, which is used in the control mode
+   * ControlMode.PD . 
+   * 
+   * @return The controller, its gains can be changed with setGains(...).
+   */
+  public PDJointController getPDController(){
+    return pdController;
+  }
+  
+  /**
+   * Returns the tracking errors of the current or, if the robot is ready, of 
+   * the last movement. 
+   * 
+   * The statistics are reset at the start of every movement, so they must be 
+   * read before the next movement starts. 
+   * 
+   * @return Statistics object, it is reused for every movement. 
+   */
+  public TrackingStatistics getTrackingStatistics(){
+    return statistics;
+  }
+
+  /**
+   * Returns the sequence, which is executed at the moment.
+   *
+   * @return Actual sequence (maybe a scaled copy of a loaded sequence), or
+   * null, if no sequence is executed.
+   */
+  public KeyframeSequence getActualSequence(){
+    return state == MotionState.IN_SEQUENCE ? actualSequence : null;
+  }
+
+  /**
+   * Returns the part of the actual sequence, which has been executed.
+   *
+   * The progress is measured in planned server cycles, so skipped cycles count
+   * as executed.
+   *
+   * @return Value between 0 and 1, or 0 if no sequence is executed.
+   */
+  public double getActualProgress(){
+    if (state != MotionState.IN_SEQUENCE || trajectory.getCycleCount() == 0)
+      return 0;
+    return Math.min(1, (double) actualCycle / trajectory.getCycleCount());
+  }
+
+  /**
+   * Record the execution of all following movements. 
+   * 
+   * The recorder is not closed by KeyframeMotion, the agent has to call its
+   * close() method at the end. 
+   * 
+   * @param r Recorder, or null to stop recording. 
+   */
+  public void setRecorder(MotionRecorder r){
+    recorder = r;
+  }
+  
+  /**
+   * Set the number of cycles for cross-fading from one move into the next.
+   * 
+   * A queued move starts this number of cycles before the end of the current
+   * move, and an interrupting move blends the rest of the interrupted move 
+   * into its own trajectory during this number of cycles. 
+   * 
+   * @param cycles Number of server cycles, 0 switches the cross-fading off.
+   */
+  public void setBlendCycles(int cycles){
+    blendCycles = Math.max(0, cycles);
+  }
+  
+  /**
+   * Set the priority for the next chosen move. 
+   * 
+   * The priority applies only to the next call of a set...() method, after 
+   * that the priority is MotionPriority.NORMAL again. Usage: 
+   * motion.withPriority(MotionPriority.PREEMPT).setTurnLeftSmall();
+   * 
+   * @param priority Priority of the next move, cannot be null.
+   * @return This object, to call the set...() method directly. 
+   * @see keyframeMotion.util.MotionPriority
+   */
+  public KeyframeMotion withPriority(MotionPriority priority){
+    nextPriority = priority;
+    return this;
+  }
+  
+  /**
+   * Set the playback speed for the next chosen move. 
+   * 
+   * The speed applies only to the next call of a set...() method, after 
+   * that the speed is 1 again. Usage: motion.withSpeed(0.8).setWalkForward();
+   * 
+   * @param factor Speed factor, 1 is the speed of the keyframe file, 2 plays
+   * the move twice as fast. It is limited and rounded as described in class
+   * keyframeMotion.util.ScaledSequenceCache .
+   * @return This object, to call the set...() method directly. 
+   */
+  public KeyframeMotion withSpeed(double factor){
+    nextSpeed = factor;
+    return this;
+  }
+  
+  /**
+   * Set the amplitude for the next chosen move. 
+   * 
+   * All joint angles of the keyframes are multiplied by the factor. It applies
+   * only to the next call of a set...() method, after that the amplitude is 1
+   * again. Usage: motion.withAmplitude(0.75).setWalkForward();
+   * 
+   * @param factor Amplitude factor, 1 is the amplitude of the keyframe file. 
+   * It is limited and rounded as described in class 
+   * keyframeMotion.util.ScaledSequenceCache .
+   * @return This object, to call the set...() method directly. 
+   */
+  public KeyframeMotion withAmplitude(double factor){
+    nextAmplitude = factor;
+    return this;
+  }
+  
+  /**
+   * Set a move generated at runtime by a pose source. 
+   * 
+   * The move is handled like a loaded keyframe sequence: it is queued or 
+   * interrupts the actual move according to the priority set by 
+   * withPriority(...), and it is cross-faded. withSpeed(...) and 
+   * withAmplitude(...) have no effect on generated moves. The targets of all
+   * cycles are requested from the source, when the move is started. 
+   * 
+   * Assumed posture before this move: depends on the source. 
+   * 
+   * @param source Source of the move, cannot be null. 
+   * @see keyframeMotion.util.PoseSource
+   */
+  public void setPoseSource(PoseSource source) {
+    if (loggingOn) log.log("motion " + source.getName() + " \n");
+    requestSequence(new KeyframeSequence(source), MotionPriority.NORMAL);
+  }
+  
   /**
    * Set move to turn the robots head down.
    * 
@@ -180,8 +430,7 @@ public class KeyframeMotion {
    */
   public void setTurnHeadDown() {
     if (loggingOn) log.log("motion turn head down \n");
-    actualSequence = TURN_HEAD_DOWN_SEQUENCE;
-    state = MotionState.BETWEEN_FRAMES;
+    requestSequence(TURN_HEAD_DOWN_SEQUENCE, MotionPriority.NORMAL);
   }
 
   /**
@@ -191,8 +440,7 @@ public class KeyframeMotion {
    */
   public void setTurnHeadLeft() {
     if (loggingOn) log.log("motion turn head left \n");
-    actualSequence = TURN_HEAD_LEFT_SEQUENCE;
-    state = MotionState.BETWEEN_FRAMES;
+    requestSequence(TURN_HEAD_LEFT_SEQUENCE, MotionPriority.NORMAL);
   }
   
   /**
@@ -202,8 +450,7 @@ public class KeyframeMotion {
    */
   public void setTurnHeadRight() {
     if (loggingOn) log.log("motion turn head right \n");
-    actualSequence = TURN_HEAD_RIGHT_SEQUENCE;
-    state = MotionState.BETWEEN_FRAMES;
+    requestSequence(TURN_HEAD_RIGHT_SEQUENCE, MotionPriority.NORMAL);
   }
   
   
@@ -214,8 +461,7 @@ public class KeyframeMotion {
    */
   public void setTurnRight() {
     if (loggingOn) log.log("motion turn right \n");
-    actualSequence = TURN_RIGHT_SEQUENCE;
-    state = MotionState.BETWEEN_FRAMES;
+    requestSequence(TURN_RIGHT_SEQUENCE, MotionPriority.NORMAL);
   }
 
   /**
@@ -226,8 +472,7 @@ public class KeyframeMotion {
    */
   public void setTurnLeft() {
     if (loggingOn) log.log("motion turn left \n");
-    actualSequence = TURN_LEFT_SEQUENCE;
-    state = MotionState.BETWEEN_FRAMES;
+    requestSequence(TURN_LEFT_SEQUENCE, MotionPriority.NORMAL);
   }
   
   /**
@@ -237,8 +482,7 @@ public class KeyframeMotion {
    */
   public void setTurnRightSmall() {
     if (loggingOn) log.log("motion turn right small\n");
-    actualSequence = TURN_RIGHT_SMALL_SEQUENCE;
-    state = MotionState.BETWEEN_FRAMES;
+    requestSequence(TURN_RIGHT_SMALL_SEQUENCE, MotionPriority.NORMAL);
   }
 
   /**
@@ -249,8 +493,7 @@ public class KeyframeMotion {
    */
   public void setTurnLeftSmall() {
     if (loggingOn) log.log("motion turn left small\n");
-    actualSequence = TURN_LEFT_SMALL_SEQUENCE;
-    state = MotionState.BETWEEN_FRAMES;
+    requestSequence(TURN_LEFT_SMALL_SEQUENCE, MotionPriority.NORMAL);
   }
   
     /**
@@ -260,8 +503,7 @@ public class KeyframeMotion {
    */
   public void setSideStepRight() {
     if (loggingOn) log.log("motion side step right \n");
-    actualSequence = SIDE_STEP_RIGHT_SEQUENCE;
-    state = MotionState.BETWEEN_FRAMES;
+    requestSequence(SIDE_STEP_RIGHT_SEQUENCE, MotionPriority.NORMAL);
   }
 
   /**
@@ -272,8 +514,7 @@ public class KeyframeMotion {
    */
   public void setSideStepLeft() {
     if (loggingOn) log.log("motion side step left \n");
-    actualSequence = SIDE_STEP_LEFT_SEQUENCE;
-    state = MotionState.BETWEEN_FRAMES;
+    requestSequence(SIDE_STEP_LEFT_SEQUENCE, MotionPriority.NORMAL);
   }
   
   /**
@@ -286,8 +527,7 @@ public class KeyframeMotion {
    */
   public void setWalkForward() {
     if (loggingOn) log.log("motion walk forward \n");
-    actualSequence = WALK_FORWARD_SEQUENCE;
-    state = MotionState.BETWEEN_FRAMES;
+    requestSequence(WALK_FORWARD_SEQUENCE, MotionPriority.NORMAL);
   }
 
   /**
@@ -301,8 +541,7 @@ public class KeyframeMotion {
    */
   public void setStopWalking() {
     if (loggingOn) log.log("motion stop walking \n");
-    actualSequence = STOP_WALKING_SEQUENCE;
-    state = MotionState.BETWEEN_FRAMES;
+    requestSequence(STOP_WALKING_SEQUENCE, MotionPriority.NORMAL);
   }
   
   /**
@@ -312,8 +551,7 @@ public class KeyframeMotion {
    */
   public void setFallBack() {
     if (loggingOn) log.log("motion fall back \n");
-    actualSequence = FALL_BACK_SEQUENCE;
-    state = MotionState.BETWEEN_FRAMES;
+    requestSequence(FALL_BACK_SEQUENCE, MotionPriority.NORMAL);
   }
   
   /**
@@ -323,8 +561,7 @@ public class KeyframeMotion {
    */
   public void setFallForward() {
     if (loggingOn) log.log("motion fall forward \n");
-    actualSequence = FALL_FORWARD_SEQUENCE;
-    state = MotionState.BETWEEN_FRAMES;
+    requestSequence(FALL_FORWARD_SEQUENCE, MotionPriority.NORMAL);
   }
 
   /**
@@ -335,8 +572,7 @@ public class KeyframeMotion {
    */
   public void setStandUpFromBack() {
     if (loggingOn) log.log("motion stand up from back \n");
-    actualSequence = STAND_UP_FROM_BACK_SEQUENCE;
-    state = MotionState.BETWEEN_FRAMES;
+    requestSequence(STAND_UP_FROM_BACK_SEQUENCE, MotionPriority.FALL_RECOVERY);
   }
   
   /**
@@ -347,8 +583,7 @@ public class KeyframeMotion {
    */
    public void setRollOverToBack() {
     if (loggingOn) log.log("motion roll over from back \n");
-    actualSequence = ROLL_OVER_TO_BACK_SEQUENCE;
-    state = MotionState.BETWEEN_FRAMES;
+    requestSequence(ROLL_OVER_TO_BACK_SEQUENCE, MotionPriority.FALL_RECOVERY);
   }
    
   /**
@@ -358,8 +593,7 @@ public class KeyframeMotion {
    */
    public void setWave() {
     if (loggingOn) log.log("motion wave \n");
-    actualSequence = WAVE_SEQUENCE;
-    state = MotionState.BETWEEN_FRAMES;
+    requestSequence(WAVE_SEQUENCE, MotionPriority.NORMAL);
   }
    
    /**
@@ -367,8 +601,7 @@ public class KeyframeMotion {
    */
   public void setKick_Rijeka2013() {
     if (loggingOn) log.log("motion kick from Rijeka 2013 \n");
-    actualSequence = KICK_RIJEKA2013_SEQUENCE;
-    state = MotionState.BETWEEN_FRAMES;
+    requestSequence(KICK_RIJEKA2013_SEQUENCE, MotionPriority.NORMAL);
   }
   
     /**
@@ -380,8 +613,7 @@ public class KeyframeMotion {
    */
   public void setWalkForward_Rijeka2013() {
     if (loggingOn) log.log("motion walk from Rijeka 2013 \n");
-    actualSequence = WALK_FORWARD_RIJEKA2013_SEQUENCE;
-    state = MotionState.BETWEEN_FRAMES;
+    requestSequence(WALK_FORWARD_RIJEKA2013_SEQUENCE, MotionPriority.NORMAL);
   }
   
   /**
@@ -389,8 +621,7 @@ public class KeyframeMotion {
    */
   public void setBadWalk_Plovdiv2014() {
       if (loggingOn) log.log("motion walk fast from Plovdiv \n");
-    actualSequence = BAD_WALK_PLOVDIV2014_SEQUENCE;
-    state = MotionState.BETWEEN_FRAMES;
+    requestSequence(BAD_WALK_PLOVDIV2014_SEQUENCE, MotionPriority.NORMAL);
   } 
    
    
@@ -399,8 +630,7 @@ public class KeyframeMotion {
    */
   public void setKick_Plovdiv2014() {
     if (loggingOn) log.log("motion kick the ball from Plovdiv \n");
-    actualSequence = ALPHA_KICK_PLOVDIV2014_SEQUENCE;
-    state = MotionState.BETWEEN_FRAMES;
+    requestSequence(ALPHA_KICK_PLOVDIV2014_SEQUENCE, MotionPriority.NORMAL);
   }
    
    /**
@@ -409,8 +639,7 @@ public class KeyframeMotion {
   
   public void setStopWalking_Plovdiv2014() {
     if (loggingOn) log.log("motion stop walking Plovdiv 2014 \n");
-    actualSequence = STOP_WALKING_PLOVDIV2014_SEQUENCE;
-    state = MotionState.BETWEEN_FRAMES;
+    requestSequence(STOP_WALKING_PLOVDIV2014_SEQUENCE, MotionPriority.NORMAL);
     }
 
     /*
@@ -430,8 +659,7 @@ public class KeyframeMotion {
         if (loggingOn) {
             log.log("motion return to initial pose \n");
         }
-        actualSequence = RETURN_TO_INITIAL_POSE_SEQUENCE;
-        state = MotionState.BETWEEN_FRAMES;
+        requestSequence(RETURN_TO_INITIAL_POSE_SEQUENCE, MotionPriority.PREEMPT);
     }
 
   /**
@@ -451,8 +679,7 @@ public class KeyframeMotion {
     if (loggingOn) log.log("motion Test\n");
     KeyframeFileHandler keyframeReader 
             = new KeyframeFileHandler();
-    actualSequence = keyframeReader.getSequenceFromFile("test.txt");
-    state = MotionState.BETWEEN_FRAMES;
+    requestSequence(keyframeReader.getSequenceFromFile("test.txt"), MotionPriority.NORMAL);
   }
 
   /**
@@ -469,23 +696,40 @@ public class KeyframeMotion {
       return false;
         }
     }
+  
+  /**
+   * States, whether the next movement can be chosen. 
+   * 
+   * This is the case, if the robot is ready() or if the current movement is 
+   * no fall recovery, ends within the cross-fade cycles (see 
+   * setBlendCycles(...)) and no other movement is queued. A movement set now
+   * is started without waiting for the end of the current one. 
+   * 
+   * @return True, if the next movement should be set now. 
+   */
+  public boolean readyForNext() {
+    return ready() 
+            || (state == MotionState.IN_SEQUENCE 
+                && actualPriority != MotionPriority.FALL_RECOVERY
+                && queue.isEmpty()
+                && trajectory.getCycleCount() - actualCycle <= blendCycles);
+  }
 
     /**
      * Stops the current movement. Can be called by AgentSoccerTeam in playmode
      * Goal_Left or Goal_Right before beaming, such that robot does not try to
      * continue afterwards hdb 14.10.2016
+     * 
+     * Queued movements are dropped and all joints get the speed 0. 
      */
     public void stopMotion() {
         state = MotionState.READY_TO_MOVE;
-        /*
-         * toDo: complete. 
-         * state = MotionState.READY_TO_MOVE;
-         * keyframeMotion.util.KeyframeSequence.reset_nextFrameNumber();
-         * actualKeyframe = null;
-         * what more?
-         *
-         * IMPORTANT: set all joint speeds to 0  (stop all motions)
-         */
+        actualSequence = null;
+        queue.clear();
+        fadeLength = 0;
+        for (int i = 0; i < RobotConsts.JointsCount; i++)
+            newCommands[i] = 0;
+        effOut.setAllJointCommands(newCommands);
     }
 
   /**
@@ -512,133 +756,227 @@ public class KeyframeMotion {
     switch (state) {
       case READY_TO_MOVE:
         break;
-      case BETWEEN_FRAMES:
-        setActualKeyframe();
+      case SEQUENCE_SET:
+        startSequence();
         break;
-      case IN_FRAME:
-        executeActualKeyframe();
+      case IN_SEQUENCE:
+        executeTrajectoryCycle();
         break;
     }
   }
 
   /**
-   * Internal method for choosing the actual keyframe from the actual sequence.
-   * Sets the internal state of KeyframeMotion indicating if motion is finished.
+   * Internal method for choosing a sequence with a priority.
+   * 
+   * The sequence is replaced by its scaled version, if withSpeed(...) or 
+   * withAmplitude(...) was called before. 
+   * Starts the sequence, if the robot is ready, interrupts the current 
+   * sequence, if the priority is higher, and queues the sequence otherwise.
    */
-  private void setActualKeyframe() {
+  private void requestSequence(KeyframeSequence ks, MotionPriority priority) {
+    MotionPriority p = priority.compareTo(nextPriority) > 0 ? priority : nextPriority;
+    nextPriority = MotionPriority.NORMAL;
+    ks = scaledSequences.get(ks, nextSpeed, nextAmplitude);
+    nextSpeed = 1;
+    nextAmplitude = 1;
 
-//    if (actualKeyframe != null) {
-//      log.log("setActKey");
-//      log.log(actualKeyframe.getDebugString());
-//      log.log(percIn.getJointsDebugString() + "\n");
-//    }
+    switch (state) {
+      case READY_TO_MOVE:
+        actualSequence = ks;
+        actualPriority = p;
+        crossFade = false;
+        state = MotionState.SEQUENCE_SET;
+        break;
+      case SEQUENCE_SET:
+        // not started yet, so the sequence can be replaced without fading
+        if (p.compareTo(actualPriority) >= 0) {
+          actualSequence = ks;
+          actualPriority = p;
+        } else
+          queue.add(ks, p);
+        break;
+      case IN_SEQUENCE:
+        if (p == MotionPriority.FALL_RECOVERY 
+                && actualPriority == MotionPriority.FALL_RECOVERY)
+          break; // the robot stands up already
+        if (p != MotionPriority.NORMAL && p.compareTo(actualPriority) > 0) {
+          if (p == MotionPriority.FALL_RECOVERY)
+            queue.clear();
+          actualSequence = ks;
+          actualPriority = p;
+          crossFade = true;
+          state = MotionState.SEQUENCE_SET;
+        } else
+          queue.add(ks, p);
+        break;
+    }
+  }
 
-    actualKeyframe = actualSequence.getNextFrame();
-    if (actualKeyframe == null) {
-      actualSequence = null;
-      state = MotionState.READY_TO_MOVE;
-      //log.log("ende der seq");
+  /**
+   * Internal method for starting the actual sequence.
+   * Plans the targets for all cycles of the sequence and executes the first
+   * cycle. After a movement the sequence begins at the sensed pose, when 
+   * cross-fading it begins at the last target of the previous movement, whose
+   * trajectory is faded out.
+   */
+  private void startSequence() {
+    if (crossFade) {
+      TrajectoryTable previous = trajectory;
+      trajectory = fadingTrajectory;
+      fadingTrajectory = previous;
+      fadeOrigin = actualCycle;
+      fadeLength = blendCycles;
     } else {
-      for (int i = 0; i < lastCycleAngles.length; i++) 
+      for (int i = 0; i < RobotConsts.JointsCount; i++) {
+        lastTargets[i] = percIn.getJoint(i);
         lastCycleAngles[i] = 0;
-      leftCyclesForActualFrame = actualKeyframe.getTransitionTime() / TIME_STEMP_INTERVAL;
-      
-      state = MotionState.IN_FRAME;
-      executeActualKeyframe();
-
-//            log.log("setActKeyfr.. frame:");
-//            StringBuilder returnString = new StringBuilder();
-//            returnString.append(actualKeyframe.getTransitionTime()).append(' ');            
-//            for (int i = 0; i < RobotConsts.JointsCount; i++){
-//                returnString.append(RobotConsts.getEffectorName(i));
-//                returnString.append('=');
-//                returnString.append(actualKeyframe.getAngle(i));
-//                returnString.append(' ');
-//            }
-//            log.log(returnString.toString());
+      }
+      fadeLength = 0;
+      pdController.reset();
     }
+    crossFade = false;
+    statistics.reset();
+    trajectory.plan(actualSequence, lastTargets, interpolation);
+    actualCycle = 0;
+    skippedCycles = 0;
+    sequenceStartTime = percIn.getServerTime();
+    if (recorder != null)
+      recorder.beginSequence(actualSequence.getName());
+    state = MotionState.IN_SEQUENCE;
+    executeTrajectoryCycle();
   }
 
   /**
-   * Internal method for initiating the translation from a keyframe sequence to 
-   * effector commands and setting the actual commands for this cycle.
-   * 
-   * -------------------------
-   *  A keyframe is reached within several cycles. The number of cycles depends
-   * on the transition time specified in the keyframe.
-   * Sets the internal state of KeyframeMotion indicating if the motion is completed.
+   * Internal method for starting the next queued sequence with cross-fading.
    */
-  private void executeActualKeyframe() {
+  private void startQueuedSequence() {
+    logStatistics();
+    actualPriority = queue.peekPriority();
+    actualSequence = queue.poll();
+    crossFade = true;
+    startSequence();
+  }
 
-    double[] newCommands = new double[RobotConsts.JointsCount];
-    state = MotionState.BETWEEN_FRAMES;
+  /**
+   * Internal method for setting the joint commands of the actual cycle.
+   * 
+   * The command for a joint is the planned step from the last target to the 
+   * target of this cycle, corrected by a part of the deviation of the 
+   * predicted angle from the last target, or in the control mode 
+   * ControlMode.PD the output of the PD controller. While cross-fading, the target is
+   * blended from the targets of the previous and the actual trajectory. 
+   * 
+   * The cycle of the trajectory is chosen by the server time passed since the
+   * start of the sequence, so a missed or late server cycle does not stretch 
+   * the movement. If cycles were skipped, their targets are left out and the 
+   * commands are planned from the target of the previous cycle, the 
+   * correction term then compensates the deviation. 
+   * 
+   * After the last planned cycle the next queued sequence is started, or, if 
+   * there is none, all joints are stopped and the motion is completed. 
+   */
+  private void executeTrajectoryCycle() {
+
+    int cycle = getScheduledCycle();
+    int skipped = cycle - actualCycle;
+    actualCycle = cycle;
+    int leftCycles = trajectory.getCycleCount() - actualCycle;
+    if (!queue.isEmpty() && actualCycle > 0 && actualCycle >= fadeLength
+            && leftCycles <= blendCycles) {
+      startQueuedSequence();
+      return;
+    }
 
-    for (int i = 0; i < RobotConsts.JointsCount; i++) {
-      newCommands[i] =
-              getSpeedFromAngleAndTime(i);
-      if (newCommands[i] != 0f) {
-        state = MotionState.IN_FRAME;
-      }
+    if (leftCycles <= 0) {
+      for (int i = 0; i < RobotConsts.JointsCount; i++)
+        newCommands[i] = 0;
+      effOut.setAllJointCommands(newCommands);
+      actualSequence = null;
+      state = MotionState.READY_TO_MOVE;
+      logStatistics();
+      return;
     }
-//      Debug output for effector commands (see also below)
-//        StringBuilder builder = new StringBuilder();
-//        builder.append("cycles left ").append(leftCyclesForActualFrame).append(' ');
-//        for (int i = 0; i < RobotConsts.JointsCount; i++) {
-//            builder.append(RobotConsts.getEffectorName(i)).append(' ');
-//            if (Math.abs(newCommands[i]) < 0.001) 
-//                builder.append(0);
-//            else
-//                builder.append(newCommands[i]);
-//            builder.append("  ");
-//        }
-//        log.log(builder.toString());   
-        //log.log(percIn.getJointsDebugString());
-        
-    effOut.setAllJointCommands(newCommands);
-    leftCyclesForActualFrame--;
 
+    if (skipped > 0) {
+      skippedCycles += skipped;
+      computeTargets(actualCycle - 1, lastTargets);
+    }
+    computeTargets(actualCycle, cycleTargets);
+    for (int i = 0; i < RobotConsts.JointsCount; i++)
+      sensedAngles[i] = percIn.getJoint(i);
+    // Considering lastCycleAngles is important, because the server sends
+    // joint perceptor values (like all perceptor values) delayed by one 
+    // simulation step.
+    statistics.add(lastTargets, sensedAngles, lastCycleAngles);
+    
+    if (controlMode == ControlMode.PD) {
+      pdController.computeCommands(lastTargets, cycleTargets, sensedAngles, 
+              lastCycleAngles, newCommands);
+    } else {
+      for (int i = 0; i < RobotConsts.JointsCount; i++) {
+        double predictedAngle = sensedAngles[i] + lastCycleAngles[i];
+        double thisCycleAngle = cycleTargets[i] - lastTargets[i]
+                + CORRECTION_GAIN * (lastTargets[i] - predictedAngle);
+        // speed has to be per sec, not per cycle
+        newCommands[i] = thisCycleAngle * CYCLES_PER_SECOND;
+      }
+    }
+    for (int i = 0; i < RobotConsts.JointsCount; i++) {
+      lastCycleAngles[i] = newCommands[i] / CYCLES_PER_SECOND;
+      lastTargets[i] = cycleTargets[i];
+    }
+//      Debug output for effector commands
+//        log.log("cycle " + actualCycle + "\n" 
+//                + RobotConsts.getAllJointsString(newCommands));
 
-//        Debug output für verification of a keyframe reader or for testing of a new sequence. 
+    effOut.setAllJointCommands(newCommands);
+    if (recorder != null)
+      recorder.record(percIn.getServerTime(), actualCycle, 
+              trajectory.getFrameIndex(actualCycle), cycleTargets, sensedAngles, 
+              newCommands);
+    actualCycle++;
+  }
 
-//    if (state == MotionState.BETWEEN_FRAMES) {
-//      log.log("exeActKey");
-//      log.log(actualKeyframe.getDebugString());
-//      log.log(percIn.getJointsDebugString());
-//      log.log("\n");
-//    }
+  /**
+   * Internal method, returns the cycle of the trajectory for the actual server
+   * time. It is never before the cycle following the last executed one, and 
+   * the last cycle of the trajectory is never skipped. 
+   */
+  private int getScheduledCycle() {
+    double elapsed = percIn.getServerTime() - sequenceStartTime;
+    int cycle = Math.max(actualCycle, (int) Math.round(elapsed * CYCLES_PER_SECOND));
+    return Math.min(cycle, Math.max(actualCycle, trajectory.getCycleCount() - 1));
   }
 
   /**
-   * Internal method for translating data from a keyframe sequence to effector
-   * commands.
-   * 
-   * Calculates for a joint the effector command, that should be executed in the
-   * actual server cycle. 
-   * 
-   * @param angleIndex Index of the joint as defined in util.RobotConsts
-   * @see util.RobotConsts
+   * Internal method, computes the targets of all joints for a cycle of the 
+   * actual trajectory, blended with the faded out trajectory during the first
+   * fadeLength cycles. 
    */
-  private double getSpeedFromAngleAndTime(int angleIndex) {
-    double speed = 0f;
+  private void computeTargets(int cycle, double[] targets) {
+    boolean fading = cycle < fadeLength;
+    double weight = (cycle + 1.0) / (fadeLength + 1.0);
+    int oldCycle = Math.min(fadeOrigin + cycle, fadingTrajectory.getCycleCount() - 1);
 
-    double targetAngle = actualKeyframe.getAngle(angleIndex);
-    double sensedAngle = Math.toDegrees(percIn.getJoint(angleIndex));
-    
-    if (leftCyclesForActualFrame > 1) {
-      double angleDifference = 
-              targetAngle - (sensedAngle + lastCycleAngles[angleIndex]);
-              // Considering lastCycleAngles is important, because the 
-              // server sends joint perceptor values (like all perceptor values)
-              // delayed by one simulation step.
-      double thisCycleAngle = 
-              (angleDifference ) / (double)(leftCyclesForActualFrame - 1);
-              // cycles - 1, because the last command is always 0
-      speed =  (Math.toRadians(thisCycleAngle) / (double) TIME_STEMP_INTERVAL) * (double)1000;
-              // multiplication by 1000, because speed has to be per sec, 
-              // not per ms.
-      lastCycleAngles[angleIndex] = thisCycleAngle;
+    for (int i = 0; i < RobotConsts.JointsCount; i++) {
+      double target = trajectory.getTarget(cycle, i);
+      if (fading) {
+        double oldTarget = fadingTrajectory.getTarget(oldCycle, i);
+        target = oldTarget + weight * (target - oldTarget);
+      }
+      targets[i] = target;
     }
+  }
 
-    return speed;
+  /**
+   * Internal method, logs the tracking errors and the number of skipped cycles
+   * of the finished movement, if the logging is turned on.
+   */
+  private void logStatistics() {
+    if (loggingOn && statistics.getCycles() > 0) {
+      log.log(statistics.toString());
+      if (skippedCycles > 0)
+        log.log(skippedCycles + " server cycles skipped\n");
+    }
   }
 }
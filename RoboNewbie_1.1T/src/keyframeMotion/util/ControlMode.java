@@ -0,0 +1,20 @@
+/*******************************************************************************
+*  RoboNewbie
+* NaoTeam Humboldt
+* @version 1.1
+*******************************************************************************/
+
+package keyframeMotion.util;
+
+/**
+ * Ways of class keyframeMotion.KeyframeMotion to compute the joint speeds
+ * from the planned targets.
+ *
+ * TRAJECTORY commands the planned step to the next target plus a fixed part
+ * of the deviation from the last target, without any speed limit.
+ * PD uses a proportional-derivative controller with gains per joint and 
+ * limits the speeds to the maximal joint speeds, see PDJointController.
+ */
+public enum ControlMode {
+  TRAJECTORY, PD
+}
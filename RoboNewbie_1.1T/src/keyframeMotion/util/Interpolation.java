@@ -0,0 +1,25 @@
+/*******************************************************************************
+*  RoboNewbie
+* NaoTeam Humboldt
+* @version 1.1
+*******************************************************************************/
+
+package keyframeMotion.util;
+
+/**
+ * Interpolation profiles for the way from one keyframe to the next one.
+ *
+ * LINEAR moves every joint with constant speed during a transition, like the
+ * original keyframe player did.
+ * CUBIC_HERMITE passes the keyframes with a smooth speed, the slope at a
+ * keyframe is the mean of the slopes of the neighboring transitions (set to 0
+ * at turning points, so a joint never swings beyond its keyframe values).
+ * MINIMUM_JERK starts and stops every transition with zero speed and zero
+ * acceleration, this is the smoothest, but also the slowest profile in the
+ * middle of a transition.
+ *
+ * @see TrajectoryTable
+ */
+public enum Interpolation {
+  LINEAR, CUBIC_HERMITE, MINIMUM_JERK
+}
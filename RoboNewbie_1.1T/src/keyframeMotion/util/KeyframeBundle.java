@@ -0,0 +1,104 @@
+/*******************************************************************************
+*  RoboNewbie
+* NaoTeam Humboldt
+* @version 1.1
+*******************************************************************************/
+
+package keyframeMotion.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import util.RobotConsts;
+
+/**
+ * Binary file format for a set of named keyframe sequences. 
+ * 
+ * A bundle stores many sequences in one file, which can be loaded without 
+ * parsing text. The format (all values big endian, as written by 
+ * java.io.DataOutputStream): 
+ * - int MAGIC, int VERSION, int number of sequences, 
+ * - per sequence: the name (writeUTF), int number of frames, 
+ * - per frame: int transition time in ms, RobotConsts.JointsCount doubles 
+ * with the angles in degrees. 
+ * 
+ * Like in KeyframeFileHandler, the file names are relative to the directory
+ * "[RoboNewbie project folder]/keyframes/". 
+ */
+public class KeyframeBundle {
+  
+  /** "RNKB" */
+  public static final int MAGIC = 0x524E4B42;
+  public static final int VERSION = 1;
+  
+  /**
+   * Writes sequences into a bundle file.
+   * 
+   * @param sequences Sequences by name, the order of the map is kept. 
+   * @param fileName File name relative to the keyframes directory.
+   * @throws IOException If the file cannot be written.
+   */
+  public static void write(Map<String, KeyframeSequence> sequences, String fileName) 
+          throws IOException {
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+            new FileOutputStream("keyframes/" + fileName)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(sequences.size());
+      for (Map.Entry<String, KeyframeSequence> entry : sequences.entrySet()) {
+        KeyframeSequence ks = entry.getValue();
+        out.writeUTF(entry.getKey());
+        out.writeInt(ks.size());
+        for (int f = 0; f < ks.size(); f++) {
+          Keyframe kf = ks.getFrame(f);
+          out.writeInt(kf.getTransitionTime());
+          for (int i = 0; i < RobotConsts.JointsCount; i++)
+            out.writeDouble(kf.getAngle(i));
+        }
+      }
+    }
+  }
+  
+  /**
+   * Reads all sequences of a bundle file.
+   * 
+   * @param fileName File name relative to the keyframes directory.
+   * @return Sequences by name, in the order of the file.
+   * @throws IOException If the file cannot be read or is no bundle of this
+   * version.
+   */
+  public static LinkedHashMap<String, KeyframeSequence> read(String fileName) 
+          throws IOException {
+    LinkedHashMap<String, KeyframeSequence> sequences = new LinkedHashMap<>();
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+            new FileInputStream("keyframes/" + fileName)))) {
+      if (in.readInt() != MAGIC)
+        throw new IOException(fileName + " is no keyframe bundle");
+      int version = in.readInt();
+      if (version != VERSION)
+        throw new IOException(fileName + " has unknown bundle version " + version);
+      int count = in.readInt();
+      for (int s = 0; s < count; s++) {
+        String name = in.readUTF();
+        int frames = in.readInt();
+        KeyframeSequence ks = new KeyframeSequence();
+        ks.setName(name);
+        for (int f = 0; f < frames; f++) {
+          int time = in.readInt();
+          double[] angles = new double[RobotConsts.JointsCount];
+          for (int i = 0; i < RobotConsts.JointsCount; i++)
+            angles[i] = in.readDouble();
+          ks.addFrame(new Keyframe(time, angles));
+        }
+        sequences.put(name, ks);
+      }
+    }
+    return sequences;
+  }
+}
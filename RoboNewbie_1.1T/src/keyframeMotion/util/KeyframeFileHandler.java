@@ -31,6 +31,7 @@ public class KeyframeFileHandler {
   public static KeyframeSequence getSequenceFromFile(String fileName) {
     
     KeyframeSequence ks = new KeyframeSequence();
+    ks.setName(fileName);
     
 	try {
 		BufferedReader in = new BufferedReader(new FileReader("keyframes/" + fileName));
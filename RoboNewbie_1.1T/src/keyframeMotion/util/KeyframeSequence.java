@@ -20,6 +20,8 @@ public class KeyframeSequence {
     
     private ArrayList<Keyframe> sequence = new ArrayList();
     private int nextFrameNumber = 0;
+    private String name = "";
+    private PoseSource poseSource = null;
     
     /** Returns the next frame.
     *
@@ -49,6 +51,66 @@ public class KeyframeSequence {
         sequence.add(frame);
     }
     
+    /**
+     * Returns the number of frames in this sequence.
+     * 
+     * @return Number of frames. 
+     */
+    public int size(){
+      return sequence.size();
+    }
+    
+    /**
+     * Returns the frame at the passed position without changing the state 
+     * used by getNextFrame(). 
+     * 
+     * @param i Position of the frame, between 0 and size() - 1.
+     * @return The frame at position i.
+     */
+    public Keyframe getFrame(int i){
+      return sequence.get(i);
+    }
+    
+    /**
+     * Returns the name of this sequence, for sequences loaded from a file it 
+     * is the file name. 
+     * 
+     * @return Name, an empty string if no name was set. 
+     */
+    public String getName(){
+      return name;
+    }
+    
+    /**
+     * Sets the name of this sequence, used for logging and recording. 
+     * 
+     * @param name New name, cannot be null.
+     */
+    public void setName(String name){
+      this.name = name;
+    }
+    
+    /**
+     * Returns the source of a generated movement. 
+     * 
+     * @return The pose source, or null if the sequence consists of keyframes.
+     */
+    public PoseSource getPoseSource(){
+      return poseSource;
+    }
+    
     public KeyframeSequence(){        
     }    
+    
+    /**
+     * Constructor for a movement generated by a pose source. The sequence
+     * has no keyframes, the targets are taken from the source when the 
+     * movement is planned (see TrajectoryTable.plan(...)). 
+     * 
+     * @param source Source of the targets, cannot be null.
+     */
+    public KeyframeSequence(PoseSource source){
+      poseSource = source;
+      name = source.getName();
+    }
 }
@@ -0,0 +1,193 @@
+/*******************************************************************************
+*  RoboNewbie
+* NaoTeam Humboldt
+* @version 1.1
+*******************************************************************************/
+
+package keyframeMotion.util;
+
+import static util.RobotConsts.*;
+
+/**
+ * Transformations of keyframe sequences. 
+ * 
+ * Every transformation creates a new sequence and leaves the passed sequences
+ * unchanged (also the state of their getNextFrame() iteration), so the methods
+ * can be used concurrently on the same sequence. All angles are in degrees, 
+ * like in the keyframe files. 
+ * 
+ * @see examples.agentKeyframeDeveloper.KeyframeBatchTransformer
+ */
+public class KeyframeTransforms {
+  
+  /**
+   * Generates a new sequence, where the originally left side angles are 
+   * changed to the right side and vice versa. 
+   * 
+   * @param ks Keyframe sequence to convert. 
+   * @return Keyframe sequence with the move switched to the other side of the 
+   * agent. 
+   */
+  public static KeyframeSequence mirror(KeyframeSequence ks){
+    KeyframeSequence ksOtherSide = new KeyframeSequence();
+    
+    for (int f = 0; f < ks.size(); f++) {
+      Keyframe kf = ks.getFrame(f);
+      double[] newAngles = new double[JointsCount];
+      
+      newAngles[NeckYaw]            = -kf.getAngle(NeckYaw); 
+      newAngles[NeckPitch]          = kf.getAngle(NeckPitch);	
+      newAngles[LeftShoulderPitch]  = kf.getAngle(RightShoulderPitch);
+      newAngles[LeftShoulderYaw]    = -kf.getAngle(RightShoulderYaw);
+      newAngles[LeftArmRoll ]       = -kf.getAngle(RightArmRoll);
+      newAngles[LeftArmYaw ]        = -kf.getAngle(RightArmYaw);
+      newAngles[LeftHipYawPitch ]   = kf.getAngle(RightHipYawPitch);
+      newAngles[LeftHipRoll]        = -kf.getAngle(RightHipRoll);
+      newAngles[LeftHipPitch]       = kf.getAngle(RightHipPitch);
+      newAngles[LeftKneePitch]      = kf.getAngle(RightKneePitch);
+      newAngles[LeftFootPitch]      = kf.getAngle(RightFootPitch);
+      newAngles[LeftFootRoll]       = -kf.getAngle(RightFootRoll);
+      newAngles[RightHipYawPitch]   = kf.getAngle(LeftHipYawPitch);
+      newAngles[RightHipRoll]       = -kf.getAngle(LeftHipRoll);
+      newAngles[RightHipPitch]      = kf.getAngle(LeftHipPitch);
+      newAngles[RightKneePitch]     = kf.getAngle(LeftKneePitch);
+      newAngles[RightFootPitch]     = kf.getAngle(LeftFootPitch);
+      newAngles[RightFootRoll]      = -kf.getAngle(LeftFootRoll);
+      newAngles[RightShoulderPitch] = kf.getAngle(LeftShoulderPitch);
+      newAngles[RightShoulderYaw]   = -kf.getAngle(LeftShoulderYaw);
+      newAngles[RightArmRoll]       = -kf.getAngle(LeftArmRoll);
+      newAngles[RightArmYaw ]       = -kf.getAngle(LeftArmYaw);
+      
+      ksOtherSide.addFrame(new Keyframe(kf.getTransitionTime(), newAngles));
+    }
+    
+    return ksOtherSide;
+  }
+  
+  /**
+   * Generates a new sequence with scaled playback speed and amplitude. 
+   * 
+   * @param ks Keyframe sequence to convert. 
+   * @param speed Speed factor, must be greater than 0, all transition times 
+   * are divided by it. 
+   * @param amplitude Amplitude factor, all angles are multiplied by it. 
+   * @return Scaled sequence, transition times are at least 1 ms.
+   * @throws IllegalArgumentException If the speed factor is not greater 
+   * than 0.
+   */
+  public static KeyframeSequence scale(KeyframeSequence ks, double speed, double amplitude){
+    if (!(speed > 0))
+      throw new IllegalArgumentException("Speed factor must be greater than 0: " + speed);
+    KeyframeSequence result = new KeyframeSequence();
+    for (int f = 0; f < ks.size(); f++) {
+      Keyframe kf = ks.getFrame(f);
+      double[] angles = new double[JointsCount];
+      for (int i = 0; i < JointsCount; i++)
+        angles[i] = kf.getAngle(i) * amplitude;
+      int time = (int) Math.max(1, Math.round(kf.getTransitionTime() / speed));
+      result.addFrame(new Keyframe(time, angles));
+    }
+    return result;
+  }
+  
+  /**
+   * Generates a new sequence, where all angles are limited to the joint 
+   * ranges given by RobotConsts.getAngleMin(...) and getAngleMax(...). 
+   * 
+   * @param ks Keyframe sequence to convert. 
+   * @return Sequence with all angles within the joint limits.
+   */
+  public static KeyframeSequence clamp(KeyframeSequence ks){
+    KeyframeSequence result = new KeyframeSequence();
+    for (int f = 0; f < ks.size(); f++) {
+      Keyframe kf = ks.getFrame(f);
+      double[] angles = new double[JointsCount];
+      for (int i = 0; i < JointsCount; i++)
+        angles[i] = Math.max(getAngleMin(i), Math.min(getAngleMax(i), kf.getAngle(i)));
+      result.addFrame(new Keyframe(kf.getTransitionTime(), angles));
+    }
+    return result;
+  }
+  
+  /**
+   * Concatenates sequences into a new one. 
+   * 
+   * @param sequences Sequences in the order of execution. 
+   * @return Sequence with all frames of the passed sequences.
+   */
+  public static KeyframeSequence merge(KeyframeSequence... sequences){
+    KeyframeSequence result = new KeyframeSequence();
+    for (KeyframeSequence ks : sequences)
+      for (int f = 0; f < ks.size(); f++)
+        result.addFrame(ks.getFrame(f));
+    return result;
+  }
+  
+  /**
+   * Counts the angles outside of the joint limits.
+   * 
+   * @param ks Keyframe sequence to check. 
+   * @param violations Output, number of frames with an angle outside of the 
+   * limits, per joint. Must have JointsCount elements. 
+   * @param maxExcess Output, maximal distance in degrees of an angle to the 
+   * limits, per joint (0 if there is no violation). Must have JointsCount 
+   * elements. 
+   * @return Total number of violations. 
+   */
+  public static int findLimitViolations(KeyframeSequence ks, int[] violations, 
+          double[] maxExcess){
+    int total = 0;
+    for (int i = 0; i < JointsCount; i++) {
+      violations[i] = 0;
+      maxExcess[i] = 0;
+    }
+    for (int f = 0; f < ks.size(); f++) {
+      Keyframe kf = ks.getFrame(f);
+      for (int i = 0; i < JointsCount; i++) {
+        double excess = Math.max(kf.getAngle(i) - getAngleMax(i), 
+                getAngleMin(i) - kf.getAngle(i));
+        if (excess > 0) {
+          violations[i]++;
+          total++;
+          maxExcess[i] = Math.max(maxExcess[i], excess);
+        }
+      }
+    }
+    return total;
+  }
+  
+  /**
+   * Computes the highest joint speeds needed for a sequence, assuming the 
+   * robot starts in the pose of the first frame and moves linearly between 
+   * the frames. 
+   * 
+   * @param ks Keyframe sequence to check. 
+   * @param speeds Output, maximal speed in degrees per second, per joint. 
+   * Must have JointsCount elements. 
+   */
+  public static void findMaxSpeeds(KeyframeSequence ks, double[] speeds){
+    for (int i = 0; i < JointsCount; i++)
+      speeds[i] = 0;
+    for (int f = 1; f < ks.size(); f++) {
+      Keyframe from = ks.getFrame(f - 1);
+      Keyframe to = ks.getFrame(f);
+      double seconds = Math.max(1, to.getTransitionTime()) / 1000.0;
+      for (int i = 0; i < JointsCount; i++)
+        speeds[i] = Math.max(speeds[i], 
+                Math.abs(to.getAngle(i) - from.getAngle(i)) / seconds);
+    }
+  }
+  
+  /**
+   * Returns the sum of all transition times. 
+   * 
+   * @param ks Keyframe sequence.
+   * @return Duration of the sequence in ms.
+   */
+  public static int getDuration(KeyframeSequence ks){
+    int duration = 0;
+    for (int f = 0; f < ks.size(); f++)
+      duration += ks.getFrame(f).getTransitionTime();
+    return duration;
+  }
+}
@@ -0,0 +1,26 @@
+/*******************************************************************************
+*  RoboNewbie
+* NaoTeam Humboldt
+* @version 1.1
+*******************************************************************************/
+
+package keyframeMotion.util;
+
+/**
+ * Priorities of requested movements in class keyframeMotion.KeyframeMotion.
+ *
+ * NORMAL movements are queued and start when the running movement comes to
+ * its end, the last cycles of both are cross-faded. 
+ * PREEMPT movements interrupt a running NORMAL movement at once and are 
+ * cross-faded from the actual pose. 
+ * FALL_RECOVERY movements interrupt every other movement and drop all queued
+ * movements. 
+ * 
+ * The order of the constants is significant, later constants have a higher 
+ * priority. 
+ *
+ * @see MotionQueue
+ */
+public enum MotionPriority {
+  NORMAL, PREEMPT, FALL_RECOVERY
+}
@@ -0,0 +1,130 @@
+/*******************************************************************************
+*  RoboNewbie
+* NaoTeam Humboldt
+* @version 1.1
+*******************************************************************************/
+
+package keyframeMotion.util;
+
+/**
+ * Fixed-size queue of keyframe sequences waiting for their execution.
+ * 
+ * Sequences are taken out by priority, sequences with the same priority in 
+ * the order they were added. If the queue is full, a new sequence replaces 
+ * the oldest one with the lowest priority, if that priority is not higher 
+ * than the new one, otherwise the new sequence is dropped. 
+ * 
+ * The queue works on preallocated arrays, adding and taking sequences does
+ * not create any objects. 
+ * 
+ * @see MotionPriority
+ */
+public class MotionQueue {
+  
+  private final KeyframeSequence[] sequences;
+  private final MotionPriority[] priorities;
+  private int count = 0;
+  
+  /**
+   * Constructor.
+   * 
+   * @param capacity Maximal number of waiting sequences. 
+   */
+  public MotionQueue(int capacity){
+    sequences = new KeyframeSequence[capacity];
+    priorities = new MotionPriority[capacity];
+  }
+  
+  /**
+   * Appends a sequence. 
+   * 
+   * @param ks Sequence, cannot be null.
+   * @param priority Priority of the sequence, cannot be null.
+   * @return True, if the sequence was added, false if it was dropped because
+   * the queue is full of sequences with a higher priority. 
+   */
+  public boolean add(KeyframeSequence ks, MotionPriority priority){
+    if (count == sequences.length) {
+      int lowest = 0;
+      for (int i = 1; i < count; i++)
+        if (priorities[i].compareTo(priorities[lowest]) < 0)
+          lowest = i;
+      if (priorities[lowest].compareTo(priority) > 0)
+        return false;
+      remove(lowest);
+    }
+    sequences[count] = ks;
+    priorities[count] = priority;
+    count++;
+    return true;
+  }
+  
+  /**
+   * Returns the priority of the sequence, which would be returned by the next
+   * call of poll(). 
+   * 
+   * @return Highest waiting priority, or null if the queue is empty. 
+   */
+  public MotionPriority peekPriority(){
+    int next = nextIndex();
+    return next < 0 ? null : priorities[next];
+  }
+  
+  /**
+   * Removes and returns the waiting sequence with the highest priority. 
+   * 
+   * @return The next sequence, or null if the queue is empty. 
+   */
+  public KeyframeSequence poll(){
+    int next = nextIndex();
+    if (next < 0)
+      return null;
+    KeyframeSequence ks = sequences[next];
+    remove(next);
+    return ks;
+  }
+  
+  /**
+   * Removes all waiting sequences.
+   */
+  public void clear(){
+    for (int i = 0; i < count; i++) {
+      sequences[i] = null;
+      priorities[i] = null;
+    }
+    count = 0;
+  }
+  
+  /**
+   * States if there is any waiting sequence.
+   * 
+   * @return True, if no sequence is waiting. 
+   */
+  public boolean isEmpty(){
+    return count == 0;
+  }
+  
+  /**
+   * Internal method, finds the oldest entry with the highest priority. 
+   */
+  private int nextIndex(){
+    int next = -1;
+    for (int i = 0; i < count; i++)
+      if (next < 0 || priorities[i].compareTo(priorities[next]) > 0)
+        next = i;
+    return next;
+  }
+  
+  /**
+   * Internal method, removes an entry and keeps the order of the others.
+   */
+  private void remove(int index){
+    for (int i = index; i < count - 1; i++) {
+      sequences[i] = sequences[i + 1];
+      priorities[i] = priorities[i + 1];
+    }
+    count--;
+    sequences[count] = null;
+    priorities[count] = null;
+  }
+}
@@ -0,0 +1,213 @@
+/*******************************************************************************
+*  RoboNewbie
+* NaoTeam Humboldt
+* @version 1.1
+*******************************************************************************/
+
+package keyframeMotion.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import util.RobotConsts;
+
+/**
+ * Records the execution of keyframe sequences into a binary file, for an 
+ * offline analysis with examples.agentKeyframeDeveloper.MotionRecordAnalyzer .
+ * 
+ * For every executed cycle the recorder stores the server time, the number of
+ * the sequence run, the cycle and keyframe index in the sequence, and for all
+ * joints the target angle, the sensed angle and the commanded speed (radians,
+ * radians per second). 
+ * 
+ * The records are collected in one of two preallocated buffers. When a buffer 
+ * is full, it is written to the file by a background thread, while the 
+ * records are collected in the other buffer. So record(...) neither allocates
+ * memory nor waits for the file system. If the background thread is still busy
+ * with the other buffer, the records of this cycle are dropped and counted 
+ * (see getDroppedRecords()).
+ * 
+ * File format (java.io.DataOutputStream): int MAGIC, int VERSION, int 
+ * RobotConsts.JointsCount, then the records, each with RECORD_SIZE doubles 
+ * (time, run, cycle, keyframe, JointsCount targets, JointsCount sensed angles, 
+ * JointsCount commands). A record with the time NaN ends the records, it is
+ * followed by int number of runs and the names of the sequences of all runs 
+ * (writeUTF). 
+ * 
+ * Usage: KeyframeMotion.setRecorder(new MotionRecorder("walk.rec", 500)), and 
+ * call close() of the recorder, before the agent program ends. 
+ */
+public class MotionRecorder {
+  
+  /** "RNMR" */
+  public static final int MAGIC = 0x524E4D52;
+  public static final int VERSION = 1;
+  public static final int RECORD_SIZE = 4 + 3 * RobotConsts.JointsCount;
+  
+  private final DataOutputStream out;
+  private final ExecutorService writer;
+  
+  private double[] activeBuffer;
+  private double[] flushBuffer;
+  private final ByteBuffer bytes;
+  private volatile boolean flushBufferFree = true;
+  private int flushCount = 0;
+  private final Runnable flushTask;
+  private final int capacity;
+  private int records = 0;
+  
+  private final ArrayList<String> runNames = new ArrayList<>();
+  private int droppedRecords = 0;
+  private volatile IOException writeError = null;
+  private boolean closed = false;
+  
+  /**
+   * Constructor, opens the file and writes the header. 
+   * 
+   * @param fileName Name of the file, relative to the directory where the 
+   * program runs. 
+   * @param capacity Number of records (cycles) per buffer, e.g. 500 for 10 
+   * seconds. 
+   * @throws IOException If the file cannot be opened. 
+   */
+  public MotionRecorder(String fileName, int capacity) throws IOException {
+    this.capacity = capacity;
+    activeBuffer = new double[capacity * RECORD_SIZE];
+    flushBuffer = new double[capacity * RECORD_SIZE];
+    bytes = ByteBuffer.allocate(capacity * RECORD_SIZE * 8);
+    out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName)));
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeInt(RobotConsts.JointsCount);
+    writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "MotionRecorder");
+        t.setDaemon(true);
+        return t;
+      }
+    });
+    flushTask = new Runnable() {
+      @Override
+      public void run() {
+        try {
+          // big endian, like DataOutputStream.writeDouble(...)
+          bytes.clear();
+          bytes.asDoubleBuffer().put(flushBuffer, 0, flushCount);
+          out.write(bytes.array(), 0, flushCount * 8);
+        } catch (IOException e) {
+          writeError = e;
+        }
+        flushBufferFree = true;
+      }
+    };
+  }
+  
+  /**
+   * Starts a new run of a sequence, the following records belong to it. 
+   * 
+   * @param name Name of the sequence. 
+   */
+  public void beginSequence(String name){
+    runNames.add(name);
+  }
+  
+  /**
+   * Records one cycle of the actual run. 
+   * 
+   * @param time Server time.
+   * @param cycle Index of the cycle in the sequence.
+   * @param keyframe Index of the approached keyframe. 
+   * @param targets Target angles of this cycle.
+   * @param sensed Sensed angles.
+   * @param commands Commanded speeds. 
+   */
+  public void record(double time, int cycle, int keyframe, double[] targets, 
+          double[] sensed, double[] commands){
+    if (closed)
+      return;
+    if (records == capacity && !flush()) {
+      droppedRecords++;
+      return;
+    }
+    int offset = records * RECORD_SIZE;
+    activeBuffer[offset] = time;
+    activeBuffer[offset + 1] = runNames.size() - 1;
+    activeBuffer[offset + 2] = cycle;
+    activeBuffer[offset + 3] = keyframe;
+    offset += 4;
+    System.arraycopy(targets, 0, activeBuffer, offset, RobotConsts.JointsCount);
+    offset += RobotConsts.JointsCount;
+    System.arraycopy(sensed, 0, activeBuffer, offset, RobotConsts.JointsCount);
+    offset += RobotConsts.JointsCount;
+    System.arraycopy(commands, 0, activeBuffer, offset, RobotConsts.JointsCount);
+    records++;
+  }
+  
+  /**
+   * Returns the number of records, which were dropped, because the file 
+   * could not be written fast enough. 
+   * 
+   * @return Number of dropped records. 
+   */
+  public int getDroppedRecords(){
+    return droppedRecords;
+  }
+  
+  /**
+   * Writes all records and the names of the sequences and closes the file. 
+   * Waits for the background thread, so it should be called at the end of 
+   * the agent program. 
+   * 
+   * @throws IOException If the file could not be written. 
+   */
+  public void close() throws IOException {
+    if (closed)
+      return;
+    closed = true;
+    while (!flushBufferFree)
+      Thread.yield();
+    if (records > 0)
+      flush();
+    writer.shutdown();
+    try {
+      writer.awaitTermination(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (writeError != null)
+      throw writeError;
+    out.writeDouble(Double.NaN);
+    out.writeInt(runNames.size());
+    for (String name : runNames)
+      out.writeUTF(name);
+    out.close();
+  }
+  
+  /**
+   * Internal method, hands the active buffer over to the background thread
+   * and continues with the other buffer. The same task object is used for 
+   * every flush, it writes flushBuffer up to flushCount. 
+   * 
+   * @return False, if the other buffer is still being written. 
+   */
+  private boolean flush(){
+    if (!flushBufferFree)
+      return false;
+    double[] full = activeBuffer;
+    activeBuffer = flushBuffer;
+    flushBuffer = full;
+    flushCount = records * RECORD_SIZE;
+    records = 0;
+    flushBufferFree = false;
+    writer.execute(flushTask);
+    return true;
+  }
+}
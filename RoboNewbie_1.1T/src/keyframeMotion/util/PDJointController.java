@@ -0,0 +1,108 @@
+/*******************************************************************************
+*  RoboNewbie
+* NaoTeam Humboldt
+* @version 1.1
+*******************************************************************************/
+
+package keyframeMotion.util;
+
+import util.RobotConsts;
+
+/**
+ * Proportional-derivative controller for the speeds of all hinge joints.
+ * 
+ * For every joint the commanded speed is the sum of 
+ * - the planned speed (step from the last target to the actual target), 
+ * - kp times the deviation of the predicted angle from the last target, and
+ * - kd times the deviation of the measured speed from the last planned speed,
+ * limited to the maximal joint speed (see RobotConsts.getMaxSpeed(...)).
+ * The predicted angle is the sensed angle plus the last commanded step, 
+ * because the server sends the joint perceptor values delayed by one cycle.
+ * 
+ * All values are in radians and seconds. kp is given in 1/s, kd has no unit.
+ * The gains are stored in a table with one row per joint, which can be 
+ * changed with setGains(...). The controller works on preallocated arrays, 
+ * so computing the commands does not create any objects.
+ * 
+ * @see ControlMode
+ */
+public class PDJointController {
+  
+  // kp, kd per joint, in the order of the joints in util.RobotConsts
+  private static final double[][] DEFAULT_GAINS = new double[][]{
+    {15, 0.05}, {15, 0.05},                                       // head
+    {15, 0.05}, {15, 0.05}, {15, 0.05}, {15, 0.05},               // left arm
+    {25, 0.1}, {25, 0.1}, {25, 0.1}, {25, 0.1}, {25, 0.1}, {25, 0.1}, // left leg
+    {25, 0.1}, {25, 0.1}, {25, 0.1}, {25, 0.1}, {25, 0.1}, {25, 0.1}, // right leg
+    {15, 0.05}, {15, 0.05}, {15, 0.05}, {15, 0.05}};              // right arm
+  
+  private final double cycleSeconds;
+  private final double[] kp = new double[RobotConsts.JointsCount];
+  private final double[] kd = new double[RobotConsts.JointsCount];
+  private final double[] maxSpeed = new double[RobotConsts.JointsCount];
+  
+  private final double[] lastSensed = new double[RobotConsts.JointsCount];
+  private final double[] lastPlannedSpeed = new double[RobotConsts.JointsCount];
+  private boolean hasLastSensed = false;
+  
+  /**
+   * Constructor, sets the default gains.
+   * 
+   * @param cycleTime Duration of one server cycle in ms.
+   */
+  public PDJointController(int cycleTime){
+    cycleSeconds = cycleTime / 1000.0;
+    for (int i = 0; i < RobotConsts.JointsCount; i++) {
+      kp[i] = DEFAULT_GAINS[i][0];
+      kd[i] = DEFAULT_GAINS[i][1];
+      maxSpeed[i] = RobotConsts.getMaxSpeed(i);
+    }
+  }
+  
+  /**
+   * Sets the gains for one joint. 
+   * 
+   * @param joint Joint index as defined in util.RobotConsts .
+   * @param p Proportional gain in 1/s.
+   * @param d Derivative gain. 
+   */
+  public void setGains(int joint, double p, double d){
+    kp[joint] = p;
+    kd[joint] = d;
+  }
+  
+  /**
+   * Forgets the measured speeds, should be called when a new movement starts
+   * from rest. 
+   */
+  public void reset(){
+    hasLastSensed = false;
+    for (int i = 0; i < RobotConsts.JointsCount; i++)
+      lastPlannedSpeed[i] = 0;
+  }
+  
+  /**
+   * Computes the speed commands of all joints for one cycle.
+   * 
+   * @param lastTargets Targets of the last cycle. 
+   * @param targets Targets of this cycle.
+   * @param sensed Sensed angles.
+   * @param lastSteps Steps commanded in the last cycle, in radians per cycle.
+   * @param commands Output, speeds in radians per second.
+   */
+  public void computeCommands(double[] lastTargets, double[] targets, 
+          double[] sensed, double[] lastSteps, double[] commands){
+    for (int i = 0; i < RobotConsts.JointsCount; i++) {
+      double plannedSpeed = (targets[i] - lastTargets[i]) / cycleSeconds;
+      double positionError = lastTargets[i] - (sensed[i] + lastSteps[i]);
+      double speedError = hasLastSensed 
+              ? lastPlannedSpeed[i] - (sensed[i] - lastSensed[i]) / cycleSeconds
+              : 0;
+      double command = plannedSpeed + kp[i] * positionError + kd[i] * speedError;
+      commands[i] = Math.max(-maxSpeed[i], Math.min(maxSpeed[i], command));
+      lastPlannedSpeed[i] = plannedSpeed;
+      lastSensed[i] = sensed[i];
+    }
+    hasLastSensed = true;
+  }
+}
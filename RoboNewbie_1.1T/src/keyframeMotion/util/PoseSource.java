@@ -0,0 +1,55 @@
+/*******************************************************************************
+*  RoboNewbie
+* NaoTeam Humboldt
+* @version 1.1
+*******************************************************************************/
+
+package keyframeMotion.util;
+
+/**
+ * Source of joint targets for movements, which are generated at runtime
+ * instead of loaded from a keyframe file.
+ *
+ * A pose source is played by keyframeMotion.KeyframeMotion like a keyframe
+ * sequence (see KeyframeMotion.setPoseSource(...)): when the movement is
+ * started, start(...) is called with the angles the movement begins at, and
+ * then the targets of all cycles are requested in order and stored in a
+ * TrajectoryTable. So the movement is queued, cross-faded, scaled in time by
+ * the server time and recorded like every loaded sequence.
+ *
+ * @see TrajectoryTable
+ * @see keyframeMotion.KeyframeMotion
+ */
+public interface PoseSource {
+
+  /**
+   * Returns the name of the movement, used for logging and recording.
+   *
+   * @return Name, cannot be null.
+   */
+  String getName();
+
+  /**
+   * Returns the duration of the movement.
+   *
+   * @return Number of server cycles, at least 1.
+   */
+  int getCycleCount();
+
+  /**
+   * Prepares the movement, called once before the targets are requested.
+   *
+   * @param startAngles Angles of all joints in radians at the start of the
+   * movement, in the order of util.RobotConsts. The array must not be changed.
+   */
+  void start(double[] startAngles);
+
+  /**
+   * Computes the targets of all joints at the end of a cycle.
+   *
+   * @param cycle Cycle of the movement, from 0 to getCycleCount() - 1.
+   * @param targets Array for the angles of all joints in radians, in the order
+   * of util.RobotConsts.
+   */
+  void computeTargets(int cycle, double[] targets);
+}
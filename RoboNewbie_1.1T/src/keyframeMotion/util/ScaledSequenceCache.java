@@ -0,0 +1,97 @@
+/*******************************************************************************
+*  RoboNewbie
+* NaoTeam Humboldt
+* @version 1.1
+*******************************************************************************/
+
+package keyframeMotion.util;
+
+import java.util.IdentityHashMap;
+
+/**
+ * Cache for keyframe sequences, which are derived from a loaded sequence by 
+ * scaling its playback speed and its amplitude.
+ * 
+ * The speed factor divides all transition times, so a factor of 2 plays the
+ * sequence twice as fast and a factor of 0.5 half as fast. The amplitude factor
+ * multiplies all joint angles, like it was done by hand for the files 
+ * walk_forward-flemming-nika_slow050.txt and _slow075.txt (shorter steps).
+ * 
+ * The factors are rounded to multiples of STEP, so a behavior can change the
+ * factors continuously, but only a small number of derived sequences is ever
+ * created. Every derived sequence is created at its first request and then 
+ * taken from the cache. The cache is keyed by the identity of the original 
+ * sequence, because the sequences in KeyframeMotion are loaded once and never 
+ * changed. The derived sequences of one original are kept in an array indexed
+ * by the number of speed and amplitude steps, so a lookup does not create any
+ * objects.
+ * 
+ * @see KeyframeTransforms#scale(KeyframeSequence, double, double)
+ */
+public class ScaledSequenceCache {
+  
+  /** Resolution of the speed and amplitude factors. */
+  public static final double STEP = 0.05;
+  
+  /** Smallest and largest speed factor. */
+  public static final double MIN_SPEED = 0.25, MAX_SPEED = 2;
+  
+  /** Smallest and largest amplitude factor. */
+  public static final double MIN_AMPLITUDE = 0.25, MAX_AMPLITUDE = 1.25;
+  
+  private static final int MIN_SPEED_STEPS = steps(MIN_SPEED);
+  private static final int MIN_AMPLITUDE_STEPS = steps(MIN_AMPLITUDE);
+  private static final int SPEED_STEPS = steps(MAX_SPEED) - MIN_SPEED_STEPS + 1;
+  private static final int AMPLITUDE_STEPS = steps(MAX_AMPLITUDE) - MIN_AMPLITUDE_STEPS + 1;
+  
+  private final IdentityHashMap<KeyframeSequence, KeyframeSequence[][]> cache 
+          = new IdentityHashMap<>();
+  
+  /**
+   * Returns the scaled version of a sequence. 
+   * 
+   * @param ks Original sequence.
+   * @param speed Speed factor, limited to MIN_SPEED ... MAX_SPEED.
+   * @param amplitude Amplitude factor, limited to MIN_AMPLITUDE ... 
+   * MAX_AMPLITUDE.
+   * @return Derived sequence, or the original one, if both factors are 
+   * rounded to 1 or the sequence is generated by a PoseSource (a generated
+   * movement is parameterized by its source).
+   */
+  public KeyframeSequence get(KeyframeSequence ks, double speed, double amplitude){
+    int speedSteps = quantize(speed, MIN_SPEED, MAX_SPEED);
+    int amplitudeSteps = quantize(amplitude, MIN_AMPLITUDE, MAX_AMPLITUDE);
+    int one = (int) Math.round(1 / STEP);
+    if ((speedSteps == one && amplitudeSteps == one) || ks.getPoseSource() != null)
+      return ks;
+    
+    KeyframeSequence[][] scaled = cache.get(ks);
+    if (scaled == null) {
+      scaled = new KeyframeSequence[SPEED_STEPS][AMPLITUDE_STEPS];
+      cache.put(ks, scaled);
+    }
+    KeyframeSequence[] row = scaled[speedSteps - MIN_SPEED_STEPS];
+    KeyframeSequence result = row[amplitudeSteps - MIN_AMPLITUDE_STEPS];
+    if (result == null) {
+      result = KeyframeTransforms.scale(ks, speedSteps * STEP, amplitudeSteps * STEP);
+      result.setName(String.format("%s (speed %.2f, amplitude %.2f)", 
+              ks.getName(), speedSteps * STEP, amplitudeSteps * STEP));
+      row[amplitudeSteps - MIN_AMPLITUDE_STEPS] = result;
+    }
+    return result;
+  }
+  
+  /**
+   * Internal method, limits a factor and rounds it to a number of steps.
+   */
+  private static int quantize(double factor, double min, double max){
+    return steps(Math.max(min, Math.min(max, factor)));
+  }
+  
+  /**
+   * Internal method, rounds a factor to a number of steps.
+   */
+  private static int steps(double factor){
+    return (int) Math.round(factor / STEP);
+  }
+}
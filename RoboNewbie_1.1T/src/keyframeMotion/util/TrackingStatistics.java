@@ -0,0 +1,115 @@
+/*******************************************************************************
+*  RoboNewbie
+* NaoTeam Humboldt
+* @version 1.1
+*******************************************************************************/
+
+package keyframeMotion.util;
+
+import util.RobotConsts;
+
+/**
+ * Statistics about how well the joints follow the planned trajectory of a 
+ * keyframe sequence. 
+ * 
+ * The tracking error of a joint in a cycle is the deviation of its predicted 
+ * angle (sensed angle plus the last commanded step) from the target of the 
+ * last cycle. For every joint the root mean square and the maximum of the 
+ * absolute error over all cycles of a sequence are collected. 
+ * 
+ * The statistics are collected in preallocated arrays, add(...) does not 
+ * create any objects. 
+ */
+public class TrackingStatistics {
+  
+  private final double[] sumSquares = new double[RobotConsts.JointsCount];
+  private final double[] maxErrors = new double[RobotConsts.JointsCount];
+  private int cycles = 0;
+  
+  /**
+   * Forgets all collected errors.
+   */
+  public void reset(){
+    for (int i = 0; i < RobotConsts.JointsCount; i++) {
+      sumSquares[i] = 0;
+      maxErrors[i] = 0;
+    }
+    cycles = 0;
+  }
+  
+  /**
+   * Adds the errors of one cycle.
+   * 
+   * @param lastTargets Targets of the last cycle, in radians.
+   * @param sensed Sensed angles, in radians.
+   * @param lastSteps Steps commanded in the last cycle, in radians.
+   */
+  public void add(double[] lastTargets, double[] sensed, double[] lastSteps){
+    for (int i = 0; i < RobotConsts.JointsCount; i++) {
+      double error = Math.abs(lastTargets[i] - (sensed[i] + lastSteps[i]));
+      sumSquares[i] += error * error;
+      if (error > maxErrors[i])
+        maxErrors[i] = error;
+    }
+    cycles++;
+  }
+  
+  /**
+   * Returns the number of collected cycles.
+   * 
+   * @return Number of cycles. 
+   */
+  public int getCycles(){
+    return cycles;
+  }
+  
+  /**
+   * Returns the root mean square error of a joint. 
+   * 
+   * @param joint Joint index as defined in util.RobotConsts .
+   * @return RMS error in radians, 0 if no cycle was collected. 
+   */
+  public double getRmsError(int joint){
+    return cycles == 0 ? 0 : Math.sqrt(sumSquares[joint] / cycles);
+  }
+  
+  /**
+   * Returns the maximal absolute error of a joint. 
+   * 
+   * @param joint Joint index as defined in util.RobotConsts .
+   * @return Maximal error in radians. 
+   */
+  public double getMaxError(int joint){
+    return maxErrors[joint];
+  }
+  
+  /**
+   * Returns the root mean square error over all joints.
+   * 
+   * @return RMS error in radians, 0 if no cycle was collected. 
+   */
+  public double getTotalRmsError(){
+    if (cycles == 0)
+      return 0;
+    double sum = 0;
+    for (int i = 0; i < RobotConsts.JointsCount; i++)
+      sum += sumSquares[i];
+    return Math.sqrt(sum / (cycles * RobotConsts.JointsCount));
+  }
+  
+  /**
+   * Returns the RMS errors of all joints in degrees for a debug output. 
+   * 
+   * @return Formatted string with all joints, see 
+   * RobotConsts.getAllJointsString(...).
+   */
+  @Override
+  public String toString(){
+    double[] rms = new double[RobotConsts.JointsCount];
+    for (int i = 0; i < RobotConsts.JointsCount; i++)
+      rms[i] = Math.toDegrees(getRmsError(i));
+    return String.format("Tracking RMS error (degrees) over %d cycles, total %.2f:%n",
+            cycles, Math.toDegrees(getTotalRmsError()))
+            + RobotConsts.getAllJointsString(rms);
+  }
+}
@@ -0,0 +1,238 @@
+/*******************************************************************************
+*  RoboNewbie
+* NaoTeam Humboldt
+* @version 1.1
+*******************************************************************************/
+
+package keyframeMotion.util;
+
+import util.RobotConsts;
+
+/**
+ * Per-cycle target angles of a keyframe sequence.
+ *
+ * When a sequence is started, method plan(...) computes for every server cycle
+ * of the sequence the target angle of every joint, interpolated from the
+ * starting pose through all keyframes with the chosen Interpolation profile.
+ * During the execution of the sequence the targets are only looked up, so the
+ * per-cycle work of a keyframe player reduces to one table access per joint.
+ *
+ * The targets are stored in radians (the keyframe files are given in degrees)
+ * in one flat array, cycle by cycle, with RobotConsts.JointsCount values per
+ * cycle. The array is allocated once and only grows, if a longer sequence is
+ * planned than any sequence before.
+ *
+ * A frame ends in the server cycle nearest to the sum of the transition times
+ * up to this frame, but every frame takes at least one cycle. So transition 
+ * times, which are no multiples of the cycle time, are rounded without 
+ * accumulating the rounding errors over the sequence.
+ *
+ * For a sequence generated by a PoseSource the targets of every cycle are
+ * requested from the source instead, every cycle counts as one frame.
+ *
+ * @see Interpolation
+ * @see keyframeMotion.KeyframeMotion
+ */
+public class TrajectoryTable {
+
+  private static final int INITIAL_CAPACITY = 512;
+
+  private final int cycleTime;
+
+  private double[] targets = new double[INITIAL_CAPACITY * RobotConsts.JointsCount];
+  private int[] frameOfCycle = new int[INITIAL_CAPACITY];
+  private int[] cyclesOfFrame = new int[INITIAL_CAPACITY];
+  private int cycleCount = 0;
+
+  private final double[] startAngles = new double[RobotConsts.JointsCount];
+  private final double[] fromAngles = new double[RobotConsts.JointsCount];
+  private final double[] toAngles = new double[RobotConsts.JointsCount];
+  private final double[] slopesIn = new double[RobotConsts.JointsCount];
+  private final double[] slopesOut = new double[RobotConsts.JointsCount];
+
+  /**
+   * Constructor.
+   *
+   * @param cycleTime Duration of one server cycle in ms.
+   */
+  public TrajectoryTable(int cycleTime) {
+    this.cycleTime = cycleTime;
+  }
+
+  /**
+   * Returns the number of server cycles the passed time takes.
+   *
+   * @param time Time in ms.
+   * @return Nearest number of cycles.
+   */
+  public int getCyclesForTime(int time) {
+    return (time + cycleTime / 2) / cycleTime;
+  }
+
+  /**
+   * Computes the targets of all cycles of a sequence.
+   *
+   * @param ks Sequence to plan, the state of its getNextFrame() iteration is
+   * not changed.
+   * @param start Joint angles in radians at the start of the sequence, usually
+   * the sensed angles.
+   * @param mode Interpolation profile between the keyframes.
+   */
+  public void plan(KeyframeSequence ks, double[] start, Interpolation mode) {
+    if (ks.getPoseSource() != null) {
+      plan(ks.getPoseSource(), start);
+      return;
+    }
+    int frames = ks.size();
+    if (cyclesOfFrame.length < frames)
+      cyclesOfFrame = new int[frames];
+    int total = 0;
+    int time = 0;
+    for (int f = 0; f < frames; f++) {
+      time += ks.getFrame(f).getTransitionTime();
+      cyclesOfFrame[f] = Math.max(1, getCyclesForTime(time) - total);
+      total += cyclesOfFrame[f];
+    }
+    ensureCapacity(total);
+
+    System.arraycopy(start, 0, startAngles, 0, RobotConsts.JointsCount);
+    System.arraycopy(start, 0, fromAngles, 0, RobotConsts.JointsCount);
+    for (int i = 0; i < RobotConsts.JointsCount; i++)
+      slopesIn[i] = 0;
+
+    int cycle = 0;
+    for (int f = 0; f < frames; f++) {
+      Keyframe kf = ks.getFrame(f);
+      int cycles = cyclesOfFrame[f];
+      for (int i = 0; i < RobotConsts.JointsCount; i++)
+        toAngles[i] = Math.toRadians(kf.getAngle(i));
+      if (mode == Interpolation.CUBIC_HERMITE)
+        computeSlopesOut(ks, f, cycles);
+
+      for (int c = 1; c <= cycles; c++) {
+        double u = (double) c / cycles;
+        int offset = cycle * RobotConsts.JointsCount;
+        for (int i = 0; i < RobotConsts.JointsCount; i++)
+          targets[offset + i] = interpolate(mode, i, u, cycles);
+        frameOfCycle[cycle] = f;
+        cycle++;
+      }
+
+      System.arraycopy(toAngles, 0, fromAngles, 0, RobotConsts.JointsCount);
+      System.arraycopy(slopesOut, 0, slopesIn, 0, RobotConsts.JointsCount);
+    }
+    cycleCount = total;
+  }
+
+  /**
+   * Requests the targets of all cycles from a pose source.
+   *
+   * @param source Source of the movement.
+   * @param start Joint angles in radians at the start of the movement.
+   */
+  public void plan(PoseSource source, double[] start) {
+    int total = Math.max(1, source.getCycleCount());
+    ensureCapacity(total);
+    System.arraycopy(start, 0, startAngles, 0, RobotConsts.JointsCount);
+    source.start(startAngles);
+    for (int cycle = 0; cycle < total; cycle++) {
+      source.computeTargets(cycle, toAngles);
+      System.arraycopy(toAngles, 0, targets, cycle * RobotConsts.JointsCount,
+              RobotConsts.JointsCount);
+      frameOfCycle[cycle] = cycle;
+    }
+    cycleCount = total;
+  }
+
+  /**
+   * Returns the number of planned cycles.
+   *
+   * @return Number of cycles of the planned sequence.
+   */
+  public int getCycleCount() {
+    return cycleCount;
+  }
+
+  /**
+   * Returns the target angle of a joint at the end of a cycle.
+   *
+   * @param cycle Cycle of the sequence, starting with 0. Passing -1 returns
+   * the start angle.
+   * @param joint Joint index as defined in util.RobotConsts .
+   * @return Target angle in radians.
+   */
+  public double getTarget(int cycle, int joint) {
+    if (cycle < 0)
+      return startAngles[joint];
+    return targets[cycle * RobotConsts.JointsCount + joint];
+  }
+
+  /**
+   * Returns the index of the keyframe, which is approached in a cycle.
+   *
+   * @param cycle Cycle of the sequence, starting with 0.
+   * @return Index of the keyframe in the planned sequence.
+   */
+  public int getFrameIndex(int cycle) {
+    return frameOfCycle[cycle];
+  }
+
+  /**
+   * Internal method, interpolates one joint of the actual transition.
+   */
+  private double interpolate(Interpolation mode, int i, double u, int cycles) {
+    double p0 = fromAngles[i];
+    double p1 = toAngles[i];
+    switch (mode) {
+      case MINIMUM_JERK:
+        double u3 = u * u * u;
+        return p0 + (p1 - p0) * u3 * (10 - 15 * u + 6 * u * u);
+      case CUBIC_HERMITE:
+        double u2 = u * u;
+        double h00 = 2 * u2 * u - 3 * u2 + 1;
+        double h10 = u2 * u - 2 * u2 + u;
+        double h01 = -2 * u2 * u + 3 * u2;
+        double h11 = u2 * u - u2;
+        return h00 * p0 + h10 * cycles * slopesIn[i]
+                + h01 * p1 + h11 * cycles * slopesOut[i];
+      default:
+        return p0 + (p1 - p0) * u;
+    }
+  }
+
+  /**
+   * Internal method, computes the slopes (per cycle) at the end of frame f.
+   * The last keyframe and turning points get the slope 0, otherwise the
+   * mean of both neighbor slopes is used, limited to avoid overshooting.
+   */
+  private void computeSlopesOut(KeyframeSequence ks, int f, int cycles) {
+    if (f + 1 >= ks.size()) {
+      for (int i = 0; i < RobotConsts.JointsCount; i++)
+        slopesOut[i] = 0;
+      return;
+    }
+    Keyframe next = ks.getFrame(f + 1);
+    int nextCycles = cyclesOfFrame[f + 1];
+    for (int i = 0; i < RobotConsts.JointsCount; i++) {
+      double before = (toAngles[i] - fromAngles[i]) / cycles;
+      double after = (Math.toRadians(next.getAngle(i)) - toAngles[i]) / nextCycles;
+      if (before * after <= 0) {
+        slopesOut[i] = 0;
+      } else {
+        double limit = 3 * Math.min(Math.abs(before), Math.abs(after));
+        double mean = (before + after) / 2;
+        slopesOut[i] = Math.max(-limit, Math.min(limit, mean));
+      }
+    }
+  }
+
+  /**
+   * Internal method, grows the table if necessary.
+   */
+  private void ensureCapacity(int cycles) {
+    if (cycles > frameOfCycle.length) {
+      targets = new double[cycles * RobotConsts.JointsCount];
+      frameOfCycle = new int[cycles];
+    }
+  }
+}
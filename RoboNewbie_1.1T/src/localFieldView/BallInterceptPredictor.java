@@ -0,0 +1,398 @@
+/*******************************************************************************
+*  RoboNewbie
+* NaoTeam Humboldt
+* @version 1.1
+*******************************************************************************/
+
+package localFieldView;
+
+import util.PolarCoords;
+
+/**
+ * This class predicts, where and when the ball crosses a line in front of or
+ * behind the robot, e.g. the goal line for a goalie standing on it.
+ *
+ * The line is parallel to the y-axis of the local coordinate system of
+ * LocalFieldView (x-axis to the front of the robot, y-axis to its left), at
+ * a fixed x-coordinate. The ball observations are read from the 
+ * PerceptionHistory of LocalFieldView, and the position and velocity of the
+ * ball are fitted to the last MAX_OBSERVATIONS of them by least squares with 
+ * a constant velocity. The fit is computed in closed form in one pass over 
+ * the history, so an update costs a few arithmetic operations per 
+ * observation and does not create any objects. Observations older than 1 
+ * second are not used, and an observation far off the fitted track (e.g. 
+ * after a kick) restarts the fit with it, the older ones are ignored.
+ *
+ * The prediction is evaluated at a second line, which can differ from the
+ * predicted one: the ball cannot be seen at the feet of the robot, so the
+ * crossing of a line through the robot is never observed. When the predicted
+ * time to the crossing of the evaluation line falls below EVALUATION_LEAD,
+ * this prediction is stored. When two successive observations lie on both
+ * sides of the evaluation line, the real crossing is interpolated and
+ * compared with the stored prediction. A stored prediction without an
+ * observed crossing (the ball stops, turns away or is not seen) is counted
+ * as missed.
+ *
+ * The predictor works on the recorded observations, independently of the
+ * Kalman filter of BallTracker. update(...) should be called once in every 
+ * server cycle, after LocalFieldView has been updated.
+ *
+ * @see PerceptionHistory
+ * @see BallTracker
+ */
+public class BallInterceptPredictor {
+
+  /**
+   * Largest number of observations used for the fit.
+   */
+  public static final int MAX_OBSERVATIONS = 12;
+  /**
+   * Time to the crossing in seconds, at which the prediction is stored for
+   * the evaluation.
+   */
+  public static final double EVALUATION_LEAD = 0.5;
+
+  private static final int MIN_OBSERVATIONS = 4;
+  private static final double MAX_AGE = 1;
+  // an observation farther from the fitted track restarts the fit (in m)
+  private static final double GATE = 0.3;
+  // a ball slower than this towards the line does not cross it (in m/s)
+  private static final double MIN_SPEED = 0.05;
+
+  private final PerceptionHistory history;
+  private final double lineX;
+  private final double evaluationX;
+  private final PolarCoords coords = new PolarCoords();
+
+  // last observation, observations before the restart time are not used
+  private double lastObservation = Double.NEGATIVE_INFINITY;
+  private double lastX, lastY;
+  private double restartTime = Double.NEGATIVE_INFINITY;
+
+  // fit: position at the mean time of the used observations, and velocity
+  private boolean valid = false;
+  private double meanTime, meanX, meanY, vx, vy, residual;
+  private int used = 0;
+
+  // prediction for the actual server time
+  private double time = 0;
+  private boolean crossing = false;
+  private double crossingTime, crossingY;
+
+  // evaluation
+  private boolean stored = false;
+  private double storedTime, storedY;
+  private boolean evaluated = false;
+  private int evaluations = 0;
+  private int missed = 0;
+  private double lastTimeError, lastPositionError;
+  private double sumTimeError = 0, sumPositionError = 0;
+
+  /**
+   * Constructor, the predictions are evaluated at the predicted line.
+   *
+   * @param history Perception history of LocalFieldView, cannot be null.
+   * @param lineX Local x-coordinate of the line in meters, e.g. 0.5 for a
+   * line in front of the robot.
+   */
+  public BallInterceptPredictor(PerceptionHistory history, double lineX) {
+    this(history, lineX, lineX);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param history Perception history of LocalFieldView, cannot be null.
+   * @param lineX Local x-coordinate of the line in meters, e.g. 0 for the
+   * line through the robot.
+   * @param evaluationX Local x-coordinate of the line, at which the
+   * predictions are evaluated, the ball must be visible there.
+   */
+  public BallInterceptPredictor(PerceptionHistory history, double lineX, 
+          double evaluationX) {
+    this.history = history;
+    this.lineX = lineX;
+    this.evaluationX = evaluationX;
+  }
+
+  /**
+   * Reads a new ball observation, fits the track and predicts the crossing.
+   *
+   * @param serverTime Actual server time.
+   */
+  public void update(double serverTime) {
+    time = serverTime;
+    evaluated = false;
+    if (history.size() > 0 && history.isBallSeen(0) 
+            && history.getTime(0) > lastObservation) {
+      history.getBall(0, coords);
+      add(history.getTime(0), coords.getX(), coords.getY());
+    }
+    fit();
+
+    double t = getCrossingTime(lineX);
+    crossing = !Double.isNaN(t);
+    if (crossing) {
+      crossingTime = t;
+      crossingY = meanY + vy * (t - meanTime);
+    }
+
+    t = getCrossingTime(evaluationX);
+    if (!stored && !Double.isNaN(t) && t - serverTime <= EVALUATION_LEAD) {
+      stored = true;
+      storedTime = t;
+      storedY = meanY + vy * (t - meanTime);
+    } else if (stored && serverTime > storedTime + MAX_AGE) {
+      stored = false;
+      missed++;
+    }
+  }
+
+  /**
+   * States, whether the track of the ball is known.
+   *
+   * @return True, if enough recent observations fit a track.
+   */
+  public boolean isValid() {
+    return valid;
+  }
+
+  /**
+   * States, whether the ball is predicted to cross the line.
+   *
+   * @return True, if the ball moves towards the line.
+   */
+  public boolean isCrossing() {
+    return crossing;
+  }
+
+  /**
+   * Returns the predicted time until the ball crosses the line.
+   *
+   * @return Time in seconds from the last update, or
+   * Double.POSITIVE_INFINITY if the ball does not cross the line.
+   */
+  public double getTimeToCross() {
+    return crossing ? crossingTime - time : Double.POSITIVE_INFINITY;
+  }
+
+  /**
+   * Returns the predicted y-coordinate, at which the ball crosses the line.
+   *
+   * @return Local y-coordinate in meters, only meaningful if isCrossing().
+   */
+  public double getCrossingY() {
+    return crossingY;
+  }
+
+  /**
+   * Returns the fitted velocity in x-direction.
+   *
+   * @return Velocity relative to the robot in m/s.
+   */
+  public double getVx() {
+    return vx;
+  }
+
+  /**
+   * Returns the fitted velocity in y-direction.
+   *
+   * @return Velocity relative to the robot in m/s.
+   */
+  public double getVy() {
+    return vy;
+  }
+
+  /**
+   * Returns the root mean square distance of the used observations from the
+   * fitted track.
+   *
+   * @return Residual in meters.
+   */
+  public double getResidual() {
+    return residual;
+  }
+
+  /**
+   * Returns the number of observations of the fit.
+   *
+   * @return Number of recent observations in the history.
+   */
+  public int getObservationCount() {
+    return used;
+  }
+
+  /**
+   * States, whether a prediction was evaluated at the last update.
+   *
+   * @return True, if the ball crossed the evaluation line with a stored
+   * prediction.
+   */
+  public boolean isEvaluated() {
+    return evaluated;
+  }
+
+  /**
+   * Returns the number of evaluated predictions.
+   *
+   * @return Number of crossings with a stored prediction.
+   */
+  public int getEvaluationCount() {
+    return evaluations;
+  }
+
+  /**
+   * Returns the number of predicted crossings, which did not happen.
+   *
+   * @return Number of missed predictions.
+   */
+  public int getMissedCount() {
+    return missed;
+  }
+
+  /**
+   * Returns the error of the last evaluated crossing time.
+   *
+   * @return Real minus predicted time in seconds.
+   */
+  public double getLastTimeError() {
+    return lastTimeError;
+  }
+
+  /**
+   * Returns the error of the last evaluated crossing position.
+   *
+   * @return Real minus predicted y-coordinate in meters.
+   */
+  public double getLastPositionError() {
+    return lastPositionError;
+  }
+
+  /**
+   * Returns the mean absolute error of the evaluated crossing times.
+   *
+   * @return Error in seconds.
+   */
+  public double getMeanTimeError() {
+    return evaluations == 0 ? 0 : sumTimeError / evaluations;
+  }
+
+  /**
+   * Returns the mean absolute error of the evaluated crossing positions.
+   *
+   * @return Error in meters.
+   */
+  public double getMeanPositionError() {
+    return evaluations == 0 ? 0 : sumPositionError / evaluations;
+  }
+
+  /**
+   * Returns the prediction and the accuracy in a string.
+   *
+   * @return String with the predicted crossing and the errors.
+   */
+  @Override
+  public String toString() {
+    return String.format("BallInterceptPredictor crossing %s y %.2f in %.2f s "
+            + "(%d observations, residual %.3f), %d evaluated: last %.2f m %.2f s, "
+            + "mean %.2f m %.2f s, %d missed", crossing, crossingY,
+            getTimeToCross(), used, residual, evaluations, lastPositionError,
+            lastTimeError, getMeanPositionError(), getMeanTimeError(), missed);
+  }
+
+  /**
+   * Internal method, checks a new observation against the track and 
+   * evaluates the stored prediction, if the ball has crossed the line.
+   */
+  private void add(double t, double x, double y) {
+    boolean restart = false;
+    if (valid) {
+      double dx = meanX + vx * (t - meanTime) - x;
+      double dy = meanY + vy * (t - meanTime) - y;
+      if (dx * dx + dy * dy > GATE * GATE) {
+        restart = true;
+        restartTime = t;
+        if (stored) {
+          stored = false;
+          missed++;
+        }
+      }
+    }
+    if (!restart && stored && lastObservation >= restartTime
+            && (lastX - evaluationX) * (x - evaluationX) <= 0 && lastX != x) {
+      double s = (evaluationX - lastX) / (x - lastX);
+      lastTimeError = lastObservation + s * (t - lastObservation) - storedTime;
+      lastPositionError = lastY + s * (y - lastY) - storedY;
+      sumTimeError += Math.abs(lastTimeError);
+      sumPositionError += Math.abs(lastPositionError);
+      evaluations++;
+      evaluated = true;
+      stored = false;
+    }
+    lastObservation = t;
+    lastX = x;
+    lastY = y;
+  }
+
+  /**
+   * Internal method, predicts the crossing of a line by the fitted track.
+   *
+   * @return Server time of the crossing, or NaN if the ball does not move
+   * towards the line.
+   */
+  private double getCrossingTime(double x) {
+    if (!valid || (x - meanX) * vx <= 0 || Math.abs(vx) <= MIN_SPEED)
+      return Double.NaN;
+    double t = meanTime + (x - meanX) / vx;
+    return t >= time ? t : Double.NaN;
+  }
+
+  /**
+   * Internal method, fits position and velocity to the recent observations
+   * by least squares. The sums are computed with the times relative to the
+   * actual server time and then centered.
+   */
+  private void fit() {
+    used = 0;
+    double st = 0, sx = 0, sy = 0, stt = 0, stx = 0, sty = 0, sxx = 0, syy = 0;
+    for (int age = 0; age < history.size() && used < MAX_OBSERVATIONS; age++) {
+      double t = history.getTime(age);
+      if (time - t > MAX_AGE || t < restartTime)
+        break;
+      if (!history.isBallSeen(age))
+        continue;
+      history.getBall(age, coords);
+      double dt = t - time, x = coords.getX(), y = coords.getY();
+      used++;
+      st += dt;
+      sx += x;
+      sy += y;
+      stt += dt * dt;
+      stx += dt * x;
+      sty += dt * y;
+      sxx += x * x;
+      syy += y * y;
+    }
+    if (used < MIN_OBSERVATIONS) {
+      valid = false;
+      return;
+    }
+    double mt = st / used;
+    meanX = sx / used;
+    meanY = sy / used;
+    meanTime = time + mt;
+    stt -= used * mt * mt;
+    stx -= used * mt * meanX;
+    sty -= used * mt * meanY;
+    sxx -= used * meanX * meanX;
+    syy -= used * meanY * meanY;
+    if (stt <= 1e-9) {
+      valid = false;
+      return;
+    }
+    vx = stx / stt;
+    vy = sty / stt;
+    residual = Math.sqrt(Math.max(0, (sxx - vx * stx + syy - vy * sty) / used));
+    valid = true;
+  }
+}
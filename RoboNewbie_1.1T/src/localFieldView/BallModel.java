@@ -8,6 +8,7 @@
 package localFieldView;
 
 import org.apache.commons.math3.geometry.euclidean.threed.Vector3D;
+import util.PolarCoords;
 import static util.Logger.polarStr;
 
 /**
@@ -19,7 +20,7 @@ import static util.Logger.polarStr;
  * @see LocalFieldView
  */
 public class BallModel extends DatedItemModel {
-    private Vector3D coords;
+  private final PolarCoords coords = new PolarCoords();
     
   /**
    * Constructor. 
@@ -28,11 +29,11 @@ public class BallModel extends DatedItemModel {
    * sensed by the vision perceptor. 
    * 
    * @param timeNow Actual server time.
-   * @param coords Local coordinates relative to the center of the robots head. 
+   * @param coords Local coordinates relative to the center of the robots torso. 
    */
   public BallModel(Vector3D coords, double timeStamp){
     super(timeStamp);
-    this.coords = coords;
+    this.coords.set(coords);
   }
   
   /**
@@ -43,7 +44,20 @@ public class BallModel extends DatedItemModel {
    */
   public void update(Vector3D coords, double timeStamp){
     super.setTimeStamp(timeStamp);
-    this.coords = coords;
+    this.coords.set(coords);
+  }
+  
+  /**
+   * Sets the model data from polar coordinates, without creating objects. 
+   * 
+   * @param distance Distance in meters.
+   * @param azimuth Horizontal angle in radians (see class LocalFieldView).
+   * @param elevation Vertical angle in radians.
+   * @param timeStamp Actualization time, should be actual server time. 
+   */
+  public void update(double distance, double azimuth, double elevation, double timeStamp){
+    super.setTimeStamp(timeStamp);
+    coords.set(distance, azimuth, elevation);
   }
   
   /**
@@ -51,6 +65,15 @@ public class BallModel extends DatedItemModel {
    * @return Local coordinates (see class LocalFieldView).
    */
   public Vector3D getCoords(){
+    return coords.toVector3D();
+  }
+  
+  /**
+   * Returns the polar coordinates of the ball, without any conversion. 
+   * The returned object is updated in place by LocalFieldView. 
+   * @return Local coordinates (see class LocalFieldView).
+   */
+  public PolarCoords getPolar(){
     return coords;
   }
   
@@ -0,0 +1,375 @@
+/*******************************************************************************
+*  RoboNewbie
+* NaoTeam Humboldt
+* @version 1.1
+*******************************************************************************/
+
+package localFieldView;
+
+/**
+ * This class tracks the ball with a Kalman filter.
+ *
+ * The state of the filter is the position and the velocity of the ball on the
+ * ground, in the local coordinate system of LocalFieldView (x-axis to the
+ * front of the robot, y-axis to its left), the ball is assumed to move with
+ * constant velocity. Since the coordinates are relative to the robot, the
+ * velocity is the velocity relative to the robot and contains the movement
+ * of the robot itself.
+ *
+ * The state and its covariance are stored in fixed size primitive arrays, so
+ * the tracker does not create any objects after its construction.
+ * LocalFieldView calls update(...) in every server cycle, then the filter
+ * predicts the state to the actual server time and corrects it with a new
+ * ball observation, if there is one. A seen ball, which does not fit the
+ * prediction at all (e.g. after a kick by another robot), restarts the
+ * filter at the seen position.
+ *
+ * The state can be predicted to any future server time, and the time until
+ * the robot can reach the ball or until the ball crosses a line can be
+ * computed in closed form.
+ *
+ * @see LocalFieldView
+ * @see BallModel
+ */
+public class BallTracker {
+
+  // standard deviation of the ball acceleration in m/s^2
+  private static final double ACCELERATION_SIGMA = 0.5;
+  // standard deviation of the measured position: base + factor * distance
+  private static final double MEASUREMENT_SIGMA_BASE = 0.03;
+  private static final double MEASUREMENT_SIGMA_FACTOR = 0.02;
+  // initial standard deviation of the velocity in m/s
+  private static final double VELOCITY_SIGMA = 1;
+  // squared Mahalanobis distance, above which a measurement restarts the filter
+  private static final double GATE = 16;
+  // the state is invalid, if the ball was not seen for this time in s
+  private static final double MAX_AGE = 3;
+
+  // state x, y, vx, vy
+  private final double[] state = new double[4];
+  // covariance, row by row
+  private final double[] cov = new double[16];
+  private final double[] temp = new double[16];
+
+  private boolean initialized = false;
+  private double time = 0;
+  private double lastMeasurementTime = 0;
+
+  /**
+   * Forgets the ball, the tracker is invalid until the ball is seen again.
+   */
+  public void reset(){
+    initialized = false;
+  }
+
+  /**
+   * Updates the filter, should be called once in every server cycle.
+   *
+   * @param ball Model of the ball, updated by LocalFieldView.
+   * @param serverTime Actual server time.
+   */
+  public void update(BallModel ball, double serverTime){
+    boolean seen = ball.isInFOVnow() && ball.getTimeStamp() > lastMeasurementTime;
+    if (seen){
+      double mx = ball.getPolar().getX();
+      double my = ball.getPolar().getY();
+      double sigma = MEASUREMENT_SIGMA_BASE
+              + MEASUREMENT_SIGMA_FACTOR * ball.getPolar().getDistance();
+      lastMeasurementTime = ball.getTimeStamp();
+      if (!initialized){
+        start(mx, my, sigma, lastMeasurementTime);
+      } else {
+        predict(lastMeasurementTime);
+        if (!correct(mx, my, sigma * sigma))
+          start(mx, my, sigma, lastMeasurementTime);
+      }
+    }
+    if (initialized && serverTime > time)
+      predict(serverTime);
+  }
+
+  /**
+   * States if the tracker has a state estimate.
+   *
+   * @return True, if the ball was seen within the last 3 seconds.
+   */
+  public boolean isValid(){
+    return initialized && time - lastMeasurementTime < MAX_AGE;
+  }
+
+  /**
+   * Returns the server time of the state estimate.
+   *
+   * @return Time of the last update.
+   */
+  public double getTime(){
+    return time;
+  }
+
+  /**
+   * Returns the server time, when the ball was seen the last time.
+   *
+   * @return Time of the last used observation.
+   */
+  public double getLastMeasurementTime(){
+    return lastMeasurementTime;
+  }
+
+  /**
+   * Returns the estimated x coordinate of the ball.
+   *
+   * @return Local x coordinate in meters (see class LocalFieldView).
+   */
+  public double getX(){
+    return state[0];
+  }
+
+  /**
+   * Returns the estimated y coordinate of the ball.
+   *
+   * @return Local y coordinate in meters (see class LocalFieldView).
+   */
+  public double getY(){
+    return state[1];
+  }
+
+  /**
+   * Returns the estimated velocity of the ball in x-direction.
+   *
+   * @return Velocity relative to the robot in m/s.
+   */
+  public double getVx(){
+    return state[2];
+  }
+
+  /**
+   * Returns the estimated velocity of the ball in y-direction.
+   *
+   * @return Velocity relative to the robot in m/s.
+   */
+  public double getVy(){
+    return state[3];
+  }
+
+  /**
+   * Returns the estimated speed of the ball.
+   *
+   * @return Speed relative to the robot in m/s.
+   */
+  public double getSpeed(){
+    return Math.sqrt(state[2] * state[2] + state[3] * state[3]);
+  }
+
+  /**
+   * Returns the uncertainty of the estimated position.
+   *
+   * @return Standard deviation of the position in meters (square root of the
+   * trace of the position covariance).
+   */
+  public double getPositionDeviation(){
+    return Math.sqrt(cov[0] + cov[5]);
+  }
+
+  /**
+   * Predicts the x coordinate of the ball.
+   *
+   * @param serverTime Server time of the prediction.
+   * @return Local x coordinate in meters.
+   */
+  public double predictX(double serverTime){
+    return state[0] + state[2] * (serverTime - time);
+  }
+
+  /**
+   * Predicts the y coordinate of the ball.
+   *
+   * @param serverTime Server time of the prediction.
+   * @return Local y coordinate in meters.
+   */
+  public double predictY(double serverTime){
+    return state[1] + state[3] * (serverTime - time);
+  }
+
+  /**
+   * Predicts the distance of the ball.
+   *
+   * @param serverTime Server time of the prediction.
+   * @return Distance in meters from the origin of the local coordinates.
+   */
+  public double predictDistance(double serverTime){
+    double x = predictX(serverTime);
+    double y = predictY(serverTime);
+    return Math.sqrt(x * x + y * y);
+  }
+
+  /**
+   * Predicts the direction of the ball.
+   *
+   * @param serverTime Server time of the prediction.
+   * @return Azimuth in radians (see class LocalFieldView).
+   */
+  public double predictAzimuth(double serverTime){
+    return Math.atan2(predictY(serverTime), predictX(serverTime));
+  }
+
+  /**
+   * Computes the earliest time, at which the robot can reach the ball.
+   *
+   * The robot is assumed to move straight with constant speed from its
+   * actual position, the ball is assumed to keep its velocity.
+   *
+   * @param robotSpeed Speed of the robot in m/s.
+   * @return Time in seconds from the time of the estimate (see getTime()),
+   * or Double.POSITIVE_INFINITY if the robot cannot reach the ball.
+   */
+  public double getTimeToIntercept(double robotSpeed){
+    // |p + v t| = s t  ->  (v.v - s^2) t^2 + 2 p.v t + p.p = 0
+    double px = state[0], py = state[1], vx = state[2], vy = state[3];
+    double a = vx * vx + vy * vy - robotSpeed * robotSpeed;
+    double b = 2 * (px * vx + py * vy);
+    double c = px * px + py * py;
+    if (Math.abs(a) < 1e-9)
+      return b < 0 ? -c / b : Double.POSITIVE_INFINITY;
+    double d = b * b - 4 * a * c;
+    if (d < 0)
+      return Double.POSITIVE_INFINITY;
+    double sqrtD = Math.sqrt(d);
+    double t1 = (-b - sqrtD) / (2 * a);
+    double t2 = (-b + sqrtD) / (2 * a);
+    double t = Math.min(t1, t2);
+    if (t < 0)
+      t = Math.max(t1, t2);
+    return t < 0 ? Double.POSITIVE_INFINITY : t;
+  }
+
+  /**
+   * Computes the time until the ball crosses the line x = lineX.
+   *
+   * E.g. lineX = 0 gives the time, when the ball passes the robot.
+   *
+   * @param lineX Local x coordinate of the line in meters.
+   * @return Time in seconds from the time of the estimate (see getTime()),
+   * or Double.POSITIVE_INFINITY if the ball does not move towards the line.
+   */
+  public double getTimeToCrossX(double lineX){
+    double t = (lineX - state[0]) / state[2];
+    return (state[2] == 0 || t < 0) ? Double.POSITIVE_INFINITY : t;
+  }
+
+  /**
+   * Returns a string representation of the estimate.
+   * @return String representation of the tracker state.
+   */
+  @Override
+  public String toString(){
+    return String.format("Ball tracker - valid: %b, x=%.2f y=%.2f vx=%.2f vy=%.2f "
+            + "deviation=%.2f", isValid(), state[0], state[1], state[2], state[3],
+            getPositionDeviation());
+  }
+
+  /**
+   * Internal method, starts the filter at a measured position with unknown
+   * velocity.
+   */
+  private void start(double x, double y, double sigma, double t){
+    state[0] = x;
+    state[1] = y;
+    state[2] = 0;
+    state[3] = 0;
+    for (int i = 0; i < 16; i++)
+      cov[i] = 0;
+    cov[0] = sigma * sigma;
+    cov[5] = sigma * sigma;
+    cov[10] = VELOCITY_SIGMA * VELOCITY_SIGMA;
+    cov[15] = VELOCITY_SIGMA * VELOCITY_SIGMA;
+    time = t;
+    initialized = true;
+  }
+
+  /**
+   * Internal method, predicts the state and covariance to the passed time:
+   * P = F P F^T + Q with the constant velocity transition F.
+   */
+  private void predict(double t){
+    double dt = t - time;
+    if (dt <= 0)
+      return;
+    state[0] += dt * state[2];
+    state[1] += dt * state[3];
+    // temp = F P, F adds dt times row 2 (3) to row 0 (1)
+    for (int j = 0; j < 4; j++){
+      temp[j] = cov[j] + dt * cov[8 + j];
+      temp[4 + j] = cov[4 + j] + dt * cov[12 + j];
+      temp[8 + j] = cov[8 + j];
+      temp[12 + j] = cov[12 + j];
+    }
+    // cov = temp F^T, adds dt times column 2 (3) to column 0 (1)
+    for (int i = 0; i < 4; i++){
+      int r = i * 4;
+      cov[r] = temp[r] + dt * temp[r + 2];
+      cov[r + 1] = temp[r + 1] + dt * temp[r + 3];
+      cov[r + 2] = temp[r + 2];
+      cov[r + 3] = temp[r + 3];
+    }
+    // white noise acceleration
+    double q = ACCELERATION_SIGMA * ACCELERATION_SIGMA;
+    double dt2 = dt * dt;
+    double qPos = q * dt2 * dt2 / 4;
+    double qCross = q * dt2 * dt / 2;
+    double qVel = q * dt2;
+    cov[0] += qPos;
+    cov[2] += qCross;
+    cov[8] += qCross;
+    cov[10] += qVel;
+    cov[5] += qPos;
+    cov[7] += qCross;
+    cov[13] += qCross;
+    cov[15] += qVel;
+    time = t;
+  }
+
+  /**
+   * Internal method, corrects the state with a measured position.
+   * Returns false without changing the state, if the measurement does not
+   * pass the gate.
+   */
+  private boolean correct(double mx, double my, double r){
+    // innovation and its covariance S = H P H^T + R, H selects x and y
+    double ix = mx - state[0];
+    double iy = my - state[1];
+    double s00 = cov[0] + r;
+    double s01 = cov[1];
+    double s10 = cov[4];
+    double s11 = cov[5] + r;
+    double det = s00 * s11 - s01 * s10;
+    if (det <= 0)
+      return false;
+    double i00 = s11 / det, i01 = -s01 / det, i10 = -s10 / det, i11 = s00 / det;
+    double mahalanobis = ix * (i00 * ix + i01 * iy) + iy * (i10 * ix + i11 * iy);
+    if (mahalanobis > GATE)
+      return false;
+    // gain K = P H^T S^-1, stored in temp (4 x 2)
+    for (int i = 0; i < 4; i++){
+      double p0 = cov[i * 4];
+      double p1 = cov[i * 4 + 1];
+      temp[i * 2] = p0 * i00 + p1 * i10;
+      temp[i * 2 + 1] = p0 * i01 + p1 * i11;
+    }
+    for (int i = 0; i < 4; i++)
+      state[i] += temp[i * 2] * ix + temp[i * 2 + 1] * iy;
+    // P = (I - K H) P, rows 0 and 1 of P are used for all rows, so they are
+    // copied first
+    double[] rows = temp;
+    for (int j = 0; j < 4; j++){
+      rows[8 + j] = cov[j];
+      rows[12 + j] = cov[4 + j];
+    }
+    for (int i = 0; i < 4; i++){
+      double k0 = temp[i * 2];
+      double k1 = temp[i * 2 + 1];
+      for (int j = 0; j < 4; j++)
+        cov[i * 4 + j] -= k0 * rows[8 + j] + k1 * rows[12 + j];
+    }
+    return true;
+  }
+}
@@ -8,6 +8,7 @@
 package localFieldView;
 
 import org.apache.commons.math3.geometry.euclidean.threed.Vector3D;
+import util.PolarCoords;
 import static util.Logger.polarStr;
 
 /**
@@ -20,8 +21,8 @@ import static util.Logger.polarStr;
  */
 public class LineModel extends DatedItemModel{
   
-  private final Vector3D startPoint;
-  private final Vector3D endPoint;
+  private final PolarCoords startPoint = new PolarCoords();
+  private final PolarCoords endPoint = new PolarCoords();
   
   /**
    * Constructor. 
@@ -30,13 +31,32 @@ public class LineModel extends DatedItemModel{
    * sensed by the vision perceptor. 
    * 
    * @param timeNow Actual server time.
-   * @param start Local coordinates relative to the center of the robots head. 
-   * @param end Local coordinates relative to the center of the robots head.
+   * @param start Local coordinates relative to the center of the robots torso. 
+   * @param end Local coordinates relative to the center of the robots torso.
    */
   public LineModel(Vector3D start, Vector3D end, double timeStamp){
     super(timeStamp);
-    startPoint = start;
-    endPoint = end;
+    startPoint.set(start);
+    endPoint.set(end);
+  }
+  
+  /**
+   * Sets the model data from polar coordinates, without creating objects. 
+   * LocalFieldView reuses the line models in this way. 
+   * 
+   * @param startDistance Distance of the start point in meters.
+   * @param startAzimuth Horizontal angle of the start point in radians.
+   * @param startElevation Vertical angle of the start point in radians.
+   * @param endDistance Distance of the end point in meters.
+   * @param endAzimuth Horizontal angle of the end point in radians.
+   * @param endElevation Vertical angle of the end point in radians.
+   * @param timeStamp Actualization time, should be actual server time. 
+   */
+  public void update(double startDistance, double startAzimuth, double startElevation,
+          double endDistance, double endAzimuth, double endElevation, double timeStamp){
+    super.setTimeStamp(timeStamp);
+    startPoint.set(startDistance, startAzimuth, startElevation);
+    endPoint.set(endDistance, endAzimuth, endElevation);
   }
   
   /**
@@ -44,6 +64,14 @@ public class LineModel extends DatedItemModel{
    * @return Local coordinates (see class LocalFieldView).
    */
   public Vector3D getStart(){
+    return startPoint.toVector3D();
+  }
+  
+  /**
+   * Returns the polar coordinates of the start point, without any conversion.
+   * @return Local coordinates (see class LocalFieldView).
+   */
+  public PolarCoords getStartPolar(){
     return startPoint;
   }
   
@@ -52,6 +80,14 @@ public class LineModel extends DatedItemModel{
    * @return Local coordinates (see class LocalFieldView).
    */
   public Vector3D getEnd(){
+    return endPoint.toVector3D();
+  }
+  
+  /**
+   * Returns the polar coordinates of the end point, without any conversion.
+   * @return Local coordinates (see class LocalFieldView).
+   */
+  public PolarCoords getEndPolar(){
     return endPoint;
   }
   
@@ -10,14 +10,16 @@ package localFieldView;
 import agentIO.PerceptorInput;
 import agentIO.perceptors.LineVisionPerceptor;
 import agentIO.perceptors.PlayerVisionPerceptor;
-import java.util.HashMap;
+import bodyModel.ForwardKinematics;
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.LinkedList;
+import java.util.List;
 import org.apache.commons.math3.geometry.euclidean.threed.Vector3D;
-import util.FieldConsts;
 import util.FieldConsts.FlagID;
 import util.FieldConsts.GoalPostID;
 import util.Logger;
-import util.RobotConsts;
+import util.PolarCoords;
 import util.RobotConsts.BodyPartName;
 
 /**
@@ -25,7 +27,7 @@ import util.RobotConsts.BodyPartName;
  * 
  * Local coordinates of every possible field item (goal posts, flags, lines, 
  * the ball and players on the field) are provided here relative to the center
- * of the robots head at every server cycle. 
+ * of the robots torso at every server cycle. 
  * For further details about the field items and related constants (ids of
  * goal posts etc.) see:
  * - in RoboNewbie:
@@ -37,9 +39,11 @@ import util.RobotConsts.BodyPartName;
  *   http://simspark.sourceforge.net/wiki/index.php/Perceptors#Vision_Perceptors
  * 
  * The item coordinates are gained from the vision perceptor values, but the
- * raw vision data may be rotated, if the robots head joints (NeckYaw and 
- * NeckPitch) have been moved. This class provides the data already corrected by
- * the position of the head, not the raw vision data. 
+ * raw vision data is relative to the camera in the head, which moves with the
+ * head joints (NeckYaw and NeckPitch). This class provides the data already
+ * transformed into the coordinate system of the torso by the forward
+ * kinematics of the robot (see bodyModel.ForwardKinematics), not the raw 
+ * vision data. 
  * 
  * The field items are modeled in "...Model"-classes and they all inherit from 
  * the class DatedItemModel, so they have their individual data access methods 
@@ -50,7 +54,7 @@ import util.RobotConsts.BodyPartName;
  * Other classes can access the field items with these steps (usually during 
  * the think()-method of the agent class):
  * The getter methods of this class ( getAllPlayers(), getBall(), getGoals(),
- * getFlags(), getLines()) provide references to the field item models (in 
+ * getGoal(...), getFlags(), getFlag(...), getLines()) provide references to the field item models (in 
  * case of the ball) or to lists of the models (for all other items). The 
  * gained references point to the item models, which are instance variables of 
  * LocalFieldView, so for their usage that means:
@@ -73,16 +77,13 @@ import util.RobotConsts.BodyPartName;
  * and usage. 
  * 
  * Precision of the provided coordinates:
- * As long, as the neck pitch joint is in 0° position, the coordinates provided
- * by LocalFieldView are correct. When the robot is facing down, positive values will 
- * stay positive and negative will also stay negative, but the absolute values
- * are not correct any more. The error gets bigger, with a bigger angle of the
- * neck pitch joint and when the sensed item is far away from the center of 
- * the field of view (especially in horizontal direction). 
- * For our purposes the values are sufficient. 
+ * The transformation includes both head joints and the position of the camera
+ * relative to the torso, so the coordinates are exact for every head pose. 
+ * They are relative to the torso, not to the ground: if the torso is tilted,
+ * e.g. while walking, the coordinates are tilted, too. 
  *  
- * The coordinate system is right-handed, the x-axis points horizontally in front 
- * of the robot, y-axis to its left. 
+ * The coordinate system is right-handed, its origin is the center of the
+ * torso, the x-axis points in front of the torso, y-axis to its left. 
  * In polar notation the azimuth (alpha) gets positive at the left side of the
  * x-axis (maximum 60° according to the field of view of the vision perceptor)
  * and negative on the right side (minimum -60°). The elevator (delta) gets 
@@ -92,30 +93,54 @@ import util.RobotConsts.BodyPartName;
  * library Commons Math 2.2 API. Vector3D provides the data in Cartesian and
  * polar notation. To use the data please refer to the documentation of the 
  * library (also available through code completion).  
+ * The raw polar values are also available without any conversion through 
+ * the getPolar methods of the models (class util.PolarCoords), simple 
+ * behaviors, which only need the distance and the azimuth, should use them. 
  * 
+ * Memory usage: 
+ * The models are created once and then updated in place. They store the 
+ * polar coordinates and create the Vector3D objects only on request, the 
+ * goal posts and flags are stored in arrays indexed by the ordinal of their 
+ * ids, the line models are reused, and the player models are kept by the 
+ * PlayerTracker in a slot per player. So update() does not create any 
+ * models, except for players and lines seen for the first time. The only 
+ * objects created per cycle are the iterators over the lists of seen lines 
+ * and players, which PerceptorInput provides as LinkedLists (an indexed 
+ * access would walk the list for every element). 
  */
 public class LocalFieldView {
   
   private static double UP_TO_DATE_PERIOD = 0.05;
   
+  private static final GoalPostID[] GOAL_POST_IDS = GoalPostID.values();
+  private static final FlagID[] FLAG_IDS = FlagID.values();
+  private static final BodyPartName[] BODY_PARTS = BodyPartName.values();
+  
   private Logger log; 
   PerceptorInput percIn;
   String ownID, ownTeam;
   
   
-  private LinkedList<LineModel> lines;
+  private ArrayList<LineModel> lines;
+  private ArrayList<LineModel> linePool;
   
-  private HashMap<GoalPostID, GoalPostModel> goals;
-  private HashMap<FlagID, FlagModel> flags;
+  // indexed by the ordinals of the ids
+  private GoalPostModel[] goalArray;
+  private FlagModel[] flagArray;
+  private EnumMap<GoalPostID, GoalPostModel> goals;
+  private EnumMap<FlagID, FlagModel> flags;
   
   private BallModel ball;
+  private final BallTracker ballTracker = new BallTracker();
+  private final PerceptionHistory history = new PerceptionHistory();
   
-  /**
-   * The players get a new internal key, the team name appended by the player 
-   * number.
-   */
-  private HashMap<String, PlayerModel> allOtherPlayers;
-  private LinkedList<PlayerModel> allOthPlayersList;
+  private PlayerTracker playerTracker;
+  private int ownKey;
+  
+  private final ForwardKinematics kinematics = new ForwardKinematics();
+  // result of the last transformation by toTorso(...)
+  private final double[] torsoPoint = new double[3];
+  private double torsoDistance, torsoAzimuth, torsoElevation;
 
   
   
@@ -130,24 +155,29 @@ public class LocalFieldView {
     this.ownTeam = ownTeam;
     this.ownID = ownID;
     
-    lines = new LinkedList<>();
+    lines = new ArrayList<>();
+    linePool = new ArrayList<>();
     
-    goals = new HashMap<>();
-    for (GoalPostID id: GoalPostID.values()){
-      goals.put(id, new GoalPostModel(Vector3D.NaN, 0, id));
-      goals.get(id).setInFOVnow(false);
+    goals = new EnumMap<>(GoalPostID.class);
+    goalArray = new GoalPostModel[GOAL_POST_IDS.length];
+    for (GoalPostID id: GOAL_POST_IDS){
+      goalArray[id.ordinal()] = new GoalPostModel(Vector3D.NaN, 0, id);
+      goalArray[id.ordinal()].setInFOVnow(false);
+      goals.put(id, goalArray[id.ordinal()]);
     }
     
-    flags = new HashMap<>();
-    for (FlagID id: FlagID.values()){
-      flags.put(id, new FlagModel(Vector3D.NaN, 0, id));
-      flags.get(id).setInFOVnow(false);
+    flags = new EnumMap<>(FlagID.class);
+    flagArray = new FlagModel[FLAG_IDS.length];
+    for (FlagID id: FLAG_IDS){
+      flagArray[id.ordinal()] = new FlagModel(Vector3D.NaN, 0, id);
+      flagArray[id.ordinal()].setInFOVnow(false);
+      flags.put(id, flagArray[id.ordinal()]);
     }
     
     ball = new BallModel(Vector3D.NaN, 0);
     
-    allOtherPlayers = new HashMap<>();
-    allOthPlayersList = new LinkedList<>();
+    playerTracker = new PlayerTracker(ownTeam);
+    ownKey = playerTracker.getKey(ownTeam, ownID);
     
   }
   
@@ -160,90 +190,87 @@ public class LocalFieldView {
   public void update(){
     
     double messageTimeStamp = percIn.getServerTime();
-    double neckYaw = percIn.getJoint(RobotConsts.NeckYaw);
-    double neckPitch = percIn.getJoint(RobotConsts.NeckPitch);
+    kinematics.update(percIn);
     
     LinkedList<LineVisionPerceptor> lpList = percIn.getLines();
     if(lpList != null){
       lines.clear();
       for(LineVisionPerceptor lp: lpList){
-        Vector3D start = correctCoordsByHeadPos(neckYaw, neckPitch, lp.getStart());
-        Vector3D end = correctCoordsByHeadPos(neckYaw, neckPitch, lp.getEnd());
-
-        LineModel l = new LineModel(start, end, messageTimeStamp);
+        if (linePool.size() == lines.size())
+          linePool.add(new LineModel(Vector3D.NaN, Vector3D.NaN, messageTimeStamp));
+        LineModel l = linePool.get(lines.size());
+        PolarCoords start = lp.getStart();
+        PolarCoords end = lp.getEnd();
+        toTorso(start);
+        double startDistance = torsoDistance;
+        double startAzimuth = torsoAzimuth;
+        double startElevation = torsoElevation;
+        toTorso(end);
+        l.update(startDistance, startAzimuth, startElevation, torsoDistance, 
+                torsoAzimuth, torsoElevation, messageTimeStamp);
         lines.add(l);
       }
     }
     else if ((!lines.isEmpty()) 
-            && (messageTimeStamp - lines.getFirst().getTimeStamp() > UP_TO_DATE_PERIOD))
+            && (messageTimeStamp - lines.get(0).getTimeStamp() > UP_TO_DATE_PERIOD))
       lines.clear();
     
-    Vector3D vec;
-    GoalPostModel g;
-    for (FieldConsts.GoalPostID id: FieldConsts.GoalPostID.values()){
-      vec = percIn.getGoalPost(id);
-      g = goals.get(id);
-      if (vec != null){
-        vec = correctCoordsByHeadPos(neckYaw, neckPitch, vec);
-        g.update(vec, messageTimeStamp);
+    PolarCoords vec;
+    for (int i = 0; i < GOAL_POST_IDS.length; i++){
+      vec = percIn.getGoalPost(GOAL_POST_IDS[i]);
+      GoalPostModel g = goalArray[i];
+      if (vec != null) {
+        toTorso(vec);
+        g.update(torsoDistance, torsoAzimuth, torsoElevation, messageTimeStamp);
       }
       else if (messageTimeStamp - g.getTimeStamp() > UP_TO_DATE_PERIOD)
         g.setInFOVnow(false);
     }
     
-    Vector3D vec2; 
-    FlagModel f;
-    for (FlagID id: FlagID.values()){
-      vec2 = percIn.getFlag(id);
-      f = flags.get(id);
-      if (vec2 != null){
-        vec2 = correctCoordsByHeadPos(neckYaw, neckPitch, vec2);
-        f.update(vec2, messageTimeStamp);
+    for (int i = 0; i < FLAG_IDS.length; i++){
+      vec = percIn.getFlag(FLAG_IDS[i]);
+      FlagModel f = flagArray[i];
+      if (vec != null) {
+        toTorso(vec);
+        f.update(torsoDistance, torsoAzimuth, torsoElevation, messageTimeStamp);
       }
       else if (messageTimeStamp - f.getTimeStamp() > UP_TO_DATE_PERIOD)
         f.setInFOVnow(false);
     }
     
-    Vector3D vec3 = percIn.getBall();
-    if (vec3 != null){
-      vec3 = correctCoordsByHeadPos(neckYaw, neckPitch, vec3);
-      ball.update(vec3, messageTimeStamp);
+    vec = percIn.getBall();
+    if (vec != null) {
+      toTorso(vec);
+      ball.update(torsoDistance, torsoAzimuth, torsoElevation, messageTimeStamp);
     }
     else if (messageTimeStamp - ball.getTimeStamp() > UP_TO_DATE_PERIOD)
       ball.setInFOVnow(false);
+    ballTracker.update(ball, messageTimeStamp);
     
     LinkedList<PlayerVisionPerceptor> playerPercList = percIn.getPlayerPositions();
     if (playerPercList != null){
       for (PlayerVisionPerceptor pvp: playerPercList){
-        String playerKey = pvp.getTeam() + pvp.getID();
-        if (!playerKey.equals(ownTeam+ownID)){       
-          HashMap<BodyPartName, Vector3D> newBPs = new HashMap<>();
-          Vector3D vec4;
-          for (BodyPartName id: BodyPartName.values()){
-            vec4 = pvp.getBodyPart(id);
-            if (vec4 != null){
-              vec4 = correctCoordsByHeadPos(neckYaw, neckPitch, vec4);
-              newBPs.put(id, vec4);
-            } 
-          }        
-          PlayerModel pm = allOtherPlayers.get(playerKey);
-          if (pm != null)
-            pm.update(newBPs, messageTimeStamp);        
-          else {
-            pm = new PlayerModel(pvp.getTeam(), pvp.getID(), newBPs, messageTimeStamp);
-            allOtherPlayers.put(playerKey, pm);
-            allOthPlayersList.add(pm);
+        int key = playerTracker.getKey(pvp.getTeam(), pvp.getID());
+        if (key < 0 || key == ownKey)
+          continue;
+        PlayerModel pm = playerTracker.beginUpdate(key, pvp.getTeam(), 
+                pvp.getID(), messageTimeStamp);
+        for (BodyPartName id: BODY_PARTS){
+          vec = pvp.getBodyPart(id);
+          if (vec != null) {
+            toTorso(vec);
+            pm.updateBodyPart(id, torsoDistance, torsoAzimuth, torsoElevation);
           }
         }
+        playerTracker.endUpdate(key, messageTimeStamp);
       }
     }
-    for( PlayerModel pm: allOtherPlayers.values())
-      if (messageTimeStamp - pm.getTimeStamp() > UP_TO_DATE_PERIOD) 
-        pm.setInFOVnow(false);    
+    playerTracker.update(messageTimeStamp);
+    history.record(percIn, ball, goalArray, flagArray);
   }
 
   /**
-   * The returned list holds information about all known players other then the
+   * The returned list holds information about all active players other then the
    * agents own one. 
    * 
    * The referenced values in this list are updated, so this method has to be 
@@ -251,14 +278,40 @@ public class LocalFieldView {
    * 
    * If there has not been sensed any player by the vision perceptor yet, the
    * returned list is empty. New players are added as soon, as they appear in 
-   * the field of view for the first time. The agent´s own player is not part 
-   * of this list. 
+   * the field of view, and removed, when they have not been seen for 5 
+   * seconds (see PlayerTracker). The agent´s own player is not part of this
+   * list. 
    *  
-   * @return List of all known players. 
+   * @return List of all active players. 
    * @see LocalFieldView
    */
-  public LinkedList<PlayerModel> getAllPlayers(){
-    return allOthPlayersList;
+  public List<PlayerModel> getAllPlayers(){
+    return playerTracker.getActivePlayers();
+  }
+  
+  /**
+   * Returns the tracker of the other players, which provides the filtered 
+   * positions and velocities of the players and the access to a player by 
+   * its key (see PlayerTracker.getKey(...)). 
+   * 
+   * @return The player tracker. 
+   * @see PlayerTracker
+   */
+  public PlayerTracker getPlayerTracker(){
+    return playerTracker;
+  }
+  
+  /**
+   * Returns the perception of the last server cycles. 
+   * 
+   * An entry is recorded at the end of every update, so this method has to 
+   * be called only once. 
+   * 
+   * @return The perception history. 
+   * @see PerceptionHistory
+   */
+  public PerceptionHistory getHistory(){
+    return history;
   }
   
   /**
@@ -277,6 +330,19 @@ public class LocalFieldView {
     return ball;
   }
   
+  /**
+   * Returns the filtered position and velocity of the ball. 
+   * 
+   * The tracker is updated with the ball model in every update, so this
+   * method has to be called only once. 
+   * 
+   * @return The ball tracker. 
+   * @see BallTracker
+   */
+  public BallTracker getBallTracker(){
+    return ballTracker;
+  }
+  
   /**
    * The returned list holds information about all goal posts. 
    * 
@@ -290,10 +356,24 @@ public class LocalFieldView {
    * @return List of all goal posts. 
    * @see LocalFieldView
    */
-  public HashMap<GoalPostID, GoalPostModel> getGoals() {
+  public EnumMap<GoalPostID, GoalPostModel> getGoals() {
     return goals;
   }
   
+  /**
+   * Returns informations about a goal post. 
+   * 
+   * Same model as in the map returned by getGoals(), but without a map 
+   * lookup. 
+   * 
+   * @param id Id of the goal post.
+   * @return The goal post model. 
+   * @see LocalFieldView
+   */
+  public GoalPostModel getGoal(GoalPostID id) {
+    return goalArray[id.ordinal()];
+  }
+  
   /**
    * The returned list holds information about all flags. 
    * 
@@ -307,10 +387,24 @@ public class LocalFieldView {
    * @return List of all flags . 
    * @see LocalFieldView
    */
-  public HashMap<FlagID, FlagModel> getFlags() {
+  public EnumMap<FlagID, FlagModel> getFlags() {
     return flags;
   }
   
+  /**
+   * Returns informations about a flag. 
+   * 
+   * Same model as in the map returned by getFlags(), but without a map 
+   * lookup. 
+   * 
+   * @param id Id of the flag.
+   * @return The flag model. 
+   * @see LocalFieldView
+   */
+  public FlagModel getFlag(FlagID id) {
+    return flagArray[id.ordinal()];
+  }
+  
   /**
    * The returned list holds all lines from the actual vision value. 
    * 
@@ -323,27 +417,37 @@ public class LocalFieldView {
    * @return List of all currently sensed lines. 
    * @see LocalFieldView
    */
-  public LinkedList<LineModel> getLines(){
+  public List<LineModel> getLines(){
     return lines;
   }
   
-  
   /**
-   * Returns the passed coordinates relative to the center of the agents head 
-   * with the x-axis pointing horizontally in front of the robot. 
+   * Returns the forward kinematics used to transform the vision data. 
    * 
-   * Corrects the passed coordinates by the passed data about the head position.
-   * This is only an approximation in case of tilted head.
-   * 
-   * @param neckYaw Actual neck yaw angle.
-   * @param neckPitch Actual neck pitch angle.
-   * @param coords Coordinates to be corrected. 
-   * @return Coordinates relative to the center of the agents head with the 
-   * x-axis pointing horizontally in front of the robot.
+   * The poses are updated in every update, so this method has to be called 
+   * only once. 
    * 
+   * @return The forward kinematics of the robot. 
+   * @see bodyModel.ForwardKinematics
+   */
+  public ForwardKinematics getKinematics(){
+    return kinematics;
+  }
+  
+  /**
+   * Internal method, transforms a vision perceptor value into polar 
+   * coordinates relative to the torso and stores them in torsoDistance, 
+   * torsoAzimuth and torsoElevation. 
    */
-  private Vector3D correctCoordsByHeadPos(double neckYaw, double neckPitch, Vector3D coords) {
-    return new Vector3D( coords.getNorm(),
-                new Vector3D (coords.getAlpha() + neckYaw, coords.getDelta() + neckPitch ));
+  private void toTorso(PolarCoords vec){
+    kinematics.visionToTorso(vec.getDistance(), vec.getAzimuth(), 
+            vec.getElevation(), torsoPoint);
+    // the kinematics has the x-axis to the right and the y-axis to the front
+    double x = torsoPoint[1];
+    double y = -torsoPoint[0];
+    double z = torsoPoint[2];
+    torsoDistance = Math.sqrt(x * x + y * y + z * z);
+    torsoAzimuth = Math.atan2(y, x);
+    torsoElevation = torsoDistance == 0 ? 0 : Math.asin(z / torsoDistance);
   }
 }
@@ -0,0 +1,447 @@
+/*******************************************************************************
+*  RoboNewbie
+* NaoTeam Humboldt
+* @version 1.1
+*******************************************************************************/
+
+package localFieldView;
+
+import agentIO.PerceptorInput;
+import agentIO.perceptors.GameStatePerceptor;
+import org.apache.commons.math3.geometry.euclidean.threed.Vector3D;
+import util.FieldConsts.FlagID;
+import util.FieldConsts.GoalPostID;
+import util.GameStateConsts.PlayMode;
+import util.PolarCoords;
+import util.RobotConsts;
+
+/**
+ * This class keeps the perception of the last server cycles.
+ *
+ * For every cycle the server time, the joint angles, the gyrometer and
+ * accelerometer values, the ball and the landmarks (as modeled by
+ * LocalFieldView, so in torso coordinates) and the game state are
+ * recorded. The values are stored in preallocated primitive arrays, one
+ * array ("column") per value and entry, which are used as ring buffer, so
+ * recording does not create any objects.
+ *
+ * The entries are addressed by their age: age 0 is the newest entry, age 1
+ * the entry of the cycle before and so on, up to size() - 1. Method
+ * getAge(...) finds the entry of a server time, so values can be queried by
+ * time, e.g. getBallAt(serverTime - 0.3, coords), or integrated over the
+ * last cycles, e.g. integrateGyroZ(10).
+ *
+ * LocalFieldView records an entry at the end of every update, so all users
+ * of the history share the data of the LocalFieldView instance.
+ *
+ * @see LocalFieldView
+ */
+public class PerceptionHistory {
+
+  /**
+   * Default number of recorded cycles (3 seconds).
+   */
+  public static final int DEFAULT_CAPACITY = 150;
+
+  private static final int JOINTS = RobotConsts.JointsCount;
+  private static final GoalPostID[] GOAL_POST_IDS = GoalPostID.values();
+  private static final FlagID[] FLAG_IDS = FlagID.values();
+  private static final PlayMode[] PLAY_MODES = PlayMode.values();
+  private static final int LANDMARKS = GOAL_POST_IDS.length + FLAG_IDS.length;
+
+  private final int capacity;
+  private int newest = -1;
+  private int size = 0;
+
+  private final double[] time;
+  private final double[] joints;
+  private final double[] gyroX, gyroY, gyroZ;
+  private final double[] accX, accY, accZ;
+  private final boolean[] ballSeen;
+  private final double[] ballDistance, ballAzimuth, ballElevation;
+  // landmarks: goal posts first, then flags, indexed by the ordinals
+  private final boolean[] landmarkSeen;
+  private final double[] landmarkDistance, landmarkAzimuth;
+  private final double[] playTime;
+  private final int[] playMode;
+
+  /**
+   * Constructor with the default capacity.
+   */
+  public PerceptionHistory() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Constructor, allocates all columns.
+   *
+   * @param capacity Number of recorded cycles.
+   */
+  public PerceptionHistory(int capacity) {
+    this.capacity = capacity;
+    time = new double[capacity];
+    joints = new double[capacity * JOINTS];
+    gyroX = new double[capacity];
+    gyroY = new double[capacity];
+    gyroZ = new double[capacity];
+    accX = new double[capacity];
+    accY = new double[capacity];
+    accZ = new double[capacity];
+    ballSeen = new boolean[capacity];
+    ballDistance = new double[capacity];
+    ballAzimuth = new double[capacity];
+    ballElevation = new double[capacity];
+    landmarkSeen = new boolean[capacity * LANDMARKS];
+    landmarkDistance = new double[capacity * LANDMARKS];
+    landmarkAzimuth = new double[capacity * LANDMARKS];
+    playTime = new double[capacity];
+    playMode = new int[capacity];
+  }
+
+  /**
+   * Records the perception of the actual cycle, the oldest entry is
+   * overwritten, if the history is full.
+   *
+   * @param percIn Perceptor values of the actual cycle.
+   * @param ball Ball model, already updated in this cycle.
+   * @param goals Goal post models indexed by the ordinals of their ids.
+   * @param flags Flag models indexed by the ordinals of their ids.
+   */
+  void record(PerceptorInput percIn, BallModel ball, GoalPostModel[] goals,
+          FlagModel[] flags) {
+    newest = (newest + 1) % capacity;
+    if (size < capacity)
+      size++;
+    int e = newest;
+    double now = percIn.getServerTime();
+    time[e] = now;
+    for (int i = 0; i < JOINTS; i++)
+      joints[e * JOINTS + i] = percIn.getJoint(i);
+
+    Vector3D gyro = percIn.getGyro();
+    gyroX[e] = gyro == null ? 0 : gyro.getX();
+    gyroY[e] = gyro == null ? 0 : gyro.getY();
+    gyroZ[e] = gyro == null ? 0 : gyro.getZ();
+    Vector3D acc = percIn.getAcc();
+    accX[e] = acc == null ? 0 : acc.getX();
+    accY[e] = acc == null ? 0 : acc.getY();
+    accZ[e] = acc == null ? 0 : acc.getZ();
+
+    PolarCoords b = ball.getPolar();
+    ballSeen[e] = ball.getTimeStamp() == now;
+    ballDistance[e] = b.getDistance();
+    ballAzimuth[e] = b.getAzimuth();
+    ballElevation[e] = b.getElevation();
+
+    int l = e * LANDMARKS;
+    for (int i = 0; i < goals.length; i++, l++)
+      recordLandmark(l, goals[i], goals[i].getPolar(), now);
+    for (int i = 0; i < flags.length; i++, l++)
+      recordLandmark(l, flags[i], flags[i].getPolar(), now);
+
+    GameStatePerceptor gs = percIn.getGameState();
+    playTime[e] = gs == null ? 0 : gs.getPlayTime();
+    playMode[e] = (gs == null || gs.getPlayMode() == null) ? -1
+            : gs.getPlayMode().ordinal();
+  }
+
+  /**
+   * Returns the number of recorded entries.
+   *
+   * @return Number of entries, at most the capacity.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the maximal number of entries.
+   *
+   * @return Capacity of the history.
+   */
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Returns the age of the newest entry recorded at or before a server time.
+   *
+   * @param serverTime Server time.
+   * @return Age of the entry, or -1 if the time is before the oldest entry.
+   */
+  public int getAge(double serverTime) {
+    if (size == 0 || serverTime < time[index(size - 1)])
+      return -1;
+    // binary search, the times decrease with the age
+    int low = 0, high = size - 1;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (time[index(mid)] <= serverTime)
+        high = mid;
+      else
+        low = mid + 1;
+    }
+    return low;
+  }
+
+  /**
+   * Returns the server time of an entry.
+   *
+   * @param age Age of the entry, 0 for the newest one.
+   * @return Server time of the cycle.
+   */
+  public double getTime(int age) {
+    return time[index(age)];
+  }
+
+  /**
+   * Returns a joint angle of an entry.
+   *
+   * @param age Age of the entry.
+   * @param joint Joint index as defined in util.RobotConsts .
+   * @return Angle in radians.
+   */
+  public double getJoint(int age, int joint) {
+    return joints[index(age) * JOINTS + joint];
+  }
+
+  /**
+   * Returns the gyrometer values of an entry, in the coordinate system of
+   * PerceptorInput.getGyro().
+   *
+   * @param age Age of the entry.
+   * @return Rotation speed around the x-axis in degrees per second.
+   */
+  public double getGyroX(int age) {
+    return gyroX[index(age)];
+  }
+
+  /**
+   * @see #getGyroX(int)
+   */
+  public double getGyroY(int age) {
+    return gyroY[index(age)];
+  }
+
+  /**
+   * @see #getGyroX(int)
+   */
+  public double getGyroZ(int age) {
+    return gyroZ[index(age)];
+  }
+
+  /**
+   * Returns the accelerometer values of an entry, in the coordinate system of
+   * PerceptorInput.getAcc().
+   *
+   * @param age Age of the entry.
+   * @return Acceleration in x-direction in m/s^2.
+   */
+  public double getAccX(int age) {
+    return accX[index(age)];
+  }
+
+  /**
+   * @see #getAccX(int)
+   */
+  public double getAccY(int age) {
+    return accY[index(age)];
+  }
+
+  /**
+   * @see #getAccX(int)
+   */
+  public double getAccZ(int age) {
+    return accZ[index(age)];
+  }
+
+  /**
+   * Integrates the rotation speed around the x-axis over the last cycles.
+   *
+   * @param cycles Number of cycles, at most size().
+   * @return Rotation angle in degrees.
+   */
+  public double integrateGyroX(int cycles) {
+    return integrate(gyroX, cycles);
+  }
+
+  /**
+   * @see #integrateGyroX(int)
+   */
+  public double integrateGyroY(int cycles) {
+    return integrate(gyroY, cycles);
+  }
+
+  /**
+   * @see #integrateGyroX(int)
+   */
+  public double integrateGyroZ(int cycles) {
+    return integrate(gyroZ, cycles);
+  }
+
+  /**
+   * States whether the ball was seen in the cycle of an entry.
+   *
+   * @param age Age of the entry.
+   * @return True, if a vision message with the ball arrived in that cycle.
+   */
+  public boolean isBallSeen(int age) {
+    return ballSeen[index(age)];
+  }
+
+  /**
+   * Copies the ball coordinates of an entry. These are the last seen
+   * coordinates at that time, see isBallSeen(...).
+   *
+   * @param age Age of the entry.
+   * @param coords Object to set, coordinates as in LocalFieldView.
+   */
+  public void getBall(int age, PolarCoords coords) {
+    int e = index(age);
+    coords.set(ballDistance[e], ballAzimuth[e], ballElevation[e]);
+  }
+
+  /**
+   * Copies the coordinates of the last ball observation at or before a
+   * server time.
+   *
+   * @param serverTime Server time.
+   * @param coords Object to set, coordinates as in LocalFieldView.
+   * @return The server time of the observation, or NaN if there is no
+   * observation in the history, then coords is not changed.
+   */
+  public double getBallAt(double serverTime, PolarCoords coords) {
+    int age = getAge(serverTime);
+    if (age < 0)
+      return Double.NaN;
+    for (; age < size; age++) {
+      if (ballSeen[index(age)]) {
+        getBall(age, coords);
+        return getTime(age);
+      }
+    }
+    return Double.NaN;
+  }
+
+  /**
+   * States whether a goal post was seen in the cycle of an entry.
+   *
+   * @param age Age of the entry.
+   * @param id Goal post.
+   * @return True, if a vision message with the goal post arrived in that cycle.
+   */
+  public boolean isGoalPostSeen(int age, GoalPostID id) {
+    return landmarkSeen[index(age) * LANDMARKS + id.ordinal()];
+  }
+
+  /**
+   * Returns the last seen distance of a goal post at the time of an entry.
+   *
+   * @param age Age of the entry.
+   * @param id Goal post.
+   * @return Distance in meters.
+   */
+  public double getGoalPostDistance(int age, GoalPostID id) {
+    return landmarkDistance[index(age) * LANDMARKS + id.ordinal()];
+  }
+
+  /**
+   * Returns the last seen azimuth of a goal post at the time of an entry.
+   *
+   * @param age Age of the entry.
+   * @param id Goal post.
+   * @return Azimuth in radians (see LocalFieldView).
+   */
+  public double getGoalPostAzimuth(int age, GoalPostID id) {
+    return landmarkAzimuth[index(age) * LANDMARKS + id.ordinal()];
+  }
+
+  /**
+   * States whether a flag was seen in the cycle of an entry.
+   *
+   * @param age Age of the entry.
+   * @param id Flag.
+   * @return True, if a vision message with the flag arrived in that cycle.
+   */
+  public boolean isFlagSeen(int age, FlagID id) {
+    return landmarkSeen[flagIndex(age, id)];
+  }
+
+  /**
+   * Returns the last seen distance of a flag at the time of an entry.
+   *
+   * @param age Age of the entry.
+   * @param id Flag.
+   * @return Distance in meters.
+   */
+  public double getFlagDistance(int age, FlagID id) {
+    return landmarkDistance[flagIndex(age, id)];
+  }
+
+  /**
+   * Returns the last seen azimuth of a flag at the time of an entry.
+   *
+   * @param age Age of the entry.
+   * @param id Flag.
+   * @return Azimuth in radians (see LocalFieldView).
+   */
+  public double getFlagAzimuth(int age, FlagID id) {
+    return landmarkAzimuth[flagIndex(age, id)];
+  }
+
+  /**
+   * Returns the play time of an entry.
+   *
+   * @param age Age of the entry.
+   * @return Play time in seconds, 0 if there was no game state.
+   */
+  public double getPlayTime(int age) {
+    return playTime[index(age)];
+  }
+
+  /**
+   * Returns the play mode of an entry.
+   *
+   * @param age Age of the entry.
+   * @return Play mode, or null if there was no game state.
+   */
+  public PlayMode getPlayMode(int age) {
+    int m = playMode[index(age)];
+    return m < 0 ? null : PLAY_MODES[m];
+  }
+
+  /**
+   * Internal method, position of an entry in the columns.
+   */
+  private int index(int age) {
+    if (age < 0 || age >= size)
+      throw new IndexOutOfBoundsException("age " + age + ", size " + size);
+    int i = newest - age;
+    return i < 0 ? i + capacity : i;
+  }
+
+  private int flagIndex(int age, FlagID id) {
+    return index(age) * LANDMARKS + GOAL_POST_IDS.length + id.ordinal();
+  }
+
+  /**
+   * Internal method, sums up a rotation speed column over the last cycles,
+   * weighted with the time between the entries.
+   */
+  private double integrate(double[] column, int cycles) {
+    double sum = 0;
+    int n = Math.min(cycles, size - 1);
+    for (int age = 0; age < n; age++)
+      sum += column[index(age)] * (getTime(age) - getTime(age + 1));
+    return sum;
+  }
+
+  /**
+   * Internal method, records one landmark.
+   */
+  private void recordLandmark(int l, DatedItemModel m, PolarCoords c, double now) {
+    landmarkSeen[l] = m.getTimeStamp() == now;
+    landmarkDistance[l] = c.getDistance();
+    landmarkAzimuth[l] = c.getAzimuth();
+  }
+}
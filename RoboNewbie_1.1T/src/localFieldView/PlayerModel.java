@@ -7,16 +7,16 @@
 
 package localFieldView;
 
-import java.util.HashMap;
 import org.apache.commons.math3.geometry.euclidean.threed.Vector3D;
 import util.Logger;
+import util.PolarCoords;
 import util.RobotConsts.BodyPartName;
 
 /**
  * This class represents any player other than the agent´s own.  <br> 
  * 
  * The class holds information about the coordinates of a player relative to
- * the agent´s own one (precisely to the center of its head). 
+ * the agent´s own one (precisely to the center of its torso). 
  * It should be updated by class LocalFieldView.  <br> 
  * For the coordinate system see LocalFieldView. For constants see 
  * RobotConsts.BodyPartName.
@@ -27,7 +27,11 @@ import util.RobotConsts.BodyPartName;
 public class PlayerModel extends DatedItemModel{
   private String team;
   private String ID;
-  private HashMap<BodyPartName, Vector3D> bodyParts;
+  private static final BodyPartName[] BODY_PARTS = BodyPartName.values();
+  
+  // one slot per body part, indexed by BodyPartName.ordinal()
+  private final PolarCoords[] bodyParts = new PolarCoords[BODY_PARTS.length];
+  private final boolean[] bodyPartSeen = new boolean[BODY_PARTS.length];
   
   /**
    * Constructor. 
@@ -35,29 +39,44 @@ public class PlayerModel extends DatedItemModel{
    * Assumes, that the model is created at the first cycle, when the object is
    * sensed by the vision perceptor. 
    * 
+   * The body parts are set with updateBodyPart(...). 
+   * 
    * @param team Team name of the player.
    * @param id ID of the player.
    * @param timeNow Actual server time.
-   * @param bodyParts Map of local coordinates relative to the center of the own
-   * robots head. 
    */
-  public PlayerModel(String team, String ID, HashMap<BodyPartName, Vector3D> bodyParts, double timeNow){
+  public PlayerModel(String team, String ID, double timeNow){
     super(timeNow);
     this.team = team;
     this.ID = ID;
-    this.bodyParts = bodyParts;
+    for (int i = 0; i < bodyParts.length; i++)
+      bodyParts[i] = new PolarCoords();
   }
  
   /**
-   * Set the player data.
+   * Starts the update of the player data, all body parts are marked as not 
+   * seen until they are set with updateBodyPart(...). 
    * 
    * @param timeNow Actual server time.
-   * @param bodyParts Map of local coordinates relative to the center of the own
-   * robots head. 
    */
-  public void update(HashMap<BodyPartName, Vector3D> bodyParts, double timeNow){
+  public void beginUpdate(double timeNow){
     super.setTimeStamp(timeNow);
-    this.bodyParts = bodyParts;
+    for (int i = 0; i < bodyPartSeen.length; i++)
+      bodyPartSeen[i] = false;
+  }
+  
+  /**
+   * Sets the coordinates of a seen body part, without creating objects. 
+   * 
+   * @param b Body part.
+   * @param distance Distance in meters.
+   * @param azimuth Horizontal angle in radians (see class LocalFieldView).
+   * @param elevation Vertical angle in radians.
+   */
+  public void updateBodyPart(BodyPartName b, double distance, double azimuth, 
+          double elevation){
+    bodyParts[b.ordinal()].set(distance, azimuth, elevation);
+    bodyPartSeen[b.ordinal()] = true;
   }
   
   /**
@@ -80,10 +99,34 @@ public class PlayerModel extends DatedItemModel{
   
   /**
    * Returns the coordinates of the specified body part. 
-   * @return Local coordinates (see class LocalFieldView).
+   * @return Local coordinates (see class LocalFieldView), or null if the body
+   * part was not seen at the last update. 
    */
   public Vector3D getBodyPart( BodyPartName b){
-    return bodyParts.get(b);
+    return bodyPartSeen[b.ordinal()] ? bodyParts[b.ordinal()].toVector3D() : null;
+  }
+  
+  /**
+   * Returns the polar coordinates of the specified body part, without any 
+   * conversion. 
+   * @return Local coordinates (see class LocalFieldView), or null if the body
+   * part was not seen at the last update. 
+   */
+  public PolarCoords getBodyPartPolar( BodyPartName b){
+    return bodyPartSeen[b.ordinal()] ? bodyParts[b.ordinal()] : null;
+  }
+  
+  // package access for PlayerTracker, indexed by BodyPartName.ordinal()
+  int getBodyPartCount(){
+    return bodyParts.length;
+  }
+  
+  boolean isBodyPartSeen(int i){
+    return bodyPartSeen[i];
+  }
+  
+  PolarCoords getBodyPartSlot(int i){
+    return bodyParts[i];
   }
   
   /**
@@ -95,9 +138,9 @@ public class PlayerModel extends DatedItemModel{
     StringBuilder retStr = new StringBuilder();
     retStr.append("Player model - ").append(super.toString()).append(", team: ")
             .append(team).append(", player ID: ").append(ID);
-    for (BodyPartName b : BodyPartName.values())
-      if (bodyParts.get(b) != null)
-        retStr.append('\n').append(b).append(' ').append(Logger.polarStr(bodyParts.get(b)));
+    for (BodyPartName b : BODY_PARTS)
+      if (getBodyPartPolar(b) != null)
+        retStr.append('\n').append(b).append(' ').append(Logger.polarStr(getBodyPartPolar(b)));
     return retStr.toString();
   }
 }
@@ -0,0 +1,271 @@
+/*******************************************************************************
+*  RoboNewbie
+* NaoTeam Humboldt
+* @version 1.1
+*******************************************************************************/
+
+package localFieldView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class keeps the models of all other players on the field.
+ *
+ * There are at most 22 players, so the tracker has a fixed number of slots.
+ * A player is identified by an int key built from its team side (own team or
+ * opponent team) and its uniform number, which is the index of its slot, so
+ * no strings have to be compared or concatenated to find a player.
+ *
+ * For every player the tracker filters the position of the player on the
+ * ground (the mean of its seen body parts, in the local coordinates of
+ * LocalFieldView) and its velocity relative to the robot with an alpha-beta
+ * filter. A player, which has not been seen for 5 seconds, is expired: it is
+ * removed from the list of active players and its filter is restarted, when
+ * it is seen again. So the work per cycle depends only on the number of
+ * slots and not on the length of the match.
+ *
+ * The tracker is updated by LocalFieldView.
+ *
+ * @see LocalFieldView
+ * @see PlayerModel
+ */
+public class PlayerTracker {
+
+  /**
+   * Number of players per team.
+   */
+  public static final int TEAM_SIZE = 11;
+
+  /**
+   * Maximal number of tracked players.
+   */
+  public static final int CAPACITY = 2 * TEAM_SIZE;
+
+  private static final double EXPIRY_TIME = 5;
+  private static final double UP_TO_DATE_PERIOD = 0.05;
+  // gains of the alpha-beta filter for position and velocity
+  private static final double ALPHA = 0.5;
+  private static final double BETA = 0.2;
+
+  private final String ownTeam;
+
+  private final PlayerModel[] models = new PlayerModel[CAPACITY];
+  private final boolean[] active = new boolean[CAPACITY];
+  private final double[] x = new double[CAPACITY];
+  private final double[] y = new double[CAPACITY];
+  private final double[] vx = new double[CAPACITY];
+  private final double[] vy = new double[CAPACITY];
+  private final double[] filterTime = new double[CAPACITY];
+  private final ArrayList<PlayerModel> activePlayers = new ArrayList<>(CAPACITY);
+
+  /**
+   * Constructor.
+   *
+   * @param ownTeam Name of the agent's team.
+   */
+  public PlayerTracker(String ownTeam) {
+    this.ownTeam = ownTeam;
+  }
+
+  /**
+   * Returns the key of a player.
+   *
+   * @param ownTeam True for a player of the agent's team.
+   * @param number Uniform number of the player, from 1 to 11.
+   * @return Key of the player, or -1 if the number is out of range.
+   */
+  public static int getKey(boolean ownTeam, int number) {
+    if (number < 1 || number > TEAM_SIZE)
+      return -1;
+    return (ownTeam ? 0 : TEAM_SIZE) + number - 1;
+  }
+
+  /**
+   * Returns the key of a player as sensed by the vision perceptor.
+   *
+   * @param team Team name.
+   * @param id Player ID, that is the uniform number as String.
+   * @return Key of the player, or -1 if the ID is no valid uniform number.
+   */
+  public int getKey(String team, String id) {
+    int number = 0;
+    for (int i = 0; i < id.length(); i++) {
+      char c = id.charAt(i);
+      if (c < '0' || c > '9' || i > 1)
+        return -1;
+      number = 10 * number + c - '0';
+    }
+    return getKey(team.equals(ownTeam), number);
+  }
+
+  /**
+   * Starts the update of a seen player.
+   *
+   * The model is created at the first time the player is seen and activated,
+   * if it was expired. The body parts of the returned model have to be set
+   * by PlayerModel.updateBodyPart(...), then endUpdate(...) has to be called.
+   *
+   * @param key Key of the player.
+   * @param team Team name.
+   * @param id Player ID.
+   * @param time Actual server time.
+   * @return Model of the player.
+   */
+  public PlayerModel beginUpdate(int key, String team, String id, double time) {
+    if (models[key] == null)
+      models[key] = new PlayerModel(team, id, time);
+    PlayerModel pm = models[key];
+    pm.beginUpdate(time);
+    return pm;
+  }
+
+  /**
+   * Finishes the update of a seen player and filters its position.
+   *
+   * @param key Key of the player.
+   * @param time Actual server time.
+   */
+  public void endUpdate(int key, double time) {
+    PlayerModel pm = models[key];
+    double mx = 0, my = 0;
+    int seen = 0;
+    for (int i = 0; i < pm.getBodyPartCount(); i++) {
+      if (pm.isBodyPartSeen(i)) {
+        mx += pm.getBodyPartSlot(i).getX();
+        my += pm.getBodyPartSlot(i).getY();
+        seen++;
+      }
+    }
+    if (seen == 0)
+      return;
+    mx /= seen;
+    my /= seen;
+    if (!active[key]) {
+      active[key] = true;
+      activePlayers.add(pm);
+      x[key] = mx;
+      y[key] = my;
+      vx[key] = 0;
+      vy[key] = 0;
+    } else {
+      double dt = time - filterTime[key];
+      if (dt <= 0)
+        return;
+      double px = x[key] + vx[key] * dt;
+      double py = y[key] + vy[key] * dt;
+      double rx = mx - px;
+      double ry = my - py;
+      x[key] = px + ALPHA * rx;
+      y[key] = py + ALPHA * ry;
+      vx[key] += BETA * rx / dt;
+      vy[key] += BETA * ry / dt;
+    }
+    filterTime[key] = time;
+  }
+
+  /**
+   * Marks players, which are not seen anymore, and expires players, which
+   * have not been seen for a long time. Should be called once per cycle,
+   * after all seen players have been updated.
+   *
+   * @param time Actual server time.
+   */
+  public void update(double time) {
+    for (int key = 0; key < CAPACITY; key++) {
+      if (!active[key])
+        continue;
+      PlayerModel pm = models[key];
+      double age = time - pm.getTimeStamp();
+      if (age > EXPIRY_TIME) {
+        active[key] = false;
+        pm.setInFOVnow(false);
+        activePlayers.remove(pm);
+      } else if (age > UP_TO_DATE_PERIOD)
+        pm.setInFOVnow(false);
+    }
+  }
+
+  /**
+   * Returns the active players, that are all players seen within the last 5
+   * seconds.
+   *
+   * The list is updated by the tracker, it should be used for read access
+   * only.
+   *
+   * @return List of the models of the active players.
+   */
+  public List<PlayerModel> getActivePlayers() {
+    return activePlayers;
+  }
+
+  /**
+   * Returns the model of a player.
+   *
+   * @param key Key of the player.
+   * @return Model of the player, or null if the player is not active.
+   */
+  public PlayerModel getPlayer(int key) {
+    return (key >= 0 && active[key]) ? models[key] : null;
+  }
+
+  /**
+   * States if a player is active.
+   *
+   * @param key Key of the player.
+   * @return True, if the player was seen within the last 5 seconds.
+   */
+  public boolean isActive(int key) {
+    return key >= 0 && active[key];
+  }
+
+  /**
+   * Returns the filtered x coordinate of a player.
+   *
+   * @param key Key of the player.
+   * @return Local x coordinate in meters at the time of its last sighting.
+   */
+  public double getX(int key) {
+    return x[key];
+  }
+
+  /**
+   * Returns the filtered y coordinate of a player.
+   *
+   * @param key Key of the player.
+   * @return Local y coordinate in meters at the time of its last sighting.
+   */
+  public double getY(int key) {
+    return y[key];
+  }
+
+  /**
+   * Returns the filtered velocity of a player in x-direction.
+   *
+   * @param key Key of the player.
+   * @return Velocity relative to the robot in m/s.
+   */
+  public double getVx(int key) {
+    return vx[key];
+  }
+
+  /**
+   * Returns the filtered velocity of a player in y-direction.
+   *
+   * @param key Key of the player.
+   * @return Velocity relative to the robot in m/s.
+   */
+  public double getVy(int key) {
+    return vy[key];
+  }
+
+  /**
+   * Returns the server time of the filtered values of a player.
+   *
+   * @param key Key of the player.
+   * @return Server time of the last sighting.
+   */
+  public double getTime(int key) {
+    return filterTime[key];
+  }
+}
@@ -0,0 +1,149 @@
+/*******************************************************************************
+*  RoboNewbie
+* NaoTeam Humboldt
+* @version 1.1
+*******************************************************************************/
+
+package localization;
+
+import util.FieldConsts;
+
+/**
+ * Distance transform of the field lines.
+ *
+ * The field, extended by a margin, is divided into square cells. For every
+ * cell the distance from its center to the nearest field line (including the
+ * center circle) is computed once in the constructor and stored in one flat
+ * float array, row by row. Afterwards the distance of any point to the field
+ * lines costs four array accesses, see getDistance(...).
+ *
+ * With the default resolution of 5 cm the map has about 280 000 cells and
+ * needs about 1.1 MB, so it should be created only once per agent.
+ *
+ * @see LineScanMatcher
+ * @see util.FieldConsts
+ */
+public class FieldLineMap {
+
+  /**
+   * Default edge length of the cells in meters.
+   */
+  public static final double DEFAULT_RESOLUTION = 0.05;
+
+  // area around the field, which is included in the map
+  private static final double MARGIN = 1;
+
+  private final double resolution;
+  private final double originX, originY;
+  private final int columns, rows;
+  private final float[] distances;
+
+  /**
+   * Constructor with the default resolution.
+   */
+  public FieldLineMap() {
+    this(DEFAULT_RESOLUTION);
+  }
+
+  /**
+   * Constructor, computes the distance transform.
+   *
+   * @param resolution Edge length of the cells in meters.
+   */
+  public FieldLineMap(double resolution) {
+    this.resolution = resolution;
+    originX = -FieldConsts.FieldLength / 2 - MARGIN;
+    originY = -FieldConsts.FieldWidth / 2 - MARGIN;
+    columns = (int) Math.ceil((FieldConsts.FieldLength + 2 * MARGIN) / resolution);
+    rows = (int) Math.ceil((FieldConsts.FieldWidth + 2 * MARGIN) / resolution);
+    distances = new float[columns * rows];
+    double[][] segments = FieldConsts.FieldLineSegments;
+    for (int row = 0; row < rows; row++) {
+      double y = originY + (row + 0.5) * resolution;
+      int offset = row * columns;
+      for (int column = 0; column < columns; column++) {
+        double x = originX + (column + 0.5) * resolution;
+        double min = Math.abs(Math.sqrt(x * x + y * y)
+                - FieldConsts.CenterCircleRadius);
+        for (double[] s : segments)
+          min = Math.min(min, segmentDistance(x, y, s[0], s[1], s[2], s[3]));
+        distances[offset + column] = (float) min;
+      }
+    }
+  }
+
+  /**
+   * Returns the distance of a point to the nearest field line.
+   *
+   * The distance is interpolated bilinearly from the four cells around the
+   * point. Points outside of the map are moved to the border of the map, so
+   * the returned distance is too small for them.
+   *
+   * @param x Global x-coordinate in meters.
+   * @param y Global y-coordinate in meters.
+   * @return Distance in meters.
+   */
+  public double getDistance(double x, double y) {
+    double u = (x - originX) / resolution - 0.5;
+    double v = (y - originY) / resolution - 0.5;
+    if (u < 0)
+      u = 0;
+    else if (u > columns - 1.001)
+      u = columns - 1.001;
+    if (v < 0)
+      v = 0;
+    else if (v > rows - 1.001)
+      v = rows - 1.001;
+    int column = (int) u;
+    int row = (int) v;
+    double fu = u - column;
+    double fv = v - row;
+    int i = row * columns + column;
+    double lower = distances[i] + fu * (distances[i + 1] - distances[i]);
+    double upper = distances[i + columns] 
+            + fu * (distances[i + columns + 1] - distances[i + columns]);
+    return lower + fv * (upper - lower);
+  }
+
+  /**
+   * Returns the edge length of the cells.
+   *
+   * @return Resolution in meters.
+   */
+  public double getResolution() {
+    return resolution;
+  }
+
+  /**
+   * Returns the number of cells in x-direction.
+   *
+   * @return Number of columns.
+   */
+  public int getColumns() {
+    return columns;
+  }
+
+  /**
+   * Returns the number of cells in y-direction.
+   *
+   * @return Number of rows.
+   */
+  public int getRows() {
+    return rows;
+  }
+
+  /**
+   * Internal method, distance of point (x, y) to the segment from (x1, y1) to
+   * (x2, y2).
+   */
+  private static double segmentDistance(double x, double y, double x1,
+          double y1, double x2, double y2) {
+    double dx = x2 - x1;
+    double dy = y2 - y1;
+    double t = ((x - x1) * dx + (y - y1) * dy) / (dx * dx + dy * dy);
+    t = Math.max(0, Math.min(1, t));
+    double ex = x - (x1 + t * dx);
+    double ey = y - (y1 + t * dy);
+    return Math.sqrt(ex * ex + ey * ey);
+  }
+}
@@ -0,0 +1,225 @@
+/*******************************************************************************
+*  RoboNewbie
+* NaoTeam Humboldt
+* @version 1.1
+*******************************************************************************/
+
+package localization;
+
+import java.util.List;
+import localFieldView.LineModel;
+import util.PolarCoords;
+
+/**
+ * Refines a pose by matching the seen field lines against the FieldLineMap.
+ *
+ * The seen lines are sampled into points on the ground in the local
+ * coordinates of the robot (see setLines(...)), the tilt of the torso is
+ * neglected. A pose is scored by the mean squared distance of these points,
+ * transformed into global coordinates, to the nearest field line, which
+ * costs one map lookup per point. The
+ * distances are truncated, so lines which do not belong to the field
+ * markings have a limited influence.
+ * Method match(...) searches the pose with the best score near a start pose
+ * by a coordinate descent with decreasing step sizes. Since the field lines
+ * are repetitive, the start pose has to be good already, e.g. the estimate
+ * of the particle filter.
+ *
+ * @see FieldLineMap
+ * @see SelfLocalization
+ */
+public class LineScanMatcher {
+
+  private static final int MAX_POINTS = 64;
+  private static final double POINT_SPACING = 0.25;
+  private static final double MAX_DISTANCE = 0.5;
+  // minimal number of points and maximal score of a successful match
+  private static final int MIN_POINTS = 6;
+  private static final double MAX_SCORE = 0.02;
+  private static final double START_STEP = 0.2;
+  private static final double MIN_STEP = 0.0125;
+  private static final double ANGLE_STEP_PER_METER = Math.toRadians(10);
+  private static final int MAX_ITERATIONS = 40;
+
+  private final FieldLineMap map;
+  private final double[] pointX = new double[MAX_POINTS];
+  private final double[] pointY = new double[MAX_POINTS];
+  private int points = 0;
+
+  private double bestX, bestY, bestTheta, bestScore;
+
+  /**
+   * Constructor.
+   *
+   * @param map Distance transform of the field lines.
+   */
+  public LineScanMatcher(FieldLineMap map) {
+    this.map = map;
+  }
+
+  /**
+   * Samples the seen lines into points on the ground.
+   *
+   * The lines are sampled evenly, the points are distributed over all lines,
+   * at most 64 points are used.
+   *
+   * @param lines Line models of LocalFieldView.
+   * @return Number of sampled points.
+   */
+  public int setLines(List<LineModel> lines) {
+    points = 0;
+    double totalLength = 0;
+    for (int i = 0; i < lines.size(); i++) {
+      LineModel l = lines.get(i);
+      totalLength += length(l.getStartPolar(), l.getEndPolar());
+    }
+    if (totalLength == 0)
+      return 0;
+    double spacing = Math.max(POINT_SPACING, totalLength / MAX_POINTS);
+    for (int i = 0; i < lines.size() && points < MAX_POINTS; i++) {
+      LineModel l = lines.get(i);
+      PolarCoords start = l.getStartPolar();
+      PolarCoords end = l.getEndPolar();
+      double sx = start.getX(), sy = start.getY();
+      double ex = end.getX(), ey = end.getY();
+      int n = 1 + (int) (length(start, end) / spacing);
+      for (int k = 0; k <= n && points < MAX_POINTS; k++) {
+        double t = (double) k / n;
+        pointX[points] = sx + t * (ex - sx);
+        pointY[points] = sy + t * (ey - sy);
+        points++;
+      }
+    }
+    return points;
+  }
+
+  /**
+   * Returns the number of the points sampled by setLines(...).
+   *
+   * @return Number of points.
+   */
+  public int getPointCount() {
+    return points;
+  }
+
+  /**
+   * Scores a pose with the sampled points.
+   *
+   * @param x Global x-coordinate in meters.
+   * @param y Global y-coordinate in meters.
+   * @param theta Direction in radians.
+   * @return Mean squared truncated distance of the points to the field lines
+   * in square meters, 0 is a perfect fit.
+   */
+  public double score(double x, double y, double theta) {
+    if (points == 0)
+      return MAX_DISTANCE * MAX_DISTANCE;
+    double c = Math.cos(theta);
+    double s = Math.sin(theta);
+    double sum = 0;
+    for (int i = 0; i < points; i++) {
+      double d = map.getDistance(x + c * pointX[i] - s * pointY[i],
+              y + s * pointX[i] + c * pointY[i]);
+      d = Math.min(d, MAX_DISTANCE);
+      sum += d * d;
+    }
+    return sum / points;
+  }
+
+  /**
+   * Searches the best pose near the start pose.
+   *
+   * The result is available through getX(), getY(), getTheta() and
+   * getScore() also if the match failed.
+   *
+   * @param x Global x-coordinate of the start pose in meters.
+   * @param y Global y-coordinate of the start pose in meters.
+   * @param theta Direction of the start pose in radians.
+   * @return True, if enough points have been sampled and the best pose fits
+   * them well.
+   */
+  public boolean match(double x, double y, double theta) {
+    bestX = x;
+    bestY = y;
+    bestTheta = theta;
+    bestScore = score(x, y, theta);
+    if (points < MIN_POINTS)
+      return false;
+    double step = START_STEP;
+    int iterations = 0;
+    while (step >= MIN_STEP && iterations < MAX_ITERATIONS) {
+      iterations++;
+      double angleStep = step * ANGLE_STEP_PER_METER / START_STEP;
+      boolean improved = tryPose(bestX + step, bestY, bestTheta)
+              | tryPose(bestX - step, bestY, bestTheta)
+              | tryPose(bestX, bestY + step, bestTheta)
+              | tryPose(bestX, bestY - step, bestTheta)
+              | tryPose(bestX, bestY, bestTheta + angleStep)
+              | tryPose(bestX, bestY, bestTheta - angleStep);
+      if (!improved)
+        step /= 2;
+    }
+    return bestScore <= MAX_SCORE;
+  }
+
+  /**
+   * Returns the x-coordinate of the last match.
+   *
+   * @return Global x-coordinate in meters.
+   */
+  public double getX() {
+    return bestX;
+  }
+
+  /**
+   * Returns the y-coordinate of the last match.
+   *
+   * @return Global y-coordinate in meters.
+   */
+  public double getY() {
+    return bestY;
+  }
+
+  /**
+   * Returns the direction of the last match.
+   *
+   * @return Direction in radians.
+   */
+  public double getTheta() {
+    return bestTheta;
+  }
+
+  /**
+   * Returns the score of the last match.
+   *
+   * @return Score as defined by score(...).
+   */
+  public double getScore() {
+    return bestScore;
+  }
+
+  /**
+   * Internal method, scores a pose and keeps it, if it is better than the
+   * best pose so far.
+   */
+  private boolean tryPose(double x, double y, double theta) {
+    double s = score(x, y, theta);
+    if (s < bestScore) {
+      bestScore = s;
+      bestX = x;
+      bestY = y;
+      bestTheta = theta;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Internal method, length of a seen line projected on the ground.
+   */
+  private static double length(PolarCoords a, PolarCoords b) {
+    double dx = b.getX() - a.getX();
+    double dy = b.getY() - a.getY();
+    return Math.sqrt(dx * dx + dy * dy);
+  }
+}
@@ -0,0 +1,203 @@
+/*******************************************************************************
+*  RoboNewbie
+* NaoTeam Humboldt
+* @version 1.1
+*******************************************************************************/
+
+package localization;
+
+import directMotion.OmnidirectionalWalk;
+import java.util.HashMap;
+import keyframeMotion.KeyframeMotion;
+import keyframeMotion.util.KeyframeSequence;
+
+/**
+ * Estimates the movement of the robot from the executed keyframe sequences.
+ *
+ * Every known sequence has a displacement, which the robot moves during one
+ * complete execution of the sequence, given in the local coordinates of the
+ * robot at the start of the sequence (x forward, y to the left, rotation
+ * counterclockwise). Per server cycle the part of the displacement is
+ * returned, which corresponds to the progress of the actual sequence, so
+ * skipped cycles and sequences scaled in speed are handled automatically.
+ * Scaled sequences are found by the name of their original sequence, their
+ * amplitude is not considered. The steps of directMotion.OmnidirectionalWalk
+ * have no fixed displacement, for them the displacement planned by the walk
+ * for the actual step is used.
+ *
+ * The default displacements are rough estimates for the sequences of class
+ * KeyframeMotion, they should be calibrated with the trainer for own
+ * sequences and walking styles by setDisplacement(...).
+ *
+ * @see KeyframeMotion
+ * @see SelfLocalization
+ */
+public class MotionOdometry {
+
+  private static final HashMap<String, double[]> DEFAULT_DISPLACEMENTS = new HashMap<>();
+
+  static {
+    setDefault("walk_forward-flemming-nika.txt", 0.12, 0, 0);
+    setDefault("walk_forward-flemming-nika_slow050.txt", 0.06, 0, 0);
+    setDefault("walk_forward-flemming-nika_slow075.txt", 0.09, 0, 0);
+    setDefault("walk_forward_Rijeka2013.txt", 0.12, 0, 0);
+    setDefault("faster_ns_walk_Plovdiv2014.txt", 0.15, 0, 0);
+    setDefault("turn-left-nika.txt", 0, 0, Math.toRadians(30));
+    setDefault("turn-right-nika.txt", 0, 0, Math.toRadians(-30));
+    setDefault("turn-left-small-nika.txt", 0, 0, Math.toRadians(10));
+    setDefault("turn-right-small-nika.txt", 0, 0, Math.toRadians(-10));
+    setDefault("side-step-left-nika.txt", 0, 0.05, 0);
+    setDefault("side-step-right-nika.txt", 0, -0.05, 0);
+  }
+
+  private final HashMap<String, double[]> displacements = new HashMap<>();
+  private final double[] stepDisplacement = new double[3];
+
+  private KeyframeSequence lastSequence = null;
+  private double[] lastDisplacement = null;
+  private double lastProgress = 0;
+  private double dx, dy, dTheta;
+  private boolean moving = false;
+
+  /**
+   * Constructor, sets the default displacements.
+   */
+  public MotionOdometry() {
+    for (String name : DEFAULT_DISPLACEMENTS.keySet()) {
+      double[] d = DEFAULT_DISPLACEMENTS.get(name);
+      setDisplacement(name, d[0], d[1], d[2]);
+    }
+  }
+
+  /**
+   * Returns the default displacement of a sequence, which is used by every
+   * new MotionOdometry, and by the planning of the kick approach
+   * (planning.KickApproachTable).
+   *
+   * @param sequenceName Name of the sequence, that is the name of its file.
+   * @return Forward movement and movement to the left in meters,
+   * counterclockwise rotation in radians, or null, if the sequence has no
+   * default displacement.
+   */
+  public static double[] getDefaultDisplacement(String sequenceName) {
+    double[] d = DEFAULT_DISPLACEMENTS.get(sequenceName);
+    return d == null ? null : d.clone();
+  }
+
+  /**
+   * Sets the displacement of one complete execution of a sequence.
+   *
+   * @param sequenceName Name of the sequence, that is the name of its file.
+   * @param x Forward movement in meters.
+   * @param y Movement to the left in meters.
+   * @param theta Counterclockwise rotation in radians.
+   */
+  public void setDisplacement(String sequenceName, double x, double y, double theta) {
+    displacements.put(sequenceName, new double[]{x, y, theta});
+  }
+
+  /**
+   * Computes the movement of the robot since the last call.
+   *
+   * Should be called once per server cycle, after the keyframe sequence of
+   * the cycle has been executed. The results are available through getDx(),
+   * getDy() and getDTheta().
+   *
+   * @param motion Keyframe player of the agent.
+   */
+  public void update(KeyframeMotion motion) {
+    dx = 0;
+    dy = 0;
+    dTheta = 0;
+    moving = false;
+    KeyframeSequence ks = motion.getActualSequence();
+    if (ks == null) {
+      lastSequence = null;
+      return;
+    }
+    double progress = motion.getActualProgress();
+    if (ks != lastSequence) {
+      lastDisplacement = getDisplacement(ks);
+      lastProgress = 0;
+    } else if (progress < lastProgress)
+      lastProgress = 0;
+    double[] d = lastDisplacement;
+    if (d != null) {
+      double part = progress - lastProgress;
+      dx = d[0] * part;
+      dy = d[1] * part;
+      dTheta = d[2] * part;
+      moving = true;
+    }
+    lastSequence = ks;
+    lastProgress = progress;
+  }
+
+  /**
+   * States, whether the robot executes a sequence with known displacement.
+   *
+   * @return True, if the last update found such a sequence.
+   */
+  public boolean isMoving() {
+    return moving;
+  }
+
+  /**
+   * Returns the forward movement of the last cycle.
+   *
+   * @return Movement in meters in the local coordinates of the robot.
+   */
+  public double getDx() {
+    return dx;
+  }
+
+  /**
+   * Returns the movement to the left of the last cycle.
+   *
+   * @return Movement in meters in the local coordinates of the robot.
+   */
+  public double getDy() {
+    return dy;
+  }
+
+  /**
+   * Returns the rotation of the last cycle.
+   *
+   * @return Counterclockwise rotation in radians.
+   */
+  public double getDTheta() {
+    return dTheta;
+  }
+
+  /**
+   * Internal method, adds a default displacement.
+   */
+  private static void setDefault(String sequenceName, double x, double y, double theta) {
+    DEFAULT_DISPLACEMENTS.put(sequenceName, new double[]{x, y, theta});
+  }
+
+  /**
+   * Internal method, looks up the displacement of a sequence or of the
+   * original sequence of a scaled one, or reads the displacement of a step
+   * of the omnidirectional walk.
+   */
+  private double[] getDisplacement(KeyframeSequence ks) {
+    if (ks.getPoseSource() instanceof OmnidirectionalWalk) {
+      OmnidirectionalWalk walk = (OmnidirectionalWalk) ks.getPoseSource();
+      stepDisplacement[0] = walk.getStepDx();
+      stepDisplacement[1] = walk.getStepDy();
+      stepDisplacement[2] = walk.getStepDTheta();
+      return stepDisplacement;
+    }
+    String name = ks.getName();
+    if (name == null)
+      return null;
+    double[] d = displacements.get(name);
+    if (d == null) {
+      int scaled = name.indexOf(" (");
+      if (scaled > 0)
+        d = displacements.get(name.substring(0, scaled));
+    }
+    return d;
+  }
+}
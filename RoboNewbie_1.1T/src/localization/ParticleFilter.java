@@ -0,0 +1,467 @@
+/*******************************************************************************
+*  RoboNewbie
+* NaoTeam Humboldt
+* @version 1.1
+*******************************************************************************/
+
+package localization;
+
+import util.FieldConsts;
+
+/**
+ * Particle filter for the global pose (x, y, theta) of the robot.
+ *
+ * Every particle is one hypothesis of the pose, the global coordinate system
+ * is described in util.FieldConsts, theta is the direction of the robot
+ * (0 means the robot looks in positive x-direction, counterclockwise
+ * positive). The particles are stored in parallel primitive arrays, one array
+ * per component, and the number of particles is fixed at the construction,
+ * so the filter does not create any objects after its construction, and the
+ * loops over the particles run over plain arrays.
+ *
+ * One cycle of the filter consists of
+ * - predict(...) with the movement of the robot since the last cycle, and,
+ * if landmarks have been seen,
+ * - beginMeasurement(), addLandmark(...) for every seen landmark, 
+ * addPose(...) for a pose measured otherwise (e.g. by LineScanMatcher) and
+ * endMeasurement(), which weights the particles, resamples them if
+ * necessary and computes the new estimate.
+ *
+ * When the landmarks fit the particles much worse than before (e.g. after
+ * the robot has been beamed) or badly at all, some particles are replaced 
+ * during the resampling by random particles, which fit one of the seen
+ * landmarks or the measured pose, so the filter can recover.
+ *
+ * @see SelfLocalization
+ */
+public class ParticleFilter {
+
+  // standard deviation of the distance measurement: base + factor * distance
+  private static final double DISTANCE_SIGMA_BASE = 0.05;
+  private static final double DISTANCE_SIGMA_FACTOR = 0.02;
+  private static final double BEARING_SIGMA = Math.toRadians(3);
+  // errors are truncated at this number of squared standard deviations, so a
+  // single wrong measurement does not wipe out all good particles
+  private static final double MAX_ERROR = 8;
+  // filter rates of the likelihood averages for the random particles
+  private static final double SLOW_RATE = 0.02;
+  private static final double FAST_RATE = 0.2;
+  private static final double MAX_RANDOM_PART = 0.2;
+  // random particles are used, if the recent likelihood falls below the
+  // long time likelihood divided by this value, or below the minimal 
+  // likelihood (per landmark, 1 means a perfect fit)
+  private static final double RANDOM_THRESHOLD = 2;
+  private static final double MIN_LIKELIHOOD = 0.3;
+
+  private final int count;
+  private double[] x, y, theta;
+  private double[] newX, newY, newTheta;
+  private final double[] weight;
+  private final double[] logLikelihood;
+
+  private static final int MAX_LANDMARKS = 16;
+
+  // landmarks of the actual measurement
+  private final double[] landmarkX = new double[MAX_LANDMARKS];
+  private final double[] landmarkY = new double[MAX_LANDMARKS];
+  private final double[] landmarkDistance = new double[MAX_LANDMARKS];
+  private final double[] landmarkBearing = new double[MAX_LANDMARKS];
+  private int landmarks = 0;
+  // all measurements, including landmarks and the measured pose
+  private int measurements = 0;
+  private boolean hasPose = false;
+  private double poseX, poseY, poseTheta, poseSigma, poseAngleSigma;
+  private double slowLikelihood = 0, fastLikelihood = 0;
+  private double meanX, meanY, meanTheta, deviation;
+
+  private long randomState;
+  private double spareGaussian;
+  private boolean hasSpareGaussian = false;
+
+  /**
+   * Constructor.
+   *
+   * The particles are spread over the whole field.
+   *
+   * @param particles Number of particles, fixed for the whole run.
+   * @param seed Seed of the random number generator.
+   */
+  public ParticleFilter(int particles, long seed) {
+    count = particles;
+    x = new double[count];
+    y = new double[count];
+    theta = new double[count];
+    newX = new double[count];
+    newY = new double[count];
+    newTheta = new double[count];
+    weight = new double[count];
+    logLikelihood = new double[count];
+    randomState = seed == 0 ? 1 : seed;
+    resetUniform();
+  }
+
+  /**
+   * Spreads the particles uniformly over the field with random directions.
+   */
+  public void resetUniform() {
+    for (int i = 0; i < count; i++)
+      setRandomParticle(x, y, theta, i);
+    resetWeights();
+    computeEstimate();
+  }
+
+  /**
+   * Spreads the particles around a known pose.
+   *
+   * @param x0 Global x-coordinate in meters.
+   * @param y0 Global y-coordinate in meters.
+   * @param theta0 Direction in radians.
+   * @param positionSigma Standard deviation of the position in meters.
+   * @param angleSigma Standard deviation of the direction in radians.
+   */
+  public void reset(double x0, double y0, double theta0, double positionSigma,
+          double angleSigma) {
+    for (int i = 0; i < count; i++) {
+      x[i] = x0 + positionSigma * nextGaussian();
+      y[i] = y0 + positionSigma * nextGaussian();
+      theta[i] = normalize(theta0 + angleSigma * nextGaussian());
+    }
+    resetWeights();
+    computeEstimate();
+  }
+
+  /**
+   * Moves all particles by the movement of the robot.
+   *
+   * The movement is given in the local coordinates of the robot and is
+   * disturbed per particle by gaussian noise proportional to its size, plus
+   * a small constant noise.
+   *
+   * @param dx Forward movement in meters.
+   * @param dy Movement to the left in meters.
+   * @param dTheta Counterclockwise rotation in radians.
+   * @param noise Relative standard deviation of the movement.
+   */
+  public void predict(double dx, double dy, double dTheta, double noise) {
+    double translation = Math.sqrt(dx * dx + dy * dy);
+    double transSigma = 0.002 + noise * translation;
+    double rotSigma = 0.002 + noise * Math.abs(dTheta) + 0.2 * noise * translation;
+    for (int i = 0; i < count; i++) {
+      double c = Math.cos(theta[i]);
+      double s = Math.sin(theta[i]);
+      double mx = dx + transSigma * nextGaussian();
+      double my = dy + transSigma * nextGaussian();
+      x[i] += c * mx - s * my;
+      y[i] += s * mx + c * my;
+      theta[i] = normalize(theta[i] + dTheta + rotSigma * nextGaussian());
+    }
+  }
+
+  /**
+   * Starts the weighting of the particles with the landmarks of one vision
+   * message.
+   */
+  public void beginMeasurement() {
+    landmarks = 0;
+    measurements = 0;
+    hasPose = false;
+    for (int i = 0; i < count; i++)
+      logLikelihood[i] = 0;
+  }
+
+  /**
+   * Weights the particles with one seen landmark.
+   *
+   * @param landmarkX Global x-coordinate of the landmark.
+   * @param landmarkY Global y-coordinate of the landmark.
+   * @param distance Sensed horizontal distance in meters.
+   * @param bearing Sensed direction relative to the torso in radians.
+   */
+  public void addLandmark(double landmarkX, double landmarkY, double distance,
+          double bearing) {
+    double distanceSigma = DISTANCE_SIGMA_BASE + DISTANCE_SIGMA_FACTOR * distance;
+    double distanceFactor = 1 / (2 * distanceSigma * distanceSigma);
+    double bearingFactor = 1 / (2 * BEARING_SIGMA * BEARING_SIGMA);
+    for (int i = 0; i < count; i++) {
+      double ex = landmarkX - x[i];
+      double ey = landmarkY - y[i];
+      double dd = distance - Math.sqrt(ex * ex + ey * ey);
+      double da = normalize(bearing - Math.atan2(ey, ex) + theta[i]);
+      double error = dd * dd * distanceFactor + da * da * bearingFactor;
+      logLikelihood[i] -= Math.min(MAX_ERROR, error);
+    }
+    if (landmarks < MAX_LANDMARKS) {
+      this.landmarkX[landmarks] = landmarkX;
+      this.landmarkY[landmarks] = landmarkY;
+      landmarkDistance[landmarks] = distance;
+      landmarkBearing[landmarks] = bearing;
+    }
+    landmarks++;
+    measurements++;
+  }
+
+  /**
+   * Weights the particles with a measured pose.
+   *
+   * @param x Measured global x-coordinate in meters.
+   * @param y Measured global y-coordinate in meters.
+   * @param theta Measured direction in radians.
+   * @param positionSigma Standard deviation of the position in meters.
+   * @param angleSigma Standard deviation of the direction in radians.
+   */
+  public void addPose(double x, double y, double theta, double positionSigma,
+          double angleSigma) {
+    double positionFactor = 1 / (2 * positionSigma * positionSigma);
+    double angleFactor = 1 / (2 * angleSigma * angleSigma);
+    for (int i = 0; i < count; i++) {
+      double ex = x - this.x[i];
+      double ey = y - this.y[i];
+      double ea = normalize(theta - this.theta[i]);
+      double error = (ex * ex + ey * ey) * positionFactor + ea * ea * angleFactor;
+      logLikelihood[i] -= Math.min(MAX_ERROR, error);
+    }
+    hasPose = true;
+    poseX = x;
+    poseY = y;
+    poseTheta = theta;
+    poseSigma = positionSigma;
+    poseAngleSigma = angleSigma;
+    measurements++;
+  }
+
+  /**
+   * Finishes the weighting of the particles, resamples the particles if their
+   * weights differ too much and computes the estimate.
+   */
+  public void endMeasurement() {
+    if (measurements == 0)
+      return;
+    double maxLog = Double.NEGATIVE_INFINITY;
+    for (int i = 0; i < count; i++)
+      maxLog = Math.max(maxLog, logLikelihood[i]);
+    double sum = 0;
+    for (int i = 0; i < count; i++) {
+      weight[i] *= Math.exp(logLikelihood[i] - maxLog);
+      sum += weight[i];
+    }
+    // mean likelihood of one measurement, the previous weights summed up to 1
+    double likelihood = Math.exp((maxLog + Math.log(sum)) / measurements);
+    if (slowLikelihood == 0) {
+      slowLikelihood = likelihood;
+      fastLikelihood = likelihood;
+    } else {
+      slowLikelihood += SLOW_RATE * (likelihood - slowLikelihood);
+      fastLikelihood += FAST_RATE * (likelihood - fastLikelihood);
+    }
+
+    double squareSum = 0;
+    for (int i = 0; i < count; i++) {
+      weight[i] /= sum;
+      squareSum += weight[i] * weight[i];
+    }
+    double randomPart = getRandomPart();
+    if (1 / squareSum < count / 2 || randomPart > 0)
+      resample(randomPart);
+    computeEstimate();
+  }
+
+  /**
+   * Returns the number of particles.
+   *
+   * @return Fixed number of particles.
+   */
+  public int getParticleCount() {
+    return count;
+  }
+
+  /**
+   * Returns the estimated x-coordinate.
+   *
+   * @return Weighted mean of the particles in meters.
+   */
+  public double getX() {
+    return meanX;
+  }
+
+  /**
+   * Returns the estimated y-coordinate.
+   *
+   * @return Weighted mean of the particles in meters.
+   */
+  public double getY() {
+    return meanY;
+  }
+
+  /**
+   * Returns the estimated direction.
+   *
+   * @return Weighted circular mean of the particles in radians.
+   */
+  public double getTheta() {
+    return meanTheta;
+  }
+
+  /**
+   * Returns the spread of the particle positions around the estimate.
+   *
+   * @return Weighted standard deviation of the positions in meters.
+   */
+  public double getDeviation() {
+    return deviation;
+  }
+
+  /**
+   * Internal method, returns the part of the particles to be replaced by
+   * random particles, which is greater than 0, if the recent likelihood is
+   * much smaller than the long time likelihood or too small at all.
+   */
+  private double getRandomPart() {
+    if (slowLikelihood <= 0)
+      return 0;
+    double part = Math.max(1 - RANDOM_THRESHOLD * fastLikelihood / slowLikelihood,
+            1 - fastLikelihood / MIN_LIKELIHOOD);
+    return Math.min(MAX_RANDOM_PART, Math.max(0, part));
+  }
+
+  /**
+   * Internal method, low variance resampling, the passed part of the 
+   * particles is replaced by random particles.
+   */
+  private void resample(double randomPart) {
+    double step = 1.0 / count;
+    double pointer = nextDouble() * step;
+    double cumulated = weight[0];
+    int j = 0;
+    for (int i = 0; i < count; i++) {
+      if (randomPart > 0 && nextDouble() < randomPart) {
+        setMeasuredParticle(newX, newY, newTheta, i);
+      } else {
+        while (pointer > cumulated && j < count - 1) {
+          j++;
+          cumulated += weight[j];
+        }
+        newX[i] = x[j];
+        newY[i] = y[j];
+        newTheta[i] = theta[j];
+      }
+      pointer += step;
+    }
+    double[] t = x;
+    x = newX;
+    newX = t;
+    t = y;
+    y = newY;
+    newY = t;
+    t = theta;
+    theta = newTheta;
+    newTheta = t;
+    resetWeights();
+  }
+
+  /**
+   * Internal method, computes the weighted mean and spread of the particles.
+   */
+  private void computeEstimate() {
+    double sx = 0, sy = 0, sc = 0, ss = 0;
+    for (int i = 0; i < count; i++) {
+      sx += weight[i] * x[i];
+      sy += weight[i] * y[i];
+      sc += weight[i] * Math.cos(theta[i]);
+      ss += weight[i] * Math.sin(theta[i]);
+    }
+    meanX = sx;
+    meanY = sy;
+    meanTheta = Math.atan2(ss, sc);
+    double sd = 0;
+    for (int i = 0; i < count; i++) {
+      double ex = x[i] - meanX;
+      double ey = y[i] - meanY;
+      sd += weight[i] * (ex * ex + ey * ey);
+    }
+    deviation = Math.sqrt(sd);
+  }
+
+  /**
+   * Internal method, sets all weights to the same value.
+   */
+  private void resetWeights() {
+    for (int i = 0; i < count; i++)
+      weight[i] = 1.0 / count;
+  }
+
+  /**
+   * Internal method, sets particle i of the passed arrays to a random pose
+   * on the field.
+   */
+  private void setRandomParticle(double[] px, double[] py, double[] pTheta, int i) {
+    px[i] = (nextDouble() - 0.5) * FieldConsts.FieldLength;
+    py[i] = (nextDouble() - 0.5) * FieldConsts.FieldWidth;
+    pTheta[i] = (nextDouble() * 2 - 1) * Math.PI;
+  }
+
+  /**
+   * Internal method, sets particle i of the passed arrays to a random pose,
+   * from which one of the landmarks of the actual measurement is seen as
+   * measured, or near the measured pose. 
+   */
+  private void setMeasuredParticle(double[] px, double[] py, double[] pTheta, int i) {
+    int stored = Math.min(landmarks, MAX_LANDMARKS);
+    int k = (int) (nextDouble() * (hasPose ? stored + 1 : stored));
+    if (k == stored) {
+      px[i] = poseX + poseSigma * nextGaussian();
+      py[i] = poseY + poseSigma * nextGaussian();
+      pTheta[i] = normalize(poseTheta + poseAngleSigma * nextGaussian());
+      return;
+    }
+    double distance = landmarkDistance[k] + nextGaussian() 
+            * (DISTANCE_SIGMA_BASE + DISTANCE_SIGMA_FACTOR * landmarkDistance[k]);
+    double direction = (nextDouble() * 2 - 1) * Math.PI;
+    px[i] = landmarkX[k] - distance * Math.cos(direction);
+    py[i] = landmarkY[k] - distance * Math.sin(direction);
+    pTheta[i] = normalize(direction - landmarkBearing[k] 
+            + BEARING_SIGMA * nextGaussian());
+  }
+
+  /**
+   * Internal method, normalizes an angle to the range from -pi to pi.
+   */
+  private static double normalize(double angle) {
+    while (angle > Math.PI)
+      angle -= 2 * Math.PI;
+    while (angle < -Math.PI)
+      angle += 2 * Math.PI;
+    return angle;
+  }
+
+  /**
+   * Internal method, xorshift random number generator, uniform in [0, 1).
+   * Used instead of java.util.Random to avoid its synchronization.
+   */
+  private double nextDouble() {
+    randomState ^= randomState << 13;
+    randomState ^= randomState >>> 7;
+    randomState ^= randomState << 17;
+    return (randomState >>> 11) * 0x1.0p-53;
+  }
+
+  /**
+   * Internal method, standard normal distributed random numbers with the
+   * polar method, which produces two numbers per call.
+   */
+  private double nextGaussian() {
+    if (hasSpareGaussian) {
+      hasSpareGaussian = false;
+      return spareGaussian;
+    }
+    double u, v, s;
+    do {
+      u = nextDouble() * 2 - 1;
+      v = nextDouble() * 2 - 1;
+      s = u * u + v * v;
+    } while (s >= 1 || s == 0);
+    double m = Math.sqrt(-2 * Math.log(s) / s);
+    spareGaussian = v * m;
+    hasSpareGaussian = true;
+    return u * m;
+  }
+}
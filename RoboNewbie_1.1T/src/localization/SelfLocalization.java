@@ -0,0 +1,317 @@
+/*******************************************************************************
+*  RoboNewbie
+* NaoTeam Humboldt
+* @version 1.1
+*******************************************************************************/
+
+package localization;
+
+import java.util.List;
+import keyframeMotion.KeyframeMotion;
+import localFieldView.DatedItemModel;
+import localFieldView.FlagModel;
+import localFieldView.GoalPostModel;
+import localFieldView.LineModel;
+import localFieldView.LocalFieldView;
+import util.FieldConsts;
+import util.FieldConsts.FlagID;
+import util.FieldConsts.GoalPostID;
+import util.PolarCoords;
+
+/**
+ * This class estimates the global pose of the robot on the field.
+ *
+ * LocalFieldView provides only coordinates relative to the robot. This class
+ * estimates the position and direction of the robot in the global coordinate
+ * system (described in util.FieldConsts) with a ParticleFilter.
+ * In every server cycle the particles are moved by the movement of the robot,
+ * which is estimated by MotionOdometry from the executed keyframe sequences.
+ * When the vision perceptor brings new data about flags or goal posts, the
+ * particles are weighted by the sensed distances and directions of these
+ * landmarks. When field lines are seen and the estimate is good enough, the
+ * LineScanMatcher refines the estimate, and the refined pose is weighted in
+ * as another measurement, so the estimate stays accurate also while no flags
+ * or goal posts are in the field of view. While neither landmarks nor lines
+ * are used, the estimate follows the odometry only, and the position spread
+ * (getDeviation()) grows.
+ *
+ * The method update() should be called once in every server cycle, after
+ * LocalFieldView has been updated and the keyframe sequence of the cycle has
+ * been executed. The time used by update() is measured, see
+ * getLastUpdateNanos(), getMeanUpdateNanos() and getMaxUpdateNanos().
+ *
+ * @see ParticleFilter
+ * @see MotionOdometry
+ * @see LineScanMatcher
+ */
+public class SelfLocalization {
+
+  /**
+   * Default number of particles.
+   */
+  public static final int DEFAULT_PARTICLES = 200;
+
+  private static final GoalPostID[] GOAL_POST_IDS = GoalPostID.values();
+  private static final FlagID[] FLAG_IDS = FlagID.values();
+
+  private static final double ODOMETRY_NOISE = 0.3;
+  // the lines are matched only, if the estimate is better than this spread
+  private static final double MAX_MATCH_DEVIATION = 0.5;
+  private static final double LINE_POSITION_SIGMA = 0.1;
+  private static final double LINE_ANGLE_SIGMA = Math.toRadians(3);
+
+  private final LocalFieldView view;
+  private final KeyframeMotion motion;
+  private final ParticleFilter filter;
+  private final MotionOdometry odometry = new MotionOdometry();
+  private final LineScanMatcher matcher;
+
+  private double lastVisionTime = 0;
+  private double lastLineTime = 0;
+  private boolean measuring = false;
+  private int usedLandmarks = 0;
+  private int usedLinePoints = 0;
+  private boolean odometryOnly = true;
+
+  private long lastNanos = 0, maxNanos = 0, totalNanos = 0;
+  private int updates = 0;
+
+  /**
+   * Constructor with the default number of particles.
+   *
+   * @param view Local field view of the agent, cannot be null.
+   * @param motion Keyframe player of the agent, or null if the agent does not
+   * use KeyframeMotion, then no odometry is used.
+   */
+  public SelfLocalization(LocalFieldView view, KeyframeMotion motion) {
+    this(view, motion, DEFAULT_PARTICLES);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param view Local field view of the agent, cannot be null.
+   * @param motion Keyframe player of the agent, or null if the agent does not
+   * use KeyframeMotion, then no odometry is used.
+   * @param particles Number of particles of the filter.
+   */
+  public SelfLocalization(LocalFieldView view, KeyframeMotion motion, int particles) {
+    this.view = view;
+    this.motion = motion;
+    filter = new ParticleFilter(particles, System.nanoTime());
+    matcher = new LineScanMatcher(new FieldLineMap());
+  }
+
+  /**
+   * Sets the pose, e.g. after beaming the robot.
+   *
+   * @param x Global x-coordinate in meters.
+   * @param y Global y-coordinate in meters.
+   * @param theta Direction in radians.
+   */
+  public void setPose(double x, double y, double theta) {
+    filter.reset(x, y, theta, 0.05, Math.toRadians(3));
+  }
+
+  /**
+   * Forgets the pose, the particles are spread over the whole field.
+   */
+  public void resetUniform() {
+    filter.resetUniform();
+  }
+
+  /**
+   * Updates the pose estimate, see comment on this class.
+   */
+  public void update() {
+    long start = System.nanoTime();
+
+    if (motion != null) {
+      odometry.update(motion);
+      if (odometry.isMoving())
+        filter.predict(odometry.getDx(), odometry.getDy(), odometry.getDTheta(),
+                ODOMETRY_NOISE);
+    }
+
+    measuring = false;
+    usedLandmarks = 0;
+    usedLinePoints = 0;
+    double visionTime = lastVisionTime;
+    for (GoalPostID id : GOAL_POST_IDS) {
+      GoalPostModel g = view.getGoal(id);
+      if (isNew(g))
+        addLandmark(FieldConsts.getGoalPostX(id), FieldConsts.getGoalPostY(id),
+                g.getPolar());
+      visionTime = Math.max(visionTime, g.getTimeStamp());
+    }
+    for (FlagID id : FLAG_IDS) {
+      FlagModel f = view.getFlag(id);
+      if (isNew(f))
+        addLandmark(FieldConsts.getFlagX(id), FieldConsts.getFlagY(id),
+                f.getPolar());
+      visionTime = Math.max(visionTime, f.getTimeStamp());
+    }
+    lastVisionTime = visionTime;
+    matchLines();
+    if (measuring) {
+      filter.endMeasurement();
+      odometryOnly = false;
+    } else if (motion != null && odometry.isMoving())
+      odometryOnly = true;
+
+    lastNanos = System.nanoTime() - start;
+    totalNanos += lastNanos;
+    maxNanos = Math.max(maxNanos, lastNanos);
+    updates++;
+  }
+
+  /**
+   * Returns the estimated x-coordinate.
+   *
+   * @return Global x-coordinate in meters.
+   */
+  public double getX() {
+    return filter.getX();
+  }
+
+  /**
+   * Returns the estimated y-coordinate.
+   *
+   * @return Global y-coordinate in meters.
+   */
+  public double getY() {
+    return filter.getY();
+  }
+
+  /**
+   * Returns the estimated direction of the robot.
+   *
+   * @return Direction in radians, 0 means positive x-direction.
+   */
+  public double getTheta() {
+    return filter.getTheta();
+  }
+
+  /**
+   * Returns the uncertainty of the estimated position.
+   *
+   * @return Standard deviation of the particle positions in meters.
+   */
+  public double getDeviation() {
+    return filter.getDeviation();
+  }
+
+  /**
+   * Returns the number of landmarks used at the last update.
+   *
+   * @return Number of flags and goal posts of a new vision message, or 0.
+   */
+  public int getUsedLandmarks() {
+    return usedLandmarks;
+  }
+
+  /**
+   * Returns the number of line points used at the last update.
+   *
+   * @return Number of points sampled from the lines of a new vision message,
+   * or 0 if the lines have not been matched successfully.
+   */
+  public int getUsedLinePoints() {
+    return usedLinePoints;
+  }
+
+  /**
+   * States, whether the robot has moved since the last landmark was seen or
+   * the lines were matched, so the estimate is based on the odometry only.
+   *
+   * @return True, if the estimate is dead reckoning at the moment.
+   */
+  public boolean isOdometryOnly() {
+    return odometryOnly;
+  }
+
+  /**
+   * Returns the time used by the last update.
+   *
+   * @return Time in nanoseconds.
+   */
+  public long getLastUpdateNanos() {
+    return lastNanos;
+  }
+
+  /**
+   * Returns the mean time used by update().
+   *
+   * @return Time in nanoseconds.
+   */
+  public long getMeanUpdateNanos() {
+    return updates == 0 ? 0 : totalNanos / updates;
+  }
+
+  /**
+   * Returns the maximal time used by update().
+   *
+   * @return Time in nanoseconds.
+   */
+  public long getMaxUpdateNanos() {
+    return maxNanos;
+  }
+
+  /**
+   * Returns the underlying particle filter.
+   *
+   * @return Filter object of this localization.
+   */
+  public ParticleFilter getFilter() {
+    return filter;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("pose x=%.2f y=%.2f theta=%.1f° deviation=%.2f "
+            + "landmarks=%d line points=%d%s, update %.3f ms (mean %.3f ms, max %.3f ms)",
+            getX(), getY(), Math.toDegrees(getTheta()), getDeviation(),
+            usedLandmarks, usedLinePoints, odometryOnly ? " (odometry)" : "",
+            lastNanos / 1e6, getMeanUpdateNanos() / 1e6, maxNanos / 1e6);
+  }
+
+  /**
+   * Internal method, states if the model was updated by a vision message,
+   * which has not been used yet.
+   */
+  private boolean isNew(DatedItemModel m) {
+    return m.isInFOVnow() && m.getTimeStamp() > lastVisionTime;
+  }
+
+  /**
+   * Internal method, passes one landmark to the filter.
+   */
+  private void addLandmark(double landmarkX, double landmarkY, PolarCoords c) {
+    if (!measuring)
+      filter.beginMeasurement();
+    measuring = true;
+    filter.addLandmark(landmarkX, landmarkY,
+            c.getDistance() * Math.cos(c.getElevation()), c.getAzimuth());
+    usedLandmarks++;
+  }
+
+  /**
+   * Internal method, matches the lines of a new vision message and passes 
+   * the matched pose to the filter.
+   */
+  private void matchLines() {
+    List<LineModel> lines = view.getLines();
+    if (lines.isEmpty() || lines.get(0).getTimeStamp() <= lastLineTime)
+      return;
+    lastLineTime = lines.get(0).getTimeStamp();
+    if (filter.getDeviation() > MAX_MATCH_DEVIATION || matcher.setLines(lines) == 0
+            || !matcher.match(getX(), getY(), getTheta()))
+      return;
+    if (!measuring)
+      filter.beginMeasurement();
+    measuring = true;
+    filter.addPose(matcher.getX(), matcher.getY(), matcher.getTheta(),
+            LINE_POSITION_SIGMA, LINE_ANGLE_SIGMA);
+    usedLinePoints = matcher.getPointCount();
+  }
+}
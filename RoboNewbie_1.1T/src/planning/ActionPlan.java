@@ -0,0 +1,122 @@
+/*******************************************************************************
+*  RoboNewbie
+* NaoTeam Humboldt
+* @version 1.1
+*******************************************************************************/
+
+package planning;
+
+/**
+ * Result of an AnytimeActionPlanner: the best action found and its cost.
+ *
+ * The planner reuses one instance for all its results, so the values are
+ * valid until the next planning.
+ *
+ * @see AnytimeActionPlanner
+ */
+public class ActionPlan {
+
+  /**
+   * Kinds of planned actions.
+   */
+  public static enum ActionType {
+    /** Walk with the commanded velocity (see getForward() etc.). */
+    WALK,
+    /** Kick the ball from the actual position. */
+    KICK,
+    /** Push the ball in the direction getTurn() while walking forward. */
+    DRIBBLE
+  };
+
+  ActionType type = ActionType.WALK;
+  double forward, sideways, turn;
+  double cost = Double.POSITIVE_INFINITY;
+  int evaluated = 0;
+  int candidates = 0;
+  long time = 0;
+
+  /**
+   * Returns the kind of the action.
+   *
+   * @return Kind of the action.
+   */
+  public ActionType getType() {
+    return type;
+  }
+
+  /**
+   * Returns the forward speed of a walk.
+   *
+   * @return Speed in m/s (see directMotion.OmnidirectionalWalk).
+   */
+  public double getForward() {
+    return forward;
+  }
+
+  /**
+   * Returns the sideways speed of a walk.
+   *
+   * @return Speed in m/s, positive to the left.
+   */
+  public double getSideways() {
+    return sideways;
+  }
+
+  /**
+   * Returns the turn rate of a walk or the direction of a dribbling.
+   *
+   * @return Turn rate in radians per second for walking, direction relative
+   * to the robot in radians for dribbling (positive to the left).
+   */
+  public double getTurn() {
+    return turn;
+  }
+
+  /**
+   * Returns the estimated cost of the action.
+   *
+   * @return Estimated time in seconds until the ball is in the goal.
+   */
+  public double getCost() {
+    return cost;
+  }
+
+  /**
+   * Returns the number of candidates, which were evaluated before the
+   * deadline.
+   *
+   * @return Number of evaluated candidates.
+   */
+  public int getEvaluatedCount() {
+    return evaluated;
+  }
+
+  /**
+   * Returns the number of candidates of the planner.
+   *
+   * @return Number of all candidates.
+   */
+  public int getCandidateCount() {
+    return candidates;
+  }
+
+  /**
+   * Returns the duration of the planning.
+   *
+   * @return Time in nanoseconds.
+   */
+  public long getPlanningTime() {
+    return time;
+  }
+
+  /**
+   * Returns the action in a string.
+   *
+   * @return String with the kind, the parameters and the cost of the action.
+   */
+  @Override
+  public String toString() {
+    return String.format("%s (%.2f, %.2f, %.2f) cost %.2f s, %d/%d candidates in %.2f ms",
+            type, forward, sideways, turn, cost, evaluated, candidates, time / 1e6);
+  }
+}
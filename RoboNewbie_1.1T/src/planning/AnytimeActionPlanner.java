@@ -0,0 +1,370 @@
+/*******************************************************************************
+*  RoboNewbie
+* NaoTeam Humboldt
+* @version 1.1
+*******************************************************************************/
+
+package planning;
+
+import directMotion.OmnidirectionalWalk;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import planning.ActionPlan.ActionType;
+
+/**
+ * Anytime planner, which chooses the next action of an attacker.
+ *
+ * The candidates are a kick from the actual position, dribblings in several
+ * directions and walks with different velocities of the OmnidirectionalWalk.
+ * Every candidate is scored by a simple forward model as the estimated time
+ * until the ball is in the goal:
+ * - A walk is simulated for a short horizon. Then the time to reach the kick
+ *   position behind the ball (on the line from the goal through the ball) is
+ *   estimated from the distance and the heading error, and the times for the
+ *   kick and the flight of the ball are added.
+ * - A kick is possible only, if the robot is near the kick position and
+ *   faces the goal.
+ * - A dribbling is possible only, if the ball lies directly in front of the
+ *   robot, its cost grows with the distance to the goal and the angle, by
+ *   which the direction misses the goal.
+ * All positions are given in the local coordinates of LocalFieldView (x-axis
+ * to the front of the robot, y-axis to its left).
+ *
+ * The candidates are precomputed in an order, in which every prefix covers
+ * the whole range of actions: first the kick and the dribblings, then the
+ * walk velocities of a Halton sequence. plan(...) evaluates the candidates
+ * in this order until the deadline, so it returns the best result found so
+ * far, which gets better the more time is left. If there are spare cores,
+ * the candidates are split among the threads of the common ForkJoinPool,
+ * every thread takes every n-th candidate, so each covers the whole range.
+ * The deadline can be exceeded by about one evaluation (a few hundred
+ * nanoseconds). The planner does not create any objects while planning.
+ *
+ * Usage, e.g. once per step of the walk:
+ * <pre>
+ * planner.setBall(x, y, vx, vy);
+ * planner.setGoal(leftPostX, leftPostY, rightPostX, rightPostY);
+ * ActionPlan plan = planner.plan(3000000); // 3 ms of the 20 ms cycle
+ * </pre>
+ *
+ * @see ActionPlan
+ */
+public class AnytimeActionPlanner {
+
+  /**
+   * Default number of walk candidates.
+   */
+  public static final int DEFAULT_WALK_CANDIDATES = 2048;
+
+  // simulated time of a walk in s
+  private static final double HORIZON = 0.6;
+  // distance of the kick position behind the ball in m
+  private static final double KICK_OFFSET = 0.2;
+  private static final double KICK_POSITION_TOLERANCE = 0.1;
+  private static final double KICK_ANGLE_TOLERANCE = Math.toRadians(15);
+  // duration of the kick motion in s and mean speed of the kicked ball in m/s
+  private static final double KICK_TIME = 1.5;
+  private static final double KICK_BALL_SPEED = 2;
+  // the ball can be dribbled, if it lies within this area in front of the
+  // robot (in m)
+  private static final double DRIBBLE_REACH = 0.3;
+  private static final double DRIBBLE_HALF_WIDTH = 0.06;
+  private static final double DRIBBLE_SPEED = 0.15;
+  private static final double MAX_DRIBBLE_ANGLE = Math.toRadians(40);
+  private static final int DRIBBLE_DIRECTIONS = 9;
+  // deadline check every n candidates
+  private static final int CHECK_INTERVAL = 8;
+  private static final int MAX_WORKERS = 4;
+
+  private static final int KICK = 0;
+  private static final int DRIBBLE = 1;
+  private static final int WALK = 2;
+
+  private final ForwardModel model;
+  private final Worker[] workers;
+  private final ActionPlan plan = new ActionPlan();
+
+  /**
+   * Constructor with DEFAULT_WALK_CANDIDATES walk candidates, uses all
+   * available cores.
+   */
+  public AnytimeActionPlanner() {
+    this(DEFAULT_WALK_CANDIDATES, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param walkCandidates Number of walk candidates.
+   * @param threads Number of threads including the calling one, 1 for
+   * planning without the ForkJoinPool. At most 4 threads are used.
+   */
+  public AnytimeActionPlanner(int walkCandidates, int threads) {
+    int n = 1 + DRIBBLE_DIRECTIONS + Math.max(0, walkCandidates);
+    model = new ForwardModel(n);
+    int[] types = model.types;
+    double[] forwards = model.forwards, sideways = model.sideways, turns = model.turns;
+
+    int c = 0;
+    types[c++] = KICK;
+    for (int d = 0; d < DRIBBLE_DIRECTIONS; d++) {
+      types[c] = DRIBBLE;
+      turns[c++] = MAX_DRIBBLE_ANGLE * (2.0 * d / (DRIBBLE_DIRECTIONS - 1) - 1);
+    }
+    for (int k = 1; c < n; k++) {
+      types[c] = WALK;
+      forwards[c] = -OmnidirectionalWalk.MAX_BACKWARD + halton(k, 2)
+              * (OmnidirectionalWalk.MAX_FORWARD + OmnidirectionalWalk.MAX_BACKWARD);
+      sideways[c] = OmnidirectionalWalk.MAX_SIDEWAYS * (2 * halton(k, 3) - 1);
+      turns[c++] = OmnidirectionalWalk.MAX_TURN * (2 * halton(k, 5) - 1);
+    }
+    plan.candidates = n;
+
+    int count = Math.max(1, Math.min(MAX_WORKERS, threads));
+    workers = new Worker[count];
+    for (int w = 0; w < count; w++)
+      workers[w] = new Worker(model, w, count);
+  }
+
+  /**
+   * Sets the ball for the forward model.
+   *
+   * @param x Local x-coordinate of the ball in m.
+   * @param y Local y-coordinate of the ball in m.
+   * @param vx Velocity of the ball in x-direction in m/s.
+   * @param vy Velocity of the ball in y-direction in m/s.
+   */
+  public void setBall(double x, double y, double vx, double vy) {
+    model.ballX = x;
+    model.ballY = y;
+    model.ballVx = vx;
+    model.ballVy = vy;
+  }
+
+  /**
+   * Sets the goal, into which the ball should be played.
+   *
+   * @param leftX Local x-coordinate of the left goal post in m.
+   * @param leftY Local y-coordinate of the left goal post in m.
+   * @param rightX Local x-coordinate of the right goal post in m.
+   * @param rightY Local y-coordinate of the right goal post in m.
+   */
+  public void setGoal(double leftX, double leftY, double rightX, double rightY) {
+    model.goalX = (leftX + rightX) / 2;
+    model.goalY = (leftY + rightY) / 2;
+    model.goalHalfWidth = Math.hypot(leftX - rightX, leftY - rightY) / 2;
+  }
+
+  /**
+   * Evaluates the candidates until the deadline and returns the best one.
+   *
+   * At least one candidate is evaluated, even if the time is too short.
+   *
+   * @param timeSlice Time for the planning in nanoseconds.
+   * @return The best action found, the returned object is reused by the
+   * next call.
+   */
+  public ActionPlan plan(long timeSlice) {
+    long start = System.nanoTime();
+    for (Worker worker : workers)
+      worker.deadline = start + timeSlice;
+
+    if (workers.length == 1)
+      workers[0].compute();
+    else {
+      ForkJoinPool pool = ForkJoinPool.commonPool();
+      for (int w = 1; w < workers.length; w++) {
+        workers[w].reinitialize();
+        pool.execute(workers[w]);
+      }
+      workers[0].compute();
+      for (int w = 1; w < workers.length; w++)
+        workers[w].join();
+    }
+
+    int best = -1;
+    double bestCost = Double.POSITIVE_INFINITY;
+    int evaluated = 0;
+    for (Worker worker : workers) {
+      evaluated += worker.evaluated;
+      if (worker.bestIndex >= 0 && (best < 0 || worker.bestCost < bestCost)) {
+        best = worker.bestIndex;
+        bestCost = worker.bestCost;
+      }
+    }
+
+    plan.type = model.types[best] == KICK ? ActionType.KICK
+            : model.types[best] == DRIBBLE ? ActionType.DRIBBLE : ActionType.WALK;
+    plan.forward = model.forwards[best];
+    plan.sideways = model.sideways[best];
+    plan.turn = model.turns[best];
+    plan.cost = bestCost;
+    plan.evaluated = evaluated;
+    plan.time = System.nanoTime() - start;
+    return plan;
+  }
+
+  /**
+   * Internal method, element of the Halton sequence to a prime base.
+   */
+  private static double halton(int index, int base) {
+    double result = 0, f = 1.0 / base;
+    for (int i = index; i > 0; i /= base) {
+      result += f * (i % base);
+      f /= base;
+    }
+    return result;
+  }
+
+  /**
+   * Candidates and state of the forward model, shared by all workers. The
+   * state is set before the workers are started and only read by them.
+   */
+  private static final class ForwardModel {
+
+    final int[] types;
+    final double[] forwards, sideways, turns;
+
+    double ballX, ballY, ballVx, ballVy;
+    double goalX, goalY, goalHalfWidth;
+
+    ForwardModel(int candidates) {
+      types = new int[candidates];
+      forwards = new double[candidates];
+      sideways = new double[candidates];
+      turns = new double[candidates];
+    }
+
+    /**
+     * Scores a candidate by the forward model.
+     *
+     * @return Estimated time in s until the ball is in the goal.
+     */
+    double evaluate(int c) {
+      switch (types[c]) {
+        case KICK:
+          return evaluateKick();
+        case DRIBBLE:
+          return evaluateDribble(turns[c]);
+        default:
+          return evaluateWalk(forwards[c], sideways[c], turns[c]);
+      }
+    }
+
+    /**
+     * Internal method, cost of a kick from the actual position.
+     */
+    private double evaluateKick() {
+      double ux = goalX - ballX, uy = goalY - ballY;
+      double goalDistance = Math.hypot(ux, uy);
+      ux /= goalDistance;
+      uy /= goalDistance;
+      // the robot is at the origin and faces the x-axis
+      double dx = ballX - KICK_OFFSET * ux, dy = ballY - KICK_OFFSET * uy;
+      double angle = Math.abs(Math.atan2(uy, ux));
+      if (Math.hypot(dx, dy) > KICK_POSITION_TOLERANCE || angle > KICK_ANGLE_TOLERANCE)
+        return Double.POSITIVE_INFINITY;
+      return KICK_TIME + goalDistance / KICK_BALL_SPEED;
+    }
+
+    /**
+     * Internal method, cost of a dribbling in a direction relative to the
+     * robot.
+     */
+    private double evaluateDribble(double direction) {
+      if (ballX < 0 || ballX > DRIBBLE_REACH || Math.abs(ballY) > DRIBBLE_HALF_WIDTH)
+        return Double.POSITIVE_INFINITY;
+      double gx = goalX - ballX, gy = goalY - ballY;
+      double goalDistance = Math.hypot(gx, gy);
+      // angle, by which the dribbling misses the goal center, relative to the
+      // half opening angle of the goal
+      double miss = Math.abs(Math.IEEEremainder(Math.atan2(gy, gx) - direction, 2 * Math.PI))
+              / Math.max(0.05, Math.atan2(goalHalfWidth, goalDistance));
+      return Math.abs(direction) / OmnidirectionalWalk.MAX_TURN
+              + goalDistance / DRIBBLE_SPEED * (1 + miss * miss);
+    }
+
+    /**
+     * Internal method, cost of a walk with a velocity for the horizon and the
+     * estimated time from there.
+     */
+    private double evaluateWalk(double forward, double side, double turn) {
+      // pose of the robot after the horizon, the velocity is constant in the
+      // coordinates of the robot
+      double theta = turn * HORIZON;
+      double x, y;
+      if (Math.abs(turn) < 1e-6) {
+        x = forward * HORIZON;
+        y = side * HORIZON;
+      } else {
+        double s = Math.sin(theta), c = Math.cos(theta);
+        x = (forward * s + side * (c - 1)) / turn;
+        y = (forward * (1 - c) + side * s) / turn;
+      }
+
+      // kick position behind the ball at the end of the horizon
+      double bx = ballX + ballVx * HORIZON, by = ballY + ballVy * HORIZON;
+      double ux = goalX - bx, uy = goalY - by;
+      double goalDistance = Math.hypot(ux, uy);
+      ux /= goalDistance;
+      uy /= goalDistance;
+      double kx = bx - KICK_OFFSET * ux - x, ky = by - KICK_OFFSET * uy - y;
+      double distance = Math.hypot(kx, ky);
+
+      // speed in the direction of the kick position, relative to the heading
+      double c = Math.cos(theta), s = Math.sin(theta);
+      double along = (kx * c + ky * s) / Math.max(1e-6, distance);
+      double across = (-kx * s + ky * c) / Math.max(1e-6, distance);
+      double maxAlong = along >= 0 ? OmnidirectionalWalk.MAX_FORWARD : OmnidirectionalWalk.MAX_BACKWARD;
+      double speed = 1 / Math.sqrt(along * along / (maxAlong * maxAlong)
+              + across * across / (OmnidirectionalWalk.MAX_SIDEWAYS * OmnidirectionalWalk.MAX_SIDEWAYS));
+      double headingError = Math.abs(Math.IEEEremainder(Math.atan2(uy, ux) - theta, 2 * Math.PI));
+      double remaining = Math.max(distance / speed, headingError / OmnidirectionalWalk.MAX_TURN);
+
+      // a robot between ball and goal has to walk around the ball
+      double ahead = (x - bx) * ux + (y - by) * uy;
+      if (ahead > 0)
+        remaining += Math.PI * KICK_OFFSET / OmnidirectionalWalk.MAX_SIDEWAYS;
+
+      return HORIZON + remaining + KICK_TIME + goalDistance / KICK_BALL_SPEED;
+    }
+  }
+
+  /**
+   * Evaluates every n-th candidate until the deadline.
+   */
+  private static final class Worker extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ForwardModel model;
+    private final int first, stride;
+    long deadline;
+    int bestIndex;
+    double bestCost;
+    int evaluated;
+
+    Worker(ForwardModel model, int first, int stride) {
+      this.model = model;
+      this.first = first;
+      this.stride = stride;
+    }
+
+    @Override
+    protected void compute() {
+      bestIndex = -1;
+      bestCost = Double.POSITIVE_INFINITY;
+      evaluated = 0;
+      for (int c = first; c < model.types.length; c += stride) {
+        double cost = model.evaluate(c);
+        evaluated++;
+        if (bestIndex < 0 || cost < bestCost) {
+          bestIndex = c;
+          bestCost = cost;
+        }
+        if (evaluated % CHECK_INTERVAL == 0 && System.nanoTime() > deadline)
+          break;
+      }
+    }
+  }
+}
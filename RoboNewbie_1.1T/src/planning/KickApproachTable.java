@@ -0,0 +1,322 @@
+/*******************************************************************************
+*  RoboNewbie
+* NaoTeam Humboldt
+* @version 1.1
+*******************************************************************************/
+
+package planning;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.util.Arrays;
+import localization.MotionOdometry;
+
+/**
+ * Lookup tables for the approach to a kick with keyframe motions.
+ *
+ * Before a kick, the robot has to bring the ball in front of its feet and
+ * has to face the goal. With keyframe motions this takes a sequence of turns,
+ * side steps and forward walks. Instead of deciding this anew in every
+ * decision round, the best motion for every situation is precomputed by
+ * KickApproachTableGenerator and stored in the file "tables/kick_approach.txt"
+ * (relative to the RoboNewbie project folder, like the keyframe files).
+ *
+ * A situation is described by the position of the ball (in the local
+ * coordinates of LocalFieldView, x to the front, y to the left) and the
+ * bearing of the opponent goal center. The tables cover the ball positions
+ * within 1 m in front of the robot and all bearings, in a grid of 5 cm and
+ * 10 degrees. There is one table for a near goal, where both kicks can be
+ * used, and one for a far goal, where only the strong kick reaches it.
+ * lookup(...) quantizes the situation and returns the stored motion with one
+ * array access, the motions to the kick can be listed by getSequence(...).
+ *
+ * The motion model is shared with the generator: every approach motion moves
+ * the robot by the displacement of localization.MotionOdometry for its
+ * keyframe sequence, the ball and the goal stay in place. A kick is possible,
+ * if the ball lies near enough in front of the robot and the goal bearing is
+ * within the tolerance of the kick.
+ *
+ * Usage:
+ * <pre>
+ * ApproachMotion next = table.lookup(ballX, ballY, goalBearing, goalDistance);
+ * </pre>
+ *
+ * @see KickApproachTableGenerator
+ */
+public class KickApproachTable {
+
+  /**
+   * Motions for the approach to a kick, with their keyframe files. Their
+   * displacements are the default displacements of MotionOdometry, the kicks
+   * have none.
+   */
+  public enum ApproachMotion {
+
+    TURN_LEFT('L', "turn-left-nika.txt"),
+    TURN_RIGHT('R', "turn-right-nika.txt"),
+    TURN_LEFT_SMALL('l', "turn-left-small-nika.txt"),
+    TURN_RIGHT_SMALL('r', "turn-right-small-nika.txt"),
+    SIDE_STEP_LEFT('S', "side-step-left-nika.txt"),
+    SIDE_STEP_RIGHT('s', "side-step-right-nika.txt"),
+    WALK_FORWARD('W', "walk_forward_Rijeka2013.txt"),
+    KICK_RIJEKA2013('K', "kick_Rijeka2013.txt"),
+    KICK_PLOVDIV2014('P', "alpha_kick_Plovdiv2014.txt"),
+    /**
+     * No approach is known, the situation is outside of the tables or the
+     * kick cannot be reached.
+     */
+    NONE('.', null);
+
+    private final char code;
+    private final String fileName;
+    private final double dx, dy, dTheta;
+
+    ApproachMotion(char code, String fileName) {
+      this.code = code;
+      this.fileName = fileName;
+      double[] d = fileName == null ? null 
+              : MotionOdometry.getDefaultDisplacement(fileName);
+      dx = d == null ? 0 : d[0];
+      dy = d == null ? 0 : d[1];
+      dTheta = d == null ? 0 : d[2];
+    }
+
+    /**
+     * Returns the character, which stands for the motion in the table file.
+     *
+     * @return Code of the motion.
+     */
+    public char getCode() {
+      return code;
+    }
+
+    /**
+     * Returns the keyframe file of the motion.
+     *
+     * @return File name in the folder "keyframes", null for NONE.
+     */
+    public String getFileName() {
+      return fileName;
+    }
+
+    /**
+     * States, whether the motion is a kick.
+     *
+     * @return True for the kicks.
+     */
+    public boolean isKick() {
+      return this == KICK_RIJEKA2013 || this == KICK_PLOVDIV2014;
+    }
+  }
+
+  /**
+   * Table file, relative to the RoboNewbie project folder.
+   */
+  public static final String FILE_NAME = "tables/kick_approach.txt";
+
+  /**
+   * Goal distance in meters, from which on the table for the far goal is
+   * used.
+   */
+  public static final double FAR_GOAL_DISTANCE = 6;
+
+  // grid of the tables
+  static final double MIN_X = 0;
+  static final double MIN_Y = -0.5;
+  static final double POSITION_STEP = 0.05;
+  static final int X_CELLS = 21;
+  static final int Y_CELLS = 21;
+  static final double BEARING_STEP = Math.toRadians(10);
+  static final int BEARING_CELLS = 36;
+  static final int CELLS = X_CELLS * Y_CELLS * BEARING_CELLS;
+  static final int NEAR = 0;
+  static final int FAR = 1;
+
+  // the ball can be kicked, if it lies within this distance and angle in
+  // front of the robot, and the goal is within the tolerance of the kick
+  private static final double KICK_DISTANCE = 0.6;
+  private static final double KICK_BALL_ANGLE = Math.toRadians(6);
+  private static final double MEDIUM_KICK_TOLERANCE = Math.toRadians(15);
+  private static final double STRONG_KICK_TOLERANCE = Math.toRadians(8);
+  // a forward walk must not run into the ball
+  private static final double MIN_BALL_DISTANCE = 0.15;
+  private static final double FOOT_HALF_WIDTH = 0.15;
+
+  private static final ApproachMotion[] MOTIONS = ApproachMotion.values();
+
+  private final ApproachMotion[][] tables = new ApproachMotion[2][CELLS];
+  private final double[] state = new double[3];
+
+  /**
+   * Constructor, reads the tables from FILE_NAME. If the file cannot be read,
+   * the tables are empty and lookup(...) returns NONE.
+   */
+  public KickApproachTable() {
+    this(FILE_NAME);
+  }
+
+  /**
+   * Constructor, reads the tables from a file.
+   *
+   * @param fileName Path of the table file.
+   */
+  public KickApproachTable(String fileName) {
+    for (ApproachMotion[] table : tables)
+      Arrays.fill(table, ApproachMotion.NONE);
+    try (BufferedReader in = new BufferedReader(new FileReader(fileName))) {
+      int table = -1, cell = 0;
+      String line;
+      while ((line = in.readLine()) != null) {
+        if (line.isEmpty() || line.startsWith("//"))
+          continue;
+        if (line.equals("near") || line.equals("far")) {
+          table = line.equals("near") ? NEAR : FAR;
+          cell = 0;
+          continue;
+        }
+        for (int i = 0; i < line.length() && cell < CELLS; i++)
+          tables[table][cell++] = decode(line.charAt(i));
+      }
+    } catch (Exception e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Returns the best motion for a situation.
+   *
+   * @param ballX Local x-coordinate of the ball in meters.
+   * @param ballY Local y-coordinate of the ball in meters.
+   * @param goalBearing Direction of the goal center in radians, positive to
+   * the left.
+   * @param goalDistance Distance of the goal center in meters.
+   * @return Next motion of the approach, or the kick, or NONE if the ball
+   * lies outside of the tables or the kick cannot be reached.
+   */
+  public ApproachMotion lookup(double ballX, double ballY, double goalBearing,
+          double goalDistance) {
+    int cell = cell(ballX, ballY, goalBearing);
+    return cell < 0 ? ApproachMotion.NONE
+            : tables[goalDistance < FAR_GOAL_DISTANCE ? NEAR : FAR][cell];
+  }
+
+  /**
+   * Lists the motions of the approach, by following the tables with the
+   * motion model.
+   *
+   * @param ballX Local x-coordinate of the ball in meters.
+   * @param ballY Local y-coordinate of the ball in meters.
+   * @param goalBearing Direction of the goal center in radians, positive to
+   * the left.
+   * @param goalDistance Distance of the goal center in meters.
+   * @param sequence Array for the motions, the list ends with the kick.
+   * @return Number of motions, 0 if no kick can be reached.
+   */
+  public int getSequence(double ballX, double ballY, double goalBearing,
+          double goalDistance, ApproachMotion[] sequence) {
+    state[0] = ballX;
+    state[1] = ballY;
+    state[2] = goalBearing;
+    for (int n = 0; n < sequence.length; n++) {
+      ApproachMotion next = lookup(state[0], state[1], state[2], goalDistance);
+      if (next == ApproachMotion.NONE)
+        return 0;
+      sequence[n] = next;
+      if (next.isKick())
+        return n + 1;
+      move(next, state);
+    }
+    return 0;
+  }
+
+  /**
+   * Moves a situation by the displacement of a motion.
+   *
+   * @param motion Executed motion.
+   * @param state Ball x, ball y and goal bearing, changed in the array.
+   */
+  static void move(ApproachMotion motion, double[] state) {
+    double x = state[0] - motion.dx, y = state[1] - motion.dy;
+    double cos = Math.cos(motion.dTheta), sin = Math.sin(motion.dTheta);
+    state[0] = cos * x + sin * y;
+    state[1] = -sin * x + cos * y;
+    state[2] = normalize(state[2] - motion.dTheta);
+  }
+
+  /**
+   * States, whether a motion can be executed in a situation.
+   *
+   * @param motion Motion.
+   * @param state Ball x, ball y and goal bearing.
+   * @return False for a forward walk, which runs into the ball.
+   */
+  static boolean isPossible(ApproachMotion motion, double[] state) {
+    return motion != ApproachMotion.WALK_FORWARD
+            || Math.abs(state[1]) > FOOT_HALF_WIDTH
+            || state[0] < 0
+            || state[0] - motion.dx >= MIN_BALL_DISTANCE;
+  }
+
+  /**
+   * States, whether a kick hits the ball towards the goal in a situation.
+   *
+   * @param kick Kick motion.
+   * @param state Ball x, ball y and goal bearing.
+   * @param table NEAR or FAR, only the strong kick reaches a far goal.
+   * @return True, if the kick can be executed.
+   */
+  static boolean isKickReady(ApproachMotion kick, double[] state, int table) {
+    if (kick == ApproachMotion.KICK_RIJEKA2013 && table == FAR)
+      return false;
+    double tolerance = kick == ApproachMotion.KICK_RIJEKA2013
+            ? MEDIUM_KICK_TOLERANCE : STRONG_KICK_TOLERANCE;
+    return state[0] > 0
+            && Math.hypot(state[0], state[1]) <= KICK_DISTANCE
+            && Math.abs(Math.atan2(state[1], state[0])) <= KICK_BALL_ANGLE
+            && Math.abs(state[2]) <= tolerance;
+  }
+
+  /**
+   * Returns the index of the table cell of a situation.
+   *
+   * @return Index, or -1 if the ball lies outside of the tables.
+   */
+  static int cell(double ballX, double ballY, double goalBearing) {
+    int i = (int) Math.round((ballX - MIN_X) / POSITION_STEP);
+    int j = (int) Math.round((ballY - MIN_Y) / POSITION_STEP);
+    if (i < 0 || i >= X_CELLS || j < 0 || j >= Y_CELLS)
+      return -1;
+    int k = (int) Math.round((normalize(goalBearing) + Math.PI) / BEARING_STEP)
+            % BEARING_CELLS;
+    return (k * X_CELLS + i) * Y_CELLS + j;
+  }
+
+  /**
+   * Returns the situation at the center of a table cell.
+   *
+   * @param cell Index of the cell.
+   * @param state Array for ball x, ball y and goal bearing.
+   */
+  static void center(int cell, double[] state) {
+    state[1] = MIN_Y + (cell % Y_CELLS) * POSITION_STEP;
+    state[0] = MIN_X + (cell / Y_CELLS % X_CELLS) * POSITION_STEP;
+    state[2] = -Math.PI + cell / (X_CELLS * Y_CELLS) * BEARING_STEP;
+  }
+
+  /**
+   * Internal method, returns the motion of a character of the table file.
+   */
+  private static ApproachMotion decode(char code) {
+    for (ApproachMotion motion : MOTIONS)
+      if (motion.code == code)
+        return motion;
+    return ApproachMotion.NONE;
+  }
+
+  /**
+   * Internal method, normalizes an angle to [-PI, PI).
+   */
+  private static double normalize(double angle) {
+    return angle - 2 * Math.PI * Math.floor((angle + Math.PI) / (2 * Math.PI));
+  }
+}
@@ -0,0 +1,173 @@
+/*******************************************************************************
+*  RoboNewbie
+* NaoTeam Humboldt
+* @version 1.1
+*******************************************************************************/
+
+package planning;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import keyframeMotion.util.KeyframeFileHandler;
+import keyframeMotion.util.KeyframeSequence;
+import keyframeMotion.util.KeyframeTransforms;
+import planning.KickApproachTable.ApproachMotion;
+
+/**
+ * Offline generator of the tables of KickApproachTable.
+ *
+ * The generator has to be started from the RoboNewbie project folder, it
+ * reads the keyframe files of the approach motions and writes the file
+ * KickApproachTable.FILE_NAME. It has to be run again, if the motion model
+ * of KickApproachTable or the keyframe files are changed.
+ *
+ * The duration of every motion is the sum of the transition times of its
+ * keyframe file. For every table cell the generator computes the shortest
+ * time to a kick by value iteration: a cell, in which a kick is possible,
+ * costs the duration of the fastest possible kick, every other cell costs
+ * the smallest sum of the duration of a motion and the cost of the cell, in
+ * which the motion ends. The iteration stops, when no cost changes any
+ * more. The table stores the motion with the smallest sum for every cell.
+ *
+ * @see KickApproachTable
+ */
+public class KickApproachTableGenerator {
+
+  private static final ApproachMotion[] MOTIONS = ApproachMotion.values();
+
+  private final double[] durations = new double[MOTIONS.length];
+  private final double[] costs = new double[KickApproachTable.CELLS];
+  private final ApproachMotion[][] tables = new ApproachMotion[2][];
+  private final double[] state = new double[3];
+
+  /**
+   * Starts the generator.
+   *
+   * @param args Not used.
+   * @throws IOException If the table file cannot be written.
+   */
+  public static void main(String[] args) throws IOException {
+    KickApproachTableGenerator generator = new KickApproachTableGenerator();
+    for (int table = KickApproachTable.NEAR; table <= KickApproachTable.FAR; table++)
+      generator.generate(table);
+    generator.write(KickApproachTable.FILE_NAME);
+  }
+
+  /**
+   * Constructor, reads the durations of the motions from the keyframe files.
+   */
+  public KickApproachTableGenerator() {
+    for (ApproachMotion motion : MOTIONS) {
+      if (motion == ApproachMotion.NONE)
+        continue;
+      KeyframeSequence ks = KeyframeFileHandler.getSequenceFromFile(motion.getFileName());
+      durations[motion.ordinal()] = KeyframeTransforms.getDuration(ks) / 1000.0;
+    }
+  }
+
+  /**
+   * Computes a table by value iteration.
+   *
+   * @param table KickApproachTable.NEAR or KickApproachTable.FAR.
+   */
+  public void generate(int table) {
+    ApproachMotion[] actions = new ApproachMotion[KickApproachTable.CELLS];
+    Arrays.fill(costs, Double.POSITIVE_INFINITY);
+    Arrays.fill(actions, ApproachMotion.NONE);
+    for (int cell = 0; cell < KickApproachTable.CELLS; cell++) {
+      KickApproachTable.center(cell, state);
+      for (ApproachMotion kick : MOTIONS)
+        if (kick.isKick() && KickApproachTable.isKickReady(kick, state, table)
+                && durations[kick.ordinal()] < costs[cell]) {
+          costs[cell] = durations[kick.ordinal()];
+          actions[cell] = kick;
+        }
+    }
+
+    int iterations = 0;
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      iterations++;
+      for (int cell = 0; cell < KickApproachTable.CELLS; cell++) {
+        if (actions[cell].isKick())
+          continue;
+        for (ApproachMotion motion : MOTIONS) {
+          if (motion.isKick() || motion == ApproachMotion.NONE)
+            continue;
+          KickApproachTable.center(cell, state);
+          if (!KickApproachTable.isPossible(motion, state))
+            continue;
+          KickApproachTable.move(motion, state);
+          int next = KickApproachTable.cell(state[0], state[1], state[2]);
+          if (next < 0 || next == cell)
+            continue;
+          double cost = durations[motion.ordinal()] + costs[next];
+          if (cost < costs[cell] - 1e-9) {
+            costs[cell] = cost;
+            actions[cell] = motion;
+            changed = true;
+          }
+        }
+      }
+    }
+    tables[table] = actions;
+
+    int reachable = 0;
+    double sum = 0, max = 0;
+    for (double cost : costs)
+      if (cost < Double.POSITIVE_INFINITY) {
+        reachable++;
+        sum += cost;
+        max = Math.max(max, cost);
+      }
+    System.out.printf("%s table: %d iterations, %d of %d cells reach a kick, "
+            + "mean %.1f s, max %.1f s%n", table == KickApproachTable.NEAR ? "near" : "far",
+            iterations, reachable, KickApproachTable.CELLS, sum / Math.max(1, reachable), max);
+  }
+
+  /**
+   * Writes the generated tables. Every line contains the cells of one ball
+   * x-coordinate, from the right to the left, the lines are grouped by the
+   * goal bearing.
+   *
+   * @param fileName Path of the table file.
+   * @throws IOException If the file cannot be written.
+   */
+  public void write(String fileName) throws IOException {
+    File file = new File(fileName);
+    if (file.getParentFile() != null)
+      file.getParentFile().mkdirs();
+    String newline = System.lineSeparator();
+    try (FileWriter writer = new FileWriter(file)) {
+      writer.write("// Kick approach tables, generated by planning.KickApproachTableGenerator," + newline);
+      writer.write("// do not edit. Ball x from " + KickApproachTable.MIN_X + " m (line) and y from "
+              + KickApproachTable.MIN_Y + " m (column) in steps of "
+              + KickApproachTable.POSITION_STEP + " m," + newline);
+      writer.write("// goal bearing from -180 degrees (block) in steps of "
+              + Math.round(Math.toDegrees(KickApproachTable.BEARING_STEP)) + " degrees." + newline);
+      writer.write("// Motions and durations:");
+      for (ApproachMotion motion : MOTIONS)
+        if (motion != ApproachMotion.NONE)
+          writer.write(String.format(" %c %s %.1f s,", motion.getCode(), motion.name(),
+                  durations[motion.ordinal()]));
+      writer.write(" . NONE" + newline);
+      for (int table = KickApproachTable.NEAR; table <= KickApproachTable.FAR; table++) {
+        writer.write(table == KickApproachTable.NEAR ? "near" : "far");
+        writer.write(newline);
+        ApproachMotion[] actions = tables[table];
+        for (int cell = 0; cell < KickApproachTable.CELLS; cell++) {
+          if (cell % (KickApproachTable.X_CELLS * KickApproachTable.Y_CELLS) == 0)
+            writer.write("// bearing " + Math.round(Math.toDegrees(-Math.PI + cell
+                    / (KickApproachTable.X_CELLS * KickApproachTable.Y_CELLS)
+                    * KickApproachTable.BEARING_STEP)) + newline);
+          writer.write(actions[cell].getCode());
+          if (cell % KickApproachTable.Y_CELLS == KickApproachTable.Y_CELLS - 1)
+            writer.write(newline);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,689 @@
+/*******************************************************************************
+*  RoboNewbie
+* NaoTeam Humboldt
+* @version 1.1
+*******************************************************************************/
+
+package planning;
+
+import java.util.Arrays;
+import util.FieldConsts;
+
+/**
+ * Incremental path planner, which leads the robot around the other players
+ * to a target, e.g. the ball.
+ *
+ * The field (with a margin around the lines) is divided into a coarse grid
+ * of square cells. Every cell has a cost factor: cells near a player are
+ * blocked, cells around them are expensive, all other cells are free. The
+ * robot moves from a cell to its 8 neighbors, a move costs its length times
+ * the cost factor of the entered cell. The cell of the target is never
+ * blocked, so the robot can reach a ball next to an opponent.
+ *
+ * The shortest paths are searched by D* Lite (Koenig, Likhachev 2002) from
+ * the target to the robot. The search keeps its results between the calls
+ * of update(...), so only the following changes have to be repaired:
+ * - If the robot moves, the heuristic is corrected by an offset, the
+ *   search continues where it has stopped before.
+ * - If players move, only the cells with changed cost factors are compared,
+ *   and only the cells with a changed distance to the target are expanded
+ *   again.
+ * If the target moves into another cell, the search is started anew, because
+ * it grows from the target. A target, which moves only a little beyond the
+ * border of its cell, keeps its cell, so a jittering ball does not restart
+ * the search.
+ *
+ * All positions are given in a fixed coordinate system, e.g. the global
+ * coordinates of localization.SelfLocalization (see util.FieldConsts). The
+ * path is returned as a list of waypoints: the corners of the path in the
+ * grid (where its direction changes), and the target itself as the last
+ * waypoint. The planner does not create any objects after its construction.
+ *
+ * Usage, once per cycle or per step:
+ * <pre>
+ * planner.clearObstacles();
+ * planner.addObstacle(opponentX, opponentY);
+ * planner.update(robotX, robotY, ballX, ballY);
+ * if (planner.hasPath())
+ *   walkTo(planner.getWaypointX(0), planner.getWaypointY(0));
+ * </pre>
+ *
+ * The time and the number of expanded cells of every update are measured,
+ * see getLastUpdateNanos(), getLastExpansions() and toString().
+ */
+public class PathPlanner {
+
+  /**
+   * Default edge length of a cell in meters.
+   */
+  public static final double DEFAULT_CELL_SIZE = 0.5;
+
+  // margin of the grid around the field lines in meters
+  private static final double MARGIN = 1;
+  // cells within this distance of a player are blocked, cells within the
+  // larger distance are expensive (in meters)
+  private static final double BLOCKED_RADIUS = 0.4;
+  private static final double NEAR_RADIUS = 0.8;
+  private static final double FREE = 1;
+  private static final double NEAR = 3;
+  private static final double BLOCKED = Double.POSITIVE_INFINITY;
+  // a target keeps its cell, while it is nearer to the cell center than this
+  // part of the cell size
+  private static final double TARGET_TOLERANCE = 0.75;
+  private static final double SQRT2 = Math.sqrt(2);
+
+  // neighbor offsets in columns and rows
+  private static final int[] DC = {1, 1, 0, -1, -1, -1, 0, 1};
+  private static final int[] DR = {0, 1, 1, 1, 0, -1, -1, -1};
+
+  private final double cellSize;
+  private final double minX, minY;
+  private final int columns, rows;
+  private final int cellCount;
+
+  // cost factors of the cells, of the actual and of the next update
+  private final double[] cost;
+  private final double[] nextCost;
+  // D* Lite estimates and the priority queue
+  private final double[] g;
+  private final double[] rhs;
+  private final CellHeap open;
+  private double km = 0;
+
+  private int robotCell = -1;
+  private int lastRobotCell = -1;
+  private int targetCell = -1;
+  private double targetX, targetY;
+
+  // waypoints of the actual path
+  private final double[] waypointX;
+  private final double[] waypointY;
+  private int waypointCount = 0;
+  private double pathCost = BLOCKED;
+
+  // statistics
+  private int lastExpansions = 0;
+  private int lastChangedCells = 0;
+  private long lastNanos = 0;
+  private long totalNanos = 0;
+  private long maxNanos = 0;
+  private int updates = 0;
+  private int restarts = 0;
+
+  /**
+   * Constructor with the default cell size.
+   */
+  public PathPlanner() {
+    this(DEFAULT_CELL_SIZE);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param cellSize Edge length of a cell in meters.
+   */
+  public PathPlanner(double cellSize) {
+    this.cellSize = cellSize;
+    minX = -FieldConsts.FieldLength / 2 - MARGIN;
+    minY = -FieldConsts.FieldWidth / 2 - MARGIN;
+    columns = (int) Math.ceil((FieldConsts.FieldLength + 2 * MARGIN) / cellSize);
+    rows = (int) Math.ceil((FieldConsts.FieldWidth + 2 * MARGIN) / cellSize);
+    cellCount = columns * rows;
+    cost = new double[cellCount];
+    nextCost = new double[cellCount];
+    g = new double[cellCount];
+    rhs = new double[cellCount];
+    open = new CellHeap(cellCount);
+    waypointX = new double[cellCount + 1];
+    waypointY = new double[cellCount + 1];
+    Arrays.fill(cost, FREE);
+    Arrays.fill(nextCost, FREE);
+  }
+
+  /**
+   * Removes all obstacles for the next update.
+   */
+  public void clearObstacles() {
+    Arrays.fill(nextCost, FREE);
+  }
+
+  /**
+   * Adds an obstacle, e.g. another player, for the next update.
+   *
+   * @param x X-coordinate in meters.
+   * @param y Y-coordinate in meters.
+   */
+  public void addObstacle(double x, double y) {
+    int reach = (int) Math.ceil(NEAR_RADIUS / cellSize);
+    int column = column(x), row = row(y);
+    for (int r = Math.max(0, row - reach); r <= Math.min(rows - 1, row + reach); r++)
+      for (int c = Math.max(0, column - reach); c <= Math.min(columns - 1, column + reach); c++) {
+        double dx = minX + (c + 0.5) * cellSize - x;
+        double dy = minY + (r + 0.5) * cellSize - y;
+        double distance = Math.sqrt(dx * dx + dy * dy);
+        double factor = distance < BLOCKED_RADIUS ? BLOCKED
+                : distance < NEAR_RADIUS ? NEAR : FREE;
+        int cell = r * columns + c;
+        nextCost[cell] = Math.max(nextCost[cell], factor);
+      }
+  }
+
+  /**
+   * Repairs the paths for the actual positions of the robot, the target and
+   * the obstacles added since the last clearObstacles(), and computes the
+   * waypoints.
+   *
+   * @param robotX X-coordinate of the robot in meters.
+   * @param robotY Y-coordinate of the robot in meters.
+   * @param targetX X-coordinate of the target in meters.
+   * @param targetY Y-coordinate of the target in meters.
+   */
+  public void update(double robotX, double robotY, double targetX, double targetY) {
+    long start = System.nanoTime();
+    lastExpansions = 0;
+    lastChangedCells = 0;
+    this.targetX = targetX;
+    this.targetY = targetY;
+    robotCell = cell(robotX, robotY);
+
+    int newTarget = cell(targetX, targetY);
+    if (targetCell >= 0 && newTarget != targetCell) {
+      // keep the cell, while the target is near it
+      double dx = centerX(targetCell) - targetX;
+      double dy = centerY(targetCell) - targetY;
+      if (Math.sqrt(dx * dx + dy * dy) < TARGET_TOLERANCE * cellSize)
+        newTarget = targetCell;
+    }
+
+    if (newTarget != targetCell) {
+      System.arraycopy(nextCost, 0, cost, 0, cellCount);
+      restart(newTarget);
+    } else {
+      // the robot has moved: correct the heuristic of the queued cells
+      km += heuristic(lastRobotCell, robotCell);
+      // the obstacles have moved: a changed cost factor changes the costs of
+      // the moves into the cell, that is the estimates of its neighbors
+      for (int v = 0; v < cellCount; v++) {
+        if (cost[v] == nextCost[v])
+          continue;
+        double oldCost = cost[v];
+        cost[v] = nextCost[v];
+        lastChangedCells++;
+        int column = v % columns, row = v / columns;
+        for (int k = 0; k < 8; k++) {
+          int c = column + DC[k], r = row + DR[k];
+          if (c < 0 || c >= columns || r < 0 || r >= rows)
+            continue;
+          int u = r * columns + c;
+          if (u == targetCell)
+            continue;
+          double length = (k & 1) == 0 ? cellSize : cellSize * SQRT2;
+          double oldEdge = length * (v == targetCell ? FREE : oldCost);
+          double newEdge = edge(u, v, k);
+          if (newEdge < oldEdge)
+            rhs[u] = Math.min(rhs[u], newEdge + g[v]);
+          else if (rhs[u] == oldEdge + g[v])
+            rhs[u] = bestSuccessor(u);
+          updateCell(u);
+        }
+      }
+    }
+    lastRobotCell = robotCell;
+
+    computeShortestPath();
+    extractPath();
+
+    lastNanos = System.nanoTime() - start;
+    totalNanos += lastNanos;
+    maxNanos = Math.max(maxNanos, lastNanos);
+    updates++;
+  }
+
+  /**
+   * States, whether there is a path to the target.
+   *
+   * @return True, if the robot can reach the target at the last update.
+   */
+  public boolean hasPath() {
+    return waypointCount > 0;
+  }
+
+  /**
+   * Returns the number of waypoints of the path.
+   *
+   * @return Number of waypoints including the target, 0 if there is no path.
+   */
+  public int getWaypointCount() {
+    return waypointCount;
+  }
+
+  /**
+   * Returns the x-coordinate of a waypoint.
+   *
+   * @param i Index of the waypoint, 0 is the next one.
+   * @return X-coordinate in meters.
+   */
+  public double getWaypointX(int i) {
+    return waypointX[i];
+  }
+
+  /**
+   * Returns the y-coordinate of a waypoint.
+   *
+   * @param i Index of the waypoint, 0 is the next one.
+   * @return Y-coordinate in meters.
+   */
+  public double getWaypointY(int i) {
+    return waypointY[i];
+  }
+
+  /**
+   * Returns the cost of the path, that is its length weighted by the cost
+   * factors of the crossed cells.
+   *
+   * @return Cost in meters, infinite if there is no path.
+   */
+  public double getPathCost() {
+    return pathCost;
+  }
+
+  /**
+   * Returns the edge length of the cells.
+   *
+   * @return Cell size in meters.
+   */
+  public double getCellSize() {
+    return cellSize;
+  }
+
+  /**
+   * States, whether a position is blocked by an obstacle at the last update.
+   *
+   * @param x X-coordinate in meters.
+   * @param y Y-coordinate in meters.
+   * @return True, if the cell of the position is blocked.
+   */
+  public boolean isBlocked(double x, double y) {
+    return cost[cell(x, y)] == BLOCKED;
+  }
+
+  /**
+   * Returns the number of cells expanded by the search at the last update.
+   *
+   * @return Number of expansions.
+   */
+  public int getLastExpansions() {
+    return lastExpansions;
+  }
+
+  /**
+   * Returns the number of cells, whose cost factors changed at the last
+   * update.
+   *
+   * @return Number of cells, 0 if the search was started anew.
+   */
+  public int getLastChangedCells() {
+    return lastChangedCells;
+  }
+
+  /**
+   * Returns the time of the last update.
+   *
+   * @return Time in nanoseconds.
+   */
+  public long getLastUpdateNanos() {
+    return lastNanos;
+  }
+
+  /**
+   * Returns the mean time of all updates.
+   *
+   * @return Time in nanoseconds.
+   */
+  public long getMeanUpdateNanos() {
+    return updates == 0 ? 0 : totalNanos / updates;
+  }
+
+  /**
+   * Returns the longest time of all updates.
+   *
+   * @return Time in nanoseconds.
+   */
+  public long getMaxUpdateNanos() {
+    return maxNanos;
+  }
+
+  /**
+   * Returns the number of updates, which started the search anew, because
+   * the target changed its cell.
+   *
+   * @return Number of restarts.
+   */
+  public int getRestartCount() {
+    return restarts;
+  }
+
+  /**
+   * Returns the path and the replanning costs in a string.
+   *
+   * @return String with the waypoints, the path cost, the expanded and
+   * changed cells and the times of the updates.
+   */
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder("PathPlanner");
+    for (int i = 0; i < waypointCount; i++)
+      builder.append(String.format(" (%.2f, %.2f)", waypointX[i], waypointY[i]));
+    builder.append(String.format(" cost %.2f, %d expanded, %d changed, "
+            + "last %.3f ms, mean %.3f ms, max %.3f ms, %d restarts",
+            pathCost, lastExpansions, lastChangedCells, lastNanos / 1e6,
+            getMeanUpdateNanos() / 1e6, maxNanos / 1e6, restarts));
+    return builder.toString();
+  }
+
+  /**
+   * Internal method, starts the search from a new target cell.
+   */
+  private void restart(int newTarget) {
+    targetCell = newTarget;
+    Arrays.fill(g, BLOCKED);
+    Arrays.fill(rhs, BLOCKED);
+    open.clear();
+    km = 0;
+    rhs[targetCell] = 0;
+    open.insert(targetCell, heuristic(robotCell, targetCell), 0);
+    restarts++;
+  }
+
+  /**
+   * Internal method, expands the cells until the estimate of the robot cell
+   * is consistent.
+   */
+  private void computeShortestPath() {
+    while (!open.isEmpty()
+            && (open.isTopBefore(key1(robotCell), key2(robotCell))
+            || rhs[robotCell] > g[robotCell])) {
+      int u = open.top();
+      double k1 = key1(u), k2 = key2(u);
+      if (open.isTopBefore(k1, k2)) {
+        open.update(u, k1, k2);
+        continue;
+      }
+      lastExpansions++;
+      int column = u % columns, row = u / columns;
+      if (g[u] > rhs[u]) {
+        g[u] = rhs[u];
+        open.remove(u);
+        for (int k = 0; k < 8; k++) {
+          int c = column + DC[k], r = row + DR[k];
+          if (c < 0 || c >= columns || r < 0 || r >= rows)
+            continue;
+          int s = r * columns + c;
+          if (s != targetCell) {
+            rhs[s] = Math.min(rhs[s], edge(s, u, (k + 4) & 7) + g[u]);
+            updateCell(s);
+          }
+        }
+      } else {
+        double oldG = g[u];
+        g[u] = BLOCKED;
+        for (int k = 0; k < 8; k++) {
+          int c = column + DC[k], r = row + DR[k];
+          if (c < 0 || c >= columns || r < 0 || r >= rows)
+            continue;
+          int s = r * columns + c;
+          if (s != targetCell && rhs[s] == edge(s, u, (k + 4) & 7) + oldG)
+            rhs[s] = bestSuccessor(s);
+          updateCell(s);
+        }
+        if (u != targetCell)
+          rhs[u] = bestSuccessor(u);
+        updateCell(u);
+      }
+    }
+  }
+
+  /**
+   * Internal method, follows the best successors from the robot cell to the
+   * target cell and stores the corners of the path as waypoints.
+   */
+  private void extractPath() {
+    waypointCount = 0;
+    pathCost = rhs[robotCell];
+    if (pathCost == BLOCKED)
+      return;
+    int u = robotCell;
+    int lastDirection = -1;
+    // the path has at most as many cells as the grid, so the loop ends also
+    // if the estimates are not consistent
+    for (int steps = 0; u != targetCell && steps < cellCount; steps++) {
+      int column = u % columns, row = u / columns;
+      int best = -1, bestDirection = -1;
+      double bestValue = BLOCKED;
+      for (int k = 0; k < 8; k++) {
+        int c = column + DC[k], r = row + DR[k];
+        if (c < 0 || c >= columns || r < 0 || r >= rows)
+          continue;
+        int s = r * columns + c;
+        double value = edge(u, s, k) + g[s];
+        if (value < bestValue) {
+          bestValue = value;
+          best = s;
+          bestDirection = k;
+        }
+      }
+      if (best < 0) {
+        waypointCount = 0;
+        pathCost = BLOCKED;
+        return;
+      }
+      if (lastDirection >= 0 && bestDirection != lastDirection) {
+        waypointX[waypointCount] = centerX(u);
+        waypointY[waypointCount] = centerY(u);
+        waypointCount++;
+      }
+      lastDirection = bestDirection;
+      u = best;
+    }
+    waypointX[waypointCount] = targetX;
+    waypointY[waypointCount] = targetY;
+    waypointCount++;
+  }
+
+  /**
+   * Internal method, returns the smallest estimate of a cell over its
+   * successors.
+   */
+  private double bestSuccessor(int u) {
+    int column = u % columns, row = u / columns;
+    double best = BLOCKED;
+    for (int k = 0; k < 8; k++) {
+      int c = column + DC[k], r = row + DR[k];
+      if (c < 0 || c >= columns || r < 0 || r >= rows)
+        continue;
+      int s = r * columns + c;
+      best = Math.min(best, edge(u, s, k) + g[s]);
+    }
+    return best;
+  }
+
+  /**
+   * Internal method, inserts, updates or removes a cell in the queue
+   * depending on its consistency.
+   */
+  private void updateCell(int u) {
+    boolean queued = open.contains(u);
+    if (g[u] != rhs[u]) {
+      if (queued)
+        open.update(u, key1(u), key2(u));
+      else
+        open.insert(u, key1(u), key2(u));
+    } else if (queued)
+      open.remove(u);
+  }
+
+  /**
+   * Internal method, returns the cost of the move from cell u into its
+   * neighbor v in direction k.
+   */
+  private double edge(int u, int v, int k) {
+    double length = (k & 1) == 0 ? cellSize : cellSize * SQRT2;
+    return length * (v == targetCell ? FREE : cost[v]);
+  }
+
+  private double key1(int u) {
+    return Math.min(g[u], rhs[u]) + heuristic(robotCell, u) + km;
+  }
+
+  private double key2(int u) {
+    return Math.min(g[u], rhs[u]);
+  }
+
+  /**
+   * Internal method, returns the octile distance of two cells, a lower bound
+   * of the path cost.
+   */
+  private double heuristic(int a, int b) {
+    int dc = Math.abs(a % columns - b % columns);
+    int dr = Math.abs(a / columns - b / columns);
+    return cellSize * (Math.max(dc, dr) + (SQRT2 - 1) * Math.min(dc, dr));
+  }
+
+  private int column(double x) {
+    return Math.max(0, Math.min(columns - 1, (int) Math.floor((x - minX) / cellSize)));
+  }
+
+  private int row(double y) {
+    return Math.max(0, Math.min(rows - 1, (int) Math.floor((y - minY) / cellSize)));
+  }
+
+  private int cell(double x, double y) {
+    return row(y) * columns + column(x);
+  }
+
+  private double centerX(int cell) {
+    return minX + (cell % columns + 0.5) * cellSize;
+  }
+
+  private double centerY(int cell) {
+    return minY + (cell / columns + 0.5) * cellSize;
+  }
+
+  /**
+   * Binary min-heap of cells with two-part keys, which are compared
+   * lexicographically. The position of every cell in the heap is stored, so
+   * cells can be updated and removed in logarithmic time.
+   */
+  private static class CellHeap {
+
+    private final int[] cells;
+    private final double[] keys1;
+    private final double[] keys2;
+    private final int[] positions;
+    private int size = 0;
+
+    CellHeap(int capacity) {
+      cells = new int[capacity];
+      keys1 = new double[capacity];
+      keys2 = new double[capacity];
+      positions = new int[capacity];
+      Arrays.fill(positions, -1);
+    }
+
+    boolean isEmpty() {
+      return size == 0;
+    }
+
+    boolean contains(int cell) {
+      return positions[cell] >= 0;
+    }
+
+    int top() {
+      return cells[0];
+    }
+
+    boolean isTopBefore(double k1, double k2) {
+      return size > 0 && (keys1[0] < k1 || (keys1[0] == k1 && keys2[0] < k2));
+    }
+
+    void clear() {
+      for (int i = 0; i < size; i++)
+        positions[cells[i]] = -1;
+      size = 0;
+    }
+
+    void insert(int cell, double k1, double k2) {
+      cells[size] = cell;
+      keys1[size] = k1;
+      keys2[size] = k2;
+      positions[cell] = size;
+      size++;
+      up(size - 1);
+    }
+
+    void update(int cell, double k1, double k2) {
+      int i = positions[cell];
+      keys1[i] = k1;
+      keys2[i] = k2;
+      up(i);
+      down(positions[cell]);
+    }
+
+    void remove(int cell) {
+      int i = positions[cell];
+      positions[cell] = -1;
+      size--;
+      if (i == size)
+        return;
+      move(size, i);
+      int moved = cells[i];
+      up(i);
+      down(positions[moved]);
+    }
+
+    private boolean less(int i, int j) {
+      return keys1[i] < keys1[j] || (keys1[i] == keys1[j] && keys2[i] < keys2[j]);
+    }
+
+    private void up(int i) {
+      while (i > 0) {
+        int parent = (i - 1) / 2;
+        if (!less(i, parent))
+          return;
+        swap(i, parent);
+        i = parent;
+      }
+    }
+
+    private void down(int i) {
+      while (true) {
+        int left = 2 * i + 1, smallest = i;
+        if (left < size && less(left, smallest))
+          smallest = left;
+        if (left + 1 < size && less(left + 1, smallest))
+          smallest = left + 1;
+        if (smallest == i)
+          return;
+        swap(i, smallest);
+        i = smallest;
+      }
+    }
+
+    private void move(int from, int to) {
+      cells[to] = cells[from];
+      keys1[to] = keys1[from];
+      keys2[to] = keys2[from];
+      positions[cells[to]] = to;
+    }
+
+    private void swap(int i, int j) {
+      int cell = cells[i];
+      double k1 = keys1[i], k2 = keys2[i];
+      move(j, i);
+      cells[j] = cell;
+      keys1[j] = k1;
+      keys2[j] = k2;
+      positions[cell] = j;
+    }
+  }
+}
@@ -17,6 +17,69 @@ import java.util.HashMap;
  */
 public class FieldConsts {
 
+  /**
+   * Field length (x-direction) in meters. 
+   */
+  public static final double FieldLength = 30;
+  
+  /**
+   * Field width (y-direction) in meters. 
+   */
+  public static final double FieldWidth = 20;
+  
+  /**
+   * Distance between the goal posts of a goal in meters. 
+   */
+  public static final double GoalWidth = 2.1;
+  
+  /**
+   * Height of the goal posts in meters, the vision perceptor senses their top.
+   */
+  public static final double GoalHeight = 0.8;
+  
+  /**
+   * Depth of the penalty area (x-direction) in meters. 
+   */
+  public static final double PenaltyAreaLength = 1.8;
+  
+  /**
+   * Width of the penalty area (y-direction) in meters. 
+   */
+  public static final double PenaltyAreaWidth = 3.9;
+  
+  /**
+   * Radius of the center circle in meters. 
+   */
+  public static final double CenterCircleRadius = 2;
+  
+  /**
+   * Straight field lines as segments {x1, y1, x2, y2} in global coordinates 
+   * (see getGoalPostX(...)), the center circle is not included. 
+   */
+  public static final double[][] FieldLineSegments = {
+    // side lines and goal lines
+    {-FieldLength / 2, -FieldWidth / 2, FieldLength / 2, -FieldWidth / 2},
+    {-FieldLength / 2, FieldWidth / 2, FieldLength / 2, FieldWidth / 2},
+    {-FieldLength / 2, -FieldWidth / 2, -FieldLength / 2, FieldWidth / 2},
+    {FieldLength / 2, -FieldWidth / 2, FieldLength / 2, FieldWidth / 2},
+    // center line
+    {0, -FieldWidth / 2, 0, FieldWidth / 2},
+    // left penalty area
+    {-FieldLength / 2, PenaltyAreaWidth / 2, 
+      -FieldLength / 2 + PenaltyAreaLength, PenaltyAreaWidth / 2},
+    {-FieldLength / 2, -PenaltyAreaWidth / 2, 
+      -FieldLength / 2 + PenaltyAreaLength, -PenaltyAreaWidth / 2},
+    {-FieldLength / 2 + PenaltyAreaLength, -PenaltyAreaWidth / 2, 
+      -FieldLength / 2 + PenaltyAreaLength, PenaltyAreaWidth / 2},
+    // right penalty area
+    {FieldLength / 2, PenaltyAreaWidth / 2, 
+      FieldLength / 2 - PenaltyAreaLength, PenaltyAreaWidth / 2},
+    {FieldLength / 2, -PenaltyAreaWidth / 2, 
+      FieldLength / 2 - PenaltyAreaLength, -PenaltyAreaWidth / 2},
+    {FieldLength / 2 - PenaltyAreaLength, -PenaltyAreaWidth / 2, 
+      FieldLength / 2 - PenaltyAreaLength, PenaltyAreaWidth / 2}
+  };
+
   /**
    * Enumeration of all goal post ids.
    */
@@ -59,6 +122,64 @@ public class FieldConsts {
   }
   
   
+  /**
+   * Returns the global x-coordinate of a goal post. <br>
+   * The global coordinate system has its origin in the center of the field, 
+   * the x-axis points to the goal of the right team (G1R, G2R), the y-axis to
+   * the flags F1L and F1R. 
+   * 
+   * @param id Goal post.
+   * @return X-coordinate in meters. 
+   */
+  public static double getGoalPostX(GoalPostID id) {
+    return goalPostPositions[id.ordinal()][0];
+  }
+  
+  /**
+   * Returns the global y-coordinate of a goal post. 
+   * 
+   * @param id Goal post.
+   * @return Y-coordinate in meters (see getGoalPostX(...)). 
+   */
+  public static double getGoalPostY(GoalPostID id) {
+    return goalPostPositions[id.ordinal()][1];
+  }
+  
+  /**
+   * Returns the global x-coordinate of a flag. 
+   * 
+   * @param id Flag.
+   * @return X-coordinate in meters (see getGoalPostX(...)). 
+   */
+  public static double getFlagX(FlagID id) {
+    return flagPositions[id.ordinal()][0];
+  }
+  
+  /**
+   * Returns the global y-coordinate of a flag. 
+   * 
+   * @param id Flag.
+   * @return Y-coordinate in meters (see getGoalPostX(...)). 
+   */
+  public static double getFlagY(FlagID id) {
+    return flagPositions[id.ordinal()][1];
+  }
+  
+  // indexed by the ordinals of the ids
+  private static final double[][] goalPostPositions = {
+    {-FieldLength / 2, GoalWidth / 2},   // G1L
+    {FieldLength / 2, GoalWidth / 2},    // G1R
+    {-FieldLength / 2, -GoalWidth / 2},  // G2L
+    {FieldLength / 2, -GoalWidth / 2}    // G2R
+  };
+  
+  private static final double[][] flagPositions = {
+    {-FieldLength / 2, FieldWidth / 2},  // F1L
+    {FieldLength / 2, FieldWidth / 2},   // F1R
+    {-FieldLength / 2, -FieldWidth / 2}, // F2L
+    {FieldLength / 2, -FieldWidth / 2}   // F2R
+  };
+  
   private static HashMap<String, GoalPostID> goalPostIDs = new HashMap<String, GoalPostID>() {
     {
       put("G1L", GoalPostID.G1L);
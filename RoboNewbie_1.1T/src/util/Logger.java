@@ -65,6 +65,16 @@ public class Logger {
             Math.toDegrees(v.getDelta()));
   }
   
+  /** Formats a nice output String for polar coordinates.
+   *
+   * @param p Must be initialized, null produces a runtime error.
+   * @return A String like "dist=19,85 hor=159,15° vert=89,35°", see 
+   * polarStr(Vector3D).
+   */
+  static public String polarStr(PolarCoords p) {
+    return p.toString();
+  }
+  
   /** Formats a nice output String for Cartesian coordinates.
    *
    * @param v Must be initialized, null produces a runtime error.
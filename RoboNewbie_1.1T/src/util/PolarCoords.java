@@ -0,0 +1,195 @@
+/*******************************************************************************
+*  RoboNewbie
+* NaoTeam Humboldt
+* @version 1.1
+*******************************************************************************/
+
+package util;
+
+import org.apache.commons.math3.geometry.euclidean.threed.Vector3D;
+
+/**
+ * Polar coordinates of a point, like the vision perceptor provides them. <br>
+ * 
+ * The distance is given in meters, the azimuth (horizontal angle, positive to 
+ * the left) and the elevation (vertical angle, positive upwards) in radians. 
+ * These are the values the behaviors usually need, so they are stored 
+ * directly and can be read without any computation. The Cartesian coordinates
+ * and a Vector3D object are computed only at the first request after a change
+ * and then cached. <br>
+ * 
+ * The values are mutable, so the vision data can be updated in place every 
+ * cycle. Objects returned by PerceptorInput or by the models of 
+ * localFieldView should be used ONLY FOR READ ACCESS. Use copy(), if the 
+ * values must be kept for a later cycle. 
+ * 
+ * @see localFieldView.LocalFieldView
+ */
+public final class PolarCoords {
+  
+  private double distance;
+  private double azimuth;
+  private double elevation;
+  
+  private boolean cartesianValid = false;
+  private double x, y, z;
+  private Vector3D vector = null;
+  
+  /**
+   * Constructor for unknown coordinates, all values are NaN. 
+   */
+  public PolarCoords() {
+    this(Double.NaN, Double.NaN, Double.NaN);
+  }
+  
+  /**
+   * Constructor. 
+   * 
+   * @param distance Distance in meters.
+   * @param azimuth Horizontal angle in radians.
+   * @param elevation Vertical angle in radians.
+   */
+  public PolarCoords(double distance, double azimuth, double elevation) {
+    set(distance, azimuth, elevation);
+  }
+  
+  /**
+   * Sets all coordinates. 
+   * 
+   * @param distance Distance in meters.
+   * @param azimuth Horizontal angle in radians.
+   * @param elevation Vertical angle in radians.
+   */
+  public void set(double distance, double azimuth, double elevation) {
+    this.distance = distance;
+    this.azimuth = azimuth;
+    this.elevation = elevation;
+    cartesianValid = false;
+    vector = null;
+  }
+  
+  /**
+   * Sets the coordinates from a vector. 
+   * 
+   * @param v Coordinates, NaN sets all values to NaN.
+   */
+  public void set(Vector3D v) {
+    if (v.isNaN())
+      set(Double.NaN, Double.NaN, Double.NaN);
+    else
+      set(v.getNorm(), v.getAlpha(), v.getDelta());
+    vector = v;
+  }
+  
+  /**
+   * Returns the distance.
+   * 
+   * @return Distance in meters. 
+   */
+  public double getDistance() {
+    return distance;
+  }
+  
+  /**
+   * Returns the horizontal angle, like Vector3D.getAlpha().
+   * 
+   * @return Azimuth in radians, positive to the left. 
+   */
+  public double getAzimuth() {
+    return azimuth;
+  }
+  
+  /**
+   * Returns the vertical angle, like Vector3D.getDelta().
+   * 
+   * @return Elevation in radians, positive upwards. 
+   */
+  public double getElevation() {
+    return elevation;
+  }
+  
+  /**
+   * Returns the Cartesian x coordinate. 
+   * 
+   * @return x in meters, to the front. 
+   */
+  public double getX() {
+    computeCartesian();
+    return x;
+  }
+  
+  /**
+   * Returns the Cartesian y coordinate. 
+   * 
+   * @return y in meters, to the left. 
+   */
+  public double getY() {
+    computeCartesian();
+    return y;
+  }
+  
+  /**
+   * Returns the Cartesian z coordinate. 
+   * 
+   * @return z in meters, upwards. 
+   */
+  public double getZ() {
+    computeCartesian();
+    return z;
+  }
+  
+  /**
+   * States if the coordinates are unknown. 
+   * 
+   * @return True, if any value is NaN.
+   */
+  public boolean isNaN() {
+    return Double.isNaN(distance) || Double.isNaN(azimuth) || Double.isNaN(elevation);
+  }
+  
+  /**
+   * Returns the coordinates as a vector. The vector is created at the first
+   * call after a change of the coordinates. 
+   * 
+   * @return Vector with the same coordinates, or Vector3D.NaN .
+   */
+  public Vector3D toVector3D() {
+    if (vector == null) {
+      if (isNaN())
+        vector = Vector3D.NaN;
+      else {
+        computeCartesian();
+        vector = new Vector3D(x, y, z);
+      }
+    }
+    return vector;
+  }
+  
+  /**
+   * Returns a new object with the same coordinates. 
+   * 
+   * @return Copy of this object. 
+   */
+  public PolarCoords copy() {
+    return new PolarCoords(distance, azimuth, elevation);
+  }
+  
+  @Override
+  public String toString() {
+    return String.format("dist=%.2f hor=%.2f° vert=%.2f°",
+            distance, Math.toDegrees(azimuth), Math.toDegrees(elevation));
+  }
+  
+  /**
+   * Internal method, computes the Cartesian coordinates, if necessary. 
+   */
+  private void computeCartesian() {
+    if (cartesianValid)
+      return;
+    double horizontal = distance * Math.cos(elevation);
+    x = horizontal * Math.cos(azimuth);
+    y = horizontal * Math.sin(azimuth);
+    z = distance * Math.sin(elevation);
+    cartesianValid = true;
+  }
+}
@@ -194,6 +194,19 @@ public class RobotConsts {
       return jointAngleMaxs[i];
     }
     
+   /** Returns the maximal speed of a hinge joint. <br>
+    * 
+    * @param i Joint index, represented as a save constant hinge joint name, for 
+    * example RobotConsts.NeckPitch . Use just the constants in RobotConsts, 
+    * because, if this index is invalid, you get a memory access error.
+    * @return Maximal speed of the joint in radians per second, as stated in
+    * the data sheet of the real Nao robot.
+    * @see util.RobotConsts#NeckPitch
+    */ 
+    public static double getMaxSpeed(int i){
+      return jointMaxSpeeds[i];
+    }
+    
    /** Returns the effector identifier used in SimSpark messages. <br>
     * 
     * This method should not be used by students/pupils, who lern robotics/AI
@@ -449,6 +462,32 @@ public class RobotConsts {
                                                       -120f,
                                                       -1f   };
     
+    // Values of the real Nao, in radians per second, not validated for the 
+    // simulated robot yet.
+    private static final double[] jointMaxSpeeds = new double[]{
+                                                      8.26,
+                                                      7.19,
+                                                      8.26,
+                                                      7.19,
+                                                      8.26,
+                                                      7.19,
+                                                      4.16,
+                                                      4.16,
+                                                      6.40,
+                                                      6.40,
+                                                      6.40,
+                                                      4.16,
+                                                      4.16,
+                                                      4.16,
+                                                      6.40,
+                                                      6.40,
+                                                      6.40,
+                                                      4.16,
+                                                      8.26,
+                                                      7.19,
+                                                      8.26,
+                                                      7.19};
+    
     private static HashMap<String, BodyPartName> idMapping = new HashMap<String, BodyPartName>(){
       {
         put("head",      BodyPartName.Head);
@@ -0,0 +1,86 @@
+/*******************************************************************************
+*  RoboNewbie
+* NaoTeam Humboldt
+* @version 1.1
+*******************************************************************************/
+
+package bodyModel;
+
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import util.RobotConsts;
+
+/**
+ * Checks LegInverseKinematics against ForwardKinematics: the sole pose of 
+ * random leg angles within the joint limits is computed by the forward 
+ * kinematics, solved by the inverse kinematics, and the forward kinematics of
+ * the solution must give the same pose again. 
+ */
+public class LegInverseKinematicsTest {
+  
+  private static final int SAMPLES = 2000;
+  private static final double TOLERANCE = 1e-9;
+  
+  @Test
+  public void testRoundTripLeft() {
+    roundTrip(true);
+  }
+  
+  @Test
+  public void testRoundTripRight() {
+    roundTrip(false);
+  }
+  
+  @Test
+  public void testUnreachablePoseIsReported() {
+    double[] angles = new double[RobotConsts.JointsCount];
+    boolean reached = LegInverseKinematics.solve(true, 0, 0, -1, 0, 0, 0, angles);
+    assertTrue(!reached);
+    int first = RobotConsts.LeftHipYawPitch;
+    for (int j = first; j < first + 6; j++) {
+      assertTrue(angles[j] >= Math.toRadians(RobotConsts.getAngleMin(j)) - TOLERANCE);
+      assertTrue(angles[j] <= Math.toRadians(RobotConsts.getAngleMax(j)) + TOLERANCE);
+    }
+  }
+  
+  private void roundTrip(boolean left) {
+    ForwardKinematics fk = new ForwardKinematics();
+    Random random = new Random(left ? 1 : 2);
+    int first = left ? RobotConsts.LeftHipYawPitch : RobotConsts.RightHipYawPitch;
+    int foot = left ? ForwardKinematics.LEFT_FOOT : ForwardKinematics.RIGHT_FOOT;
+    double[] angles = new double[RobotConsts.JointsCount];
+    double[] solved = new double[RobotConsts.JointsCount];
+    double[] pose = new double[16];
+    double[] solvedPose = new double[16];
+    
+    for (int n = 0; n < SAMPLES; n++) {
+      for (int j = first; j < first + 6; j++) {
+        double min = Math.toRadians(RobotConsts.getAngleMin(j));
+        double max = Math.toRadians(RobotConsts.getAngleMax(j));
+        angles[j] = min + random.nextDouble() * (max - min);
+      }
+      // a stretched knee is singular, the solution is not unique there
+      angles[first + 3] = Math.min(angles[first + 3], -0.05);
+      fk.update(angles);
+      fk.getPose(foot, pose);
+      
+      // pose rotation R = Rz(yaw) Rx(pitch) Ry(roll)
+      double pitch = Math.asin(pose[9]);
+      double roll = Math.atan2(-pose[8], pose[10]);
+      double yaw = Math.atan2(-pose[1], pose[5]);
+      boolean reached = LegInverseKinematics.solve(left, 
+              pose[3] - LegInverseKinematics.getHipX(left),
+              pose[7] - LegInverseKinematics.getHipY(left),
+              pose[11] - LegInverseKinematics.getHipZ(left),
+              yaw, pitch, roll, solved);
+      assertTrue("pose " + n + " not reached", reached);
+      
+      fk.update(solved);
+      fk.getPose(foot, solvedPose);
+      for (int i = 0; i < 12; i++)
+        assertEquals("pose " + n + ", element " + i, pose[i], solvedPose[i], TOLERANCE);
+    }
+  }
+}
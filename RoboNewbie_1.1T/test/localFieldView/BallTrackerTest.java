@@ -0,0 +1,64 @@
+/*******************************************************************************
+*  RoboNewbie
+* NaoTeam Humboldt
+* @version 1.1
+*******************************************************************************/
+
+package localFieldView;
+
+import java.util.Random;
+import org.apache.commons.math3.geometry.euclidean.threed.Vector3D;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Checks the Kalman filter of BallTracker with a ball rolling with constant 
+ * velocity, seen with noise in every third cycle like by the vision perceptor.
+ */
+public class BallTrackerTest {
+  
+  private static final double CYCLE = 0.02;
+  private static final double VX = -1.0, VY = 0.3;
+  
+  @Test
+  public void testConstantVelocityConvergence() {
+    BallModel ball = new BallModel(Vector3D.NaN, 0);
+    ball.setInFOVnow(false);
+    BallTracker tracker = new BallTracker();
+    Random random = new Random(3);
+    assertFalse(tracker.isValid());
+    
+    for (int c = 1; c <= 150; c++) {
+      double time = c * CYCLE;
+      double x = trueX(time), y = trueY(time);
+      if (c % 3 == 0) {
+        double distance = Math.sqrt(x * x + y * y) * (1 + 0.01 * random.nextGaussian());
+        double azimuth = Math.atan2(y, x) + 0.005 * random.nextGaussian();
+        ball.update(distance, azimuth, -0.1, time);
+        ball.setInFOVnow(true);
+      } else
+        ball.setInFOVnow(false);
+      tracker.update(ball, time);
+    }
+    
+    double time = 150 * CYCLE;
+    assertTrue(tracker.isValid());
+    assertEquals(time, tracker.getTime(), 1e-9);
+    assertEquals(VX, tracker.getVx(), 0.15);
+    assertEquals(VY, tracker.getVy(), 0.15);
+    assertEquals(trueX(time), tracker.getX(), 0.1);
+    assertEquals(trueY(time), tracker.getY(), 0.1);
+    assertEquals(trueX(time + 1), tracker.predictX(time + 1), 0.25);
+    assertEquals(trueY(time + 1), tracker.predictY(time + 1), 0.25);
+  }
+  
+  private static double trueX(double time) {
+    return 5 + VX * time;
+  }
+  
+  private static double trueY(double time) {
+    return 0.5 + VY * time;
+  }
+}
@@ -0,0 +1,85 @@
+/*******************************************************************************
+*  RoboNewbie
+* NaoTeam Humboldt
+* @version 1.1
+*******************************************************************************/
+
+package planning;
+
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Checks the incremental D* Lite search of PathPlanner: after every change of
+ * the obstacles and of the robot position, the incrementally repaired path 
+ * must be as cheap as the path of a planner, which searches from scratch. 
+ */
+public class PathPlannerTest {
+  
+  private static final int OBSTACLES = 8;
+  private static final int CYCLES = 1500;
+  
+  @Test
+  public void testIncrementalEqualsFreshSearch() {
+    Random random = new Random(1);
+    double[] ox = new double[OBSTACLES];
+    double[] oy = new double[OBSTACLES];
+    for (int i = 0; i < OBSTACLES; i++) {
+      ox[i] = random.nextDouble() * 20 - 10;
+      oy[i] = random.nextDouble() * 14 - 7;
+    }
+    double robotX = -10, robotY = 0, targetX = 8, targetY = 2;
+    PathPlanner incremental = new PathPlanner();
+    
+    for (int t = 0; t < CYCLES; t++) {
+      for (int i = 0; i < OBSTACLES; i++) {
+        ox[i] += random.nextGaussian() * 0.05;
+        oy[i] += random.nextGaussian() * 0.05;
+      }
+      if (incremental.hasPath()) {
+        double dx = incremental.getWaypointX(0) - robotX;
+        double dy = incremental.getWaypointY(0) - robotY;
+        double d = Math.sqrt(dx * dx + dy * dy);
+        if (d > 1e-9) {
+          robotX += 0.01 * dx / d;
+          robotY += 0.01 * dy / d;
+        }
+      }
+      // jumps of the target are far larger than the target hysteresis, so
+      // both planners always search for the same target cell
+      if (t % 500 == 499) {
+        targetX = random.nextDouble() * 20 - 10;
+        targetY = random.nextDouble() * 14 - 7;
+      }
+      
+      PathPlanner fresh = new PathPlanner();
+      incremental.clearObstacles();
+      for (int i = 0; i < OBSTACLES; i++) {
+        incremental.addObstacle(ox[i], oy[i]);
+        fresh.addObstacle(ox[i], oy[i]);
+      }
+      incremental.update(robotX, robotY, targetX, targetY);
+      fresh.update(robotX, robotY, targetX, targetY);
+      
+      assertEquals("cycle " + t, fresh.hasPath(), incremental.hasPath());
+      if (fresh.hasPath())
+        assertEquals("cycle " + t, fresh.getPathCost(), incremental.getPathCost(), 1e-9);
+    }
+  }
+  
+  @Test
+  public void testPathAvoidsObstacle() {
+    PathPlanner planner = new PathPlanner();
+    planner.addObstacle(0, 0);
+    planner.update(-3, 0, 3, 0);
+    assertTrue(planner.hasPath());
+    assertTrue(planner.isBlocked(0, 0));
+    for (int i = 0; i < planner.getWaypointCount(); i++)
+      assertFalse("waypoint " + i, 
+              planner.isBlocked(planner.getWaypointX(i), planner.getWaypointY(i)));
+    assertTrue(planner.getPathCost() > 6);
+  }
+}